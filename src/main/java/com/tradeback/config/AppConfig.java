@@ -1,27 +1,124 @@
 package com.tradeback.config;
 
-import org.springframework.boot.web.client.RestTemplateBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tradeback.service.alphavantage.AlphaVantageRateLimiter;
+import com.tradeback.service.alphavantage.RequestPriority;
+import com.tradeback.service.http.CircuitBreaker;
+import com.tradeback.service.http.DiskResponseCache;
+import com.tradeback.service.http.UpstreamClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.ClientHttpRequestFactory;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.core.env.Environment;
 
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
+@Slf4j
 @Configuration
 public class AppConfig {
 
+    @Value("${upstream.connect-timeout-seconds:5}")
+    private long connectTimeoutSeconds;
+
+    @Value("${upstream.io-threads:4}")
+    private int ioThreads;
+
+    /**
+     * Общий HTTP клиент внешних API: HTTP/2 с откатом на HTTP/1.1, пул соединений,
+     * ответы обрабатываются на небольшом пуле потоков, а не на потоках запросов Tomcat
+     */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate(clientHttpRequestFactory());
+    public HttpClient upstreamHttpClient() {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(connectTimeoutSeconds))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(upstreamExecutor())
+                .build();
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService upstreamExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, ioThreads), runnable -> {
+            Thread thread = new Thread(runnable, "upstream-io-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
+    /**
+     * Hedging по умолчанию выключен: копия запроса тратит квоту Alpha Vantage, поэтому отправляется
+     * только с отдельным разрешением лимитера, свободным от очереди и от резерва интерактивных запросов
+     */
     @Bean
-    public ClientHttpRequestFactory clientHttpRequestFactory() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(30000); // 30 seconds in milliseconds
-        factory.setReadTimeout(60000);    // 60 seconds in milliseconds
-        return factory;
+    public UpstreamClient alphaVantageUpstream(HttpClient upstreamHttpClient, ObjectMapper objectMapper,
+                                               Environment environment, AlphaVantageRateLimiter rateLimiter) {
+        return upstream("alpha-vantage", upstreamHttpClient, objectMapper, environment, 20, 4, true,
+                () -> rateLimiter.tryAcquire(RequestPriority.BACKFILL));
+    }
+
+    /**
+     * Дисковый кеш ответов Alpha Vantage; если каталог недоступен - работаем без него
+     */
+    @Bean(destroyMethod = "close")
+    public DiskResponseCache alphaVantageDiskCache(
+            @Value("${api.alpha-vantage.disk-cache.enabled:true}") boolean enabled,
+            @Value("${api.alpha-vantage.disk-cache.directory:data/alpha-vantage-cache}") String directory,
+            @Value("${api.alpha-vantage.disk-cache.segment-size-mb:32}") int segmentSizeMb,
+            @Value("${api.alpha-vantage.disk-cache.max-segments:8}") int maxSegments) {
+        if (!enabled) {
+            return DiskResponseCache.disabled();
+        }
+        try {
+            return DiskResponseCache.open(Path.of(directory), segmentSizeMb * 1024 * 1024, maxSegments);
+        } catch (IOException e) {
+            log.warn("Alpha Vantage disk cache is unavailable at {}: {}", directory, e.getMessage());
+            return DiskResponseCache.disabled();
+        }
+    }
+
+    /**
+     * Запросы к Groq - POST, поэтому без hedging
+     */
+    @Bean
+    public UpstreamClient groqUpstream(HttpClient upstreamHttpClient, ObjectMapper objectMapper,
+                                       Environment environment) {
+        return upstream("groq", upstreamHttpClient, objectMapper, environment, 30, 8, false, null);
+    }
+
+    /**
+     * Клиент внешнего API с настройками upstream.{name}.*: таймаут, bulkhead, автомат отключения и hedging
+     */
+    private UpstreamClient upstream(String name, HttpClient httpClient, ObjectMapper objectMapper,
+                                    Environment environment, long defaultTimeoutSeconds, int defaultMaxConcurrent,
+                                    boolean hedgingSupported, BooleanSupplier hedgePermit) {
+        String prefix = "upstream." + name + ".";
+        long timeoutSeconds = environment.getProperty(prefix + "request-timeout-seconds", Long.class, defaultTimeoutSeconds);
+        int maxConcurrent = environment.getProperty(prefix + "max-concurrent", Integer.class, defaultMaxConcurrent);
+        int maxQueued = environment.getProperty(prefix + "max-queued", Integer.class, 32);
+
+        CircuitBreaker circuitBreaker = null;
+        if (environment.getProperty(prefix + "circuit.enabled", Boolean.class, true)) {
+            circuitBreaker = new CircuitBreaker(name,
+                    environment.getProperty(prefix + "circuit.failure-rate", Double.class, 0.5),
+                    environment.getProperty(prefix + "circuit.minimum-calls", Integer.class, 5),
+                    environment.getProperty(prefix + "circuit.window", Integer.class, 20),
+                    Duration.ofSeconds(environment.getProperty(prefix + "circuit.open-seconds", Long.class, 30L)),
+                    environment.getProperty(prefix + "circuit.half-open-calls", Integer.class, 2));
+        }
+        boolean hedging = hedgingSupported && environment.getProperty(prefix + "hedge.enabled", Boolean.class, false);
+        long minHedgeDelayMillis = environment.getProperty(prefix + "hedge.min-delay-ms", Long.class, 500L);
+
+        return new UpstreamClient(name, httpClient, objectMapper, Duration.ofSeconds(timeoutSeconds),
+                maxConcurrent, maxQueued, circuitBreaker, hedging, minHedgeDelayMillis, hedgePermit);
     }
-}
\ No newline at end of file
+}
@@ -10,9 +10,9 @@ public final class ApplicationConstants {
     public static final String AUTH_BASE_PATH = API_BASE_PATH + "/auth";
 
     // Cache constants
-    public static final String CACHE_MARKET_DATA = "marketData";
     public static final String CACHE_SYMBOLS = "symbols";
     public static final String CACHE_INDICATORS = "indicators";
+    public static final String CACHE_INDICATOR_SERIES = "indicatorSeries";
 
     // Validation constants
     public static final int MIN_USERNAME_LENGTH = 3;
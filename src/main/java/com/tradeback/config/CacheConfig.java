@@ -13,9 +13,9 @@ public class CacheConfig {
     @Bean
     public CacheManager cacheManager() {
         return new ConcurrentMapCacheManager(
-                ApplicationConstants.CACHE_MARKET_DATA,
                 ApplicationConstants.CACHE_SYMBOLS,
-                ApplicationConstants.CACHE_INDICATORS
+                ApplicationConstants.CACHE_INDICATORS,
+                ApplicationConstants.CACHE_INDICATOR_SERIES
         );
     }
 }
\ No newline at end of file
@@ -2,16 +2,17 @@ package com.tradeback.config;
 
 import com.tradeback.model.Listing;
 import com.tradeback.repository.ListingRepository;
+import com.tradeback.service.ListingsChangedEvent;
+import com.tradeback.service.alphavantage.RateLimitExceededException;
+import com.tradeback.service.alphavantage.RequestPriority;
+import com.tradeback.service.provider.MarketDataProvider;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
-import org.springframework.http.ResponseEntity;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -21,13 +22,8 @@ import java.util.List;
 public class DataInitializer implements CommandLineRunner {
 
     private final ListingRepository listingRepository;
-    private final RestTemplate restTemplate;
-
-    @Value("${api.alpha-vantage.key}")
-    private String apiKey;
-
-    @Value("${api.alpha-vantage.base-url}")
-    private String baseUrl;
+    private final MarketDataProvider marketDataProvider;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public void run(String... args) throws Exception {
@@ -71,43 +67,18 @@ public class DataInitializer implements CommandLineRunner {
      */
     private boolean loadAllSymbolsFromApi() {
         try {
-            String url = String.format("%s?function=LISTING_STATUS&apikey=%s&state=active", baseUrl, apiKey);
-            log.info("Fetching ALL symbols from Alpha Vantage LISTING_STATUS API...");
-
-            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
-
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                String csvContent = response.getBody();
-
-                // Проверяем, что получили CSV данные, а не ошибку
-                if (csvContent.contains("Error Message")) {
-                    log.warn("Alpha Vantage API returned error message: {}",
-                            csvContent.length() > 200 ? csvContent.substring(0, 200) + "..." : csvContent);
-                    return false;
-                }
-
-                // Проверяем на предупреждения о лимитах, но не останавливаем загрузку
-                if (csvContent.contains("Note")) {
-                    log.info("Alpha Vantage API note (proceeding with data loading): {}",
-                            csvContent.length() > 200 ? csvContent.substring(0, 200) + "..." : csvContent);
-                }
-
-                // Проверяем, что это действительно CSV с данными (должен содержать заголовок)
-                if (!csvContent.contains("symbol,name,exchange") || csvContent.split("\n").length < 2) {
-                    log.warn("Invalid CSV format received from Alpha Vantage API");
-                    return false;
-                }
+            log.info("Fetching ALL symbols from {} provider...", marketDataProvider.getName());
 
-                List<Listing> allListings = parseCsvContent(csvContent);
+            List<Listing> allListings = marketDataProvider.getListings(RequestPriority.PREFETCH);
 
-                if (!allListings.isEmpty()) {
-                    listingRepository.saveAll(allListings);
-                    log.info("Successfully loaded {} symbols from LISTING_STATUS", allListings.size());
-                    return true;
-                }
+            if (!allListings.isEmpty()) {
+                listingRepository.saveAll(allListings);
+                eventPublisher.publishEvent(new ListingsChangedEvent(allListings.size()));
+                log.info("Successfully loaded {} symbols from LISTING_STATUS", allListings.size());
+                return true;
             }
         } catch (Exception e) {
-            log.warn("Failed to load all symbols from Alpha Vantage: {}", e.getMessage());
+            log.warn("Failed to load all symbols from {}: {}", marketDataProvider.getName(), e.getMessage());
         }
         return false;
     }
@@ -128,14 +99,14 @@ public class DataInitializer implements CommandLineRunner {
             };
 
             int updatedCount = 0;
-            int maxApiCalls = 12; // Ограничиваем для соблюдения rate limits
+            int maxApiCalls = 12; // Не расходуем на обогащение всю дневную квоту
 
             for (int i = 0; i < Math.min(topSymbols.length, maxApiCalls); i++) {
                 String symbol = topSymbols[i];
 
                 try {
                     // Получаем детальную информацию о символе
-                    String detailedInfo = fetchSymbolDetails(symbol);
+                    Listing detailedInfo = fetchSymbolDetails(symbol);
 
                     if (detailedInfo != null) {
                         // Обновляем существующий символ в базе с детальной информацией
@@ -144,12 +115,9 @@ public class DataInitializer implements CommandLineRunner {
                         log.debug("Updated popular symbol: {}", symbol);
                     }
 
-                    // Rate limit: 5 вызовов в минуту для free tier
-                    Thread.sleep(13000); // 13 секунд между вызовами
-
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    log.warn("Thread interrupted while loading popular symbols");
+                } catch (RateLimitExceededException e) {
+                    // Темп вызовов задает общий планировщик; отказ значит, что квота на фон закончилась
+                    log.warn("Stopping popular symbols enrichment: {}", e.getMessage());
                     break;
                 } catch (Exception e) {
                     log.warn("Failed to fetch details for popular symbol {}: {}", symbol, e.getMessage());
@@ -169,22 +137,11 @@ public class DataInitializer implements CommandLineRunner {
     /**
      * Получает детальную информацию о символе через OVERVIEW API
      */
-    private String fetchSymbolDetails(String symbol) {
+    private Listing fetchSymbolDetails(String symbol) {
         try {
-            String url = String.format("%s?function=OVERVIEW&symbol=%s&apikey=%s",
-                    baseUrl, symbol, apiKey);
-
-            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
-
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                String jsonResponse = response.getBody();
-
-                // Проверяем, что получили валидные данные
-                if (!jsonResponse.contains("Error Message") && !jsonResponse.equals("{}") &&
-                        jsonResponse.contains("Name") && jsonResponse.length() > 100) {
-                    return jsonResponse;
-                }
-            }
+            return marketDataProvider.getSymbolDetails(symbol, RequestPriority.BACKFILL);
+        } catch (RateLimitExceededException e) {
+            throw e;
         } catch (Exception e) {
             log.debug("Error fetching details for {}: {}", symbol, e.getMessage());
         }
@@ -194,7 +151,7 @@ public class DataInitializer implements CommandLineRunner {
     /**
      * Обновляет существующий символ детальной информацией из OVERVIEW API
      */
-    private void updateSymbolWithDetails(String symbol, String jsonResponse) {
+    private void updateSymbolWithDetails(String symbol, Listing details) {
         try {
             // Находим существующий символ в базе
             List<Listing> existingListings = listingRepository.findAll();
@@ -202,8 +159,8 @@ public class DataInitializer implements CommandLineRunner {
             for (Listing listing : existingListings) {
                 if (listing.getSymbol().equals(symbol)) {
                     // Обновляем с более детальной информацией
-                    String detailedName = extractJsonValue(jsonResponse, "Name");
-                    String exchange = extractJsonValue(jsonResponse, "Exchange");
+                    String detailedName = details.getName();
+                    String exchange = details.getExchange();
 
                     if (detailedName != null && !detailedName.equals("None") && detailedName.length() > 0) {
                         listing.setName(detailedName);
@@ -222,46 +179,6 @@ public class DataInitializer implements CommandLineRunner {
         }
     }
 
-    /**
-     * Парсит CSV содержимое от LISTING_STATUS API
-     */
-    private List<Listing> parseCsvContent(String csvContent) {
-        if (csvContent == null || csvContent.trim().isEmpty()) {
-            return new ArrayList<>();
-        }
-
-        List<Listing> listings = new ArrayList<>();
-        String[] lines = csvContent.split("\n");
-
-        // Пропускаем заголовок (первая строка)
-        for (int i = 1; i < lines.length; i++) {
-            String line = lines[i].trim();
-            if (line.isEmpty()) continue;
-
-            try {
-                String[] values = line.split(",", -1);
-
-                if (values.length >= 7) {
-                    Listing listing = new Listing(
-                            values[0].trim(),  // symbol
-                            values[1].trim(),  // name
-                            values[2].trim(),  // exchange
-                            values[3].trim(),  // assetType
-                            values[4].trim(),  // ipoDate (String)
-                            values[5].equals("null") ? null : values[5].trim(), // delistingDate
-                            values[6].trim()   // status
-                    );
-                    listings.add(listing);
-                }
-            } catch (Exception e) {
-                log.debug("Error parsing CSV line {}: {} - {}", i, line, e.getMessage());
-            }
-        }
-
-        log.info("Parsed {} listings from CSV content", listings.size());
-        return listings;
-    }
-
     /**
      * Fallback метод: загружает кураторский список популярных символов
      * Используется когда Alpha Vantage API недоступен
@@ -315,33 +232,7 @@ public class DataInitializer implements CommandLineRunner {
         );
 
         listingRepository.saveAll(fallbackSymbols);
+        eventPublisher.publishEvent(new ListingsChangedEvent(fallbackSymbols.size()));
         log.info("Initialized {} fallback symbols", fallbackSymbols.size());
     }
-
-    /**
-     * Простой JSON парсер для извлечения значений
-     */
-    private String extractJsonValue(String json, String key) {
-        try {
-            String searchKey = "\"" + key + "\":";
-            int startIndex = json.indexOf(searchKey);
-            if (startIndex == -1) return null;
-
-            startIndex += searchKey.length();
-            // Пропускаем пробелы
-            while (startIndex < json.length() && Character.isWhitespace(json.charAt(startIndex))) {
-                startIndex++;
-            }
-
-            if (startIndex >= json.length() || json.charAt(startIndex) != '"') return null;
-            startIndex++; // Пропускаем открывающую кавычку
-
-            int endIndex = json.indexOf('"', startIndex);
-            if (endIndex == -1) return null;
-
-            return json.substring(startIndex, endIndex);
-        } catch (Exception e) {
-            return null;
-        }
-    }
-}
\ No newline at end of file
+}
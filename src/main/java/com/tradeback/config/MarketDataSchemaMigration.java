@@ -0,0 +1,98 @@
+package com.tradeback.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Приводит первичный ключ market_data к (symbol, bar_interval, date). ddl-auto=update не меняет
+ * существующий ключ, а Hibernate строит составной ключ в алфавитном порядке атрибутов; от порядка
+ * колонок зависит кластерный индекс InnoDB. Старый суррогатный id удаляется, строки без интервала
+ * считаются дневными, из дублей одного бара остается последний сохраненный (с наибольшим id).
+ * Если ключ изменить не удалось, запуск прерывается: без ключа upsert баров создавал бы дубли
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class MarketDataSchemaMigration implements CommandLineRunner {
+
+    private static final List<String> PRIMARY_KEY = List.of("symbol", "bar_interval", "date");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+
+    public MarketDataSchemaMigration(JdbcTemplate jdbcTemplate,
+                                     @Value("${market-data.schema.migrate-primary-key:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void run(String... args) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            List<String> current = columns("SELECT COLUMN_NAME FROM information_schema.KEY_COLUMN_USAGE "
+                    + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'market_data' AND CONSTRAINT_NAME = 'PRIMARY' "
+                    + "ORDER BY ORDINAL_POSITION");
+            if (current.equals(PRIMARY_KEY)) {
+                return;
+            }
+            boolean hasId = !columns("SELECT COLUMN_NAME FROM information_schema.COLUMNS "
+                    + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'market_data' AND COLUMN_NAME = 'id'").isEmpty();
+            boolean hasUniqueKey = !columns("SELECT INDEX_NAME FROM information_schema.STATISTICS "
+                    + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'market_data' "
+                    + "AND INDEX_NAME = 'uk_market_data_bar' LIMIT 1").isEmpty();
+
+            log.info("Migrating market_data primary key from {} to {}", current, PRIMARY_KEY);
+            // Строки, сохраненные до появления bar_interval, - дневные бары
+            int untagged = jdbcTemplate.update("UPDATE market_data SET bar_interval = 'daily' "
+                    + "WHERE bar_interval IS NULL OR bar_interval = ''");
+            if (untagged > 0) {
+                log.info("Tagged {} market_data rows without interval as daily", untagged);
+            }
+            if (hasId) {
+                removeDuplicateBars();
+            }
+            StringBuilder alter = new StringBuilder("ALTER TABLE market_data ");
+            if (hasId) {
+                // Вместе с AUTO_INCREMENT колонкой удаляется и ключ на ней
+                alter.append("DROP COLUMN id, ");
+            } else if (!current.isEmpty()) {
+                alter.append("DROP PRIMARY KEY, ");
+            }
+            if (hasUniqueKey) {
+                alter.append("DROP INDEX uk_market_data_bar, ");
+            }
+            alter.append("ADD PRIMARY KEY (symbol, bar_interval, date)");
+            jdbcTemplate.execute(alter.toString());
+            log.info("market_data primary key is now {}", PRIMARY_KEY);
+        } catch (DataAccessException e) {
+            throw new IllegalStateException("Could not migrate market_data primary key to " + PRIMARY_KEY, e);
+        }
+    }
+
+    /**
+     * Без дублей не создать ни ключ, ни работающий ON DUPLICATE KEY UPDATE в MarketDataBulkWriter
+     */
+    private void removeDuplicateBars() {
+        int removed = jdbcTemplate.update("DELETE stale FROM market_data stale JOIN market_data kept "
+                + "ON kept.symbol = stale.symbol AND kept.bar_interval = stale.bar_interval "
+                + "AND kept.date = stale.date AND kept.id > stale.id");
+        if (removed > 0) {
+            log.warn("Removed {} duplicate market_data bars, keeping the latest row of each", removed);
+        }
+    }
+
+    private List<String> columns(String sql) {
+        return jdbcTemplate.queryForList(sql, String.class);
+    }
+}
@@ -0,0 +1,31 @@
+package com.tradeback.config;
+
+import com.tradeback.service.http.UpstreamClient;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * /actuator/upstreams: очередь, bulkhead, задержки, hedging и состояние цепи по каждому внешнему API
+ */
+@Component
+@Endpoint(id = "upstreams")
+@RequiredArgsConstructor
+public class UpstreamEndpoint {
+
+    private final List<UpstreamClient> upstreams;
+
+    @ReadOperation
+    public Map<String, Object> upstreams() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (UpstreamClient upstream : upstreams) {
+            result.put(upstream.getName(), upstream.snapshot());
+        }
+        return result;
+    }
+}
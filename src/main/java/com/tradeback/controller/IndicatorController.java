@@ -1,11 +1,17 @@
 package com.tradeback.controller;
 
 
+import com.tradeback.dto.IndicatorSeries;
 import com.tradeback.model.Indicator;
 import com.tradeback.service.IndicatorService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/indicators")
 public class IndicatorController {
@@ -21,6 +27,27 @@ public class IndicatorController {
         return indicatorService.calculateIndicator(indicator);
     }
 
+    // Свечные паттерны (все CDL*) за последние bars баров
+    @GetMapping("/patterns/{symbol}")
+    public List<Map<String, Object>> getCandlestickPatterns(@PathVariable String symbol,
+                                                            @RequestParam(defaultValue = "daily") String interval,
+                                                            @RequestParam(defaultValue = "1") int bars) {
+        return indicatorService.getCandlestickPatterns(symbol, interval, Math.max(1, bars));
+    }
+
+    // Полный ряд индикатора за период одним ответом: массивы timestamps / values / secondary / tertiary
+    @GetMapping("/series/{symbol}")
+    public IndicatorSeries getIndicatorSeries(@PathVariable String symbol,
+                                              @RequestParam Indicator.IndicatorType type,
+                                              @RequestParam(defaultValue = "14") Integer period,
+                                              @RequestParam(defaultValue = "daily") String interval,
+                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return indicatorService.getIndicatorSeries(symbol.toUpperCase(), type, period, interval,
+                from != null ? from.atStartOfDay() : null,
+                to != null ? to.atTime(23, 59, 59) : null);
+    }
+
 //    @GetMapping("/sma/{symbol}/{period}")
 //    public double getSMA(@PathVariable String symbol, @PathVariable int period) {
 //        return indicatorService.calculateSMA(symbol, period);
@@ -1,15 +1,24 @@
 package com.tradeback.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tradeback.dto.MarketDataPage;
 import com.tradeback.model.Listing;
 import com.tradeback.model.MarketData;
+import com.tradeback.service.LastPriceService;
 import com.tradeback.service.MarketDataService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -20,23 +29,79 @@ import java.util.Map;
 public class MarketDataController {
 
     private final MarketDataService marketDataService;
+    private final LastPriceService lastPriceService;
+    private final ObjectMapper objectMapper;
 
+    /**
+     * Последние цены списка символов из таблицы в памяти; устаревшие обновляются пакетными запросами.
+     * Список длиннее market-data.last-price.max-symbols-per-request отклоняется с 400
+     */
+    @GetMapping("/prices")
+    public ResponseEntity<Map<String, Double>> getLastPrices(@RequestParam List<String> symbols) {
+        if (symbols.size() > lastPriceService.getMaxSymbolsPerRequest()) {
+            log.warn("Rejected last price request for {} symbols (limit {})", symbols.size(),
+                    lastPriceService.getMaxSymbolsPerRequest());
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(lastPriceService.getPrices(symbols));
+        } catch (Exception e) {
+            log.error("Error getting last prices for {}: {}", symbols, e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Вся история пары JSON-массивом, который пишется в ответ по мере чтения строк из БД:
+     * память на запрос не зависит от длины истории
+     */
     @GetMapping("/{symbol}")
-    public ResponseEntity<Iterable<MarketData>> getAllMarketData(@PathVariable String symbol) {
+    public ResponseEntity<StreamingResponseBody> getAllMarketData(@PathVariable String symbol,
+                                                                  @RequestParam(defaultValue = "daily") String interval) {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+                generator.writeStartArray();
+                long rows = marketDataService.streamMarketData(symbol, interval, bar -> {
+                    try {
+                        generator.writeObject(bar);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+                log.debug("Streamed {} bars for {} {}", rows, symbol, interval);
+            } catch (Exception e) {
+                // Статус уже отправлен: ответ обрывается, клиент получит незакрытый массив
+                log.error("Error streaming market data for {}: {}", symbol, e.getMessage());
+                throw e;
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Keyset-пагинация: after - nextCursor предыдущей страницы (время последнего бара)
+     */
+    @GetMapping("/{symbol}/page")
+    public ResponseEntity<MarketDataPage> getMarketDataPage(
+            @PathVariable String symbol,
+            @RequestParam(defaultValue = "daily") String interval,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime after,
+            @RequestParam(defaultValue = "1000") int limit) {
         try {
-            Iterable<MarketData> data = marketDataService.getAllMarketData(symbol);
-            return ResponseEntity.ok(data);
+            return ResponseEntity.ok(marketDataService.getMarketDataPage(symbol, interval, after, limit));
         } catch (Exception e) {
-            log.error("Error getting market data for {}: {}", symbol, e.getMessage());
+            log.error("Error getting market data page for {}: {}", symbol, e.getMessage());
             return ResponseEntity.internalServerError().build();
         }
     }
 
     @GetMapping("/{symbol}/{date}")
     public ResponseEntity<MarketData> getMarketDataByDate(@PathVariable String symbol,
-                                                          @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+                                                          @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+                                                          @RequestParam(defaultValue = "daily") String interval) {
         try {
-            MarketData data = marketDataService.getMarketDataBySymbolAndDate(symbol, date);
+            MarketData data = marketDataService.getMarketDataBySymbolAndDate(symbol, interval, date);
             if (data != null) {
                 return ResponseEntity.ok(data);
             } else {
@@ -52,9 +117,10 @@ public class MarketDataController {
     public ResponseEntity<List<MarketData>> getMarketDataByDateRange(
             @PathVariable String symbol,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "daily") String interval) {
         try {
-            List<MarketData> data = marketDataService.getMarketDataByDateRange(symbol, startDate, endDate);
+            List<MarketData> data = marketDataService.getMarketDataByDateRange(symbol, interval, startDate, endDate);
             return ResponseEntity.ok(data);
         } catch (Exception e) {
             log.error("Error getting market data range for {}: {}", symbol, e.getMessage());
@@ -74,9 +140,10 @@ public class MarketDataController {
     }
 
     @PostMapping("/{symbol}/save")
-    public ResponseEntity<Map<String, String>> saveMarketData(@PathVariable String symbol) {
+    public ResponseEntity<Map<String, String>> saveMarketData(@PathVariable String symbol,
+                                                              @RequestParam(defaultValue = "daily") String interval) {
         try {
-            marketDataService.saveStockData(symbol);
+            marketDataService.saveStockData(symbol, interval);
             return ResponseEntity.ok(Map.of("message", "Market data saved successfully for " + symbol));
         } catch (Exception e) {
             log.error("Error saving market data for {}: {}", symbol, e.getMessage());
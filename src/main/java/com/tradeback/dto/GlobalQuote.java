@@ -0,0 +1,30 @@
+package com.tradeback.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * Котировка из ответа GLOBAL_QUOTE Alpha Vantage
+ */
+@Data
+public class GlobalQuote {
+
+    private String symbol;
+    private double open;
+    private double high;
+    private double low;
+    private double price;
+    private long volume;
+    private LocalDate latestTradingDay;
+    private double previousClose;
+    private double change;
+    private double changePercent;
+
+    /**
+     * Alpha Vantage отдает нулевую цену для неизвестных символов вместо ошибки
+     */
+    public boolean hasPrice() {
+        return price > 0;
+    }
+}
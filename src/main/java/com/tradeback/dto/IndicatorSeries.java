@@ -0,0 +1,104 @@
+package com.tradeback.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.tradeback.model.Indicator;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Полный ряд значений индикатора в колоночном виде: массив времени и до трёх линий значений
+ * (value / secondaryValue / tertiaryValue), выровненных по индексу. Время - epoch seconds
+ * биржевого времени бара, как в BarSeries. Точки без значения (прогрев линии) хранятся как NaN
+ * и в JSON выводятся как null
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IndicatorSeries {
+
+    private String symbol;
+    private String interval;
+    private Indicator.IndicatorType type;
+    private Integer period;
+    private long[] timestamps;
+    @JsonSerialize(using = NanAsNullSerializer.class)
+    private double[] values;
+    @JsonSerialize(using = NanAsNullSerializer.class)
+    private double[] secondary;
+    @JsonSerialize(using = NanAsNullSerializer.class)
+    private double[] tertiary;
+
+    public static IndicatorSeries empty(String symbol, String interval, Indicator.IndicatorType type, Integer period) {
+        return new IndicatorSeries(symbol, interval, type, period, new long[0], new double[0], null, null);
+    }
+
+    public int size() {
+        return timestamps.length;
+    }
+
+    public boolean isEmpty() {
+        return timestamps.length == 0;
+    }
+
+    /**
+     * Точки с временем в диапазоне [fromEpochSecond, toEpochSecond]
+     */
+    public IndicatorSeries slice(long fromEpochSecond, long toEpochSecond) {
+        int from = lowerBound(fromEpochSecond);
+        int to = toEpochSecond == Long.MAX_VALUE ? timestamps.length : lowerBound(toEpochSecond + 1);
+        if (from == 0 && to == timestamps.length) {
+            return this;
+        }
+        to = Math.max(from, to);
+        return new IndicatorSeries(symbol, interval, type, period,
+                Arrays.copyOfRange(timestamps, from, to),
+                Arrays.copyOfRange(values, from, to),
+                secondary != null ? Arrays.copyOfRange(secondary, from, to) : null,
+                tertiary != null ? Arrays.copyOfRange(tertiary, from, to) : null);
+    }
+
+    private int lowerBound(long epochSecond) {
+        int index = Arrays.binarySearch(timestamps, epochSecond);
+        if (index < 0) {
+            return -index - 1;
+        }
+        while (index > 0 && timestamps[index - 1] == epochSecond) {
+            index--;
+        }
+        return index;
+    }
+
+    /**
+     * Массив double, где NaN записывается как null, а не как нечисловая строка "NaN"
+     */
+    static class NanAsNullSerializer extends StdSerializer<double[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        NanAsNullSerializer() {
+            super(double[].class);
+        }
+
+        @Override
+        public void serialize(double[] line, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartArray(line, line.length);
+            for (double value : line) {
+                if (Double.isNaN(value)) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(value);
+                }
+            }
+            generator.writeEndArray();
+        }
+    }
+}
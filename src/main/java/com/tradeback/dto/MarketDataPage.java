@@ -0,0 +1,22 @@
+package com.tradeback.dto;
+
+import com.tradeback.model.MarketData;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Страница баров по возрастанию времени. nextCursor - время последнего бара страницы для параметра after
+ * следующего запроса; null, если страница последняя
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MarketDataPage {
+
+    private List<MarketData> data;
+    private LocalDateTime nextCursor;
+}
@@ -0,0 +1,328 @@
+package com.tradeback.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Колоночное представление OHLCV ряда: параллельные примитивные массивы вместо списка MarketData.
+ * Время хранится в секундах эпохи (LocalDateTime интерпретируется как UTC), бары упорядочены по возрастанию.
+ * Массивы, возвращаемые геттерами, не копируются и должны использоваться только для чтения.
+ */
+public class BarSeries {
+
+    private static final int SECONDS_PER_DAY = 86_400;
+
+    private final String symbol;
+    private final String interval;
+    private final int size;
+    private final long[] timestamps;
+    private final double[] open;
+    private final double[] high;
+    private final double[] low;
+    private final double[] close;
+    private final long[] volume;
+
+    private BarSeries(String symbol, String interval, int size, long[] timestamps,
+                      double[] open, double[] high, double[] low, double[] close, long[] volume) {
+        this.symbol = symbol;
+        this.interval = interval;
+        this.size = size;
+        this.timestamps = timestamps;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+    }
+
+    /**
+     * Пустой ряд
+     */
+    public static BarSeries empty(String symbol, String interval) {
+        return new Builder(symbol, interval, 0).build();
+    }
+
+    /**
+     * Строит ряд из результатов MarketDataRepository (порядок входного списка не важен)
+     */
+    public static BarSeries fromMarketData(String symbol, String interval, List<MarketData> bars) {
+        Builder builder = new Builder(symbol, interval, bars.size());
+        for (MarketData bar : bars) {
+            builder.add(bar.getDate(),
+                    bar.getOpenPriceAsDouble(), bar.getHighPriceAsDouble(),
+                    bar.getLowPriceAsDouble(), bar.getClosePriceAsDouble(),
+                    bar.getVolume() != null ? bar.getVolume() : 0L);
+        }
+        return builder.build();
+    }
+
+    public static Builder builder(String symbol, String interval, int expectedSize) {
+        return new Builder(symbol, interval, expectedSize);
+    }
+
+    public static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    public static LocalDateTime toDateTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public String getInterval() {
+        return interval;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    public double[] getOpen() {
+        return open;
+    }
+
+    public double[] getHigh() {
+        return high;
+    }
+
+    public double[] getLow() {
+        return low;
+    }
+
+    public double[] getClose() {
+        return close;
+    }
+
+    public long[] getVolume() {
+        return volume;
+    }
+
+    public LocalDateTime getDateTime(int index) {
+        return toDateTime(timestamps[index]);
+    }
+
+    public double getLastClose() {
+        return size == 0 ? 0.0 : close[size - 1];
+    }
+
+    public long getLastTimestamp() {
+        return size == 0 ? Long.MIN_VALUE : timestamps[size - 1];
+    }
+
+    /**
+     * Объём в виде double[] для формул индикаторов
+     */
+    public double[] getVolumeAsDouble() {
+        double[] result = new double[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = volume[i];
+        }
+        return result;
+    }
+
+    /**
+     * Номер календарного дня каждого бара - граница торговой сессии для VWAP
+     */
+    public long[] getSessionKeys() {
+        long[] result = new long[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = Math.floorDiv(timestamps[i], SECONDS_PER_DAY);
+        }
+        return result;
+    }
+
+    /**
+     * Индекс первого бара с временем >= epochSecond (бинарный поиск)
+     */
+    public int lowerBound(long epochSecond) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (timestamps[mid] < epochSecond) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Копия бар в диапазоне индексов [from, to)
+     */
+    public BarSeries slice(int from, int to) {
+        int length = Math.max(0, to - from);
+        return new BarSeries(symbol, interval, length,
+                Arrays.copyOfRange(timestamps, from, from + length),
+                Arrays.copyOfRange(open, from, from + length),
+                Arrays.copyOfRange(high, from, from + length),
+                Arrays.copyOfRange(low, from, from + length),
+                Arrays.copyOfRange(close, from, from + length),
+                Arrays.copyOfRange(volume, from, from + length));
+    }
+
+    /**
+     * Конвертирует бар обратно в сущность для сохранения
+     */
+    public MarketData toMarketData(int index) {
+        MarketData marketData = new MarketData();
+        marketData.setSymbol(symbol);
+        marketData.setInterval(interval);
+        marketData.setDate(getDateTime(index));
+        marketData.setOpenPrice(open[index]);
+        marketData.setHighPrice(high[index]);
+        marketData.setLowPrice(low[index]);
+        marketData.setClosePrice(close[index]);
+        marketData.setVolume(volume[index]);
+        return marketData;
+    }
+
+    /**
+     * Накопитель баров с автоматическим расширением массивов.
+     * Бары можно добавлять в любом порядке - build() отсортирует их по времени
+     */
+    public static class Builder {
+        private final String symbol;
+        private final String interval;
+        private int size;
+        private boolean ascending = true;
+        private boolean descending = true;
+        private long[] timestamps;
+        private double[] open;
+        private double[] high;
+        private double[] low;
+        private double[] close;
+        private long[] volume;
+
+        private Builder(String symbol, String interval, int expectedSize) {
+            int capacity = Math.max(expectedSize, 16);
+            this.symbol = symbol;
+            this.interval = interval;
+            this.timestamps = new long[capacity];
+            this.open = new double[capacity];
+            this.high = new double[capacity];
+            this.low = new double[capacity];
+            this.close = new double[capacity];
+            this.volume = new long[capacity];
+        }
+
+        public Builder add(LocalDateTime dateTime, double o, double h, double l, double c, long v) {
+            return add(toEpochSecond(dateTime), o, h, l, c, v);
+        }
+
+        public Builder add(long epochSecond, double o, double h, double l, double c, long v) {
+            if (size == timestamps.length) {
+                grow();
+            }
+            if (size > 0) {
+                ascending &= epochSecond >= timestamps[size - 1];
+                descending &= epochSecond <= timestamps[size - 1];
+            }
+            timestamps[size] = epochSecond;
+            open[size] = o;
+            high[size] = h;
+            low[size] = l;
+            close[size] = c;
+            volume[size] = v;
+            size++;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public BarSeries build() {
+            if (!ascending) {
+                if (descending) {
+                    reverse();
+                } else {
+                    sortByTime();
+                }
+            }
+            return new BarSeries(symbol, interval, size,
+                    Arrays.copyOf(timestamps, size),
+                    Arrays.copyOf(open, size),
+                    Arrays.copyOf(high, size),
+                    Arrays.copyOf(low, size),
+                    Arrays.copyOf(close, size),
+                    Arrays.copyOf(volume, size));
+        }
+
+        private void grow() {
+            int capacity = timestamps.length * 2;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            open = Arrays.copyOf(open, capacity);
+            high = Arrays.copyOf(high, capacity);
+            low = Arrays.copyOf(low, capacity);
+            close = Arrays.copyOf(close, capacity);
+            volume = Arrays.copyOf(volume, capacity);
+        }
+
+        /**
+         * Ответы Alpha Vantage идут от новых к старым - достаточно развернуть массивы на месте
+         */
+        private void reverse() {
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                long t = timestamps[i]; timestamps[i] = timestamps[j]; timestamps[j] = t;
+                double o = open[i]; open[i] = open[j]; open[j] = o;
+                double h = high[i]; high[i] = high[j]; high[j] = h;
+                double l = low[i]; low[i] = low[j]; low[j] = l;
+                double c = close[i]; close[i] = close[j]; close[j] = c;
+                long v = volume[i]; volume[i] = volume[j]; volume[j] = v;
+            }
+            ascending = true;
+            descending = size <= 1;
+        }
+
+        /**
+         * Сортирует произвольно упорядоченные бары по времени через перестановку индексов
+         */
+        private void sortByTime() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            long[] ts = timestamps;
+            Arrays.sort(order, (a, b) -> Long.compare(ts[a], ts[b]));
+
+            long[] t = new long[size];
+            double[] o = new double[size];
+            double[] h = new double[size];
+            double[] l = new double[size];
+            double[] c = new double[size];
+            long[] v = new long[size];
+            for (int i = 0; i < size; i++) {
+                int src = order[i];
+                t[i] = timestamps[src];
+                o[i] = open[src];
+                h[i] = high[src];
+                l[i] = low[src];
+                c[i] = close[src];
+                v[i] = volume[src];
+            }
+            timestamps = t;
+            open = o;
+            high = h;
+            low = l;
+            close = c;
+            volume = v;
+            ascending = true;
+            descending = size <= 1;
+        }
+    }
+}
@@ -252,6 +252,12 @@ public class Indicator {
             return new IndicatorType[]{ADX, ADXR, AROON, AROONOSC, DX, MINUS_DI, PLUS_DI, MINUS_DM, PLUS_DM, SAR, TRIX};
         }
 
+        public static IndicatorType[] getCandlestickPatterns() {
+            return java.util.Arrays.stream(values())
+                    .filter(type -> type.name().startsWith("CDL"))
+                    .toArray(IndicatorType[]::new);
+        }
+
         // Проверяет, является ли индикатор комплексным (возвращает несколько значений)
         public boolean isComplexIndicator() {
             return this == MACD || this == MACDEXT || this == BBANDS || this == STOCH ||
@@ -12,9 +12,15 @@ import lombok.AllArgsConstructor;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
+/**
+ * Бар OHLCV. Первичный ключ (symbol, bar_interval, date) - он же кластерный индекс InnoDB: бары одного
+ * символа и интервала лежат подряд в порядке времени, диапазон читается последовательными страницами.
+ * Он же - ключ upsert-а MarketDataBulkWriter
+ */
 @Entity
+@IdClass(MarketDataId.class)
 @Table(name = "market_data", indexes = {
-        @Index(name = "idx_market_data_symbol", columnList = "symbol"),
+        // Последний бар символа по всем интервалам
         @Index(name = "idx_market_data_symbol_date", columnList = "symbol, date"),
         @Index(name = "idx_market_data_date", columnList = "date")
 })
@@ -22,14 +28,19 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 public class MarketData {
-    @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id;
 
+    @Id
     @NotBlank
     @Column(nullable = false, length = 10)
     private String symbol;
 
+    // interval - зарезервированное слово MySQL
+    @Id
+    @NotBlank
+    @Column(name = "bar_interval", nullable = false, length = 16)
+    private String interval = "daily";
+
+    @Id
     @NotNull
     @Column(nullable = false)
     private LocalDateTime date;
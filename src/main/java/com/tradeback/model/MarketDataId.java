@@ -0,0 +1,23 @@
+package com.tradeback.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Первичный ключ бара: (symbol, interval, date)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MarketDataId implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String symbol;
+    private String interval;
+    private LocalDateTime date;
+}
@@ -2,6 +2,12 @@ package com.tradeback.repository;
 
 import com.tradeback.model.Listing;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
 
 public interface ListingRepository extends JpaRepository<Listing, Long> {
+
+    @Query("SELECT l.symbol FROM Listing l")
+    List<String> findAllSymbols();
 }
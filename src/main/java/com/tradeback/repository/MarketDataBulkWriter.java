@@ -0,0 +1,151 @@
+package com.tradeback.repository;
+
+import com.tradeback.model.BarSeries;
+import com.tradeback.model.MarketData;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Массовая запись баров в market_data мимо JPA: многострочные INSERT ... ON DUPLICATE KEY UPDATE
+ * по первичному ключу (symbol, bar_interval, date) пачками по batch-size строк в одной транзакции.
+ * Повторная загрузка пересекающегося окна обновляет существующие бары вместо дублей; ключ
+ * гарантирует MarketDataSchemaMigration, удаляя накопленные до него дубли.
+ * Бары с нечисловыми или неположительными ценами пропускаются (в JPA их не пропустила бы валидация)
+ */
+@Slf4j
+@Repository
+public class MarketDataBulkWriter {
+
+    private static final String INSERT = "INSERT INTO market_data "
+            + "(symbol, bar_interval, date, open_price, high_price, low_price, close_price, volume) VALUES ";
+    private static final String ROW = "(?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int COLUMNS = 8;
+    private static final int PRICE_SCALE = 4;
+    // MySQL принимает не больше 65535 параметров в одном запросе
+    private static final int MAX_BATCH = 65_535 / COLUMNS;
+    // Псевдоним строки вместо устаревшего VALUES(col), нужен MySQL 8.0.19+
+    private static final String UPSERT = " AS new ON DUPLICATE KEY UPDATE open_price = new.open_price, "
+            + "high_price = new.high_price, low_price = new.low_price, "
+            + "close_price = new.close_price, volume = new.volume";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    // Текст запроса по числу строк: полная пачка и редкие хвосты
+    private final ConcurrentMap<Integer, String> statements = new ConcurrentHashMap<>();
+
+    public MarketDataBulkWriter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                @Value("${market-data.bulk-write.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = Math.max(1, Math.min(batchSize, MAX_BATCH));
+    }
+
+    /**
+     * Записывает все бары ряда; возвращает записанные бары ровно в том виде, в каком они лежат в БД:
+     * без пропущенных и с ценами, округленными до масштаба колонок
+     */
+    public BarSeries upsert(BarSeries series) {
+        if (series.isEmpty()) {
+            return series;
+        }
+        BarSeries persisted = persisted(series);
+        long started = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int from = 0; from < persisted.size(); from += batchSize) {
+                int to = Math.min(from + batchSize, persisted.size());
+                writeBatch(persisted, from, to);
+            }
+        });
+        log.debug("Upserted {} {} bars for {} in {} ms", persisted.size(), series.getInterval(), series.getSymbol(),
+                (System.nanoTime() - started) / 1_000_000);
+        return persisted;
+    }
+
+    /**
+     * Строки одного символа и интервала в любом порядке (например, самые новые первыми)
+     */
+    public int upsert(String symbol, String interval, List<MarketData> bars) {
+        BarSeries.Builder builder = BarSeries.builder(symbol, interval, bars.size());
+        bars.stream()
+                .sorted((a, b) -> a.getDate().compareTo(b.getDate()))
+                .forEach(bar -> builder.add(bar.getDate(), bar.getOpenPriceAsDouble(), bar.getHighPriceAsDouble(),
+                        bar.getLowPriceAsDouble(), bar.getClosePriceAsDouble(),
+                        bar.getVolume() != null ? bar.getVolume() : 0L));
+        return upsert(builder.build()).size();
+    }
+
+    private void writeBatch(BarSeries series, int from, int to) {
+        String sql = statements.computeIfAbsent(to - from, MarketDataBulkWriter::statement);
+        jdbcTemplate.update(sql, (PreparedStatement ps) -> {
+            int parameter = 1;
+            for (int i = from; i < to; i++) {
+                parameter = bind(ps, parameter, series, i);
+            }
+        });
+    }
+
+    private static int bind(PreparedStatement ps, int parameter, BarSeries series, int i) throws SQLException {
+        ps.setString(parameter++, series.getSymbol());
+        ps.setString(parameter++, series.getInterval());
+        ps.setTimestamp(parameter++, Timestamp.valueOf(series.getDateTime(i)));
+        ps.setDouble(parameter++, series.getOpen()[i]);
+        ps.setDouble(parameter++, series.getHigh()[i]);
+        ps.setDouble(parameter++, series.getLow()[i]);
+        ps.setDouble(parameter++, series.getClose()[i]);
+        ps.setLong(parameter++, series.getVolume()[i]);
+        return parameter;
+    }
+
+    /**
+     * Бары с положительными ценами, округленными до scale = 4 колонок market_data: записываются и
+     * возвращаются одни и те же значения, поэтому локальные копии совпадают с БД
+     */
+    private static BarSeries persisted(BarSeries series) {
+        BarSeries.Builder builder = BarSeries.builder(series.getSymbol(), series.getInterval(), series.size());
+        int skipped = 0;
+        for (int i = 0; i < series.size(); i++) {
+            if (series.getOpen()[i] > 0 && series.getHigh()[i] > 0 && series.getLow()[i] > 0
+                    && series.getClose()[i] > 0) {
+                builder.add(series.getTimestamps()[i], price(series.getOpen()[i]), price(series.getHigh()[i]),
+                        price(series.getLow()[i]), price(series.getClose()[i]), series.getVolume()[i]);
+            } else {
+                skipped++;
+            }
+        }
+        if (skipped > 0) {
+            log.warn("Skipping {} bars without valid prices for {} {}", skipped, series.getSymbol(),
+                    series.getInterval());
+        }
+        return builder.build();
+    }
+
+    private static double price(double value) {
+        return BigDecimal.valueOf(value).setScale(PRICE_SCALE, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    private static String statement(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT.length() + rows * (ROW.length() + 2) + UPSERT.length());
+        sql.append(INSERT);
+        for (int r = 0; r < rows; r++) {
+            if (r > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW);
+        }
+        return sql.append(UPSERT).toString();
+    }
+}
@@ -1,35 +1,67 @@
 package com.tradeback.repository;
 
 import com.tradeback.model.MarketData;
+import com.tradeback.model.MarketDataId;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
+/**
+ * Бары по (symbol, interval): все выборки идут по префиксу первичного ключа (symbol, bar_interval, date)
+ */
 @Repository
-public interface MarketDataRepository extends JpaRepository<MarketData, Long> {
+public interface MarketDataRepository extends JpaRepository<MarketData, MarketDataId> {
 
-    // Основные используемые методы
-    List<MarketData> findBySymbolOrderByDateAsc(String symbol);
+    List<MarketData> findBySymbolAndIntervalOrderByDateAsc(String symbol, String interval);
 
+    // Keyset-страницы: первая и следующая после курсора (время последнего бара), без OFFSET
+    List<MarketData> findBySymbolAndIntervalOrderByDateAsc(String symbol, String interval, Limit limit);
+
+    List<MarketData> findBySymbolAndIntervalAndDateAfterOrderByDateAsc(String symbol, String interval,
+                                                                       LocalDateTime after, Limit limit);
+
+    // Построчное чтение: fetch size Integer.MIN_VALUE включает потоковую выдачу строк в MySQL Connector/J.
+    // Поток нужно читать внутри транзакции и закрывать
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<MarketData> streamBySymbolAndIntervalOrderByDateAsc(String symbol, String interval);
+
+    List<MarketData> findTopBySymbolAndIntervalOrderByDateDesc(String symbol, String interval);
+
+    // Последний бар символа по всем интервалам (индекс symbol, date)
     List<MarketData> findTopBySymbolOrderByDateDesc(String symbol);
 
-    long countBySymbol(String symbol);
+    long countBySymbolAndInterval(String symbol, String interval);
 
-    // Универсальный метод для поиска по датам (заменяет 4 старых метода)
-    @Query("SELECT m FROM MarketData m WHERE m.symbol = :symbol " +
+    @Query("SELECT m FROM MarketData m WHERE m.symbol = :symbol AND m.interval = :interval " +
             "AND m.date BETWEEN :startDate AND :endDate ORDER BY m.date ASC")
-    List<MarketData> findBySymbolAndDateRange(@Param("symbol") String symbol,
-                                              @Param("startDate") LocalDateTime startDate,
-                                              @Param("endDate") LocalDateTime endDate);
-
-    // Метод для получения одной записи по дате
-    @Query("SELECT m FROM MarketData m WHERE m.symbol = :symbol " +
-            "AND DATE(m.date) = :date ORDER BY m.date ASC LIMIT 1")
-    MarketData findFirstBySymbolAndDate(@Param("symbol") String symbol,
-                                        @Param("date") LocalDate date);
-}
\ No newline at end of file
+    List<MarketData> findBySymbolAndIntervalAndDateRange(@Param("symbol") String symbol,
+                                                         @Param("interval") String interval,
+                                                         @Param("startDate") LocalDateTime startDate,
+                                                         @Param("endDate") LocalDateTime endDate);
+
+    // Первый бар дня: диапазон по ключу вместо DATE(m.date), который не использует индекс
+    @Query("SELECT m FROM MarketData m WHERE m.symbol = :symbol AND m.interval = :interval " +
+            "AND m.date >= :dayStart AND m.date < :nextDayStart ORDER BY m.date ASC LIMIT 1")
+    MarketData findFirstBySymbolAndIntervalAndDay(@Param("symbol") String symbol,
+                                                  @Param("interval") String interval,
+                                                  @Param("dayStart") LocalDateTime dayStart,
+                                                  @Param("nextDayStart") LocalDateTime nextDayStart);
+
+    default MarketData findFirstBySymbolAndIntervalAndDate(String symbol, String interval, LocalDate date) {
+        return findFirstBySymbolAndIntervalAndDay(symbol, interval, date.atStartOfDay(),
+                date.plusDays(1).atStartOfDay());
+    }
+}
@@ -0,0 +1,277 @@
+package com.tradeback.service;
+
+import com.tradeback.model.BarSeries;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Инкрементальная агрегация мелких баров в более крупный интервал.
+ * 1min -> 5/15/30/60min: корзины выровнены по открытию сессии и не пересекают открытие и закрытие
+ * (в день сокращенной сессии последняя корзина короче). daily -> weekly/monthly: метка бара -
+ * последний торговый день периода, как у Alpha Vantage.
+ * Завершенным бар считается, когда пришел бар следующей корзины или мелкие бары покрыли корзину целиком.
+ * Не потокобезопасен - доступ синхронизирует вызывающий код.
+ */
+public class BarResampler {
+
+    private static final long SECONDS_PER_DAY = 86_400L;
+
+    private final String symbol;
+    private final String targetInterval;
+    private final MarketHoursService marketHours;
+    private final boolean intraday;
+    private final long sourceStepSeconds;
+    private final long targetStepSeconds;
+    private final int historyLimit;
+
+    private BarSeries.Builder history;
+    private BarSeries.Builder completedSinceDrain;
+    private long lastSourceTimestamp = Long.MIN_VALUE;
+    private boolean started;
+
+    // Текущая незавершенная корзина
+    private boolean hasBucket;
+    private boolean bucketTruncated;
+    private long bucketKey;
+    private long bucketEnd;
+    private long bucketLabel;
+    private double bucketOpen;
+    private double bucketHigh;
+    private double bucketLow;
+    private double bucketClose;
+    private long bucketVolume;
+
+    public BarResampler(String symbol, String targetInterval, MarketHoursService marketHours, int historyLimit) {
+        String sourceInterval = sourceIntervalFor(targetInterval);
+        if (sourceInterval == null) {
+            throw new IllegalArgumentException("Interval " + targetInterval + " cannot be derived from finer bars");
+        }
+        this.symbol = symbol;
+        this.targetInterval = targetInterval.toLowerCase();
+        this.marketHours = marketHours;
+        this.intraday = this.targetInterval.endsWith("min");
+        this.sourceStepSeconds = intraday ? minutes(sourceInterval) * 60L : SECONDS_PER_DAY;
+        this.targetStepSeconds = intraday ? minutes(this.targetInterval) * 60L : 0;
+        this.historyLimit = historyLimit;
+        this.history = BarSeries.builder(symbol, this.targetInterval, 64);
+        this.completedSinceDrain = BarSeries.builder(symbol, this.targetInterval, 16);
+    }
+
+    /**
+     * Интервал, из которого агрегируется целевой (null - интервал загружается только напрямую)
+     */
+    public static String sourceIntervalFor(String targetInterval) {
+        switch (targetInterval.toLowerCase()) {
+            case "5min":
+            case "15min":
+            case "30min":
+            case "60min":
+                return "1min";
+            case "weekly":
+            case "monthly":
+                return "daily";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Интервалы, которые строятся из баров указанного интервала
+     */
+    public static List<String> targetsFor(String sourceInterval) {
+        switch (sourceInterval.toLowerCase()) {
+            case "1min":
+                return Arrays.asList("5min", "15min", "30min", "60min");
+            case "daily":
+                return Arrays.asList("weekly", "monthly");
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Агрегирует готовый ряд целиком
+     */
+    public static BarSeries resample(BarSeries source, String targetInterval, MarketHoursService marketHours,
+                                     boolean includePartial) {
+        BarResampler resampler = new BarResampler(source.getSymbol(), targetInterval, marketHours, Integer.MAX_VALUE);
+        resampler.advance(source);
+        return resampler.getBars(includePartial);
+    }
+
+    /**
+     * Учитывает новые мелкие бары ряда (уже учтенные пропускаются). Возвращает число завершенных баров
+     */
+    public int advance(BarSeries source) {
+        int before = completedSinceDrain.size();
+        long[] timestamps = source.getTimestamps();
+        double[] open = source.getOpen();
+        double[] high = source.getHigh();
+        double[] low = source.getLow();
+        double[] close = source.getClose();
+        long[] volume = source.getVolume();
+        int from = lastSourceTimestamp == Long.MIN_VALUE ? 0 : source.lowerBound(lastSourceTimestamp + 1);
+        for (int i = from; i < source.size(); i++) {
+            add(timestamps[i], open[i], high[i], low[i], close[i], volume[i]);
+        }
+        return completedSinceDrain.size() - before;
+    }
+
+    /**
+     * Учитывает один мелкий бар; устаревшие и повторные бары игнорируются
+     */
+    public boolean add(long epochSecond, double open, double high, double low, double close, long volume) {
+        if (epochSecond <= lastSourceTimestamp) {
+            return false;
+        }
+        long key = bucketKey(epochSecond);
+        if (hasBucket && key != bucketKey) {
+            completeBucket();
+        }
+
+        if (!hasBucket) {
+            hasBucket = true;
+            // Первая корзина без начала (история началась внутри периода) не выдается как бар
+            bucketTruncated = !started && !startsBucket(epochSecond, key);
+            started = true;
+            bucketKey = key;
+            bucketEnd = intraday ? intradayBucketEnd(key) : 0;
+            bucketOpen = open;
+            bucketHigh = high;
+            bucketLow = low;
+            bucketVolume = 0;
+        }
+        bucketHigh = Math.max(bucketHigh, high);
+        bucketLow = Math.min(bucketLow, low);
+        bucketClose = close;
+        bucketVolume += volume;
+        bucketLabel = intraday ? bucketKey : epochSecond;
+        lastSourceTimestamp = epochSecond;
+
+        if (isBucketFilled(epochSecond)) {
+            completeBucket();
+        }
+        return true;
+    }
+
+    /**
+     * Бары, завершенные с прошлого вызова
+     */
+    public BarSeries drainCompleted() {
+        BarSeries completed = completedSinceDrain.build();
+        completedSinceDrain = BarSeries.builder(symbol, targetInterval, 16);
+        return completed;
+    }
+
+    /**
+     * Накопленная история агрегированных баров, по желанию с текущим незавершенным баром
+     */
+    public BarSeries getBars(boolean includePartial) {
+        BarSeries completed = history.build();
+        if (!includePartial || !hasBucket || bucketTruncated) {
+            return completed;
+        }
+        BarSeries.Builder builder = BarSeries.builder(symbol, targetInterval, completed.size() + 1);
+        for (int i = 0; i < completed.size(); i++) {
+            builder.add(completed.getTimestamps()[i], completed.getOpen()[i], completed.getHigh()[i],
+                    completed.getLow()[i], completed.getClose()[i], completed.getVolume()[i]);
+        }
+        builder.add(bucketLabel, bucketOpen, bucketHigh, bucketLow, bucketClose, bucketVolume);
+        return builder.build();
+    }
+
+    public boolean hasPartialBar() {
+        return hasBucket && !bucketTruncated;
+    }
+
+    public long getLastSourceTimestamp() {
+        return lastSourceTimestamp;
+    }
+
+    private void completeBucket() {
+        if (!bucketTruncated) {
+            history.add(bucketLabel, bucketOpen, bucketHigh, bucketLow, bucketClose, bucketVolume);
+            completedSinceDrain.add(bucketLabel, bucketOpen, bucketHigh, bucketLow, bucketClose, bucketVolume);
+            if (history.size() > 2L * historyLimit) {
+                trimHistory();
+            }
+        }
+        hasBucket = false;
+    }
+
+    private void trimHistory() {
+        BarSeries all = history.build();
+        BarSeries kept = all.slice(all.size() - historyLimit, all.size());
+        history = BarSeries.builder(symbol, targetInterval, 2 * historyLimit);
+        for (int i = 0; i < kept.size(); i++) {
+            history.add(kept.getTimestamps()[i], kept.getOpen()[i], kept.getHigh()[i],
+                    kept.getLow()[i], kept.getClose()[i], kept.getVolume()[i]);
+        }
+    }
+
+    // ===== Границы корзин =====
+
+    private long bucketKey(long epochSecond) {
+        LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(epochSecond, SECONDS_PER_DAY));
+        if (intraday) {
+            long dayStart = date.toEpochDay() * SECONDS_PER_DAY;
+            long secondOfDay = epochSecond - dayStart;
+            long open = marketHours.getSessionOpen(date).toSecondOfDay();
+            long close = marketHours.getSessionClose(date).toSecondOfDay();
+            // До закрытия сетка считается от открытия, после закрытия - от закрытия
+            long anchor = secondOfDay < close ? open : close;
+            return dayStart + anchor + Math.floorDiv(secondOfDay - anchor, targetStepSeconds) * targetStepSeconds;
+        }
+        LocalDate periodStart = "weekly".equals(targetInterval)
+                ? date.with(DayOfWeek.MONDAY)
+                : date.withDayOfMonth(1);
+        return periodStart.toEpochDay() * SECONDS_PER_DAY;
+    }
+
+    /**
+     * Конец внутридневной корзины: не позже открытия (премаркет) и закрытия сессии
+     */
+    private long intradayBucketEnd(long bucketStart) {
+        LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(bucketStart, SECONDS_PER_DAY));
+        long dayStart = date.toEpochDay() * SECONDS_PER_DAY;
+        long end = bucketStart + targetStepSeconds;
+        long open = dayStart + marketHours.getSessionOpen(date).toSecondOfDay();
+        long close = dayStart + marketHours.getSessionClose(date).toSecondOfDay();
+        if (bucketStart < open && end > open) {
+            return open;
+        }
+        if (bucketStart < close && end > close) {
+            return close;
+        }
+        return end;
+    }
+
+    private boolean startsBucket(long epochSecond, long key) {
+        if (intraday) {
+            return epochSecond == key;
+        }
+        LocalDate day = LocalDate.ofEpochDay(Math.floorDiv(key, SECONDS_PER_DAY));
+        while (!marketHours.isTradingDay(day)) {
+            day = day.plusDays(1);
+        }
+        return Math.floorDiv(epochSecond, SECONDS_PER_DAY) <= day.toEpochDay();
+    }
+
+    private boolean isBucketFilled(long epochSecond) {
+        if (intraday) {
+            return epochSecond + sourceStepSeconds >= bucketEnd;
+        }
+        // Период закончен, если следующий торговый день уже в другом периоде
+        LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(epochSecond, SECONDS_PER_DAY));
+        LocalDate next = marketHours.getNextTradingDay(date);
+        return bucketKey(next.toEpochDay() * SECONDS_PER_DAY) != bucketKey;
+    }
+
+    static long minutes(String interval) {
+        return Long.parseLong(interval.substring(0, interval.length() - 3));
+    }
+}
@@ -3,12 +3,10 @@ package com.tradeback.service;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tradeback.model.Indicator;
+import com.tradeback.service.http.UpstreamClient;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -16,7 +14,7 @@ import java.util.Map;
 @Service
 public class GroqChatService {
 
-    private final RestTemplate restTemplate;
+    private final UpstreamClient groqUpstream;
 
     @Value("${api.groq.key}")
     private String apiKey;
@@ -27,8 +25,8 @@ public class GroqChatService {
     @Value("${api.groq.model:llama3-70b-8192}")
     private String model;
 
-    public GroqChatService(RestTemplate restTemplate) {
-        this.restTemplate = restTemplate;
+    public GroqChatService(@Qualifier("groqUpstream") UpstreamClient groqUpstream) {
+        this.groqUpstream = groqUpstream;
     }
 
     /**
@@ -39,10 +37,6 @@ public class GroqChatService {
                                    String secondIndicatorType, double secondIndicatorValue, int secondPeriod,
                                    String thirdIndicatorType, double thirdIndicatorValue, int thirdPeriod) {
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + apiKey);
-
             Map<String, Object> requestBody = new HashMap<>();
             requestBody.put("model", model);
 
@@ -60,9 +54,8 @@ public class GroqChatService {
             requestBody.put("max_tokens", 300);
             requestBody.put("top_p", 0.9);
 
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-
-            String response = restTemplate.postForObject(apiEndpoint, entity, String.class);
+            String response = groqUpstream.postJson(apiEndpoint, authorizationHeader(), requestBody, String.class)
+                    .join();
             ObjectMapper mapper = new ObjectMapper();
             JsonNode root = mapper.readTree(response);
 
@@ -475,9 +468,6 @@ public class GroqChatService {
      */
     public boolean isApiAvailable() {
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Authorization", "Bearer " + apiKey);
-
             Map<String, Object> testRequest = new HashMap<>();
             testRequest.put("model", model);
             testRequest.put("messages", new Object[]{
@@ -485,8 +475,7 @@ public class GroqChatService {
             });
             testRequest.put("max_tokens", 5);
 
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(testRequest, headers);
-            restTemplate.postForObject(apiEndpoint, entity, String.class);
+            groqUpstream.postJson(apiEndpoint, authorizationHeader(), testRequest, String.class).join();
 
             return true;
         } catch (Exception e) {
@@ -494,4 +483,8 @@ public class GroqChatService {
             return false;
         }
     }
+
+    private Map<String, String> authorizationHeader() {
+        return Map.of("Authorization", "Bearer " + apiKey);
+    }
 }
\ No newline at end of file
@@ -1,40 +1,66 @@
 package com.tradeback.service;
 
+import com.tradeback.config.ApplicationConstants;
+import com.tradeback.dto.IndicatorSeries;
+import com.tradeback.model.BarSeries;
 import com.tradeback.model.Indicator;
-import com.tradeback.model.MarketData;
-import com.tradeback.repository.MarketDataRepository;
+import com.tradeback.service.alphavantage.RequestPriority;
+import com.tradeback.service.indicator.CandlestickPatterns;
+import com.tradeback.service.indicator.CandlestickScan;
+import com.tradeback.service.indicator.IndicatorContext;
+import com.tradeback.service.indicator.IndicatorResult;
+import com.tradeback.service.indicator.LocalIndicatorEngine;
+import com.tradeback.service.indicator.StreamingIndicatorRegistry;
+import com.tradeback.service.provider.MarketDataProvider;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.math.BigDecimal;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 @Slf4j
 @Service
 public class IndicatorService {
 
     @Autowired
-    private MarketDataRepository marketDataRepository;
+    private MarketDataProvider marketDataProvider;
 
     @Autowired
-    private RestTemplate restTemplate;
+    private MarketDataService marketDataService;
 
     @Autowired
-    private MarketDataService marketDataService;
+    private LocalIndicatorEngine localIndicatorEngine;
 
-    @Value("${api.alpha-vantage.key}")
-    private String apiKey;
+    @Autowired
+    private StreamingIndicatorRegistry streamingIndicatorRegistry;
 
-    private static final String BASE_URL = "https://www.alphavantage.co/query";
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MarketHoursService marketHoursService;
+
+    // Время последнего загруженного бара по паре (symbol, interval) - часть ключа кэша индикаторов
+    private final ConcurrentMap<String, Long> lastBarTimestamps = new ConcurrentHashMap<>();
+
+    // Текущий ключ значения по (symbol, interval, type, period): значение прошлого бара вытесняется новым
+    private final ConcurrentMap<String, String> currentValueKeys = new ConcurrentHashMap<>();
 
     /**
      * Универсальный метод для расчета любого технического индикатора
@@ -51,18 +77,18 @@ public class IndicatorService {
                 return 0.0;
             }
 
-            String url = buildIndicatorUrl(indicator);
-            log.info("API URL: {}", url);
-
-            Map<String, Object> response = restTemplate.getForObject(url, Map.class);
-            log.info("API Response keys: {}", response != null ? response.keySet() : "null");
+            IndicatorResult cached = findCachedResult(indicator);
+            if (cached != null) {
+                return cached.getLatestValue();
+            }
 
-            if (!isValidApiResponse(response)) {
-                log.error("Invalid API response for indicator: {}", indicator.getType());
-                return 0.0;
+            // Сначала считаем локально по барам, API - только для неподдерживаемых индикаторов
+            IndicatorResult localResult = calculateLocally(indicator);
+            if (localResult != null) {
+                return localResult.getLatestValue();
             }
 
-            return extractIndicatorValue(response, indicator);
+            return calculateRemotely(indicator);
 
         } catch (Exception e) {
             log.error("Error calculating indicator {}: {}", indicator.getType(), e.getMessage(), e);
@@ -70,6 +96,120 @@ public class IndicatorService {
         }
     }
 
+    /**
+     * Пакетный расчет индикаторов одной пары (symbol, interval).
+     * Бары загружаются один раз, промежуточные линии (EMA, true range, DM) считаются
+     * один раз в общем контексте. Значения возвращаются в порядке входного списка
+     */
+    public List<Double> calculateIndicators(List<Indicator> indicators) {
+        Double[] values = new Double[indicators.size()];
+        // Локальный расчет группируется по (symbol, interval): бары загружаются один раз на группу
+        Map<String, List<Integer>> pending = new LinkedHashMap<>();
+        Map<String, Integer> requiredBars = new HashMap<>();
+        Map<Integer, CompletableFuture<Double>> remote = new LinkedHashMap<>();
+
+        for (int i = 0; i < indicators.size(); i++) {
+            Indicator indicator = indicators.get(i);
+            values[i] = 0.0;
+            try {
+                if (!marketDataService.validateIntervalIndicatorCombination(
+                        indicator.getInterval(), indicator.getType().name())) {
+                    log.warn("Invalid combination: {} with interval {}", indicator.getType(), indicator.getInterval());
+                    continue;
+                }
+                IndicatorResult cached = findCachedResult(indicator);
+                if (cached != null) {
+                    values[i] = cached.getLatestValue();
+                    continue;
+                }
+                if (!localIndicatorEngine.isSupported(indicator.getType())) {
+                    // Запросы к API идут параллельно с локальным расчетом остальных индикаторов
+                    remote.put(i, calculateRemotelyAsync(indicator));
+                    continue;
+                }
+                IndicatorResult streaming = findStreamingResult(indicator);
+                if (streaming != null) {
+                    values[i] = streaming.getLatestValue();
+                    continue;
+                }
+                String group = indicator.getSymbol() + "|" + indicator.getInterval();
+                pending.computeIfAbsent(group, k -> new ArrayList<>()).add(i);
+                requiredBars.merge(group,
+                        localIndicatorEngine.requiredBars(indicator.getType(), indicator.getPeriod()), Math::max);
+            } catch (Exception e) {
+                log.error("Error calculating indicator {}: {}", indicator.getType(), e.getMessage(), e);
+            }
+        }
+
+        for (Map.Entry<String, List<Integer>> group : pending.entrySet()) {
+            Indicator first = indicators.get(group.getValue().get(0));
+            BarSeries bars = null;
+            try {
+                bars = marketDataService.getBarSeries(first.getSymbol(), first.getInterval(),
+                        requiredBars.get(group.getKey()));
+            } catch (Exception e) {
+                log.warn("Failed to load bars for batch calculation of {}: {}", first.getSymbol(), e.getMessage());
+            }
+            IndicatorContext context = bars != null ? new IndicatorContext(bars) : null;
+
+            for (int i : group.getValue()) {
+                Indicator indicator = indicators.get(i);
+                try {
+                    IndicatorResult result = context != null ? calculateInContext(indicator, context) : null;
+                    values[i] = result != null ? result.getLatestValue() : calculateRemotely(indicator);
+                } catch (Exception e) {
+                    log.error("Error calculating indicator {}: {}", indicator.getType(), e.getMessage(), e);
+                }
+            }
+            log.info("Batch calculated {} indicators for {} {} from {} bars", group.getValue().size(),
+                    first.getSymbol(), first.getInterval(), bars != null ? bars.size() : 0);
+        }
+
+        for (Map.Entry<Integer, CompletableFuture<Double>> entry : remote.entrySet()) {
+            Indicator indicator = indicators.get(entry.getKey());
+            try {
+                values[entry.getKey()] = entry.getValue().join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                log.error("Error calculating indicator {}: {}", indicator.getType(), cause.getMessage());
+            }
+        }
+
+        return Arrays.asList(values);
+    }
+
+    /**
+     * Расчет последнего значения индикатора источником рыночных данных
+     */
+    private double calculateRemotely(Indicator indicator) {
+        return toRemoteValue(fetchRemoteSeries(indicator), indicator);
+    }
+
+    /**
+     * Асинхронный вариант calculateRemotely: поток вызывающего не занят ожиданием ответа API
+     */
+    private CompletableFuture<Double> calculateRemotelyAsync(Indicator indicator) {
+        return marketDataProvider.getIndicatorSeriesAsync(indicator, RequestPriority.INTERACTIVE)
+                .thenApply(series -> toRemoteValue(series, indicator));
+    }
+
+    private double toRemoteValue(IndicatorSeries series, Indicator indicator) {
+        int last = series.size() - 1;
+        if (last < 0 || Double.isNaN(series.getValues()[last])) {
+            log.error("No valid value found for indicator: {}", indicator.getType());
+            return 0.0;
+        }
+
+        double value = series.getValues()[last];
+        indicator.setValue(value);
+        indicator.setCalculatedAt(LocalDateTime.now());
+        log.info("Successfully extracted {} value: {}", indicator.getType(), value);
+        if (value != 0.0) {
+            cacheResult(indicator, new IndicatorResult(new double[]{value}));
+        }
+        return value;
+    }
+
     /**
      * Расчет комплексных индикаторов (MACD, Bollinger Bands, Stochastic)
      */
@@ -80,14 +220,22 @@ public class IndicatorService {
                 return indicator;
             }
 
-            String url = buildIndicatorUrl(indicator);
-            Map<String, Object> response = restTemplate.getForObject(url, Map.class);
+            if (findCachedResult(indicator) != null || calculateLocally(indicator) != null) {
+                return indicator;
+            }
 
-            if (!isValidApiResponse(response)) {
+            IndicatorSeries series = fetchRemoteSeries(indicator);
+            if (series.isEmpty()) {
                 return indicator;
             }
 
-            return extractComplexIndicatorValues(response, indicator);
+            applyLatestValues(series, indicator);
+            if (indicator.getValue() != null) {
+                cacheResult(indicator, new IndicatorResult(new double[]{indicator.getValueAsDouble()},
+                        new double[]{indicator.getSecondaryValue() != null ? indicator.getSecondaryValueAsDouble() : Double.NaN},
+                        new double[]{indicator.getTertiaryValue() != null ? indicator.getTertiaryValueAsDouble() : Double.NaN}));
+            }
+            return indicator;
 
         } catch (Exception e) {
             log.error("Error calculating complex indicator: {}", e.getMessage());
@@ -97,447 +245,308 @@ public class IndicatorService {
     }
 
     /**
-     * Построение URL для API запроса с учетом Alpha Vantage интервалов
+     * Локальный расчет индикатора по OHLCV барам без обращения к API индикаторов.
+     * Возвращает null, если индикатор не поддерживается или баров недостаточно
      */
-    private String buildIndicatorUrl(Indicator indicator) {
-        StringBuilder url = new StringBuilder(BASE_URL);
-        url.append("?function=").append(indicator.getType().name());
-        url.append("&symbol=").append(indicator.getSymbol());
-
-        // Добавляем interval для технических индикаторов
-        url.append("&interval=").append(convertIntervalForIndicators(indicator.getInterval()));
-
-        // Добавляем параметры в зависимости от типа индикатора
-        switch (indicator.getType()) {
-            case MACD:
-                url.append("&fastperiod=12&slowperiod=26&signalperiod=9");
-                url.append("&series_type=close");
-                break;
-
-            case BBANDS:
-                // Для Bollinger Bands используем период если он больше 0, иначе 20
-                int bbandsPeriod = indicator.getPeriod() > 0 ? indicator.getPeriod() : 20;
-                url.append("&time_period=").append(bbandsPeriod);
-                url.append("&series_type=close");
-                url.append("&nbdevup=2&nbdevdn=2&matype=0");
-                break;
-
-            case STOCH:
-                url.append("&fastkperiod=5&slowkperiod=3&slowdperiod=3");
-                url.append("&slowkmatype=0&slowdmatype=0");
-                break;
-
-            case VWAP:
-                // VWAP имеет особые требования к интервалам
-                if (!marketDataService.isVWAPCompatible(indicator.getInterval())) {
-                    throw new IllegalArgumentException("VWAP requires intraday interval");
-                }
-                break;
-
-            case SAR:
-                url.append("&acceleration=0.02&maximum=0.20");
-                break;
-
-            // Большинство остальных индикаторов используют стандартные параметры
-            default:
-                if (needsTimePeriod(indicator.getType()) && indicator.getPeriod() > 0) {
-                    url.append("&time_period=").append(indicator.getPeriod());
-                }
-                if (needsSeriesType(indicator.getType())) {
-                    url.append("&series_type=close");
-                }
-                break;
+    private IndicatorResult calculateLocally(Indicator indicator) {
+        if (!localIndicatorEngine.isSupported(indicator.getType())) {
+            log.info("Indicator {} is not supported locally, requesting it from the market data provider", indicator.getType());
+            return null;
         }
 
-        url.append("&apikey=").append(apiKey);
+        try {
+            // Свежее инкрементальное состояние отвечает без загрузки истории
+            IndicatorResult streaming = findStreamingResult(indicator);
+            if (streaming != null) {
+                return streaming;
+            }
 
-        log.debug("Built indicator URL: {}", url.toString());
-        return url.toString();
-    }
+            int requiredBars = localIndicatorEngine.requiredBars(indicator.getType(), indicator.getPeriod());
+            BarSeries bars = marketDataService.getBarSeries(indicator.getSymbol(), indicator.getInterval(), requiredBars);
+            return calculateInContext(indicator, new IndicatorContext(bars));
 
-    /**
-     * Конвертирует интервалы приложения в интервалы для технических индикаторов
-     * Технические индикаторы Alpha Vantage поддерживают другой набор интервалов
-     */
-    private String convertIntervalForIndicators(String appInterval) {
-        switch (appInterval.toLowerCase()) {
-            case "1min":
-            case "5min":
-            case "15min":
-            case "30min":
-            case "60min":
-                return appInterval; // Intraday интервалы остаются как есть
-            case "daily":
-            case "daily_adjusted":
-                return "daily";
-            case "weekly":
-            case "weekly_adjusted":
-                return "weekly";
-            case "monthly":
-            case "monthly_adjusted":
-                return "monthly";
-            default:
-                log.warn("Unknown interval for indicators: {}, defaulting to daily", appInterval);
-                return "daily";
+        } catch (Exception e) {
+            log.warn("Local calculation of {} failed, falling back to API: {}", indicator.getType(), e.getMessage());
+            return null;
         }
     }
 
     /**
-     * Проверяет, нужен ли параметр time_period для данного индикатора
-     */
-    private boolean needsTimePeriod(Indicator.IndicatorType type) {
-        return type != Indicator.IndicatorType.MACD &&
-                type != Indicator.IndicatorType.STOCH &&
-                type != Indicator.IndicatorType.SAR &&
-                type != Indicator.IndicatorType.VWAP &&
-                type != Indicator.IndicatorType.OBV;
-    }
-
-    /**
-     * Проверяет, нужен ли параметр series_type для данного индикатора
+     * Значение из свежего инкрементального состояния или null, если его нет
      */
-    private boolean needsSeriesType(Indicator.IndicatorType type) {
-        return type != Indicator.IndicatorType.OBV &&
-                type != Indicator.IndicatorType.VWAP &&
-                type != Indicator.IndicatorType.STOCH &&
-                type != Indicator.IndicatorType.SAR;
+    private IndicatorResult findStreamingResult(Indicator indicator) {
+        if (!streamingIndicatorRegistry.isSupported(indicator.getType())) {
+            return null;
+        }
+        StreamingIndicatorRegistry.State state = streamingIndicatorRegistry.findFresh(
+                indicator.getSymbol(), indicator.getInterval(), indicator.getType(), indicator.getPeriod());
+        if (state == null) {
+            return null;
+        }
+        IndicatorResult result = new IndicatorResult(new double[]{state.getValue()},
+                new double[]{state.getSecondaryValue()}, new double[]{state.getTertiaryValue()});
+        result.applyLatestTo(indicator);
+        indicator.setCalculatedAt(LocalDateTime.now());
+        log.info("Using streaming {} state for {}: {}",
+                indicator.getType(), indicator.getSymbol(), result.getLatestValue());
+        return result;
     }
 
     /**
-     * УЛУЧШЕННОЕ извлечение значения индикатора
+     * Расчет индикатора в общем контексте баров. Возвращает null, если баров недостаточно
      */
-    private double extractIndicatorValue(Map<String, Object> response, Indicator indicator) {
-        String timeSeriesKey = "Technical Analysis: " + indicator.getType().name();
-        Map<String, Object> timeSeries = (Map<String, Object>) response.get(timeSeriesKey);
-
-        log.debug("Looking for time series key: {}", timeSeriesKey);
-        log.debug("Available keys in response: {}", response.keySet());
-
-        if (timeSeries == null) {
-            // Попробуем найти альтернативные ключи
-            for (String key : response.keySet()) {
-                if (key.contains(indicator.getType().name()) || key.contains("Technical Analysis")) {
-                    log.info("Found alternative time series key: {}", key);
-                    timeSeries = (Map<String, Object>) response.get(key);
-                    break;
-                }
-            }
+    private IndicatorResult calculateInContext(Indicator indicator, IndicatorContext context) {
+        BarSeries bars = context.getSeries();
+        int requiredBars = localIndicatorEngine.requiredBars(indicator.getType(), indicator.getPeriod());
+        if (bars.size() < requiredBars) {
+            log.info("Not enough bars for local {} calculation: {} of {}",
+                    indicator.getType(), bars.size(), requiredBars);
+            return null;
         }
 
-        if (timeSeries == null) {
-            log.error("No time series data found with key: {} or alternatives", timeSeriesKey);
-            return 0.0;
-        }
-
-        log.debug("Time series data keys: {}", timeSeries.keySet());
-
-        // Получаем последнее доступное значение
-        String latestDate = getLatestDate(timeSeries.keySet());
-        if (latestDate == null) {
-            log.error("No valid dates found in time series");
-            return 0.0;
+        IndicatorResult result = localIndicatorEngine.compute(indicator.getType(), indicator.getPeriod(), context);
+        if (!result.hasLatestValue()) {
+            log.info("Local {} calculation produced no value for {}", indicator.getType(), indicator.getSymbol());
+            return null;
         }
 
-        log.debug("Latest date found: {}", latestDate);
-
-        Map<String, String> indicatorData = (Map<String, String>) timeSeries.get(latestDate);
-        if (indicatorData == null) {
-            log.error("No indicator data found for date: {}", latestDate);
-            return 0.0;
-        }
-
-        log.debug("Indicator data for {}: {}", latestDate, indicatorData);
-
-        String valueKey = getValueKey(indicator.getType());
-        String valueStr = indicatorData.get(valueKey);
+        result.applyLatestTo(indicator);
+        indicator.setCalculatedAt(LocalDateTime.now());
+        log.info("Calculated {} locally from {} bars: {}",
+                indicator.getType(), bars.size(), result.getLatestValue());
 
-        log.debug("Looking for value key: {}, found value: {}", valueKey, valueStr);
+        recordLastBar(indicator.getSymbol(), indicator.getInterval(), bars.getLastTimestamp());
+        cacheResult(indicator, new IndicatorResult(new double[]{result.getLatestValue()},
+                new double[]{result.getLatestSecondary()}, new double[]{result.getLatestTertiary()}));
 
-        if (valueStr != null && !valueStr.isEmpty()) {
-            try {
-                double value = Double.parseDouble(valueStr);
-                indicator.setValue(value);
-                indicator.setCalculatedAt(LocalDateTime.now());
-                log.info("Successfully extracted {} value: {}", indicator.getType(), value);
-                return value;
-            } catch (NumberFormatException e) {
-                log.error("Failed to parse indicator value: {}", valueStr, e);
-            }
+        // Засеваем инкрементальное состояние один раз, дальше только продвигаем его на новые завершенные бары
+        if (streamingIndicatorRegistry.isSupported(indicator.getType())) {
+            streamingIndicatorRegistry.seedOrAdvance(indicator.getSymbol(), indicator.getInterval(),
+                    indicator.getType(), indicator.getPeriod(), bars);
         }
-
-        log.error("No valid value found for indicator: {}", indicator.getType());
-        return 0.0;
+        return result;
     }
 
     /**
-     * Извлекает значения комплексного индикатора из ответа API
+     * Свечные паттерны за последние lastBars баров: по каждому бару с сработавшими паттернами -
+     * дата, паттерны с сигналами (+-100, +-200 для подтверждения) и тренд перед баром.
+     * Все CDL* паттерны считаются за один проход по ряду вместо отдельного вызова API на каждый
      */
-    private Indicator extractComplexIndicatorValues(Map<String, Object> response, Indicator indicator) {
-        String timeSeriesKey = "Technical Analysis: " + indicator.getType().name();
-        Map<String, Object> timeSeries = (Map<String, Object>) response.get(timeSeriesKey);
-
-        if (timeSeries == null) {
-            return indicator;
-        }
-
-        String latestDate = getLatestDate(timeSeries.keySet());
-        if (latestDate == null) {
-            return indicator;
-        }
-
-        Map<String, String> indicatorData = (Map<String, String>) timeSeries.get(latestDate);
-
-        switch (indicator.getType()) {
-            case MACD:
-                extractMACDValues(indicatorData, indicator);
-                break;
-            case BBANDS:
-                extractBollingerBandsValues(indicatorData, indicator);
-                break;
-            case STOCH:
-                extractStochasticValues(indicatorData, indicator);
-                break;
-            default:
-                // Для неизвестных комплексных индикаторов пытаемся извлечь первое значение
-                String firstKey = indicatorData.keySet().iterator().next();
-                if (firstKey != null) {
-                    indicator.setValue(Double.parseDouble(indicatorData.get(firstKey)));
+    public List<Map<String, Object>> getCandlestickPatterns(String symbol, String interval, int lastBars) {
+        List<Map<String, Object>> hits = new ArrayList<>();
+        try {
+            BarSeries bars = marketDataService.getBarSeries(symbol, interval,
+                    CandlestickPatterns.AVERAGE_PERIOD + lastBars);
+            CandlestickScan scan = CandlestickPatterns.scan(bars);
+
+            for (int i = Math.max(0, scan.size() - lastBars); i < scan.size(); i++) {
+                Map<Indicator.IndicatorType, Integer> patterns = scan.getPatternsAt(i);
+                if (patterns.isEmpty()) {
+                    continue;
                 }
-                break;
+                Map<String, Object> hit = new LinkedHashMap<>();
+                hit.put("date", bars.getDateTime(i));
+                hit.put("patterns", patterns);
+                hit.put("trend", scan.getTrend(i));
+                hits.add(hit);
+            }
+            log.info("Found candlestick patterns on {} of last {} bars for {} {}",
+                    hits.size(), lastBars, symbol, interval);
+        } catch (Exception e) {
+            log.error("Error scanning candlestick patterns for {}: {}", symbol, e.getMessage());
         }
-
-        indicator.setCalculatedAt(LocalDateTime.now());
-        return indicator;
+        return hits;
     }
 
     /**
-     * Извлечение значений MACD
+     * Полный ряд значений индикатора за период [from, to] (null - без границы).
+     * Ряд целиком считается один раз и кэшируется до загрузки новых баров пары (symbol, interval)
      */
-    private void extractMACDValues(Map<String, String> data, Indicator indicator) {
-        String macdValue = data.get("MACD");
-        String signalValue = data.get("MACD_Signal");
-        String histogramValue = data.get("MACD_Hist");
-
-        if (macdValue != null) indicator.setValue(Double.parseDouble(macdValue));
-        if (signalValue != null) indicator.setSecondaryValue(Double.parseDouble(signalValue));
-        if (histogramValue != null) indicator.setTertiaryValue(Double.parseDouble(histogramValue));
+    public IndicatorSeries getIndicatorSeries(String symbol, Indicator.IndicatorType type, Integer period,
+                                              String interval, LocalDateTime from, LocalDateTime to) {
+        IndicatorSeries series = IndicatorSeries.empty(symbol, interval, type, period);
+        try {
+            Cache cache = cacheManager.getCache(ApplicationConstants.CACHE_INDICATOR_SERIES);
+            String key = cacheKeyPrefix(symbol, interval) + type + "|" + period;
+            series = cache.get(key, () -> computeSeries(symbol, type, period, interval));
+            if (series.isEmpty()) {
+                // Неудачный расчет не кэшируем - следующий запрос попробует снова
+                cache.evict(key);
+            }
+        } catch (Exception e) {
+            log.error("Error calculating {} series for {}: {}", type, symbol, e.getMessage());
+        }
+        return series.slice(from != null ? BarSeries.toEpochSecond(from) : Long.MIN_VALUE,
+                to != null ? BarSeries.toEpochSecond(to) : Long.MAX_VALUE);
     }
 
     /**
-     * Извлечение значений Bollinger Bands
+     * Новые бары пары (symbol, interval) делают кэшированные значения и ряды индикаторов устаревшими
      */
-    private void extractBollingerBandsValues(Map<String, String> data, Indicator indicator) {
-        String middleBand = data.get("Real Middle Band");
-        String upperBand = data.get("Real Upper Band");
-        String lowerBand = data.get("Real Lower Band");
-
-        if (middleBand != null) indicator.setValue(Double.parseDouble(middleBand));
-        if (upperBand != null) indicator.setSecondaryValue(Double.parseDouble(upperBand));
-        if (lowerBand != null) indicator.setTertiaryValue(Double.parseDouble(lowerBand));
+    @EventListener
+    public void onMarketDataIngested(MarketDataIngestedEvent event) {
+        if (!event.getBars().isEmpty()) {
+            recordLastBar(event.getSymbol(), event.getInterval(), event.getBars().getLastTimestamp());
+        }
+        String prefix = cacheKeyPrefix(event.getSymbol(), event.getInterval());
+        currentValueKeys.keySet().removeIf(key -> key.startsWith(prefix));
+        evictByPrefix(ApplicationConstants.CACHE_INDICATORS, prefix);
+        evictByPrefix(ApplicationConstants.CACHE_INDICATOR_SERIES, prefix);
     }
 
     /**
-     * Извлечение значений Stochastic
+     * Значение из кэша индикаторов для текущего бара пары или null
      */
-    private void extractStochasticValues(Map<String, String> data, Indicator indicator) {
-        String kValue = data.get("SlowK") != null ? data.get("SlowK") : data.get("FastK");
-        String dValue = data.get("SlowD") != null ? data.get("SlowD") : data.get("FastD");
-
-        if (kValue != null) indicator.setValue(Double.parseDouble(kValue));
-        if (dValue != null) indicator.setSecondaryValue(Double.parseDouble(dValue));
+    private IndicatorResult findCachedResult(Indicator indicator) {
+        Cache cache = cacheManager.getCache(ApplicationConstants.CACHE_INDICATORS);
+        IndicatorResult cached = cache != null ? cache.get(valueCacheKey(indicator), IndicatorResult.class) : null;
+        if (cached == null) {
+            return null;
+        }
+        cached.applyLatestTo(indicator);
+        indicator.setCalculatedAt(LocalDateTime.now());
+        log.info("Using cached {} for {}: {}", indicator.getType(), indicator.getSymbol(), cached.getLatestValue());
+        return cached;
     }
 
     /**
-     * Получает ключ для извлечения значения в зависимости от типа индикатора
+     * Кэширует значение текущего бара; значение того же индикатора для прошлого бара удаляется,
+     * иначе ключи внутридневных интервалов копились бы с каждым баром
      */
-    private String getValueKey(Indicator.IndicatorType type) {
-        switch (type) {
-            case RSI:
-                return "RSI";
-            case SMA:
-                return "SMA";
-            case EMA:
-                return "EMA";
-            case WMA:
-                return "WMA";
-            case DEMA:
-                return "DEMA";
-            case TEMA:
-                return "TEMA";
-            case TRIMA:
-                return "TRIMA";
-            case KAMA:
-                return "KAMA";
-            case MAMA:
-                return "MAMA";
-            case T3:
-                return "T3";
-            case WILLR:
-                return "WILLR";
-            case CCI:
-                return "CCI";
-            case CMO:
-                return "CMO";
-            case ROC:
-                return "ROC";
-            case ROCP:
-                return "ROCP";
-            case ROCR:
-                return "ROCR";
-            case MFI:
-                return "MFI";
-            case BOP:
-                return "BOP";
-            case ATR:
-                return "ATR";
-            case NATR:
-                return "NATR";
-            case TRANGE:
-                return "TRANGE";
-            case ADX:
-                return "ADX";
-            case ADXR:
-                return "ADXR";
-            case DX:
-                return "DX";
-            case MINUS_DI:
-                return "MINUS_DI";
-            case PLUS_DI:
-                return "PLUS_DI";
-            case MINUS_DM:
-                return "MINUS_DM";
-            case PLUS_DM:
-                return "PLUS_DM";
-            case SAR:
-                return "SAR";
-            case TRIX:
-                return "TRIX";
-            case OBV:
-                return "OBV";
-            case AD:
-                return "Chaikin A/D";
-            case ADOSC:
-                return "ADOSC";
-            case VWAP:
-                return "VWAP";
-            case AVGPRICE:
-                return "AVGPRICE";
-            case MEDPRICE:
-                return "MEDPRICE";
-            case TYPPRICE:
-                return "TYPPRICE";
-            case WCLPRICE:
-                return "WCLPRICE";
-            case HT_DCPERIOD:
-                return "HT_DCPERIOD";
-            case HT_DCPHASE:
-                return "HT_DCPHASE";
-            case HT_TRENDMODE:
-                return "HT_TRENDMODE";
-            default:
-                return type.name();
+    private void cacheResult(Indicator indicator, IndicatorResult latest) {
+        Cache cache = cacheManager.getCache(ApplicationConstants.CACHE_INDICATORS);
+        if (cache != null) {
+            String key = valueCacheKey(indicator);
+            cache.put(key, latest);
+            String previous = currentValueKeys.put(indicatorKey(indicator), key);
+            if (previous != null && !previous.equals(key)) {
+                cache.evict(previous);
+            }
         }
     }
 
     /**
-     * Получает последнюю доступную дату из набора дат
+     * Ключ значения: (symbol, interval, type, period, время текущего бара)
      */
-    private String getLatestDate(java.util.Set<String> dates) {
-        return dates.stream()
-                .sorted((d1, d2) -> d2.compareTo(d1)) // Сортировка в убывающем порядке
-                .findFirst()
-                .orElse(null);
+    private String valueCacheKey(Indicator indicator) {
+        return indicatorKey(indicator) + "|" + currentBarTimestamp(indicator.getSymbol(), indicator.getInterval());
+    }
+
+    private String indicatorKey(Indicator indicator) {
+        return cacheKeyPrefix(indicator.getSymbol(), indicator.getInterval()) + indicator.getType() + "|"
+                + indicator.getPeriod();
     }
 
     /**
-     * УЛУЧШЕННАЯ проверка валидности ответа API
+     * Время текущего бара пары: последний загруженный бар, но не раньше бара, идущего сейчас по часам биржи.
+     * Так ключ меняется с каждым новым баром, даже если данные пары еще не загружались
      */
-    private boolean isValidApiResponse(Map<String, Object> response) {
-        if (response == null) {
-            log.error("No response from Alpha Vantage API");
-            return false;
+    private long currentBarTimestamp(String symbol, String interval) {
+        String normalized = interval.toLowerCase();
+        long clockBar;
+        if (normalized.endsWith("min")) {
+            long step = Long.parseLong(normalized.substring(0, normalized.length() - 3)) * 60L;
+            clockBar = Math.floorDiv(BarSeries.toEpochSecond(marketHoursService.getMarketTime()), step) * step;
+        } else {
+            clockBar = BarSeries.toEpochSecond(marketHoursService.getLastTradingDay().atStartOfDay());
         }
+        Long lastBar = lastBarTimestamps.get(cacheKeyPrefix(symbol, interval));
+        return lastBar != null ? Math.max(lastBar, clockBar) : clockBar;
+    }
 
-        log.debug("API Response: {}", response);
+    private void recordLastBar(String symbol, String interval, long timestamp) {
+        lastBarTimestamps.merge(cacheKeyPrefix(symbol, interval), timestamp, Math::max);
+    }
 
-        if (response.containsKey("Error Message")) {
-            log.error("Alpha Vantage API Error: {}", response.get("Error Message"));
-            return false;
+    private void evictByPrefix(String cacheName, String prefix) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null && cache.getNativeCache() instanceof ConcurrentMap) {
+            ((ConcurrentMap<?, ?>) cache.getNativeCache()).keySet()
+                    .removeIf(key -> key.toString().startsWith(prefix));
         }
+    }
 
-        if (response.containsKey("Note")) {
-            String note = (String) response.get("Note");
-            log.warn("Alpha Vantage API Note: {}", note);
-
-            // Если это предупреждение о лимитах, но данные есть, продолжаем
-            if (note.contains("API call frequency") && response.size() > 1) {
-                log.info("Rate limit warning, but data is present, continuing...");
-                return true;
-            }
-            return false;
+    /**
+     * Расчет ряда целиком: локально по барам, для неподдерживаемых индикаторов - один запрос к API
+     */
+    private IndicatorSeries computeSeries(String symbol, Indicator.IndicatorType type, Integer period, String interval) {
+        if (!marketDataService.validateIntervalIndicatorCombination(interval, type.name())) {
+            log.warn("Invalid combination: {} with interval {}", type, interval);
+            return IndicatorSeries.empty(symbol, interval, type, period);
         }
 
-        // Проверяем наличие данных временного ряда
-        boolean hasTimeSeriesData = response.keySet().stream()
-                .anyMatch(key -> key.contains("Technical Analysis") || key.contains("Time Series"));
-
-        if (!hasTimeSeriesData) {
-            log.error("No time series data found in response. Available keys: {}", response.keySet());
-            return false;
+        if (localIndicatorEngine.isSupported(type)) {
+            int requiredBars = localIndicatorEngine.requiredBars(type, period);
+            BarSeries bars = marketDataService.getBarSeries(symbol, interval, requiredBars);
+            if (bars.size() >= requiredBars) {
+                IndicatorResult result = localIndicatorEngine.compute(type, period, new IndicatorContext(bars));
+                log.info("Calculated {} series locally from {} bars for {}", type, bars.size(), symbol);
+                return toSeries(symbol, interval, type, period, bars.getTimestamps(), result);
+            }
+            log.info("Not enough bars for local {} series: {} of {}", type, bars.size(), requiredBars);
         }
 
-        return true;
+        Indicator indicator = new Indicator();
+        indicator.setSymbol(symbol);
+        indicator.setType(type);
+        indicator.setPeriod(period);
+        indicator.setInterval(interval);
+        return fetchRemoteSeries(indicator);
     }
 
     /**
-     * Вспомогательный метод для получения последних рыночных данных
+     * Переводит локальный результат в ряд, отбрасывая начальные бары без значения (прогрев индикатора)
      */
-    public MarketData getLatestMarketData(String symbol) {
-        List<MarketData> dataList = marketDataRepository.findTopBySymbolOrderByDateDesc(symbol);
-        return dataList.isEmpty() ? null : dataList.get(0);
+    private IndicatorSeries toSeries(String symbol, String interval, Indicator.IndicatorType type, Integer period,
+                                     long[] timestamps, IndicatorResult result) {
+        double[] values = result.getValues();
+        int size = Math.min(values.length, timestamps.length);
+        int first = 0;
+        while (first < size && Double.isNaN(values[first])) {
+            first++;
+        }
+        return new IndicatorSeries(symbol, interval, type, period,
+                Arrays.copyOfRange(timestamps, first, size),
+                Arrays.copyOfRange(values, first, size),
+                result.getSecondary() != null ? Arrays.copyOfRange(result.getSecondary(), first, size) : null,
+                result.getTertiary() != null ? Arrays.copyOfRange(result.getTertiary(), first, size) : null);
     }
 
     /**
-     * Получение текущей цены с улучшенным fallback
+     * Весь временной ряд индикатора от источника рыночных данных, а не только последнее значение
      */
-    public double getCurrentPrice(String symbol) {
-        log.info("Getting current price for symbol: {}", symbol);
-
-        // 1. Сначала пытаемся получить из базы данных
-        MarketData latestData = getLatestMarketData(symbol);
-        if (latestData != null) {
-            double price = latestData.getClosePriceAsDouble();
-            log.info("Found current price from database: {} for {}", price, symbol);
-            return price;
-        }
-
-        // 2. Если данных нет в базе, получаем текущую цену через MarketDataService
-        log.info("No data in database, fetching current price from API for: {}", symbol);
+    private IndicatorSeries fetchRemoteSeries(Indicator indicator) {
         try {
-            double apiPrice = marketDataService.getCurrentPrice(symbol);
-            if (apiPrice > 0) {
-                log.info("Found current price from API: {} for {}", apiPrice, symbol);
-                return apiPrice;
-            }
+            IndicatorSeries series = marketDataProvider.getIndicatorSeries(indicator, RequestPriority.INTERACTIVE);
+            log.info("Fetched {} series from API: {} points for {}", indicator.getType(), series.size(),
+                    indicator.getSymbol());
+            return series;
         } catch (Exception e) {
-            log.error("Failed to get current price from MarketDataService for {}: {}", symbol, e.getMessage());
+            log.error("Invalid API response for {} series: {}", indicator.getType(), e.getMessage());
+            return IndicatorSeries.empty(indicator.getSymbol(), indicator.getInterval(), indicator.getType(),
+                    indicator.getPeriod());
         }
+    }
 
-        // 3. Последняя попытка: получаем данные последнего торгового дня
-        try {
-            log.info("Trying to get last trading day data for: {}", symbol);
-            MarketData lastTradingDayData = marketDataService.getLatestTradingDayData(symbol);
-            if (lastTradingDayData != null) {
-                double price = lastTradingDayData.getClosePriceAsDouble();
-                log.info("Found price from last trading day: {} for {}", price, symbol);
-                return price;
-            }
-        } catch (Exception e) {
-            log.error("Failed to get last trading day data for {}: {}", symbol, e.getMessage());
+    /**
+     * Последняя точка ряда в value / secondaryValue / tertiaryValue индикатора
+     */
+    private void applyLatestValues(IndicatorSeries series, Indicator indicator) {
+        int last = series.size() - 1;
+        if (!Double.isNaN(series.getValues()[last])) {
+            indicator.setValue(series.getValues()[last]);
         }
+        if (series.getSecondary() != null && !Double.isNaN(series.getSecondary()[last])) {
+            indicator.setSecondaryValue(series.getSecondary()[last]);
+        }
+        if (series.getTertiary() != null && !Double.isNaN(series.getTertiary()[last])) {
+            indicator.setTertiaryValue(series.getTertiary()[last]);
+        }
+        indicator.setCalculatedAt(LocalDateTime.now());
+    }
 
-        log.warn("No current price data available for symbol: {}, returning 0.0", symbol);
-        return 0.0;
+    private String cacheKeyPrefix(String symbol, String interval) {
+        return symbol.toUpperCase() + "|" + interval.toLowerCase() + "|";
     }
 
     /**
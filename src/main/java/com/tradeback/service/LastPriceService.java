@@ -0,0 +1,172 @@
+package com.tradeback.service;
+
+import com.tradeback.dto.GlobalQuote;
+import com.tradeback.model.MarketData;
+import com.tradeback.repository.MarketDataRepository;
+import com.tradeback.service.alphavantage.RequestPriority;
+import com.tradeback.service.provider.MarketDataProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Последние цены из таблицы в памяти. Просроченные цены обновляются пачками котировок: вместе
+ * с запрошенными символами обновляются и остальные просроченные символы таблицы, пока пачка
+ * источника не заполнится, так что один вызов покрывает весь набор отслеживаемых символов.
+ * Во время основной сессии цена годна price-ttl-seconds, вне ее - до следующего открытия
+ */
+@Slf4j
+@Service
+public class LastPriceService {
+
+    private final MarketDataProvider marketDataProvider;
+    private final MarketDataRepository marketDataRepository;
+    private final MarketHoursService marketHoursService;
+    private final long ttlMillis;
+    private final int maxSymbolsPerRequest;
+
+    private final LastPriceTable table;
+
+    public LastPriceService(MarketDataProvider marketDataProvider,
+                            MarketDataRepository marketDataRepository,
+                            MarketHoursService marketHoursService,
+                            @Value("${market-data.last-price.ttl-seconds:60}") long ttlSeconds,
+                            @Value("${market-data.last-price.initial-capacity:1024}") int initialCapacity,
+                            @Value("${market-data.last-price.max-symbols-per-request:25}") int maxSymbolsPerRequest) {
+        this.marketDataProvider = marketDataProvider;
+        this.marketDataRepository = marketDataRepository;
+        this.marketHoursService = marketHoursService;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxSymbolsPerRequest = maxSymbolsPerRequest;
+        this.table = new LastPriceTable(initialCapacity);
+    }
+
+    /**
+     * Текущая цена; если котировки нет - цена закрытия последнего сохраненного бара, иначе 0.0
+     */
+    public double getPrice(String symbol) {
+        String key = normalize(symbol);
+        double price = getQuotedPrice(key);
+        if (price > 0) {
+            return price;
+        }
+
+        List<MarketData> latest = marketDataRepository.findTopBySymbolOrderByDateDesc(key);
+        if (!latest.isEmpty()) {
+            double stored = latest.get(0).getClosePriceAsDouble();
+            log.info("No quote for {}, using last stored close {}", key, stored);
+            return stored;
+        }
+        log.warn("No current price data available for symbol: {}", key);
+        return 0.0;
+    }
+
+    /**
+     * Цены нескольких символов: все просроченные обновляются минимальным числом пакетных вызовов.
+     * Символы без цены в результат не попадают
+     */
+    public Map<String, Double> getPrices(Collection<String> symbols) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (String symbol : symbols) {
+            keys.add(normalize(symbol));
+        }
+        refreshStale(keys);
+
+        Map<String, Double> prices = new LinkedHashMap<>();
+        for (String key : keys) {
+            double price = table.getPrice(key);
+            if (price > 0) {
+                prices.put(key, price);
+            }
+        }
+        return prices;
+    }
+
+    /**
+     * Знает ли источник котировок символ
+     */
+    public boolean isKnownSymbol(String symbol) {
+        return getQuotedPrice(normalize(symbol)) > 0;
+    }
+
+    /**
+     * Сколько символов можно запросить за раз: каждый просроченный символ стоит вызова общей квоты
+     */
+    public int getMaxSymbolsPerRequest() {
+        return maxSymbolsPerRequest;
+    }
+
+    public int getTrackedSymbols() {
+        return table.size();
+    }
+
+    /**
+     * Цена из таблицы (при необходимости обновленной); после неудачного обновления - последняя известная
+     */
+    private double getQuotedPrice(String key) {
+        if (!table.isFresh(key, System.currentTimeMillis())) {
+            refreshStale(List.of(key));
+        }
+        return table.getPrice(key);
+    }
+
+    private void refreshStale(Collection<String> keys) {
+        long now = System.currentTimeMillis();
+        List<String> stale = new ArrayList<>();
+        for (String key : keys) {
+            if (!table.isFresh(key, now)) {
+                stale.add(key);
+            }
+        }
+        if (stale.isEmpty()) {
+            return;
+        }
+
+        int batchSize = Math.max(1, marketDataProvider.getQuoteBatchSize());
+        // Свободное место в последней пачке занимают остальные просроченные символы таблицы
+        int spare = (batchSize - stale.size() % batchSize) % batchSize;
+        if (spare > 0) {
+            for (String other : table.getStale(now, spare + stale.size())) {
+                if (spare == 0) {
+                    break;
+                }
+                if (!stale.contains(other)) {
+                    stale.add(other);
+                    spare--;
+                }
+            }
+        }
+
+        try {
+            Map<String, GlobalQuote> quotes = marketDataProvider.getQuotes(stale, RequestPriority.INTERACTIVE);
+            long expiresAt = expiresAt(now);
+            for (Map.Entry<String, GlobalQuote> entry : quotes.entrySet()) {
+                GlobalQuote quote = entry.getValue();
+                table.put(entry.getKey(), quote.hasPrice() ? quote.getPrice() : 0.0, expiresAt);
+            }
+            log.debug("Refreshed {} of {} last prices in batches of {}", quotes.size(), stale.size(), batchSize);
+        } catch (Exception e) {
+            log.warn("Error refreshing last prices for {} symbols: {}", stale.size(), e.getMessage());
+        }
+    }
+
+    private long expiresAt(long nowMillis) {
+        if (marketHoursService.isMarketOpen()) {
+            return nowMillis + ttlMillis;
+        }
+        return marketHoursService.toInstant(
+                marketHoursService.getNextSessionOpen(marketHoursService.getMarketTime())).toEpochMilli();
+    }
+
+    private static String normalize(String symbol) {
+        return symbol.trim().toUpperCase();
+    }
+}
@@ -0,0 +1,107 @@
+package com.tradeback.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Последние цены по символам. Символ один раз получает номер слота, цена и срок годности лежат
+ * в примитивных массивах по этому номеру: чтение - поиск номера и два volatile чтения, без объектов
+ * на запись. Запись и рост массивов - под блокировкой, чтение без блокировок
+ */
+public class LastPriceTable {
+
+    private final ConcurrentMap<String, Integer> slots = new ConcurrentHashMap<>();
+
+    private volatile String[] symbols;
+    // Double.doubleToRawLongBits(price); NaN - цены еще не было
+    private volatile AtomicLongArray prices;
+    private volatile AtomicLongArray expiresAt;
+    private int size;
+
+    public LastPriceTable(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        this.symbols = new String[capacity];
+        this.prices = new AtomicLongArray(capacity);
+        this.expiresAt = new AtomicLongArray(capacity);
+    }
+
+    /**
+     * Цена или NaN, если символа нет в таблице
+     */
+    public double getPrice(String symbol) {
+        Integer slot = slots.get(symbol);
+        return slot == null ? Double.NaN : Double.longBitsToDouble(prices.get(slot));
+    }
+
+    /**
+     * Годна ли цена на момент nowMillis
+     */
+    public boolean isFresh(String symbol, long nowMillis) {
+        Integer slot = slots.get(symbol);
+        return slot != null && expiresAt.get(slot) > nowMillis;
+    }
+
+    /**
+     * price == 0 - источник не знает символ; запоминается так же, чтобы не спрашивать снова до истечения срока
+     */
+    public synchronized void put(String symbol, double price, long expiresAtMillis) {
+        Integer slot = slots.get(symbol);
+        if (slot == null) {
+            slot = allocate(symbol);
+        }
+        prices.set(slot, Double.doubleToRawLongBits(price));
+        expiresAt.set(slot, expiresAtMillis);
+    }
+
+    /**
+     * Известные символы (с положительной ценой), срок которых истек, - не больше limit
+     */
+    public List<String> getStale(long nowMillis, int limit) {
+        List<String> stale = new ArrayList<>();
+        String[] knownSymbols = symbols;
+        AtomicLongArray knownPrices = prices;
+        AtomicLongArray knownExpiry = expiresAt;
+        int count = Math.min(sizeSnapshot(), knownSymbols.length);
+        for (int slot = 0; slot < count && stale.size() < limit; slot++) {
+            if (knownSymbols[slot] != null && knownExpiry.get(slot) <= nowMillis
+                    && Double.longBitsToDouble(knownPrices.get(slot)) > 0) {
+                stale.add(knownSymbols[slot]);
+            }
+        }
+        return stale;
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    private synchronized int sizeSnapshot() {
+        return size;
+    }
+
+    private int allocate(String symbol) {
+        if (size == symbols.length) {
+            int capacity = size * 2;
+            String[] grownSymbols = Arrays.copyOf(symbols, capacity);
+            AtomicLongArray grownPrices = new AtomicLongArray(capacity);
+            AtomicLongArray grownExpiry = new AtomicLongArray(capacity);
+            for (int i = 0; i < size; i++) {
+                grownPrices.set(i, prices.get(i));
+                grownExpiry.set(i, expiresAt.get(i));
+            }
+            // Массивы публикуются до номеров слотов, которые на них указывают
+            symbols = grownSymbols;
+            prices = grownPrices;
+            expiresAt = grownExpiry;
+        }
+        int slot = size++;
+        symbols[slot] = symbol;
+        prices.set(slot, Double.doubleToRawLongBits(Double.NaN));
+        slots.put(symbol, slot);
+        return slot;
+    }
+}
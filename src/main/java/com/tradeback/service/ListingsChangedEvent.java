@@ -0,0 +1,17 @@
+package com.tradeback.service;
+
+/**
+ * Событие об изменении набора инструментов в таблице listings
+ */
+public class ListingsChangedEvent {
+
+    private final int count;
+
+    public ListingsChangedEvent(int count) {
+        this.count = count;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,239 @@
+package com.tradeback.service;
+
+import com.tradeback.model.BarSeries;
+import com.tradeback.model.MarketData;
+import com.tradeback.repository.MarketDataRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Планирует догрузку временного ряда от сохраненной отметки (high-water mark - время последнего
+ * сохраненного бара пары symbol|interval): нечего догружать - запрос не нужен, пропуск помещается
+ * в compact (последние 100 баров) - compact, длинный пропуск или пустое хранилище - один full запрос.
+ * Сохраняются только завершенные бары новее отметки
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MarketDataFetchPlanner {
+
+    // Столько баров отдает outputsize=compact
+    public static final int COMPACT_BARS = 100;
+
+    // Alpha Vantage по умолчанию отдает внутридневные бары с расширенными сессиями: 4:00-20:00 ET
+    private static final LocalTime EXTENDED_OPEN = LocalTime.of(4, 0);
+    private static final LocalTime EXTENDED_CLOSE = LocalTime.of(20, 0);
+
+    private final MarketDataRepository marketDataRepository;
+    private final MarketHoursService marketHoursService;
+
+    private final ConcurrentMap<String, Long> highWaterMarks = new ConcurrentHashMap<>();
+
+    public enum FetchMode {
+        NONE, COMPACT, FULL
+    }
+
+    /**
+     * Решение для одной пары (symbol, interval)
+     */
+    public static class FetchPlan {
+
+        private final FetchMode mode;
+        private final long highWaterMark;
+        private final long lastCompletedBar;
+        private final long missingBars;
+
+        FetchPlan(FetchMode mode, long highWaterMark, long lastCompletedBar, long missingBars) {
+            this.mode = mode;
+            this.highWaterMark = highWaterMark;
+            this.lastCompletedBar = lastCompletedBar;
+            this.missingBars = missingBars;
+        }
+
+        public FetchMode getMode() {
+            return mode;
+        }
+
+        public long getHighWaterMark() {
+            return highWaterMark;
+        }
+
+        public long getLastCompletedBar() {
+            return lastCompletedBar;
+        }
+
+        public long getMissingBars() {
+            return missingBars;
+        }
+
+        /**
+         * Бары ответа, которые нужно сохранить: новее отметки и не позже последнего завершенного бара
+         */
+        public BarSeries selectNew(BarSeries fetched) {
+            int from = highWaterMark == Long.MIN_VALUE ? 0 : fetched.lowerBound(highWaterMark + 1);
+            int to = fetched.lowerBound(lastCompletedBar + 1);
+            return fetched.slice(from, Math.max(from, to));
+        }
+    }
+
+    public FetchPlan plan(String symbol, String interval) {
+        long mark = getHighWaterMark(symbol, interval);
+        long lastCompleted = lastCompletedBar(interval);
+
+        FetchPlan plan;
+        if (mark == Long.MIN_VALUE) {
+            plan = new FetchPlan(FetchMode.FULL, mark, lastCompleted, Long.MAX_VALUE);
+        } else if (mark >= lastCompleted) {
+            plan = new FetchPlan(FetchMode.NONE, mark, lastCompleted, 0);
+        } else {
+            long missing = estimateMissingBars(interval, mark, lastCompleted);
+            // Самый новый бар compact ответа может быть еще не завершен - он не в счет
+            FetchMode mode = missing <= COMPACT_BARS - 1 ? FetchMode.COMPACT : FetchMode.FULL;
+            plan = new FetchPlan(mode, mark, lastCompleted, missing);
+        }
+
+        log.debug("Fetch plan for {} {}: {} (stored up to {}, ~{} bars missing)", symbol, interval, plan.getMode(),
+                mark == Long.MIN_VALUE ? "nothing" : BarSeries.toDateTime(mark), plan.getMissingBars());
+        return plan;
+    }
+
+    /**
+     * Время последнего сохраненного бара интервала или Long.MIN_VALUE; при первом обращении поднимается из БД
+     */
+    public long getHighWaterMark(String symbol, String interval) {
+        String key = key(symbol, interval);
+        Long mark = highWaterMarks.get(key);
+        if (mark != null) {
+            return mark;
+        }
+        List<MarketData> latest = marketDataRepository.findTopBySymbolAndIntervalOrderByDateDesc(symbol, interval);
+        if (latest.isEmpty()) {
+            return Long.MIN_VALUE;
+        }
+        long stored = BarSeries.toEpochSecond(latest.get(0).getDate());
+        return highWaterMarks.merge(key, stored, Math::max);
+    }
+
+    /**
+     * Сдвигает отметку после сохранения баров
+     */
+    public void advance(String symbol, String interval, long lastStoredBar) {
+        highWaterMarks.merge(key(symbol, interval), lastStoredBar, Math::max);
+    }
+
+    public void reset(String symbol, String interval) {
+        highWaterMarks.remove(key(symbol, interval));
+    }
+
+    /**
+     * Метка последнего завершенного бара интервала на текущий момент
+     */
+    public long lastCompletedBar(String interval) {
+        LocalDateTime now = marketHoursService.getMarketTime();
+        String normalized = interval.toLowerCase();
+        if (normalized.endsWith("min")) {
+            long step = intervalSeconds(normalized);
+            LocalDate today = now.toLocalDate();
+            if (marketHoursService.isTradingDay(today) && !now.toLocalTime().isBefore(EXTENDED_OPEN)) {
+                LocalDateTime end = now.toLocalTime().isBefore(EXTENDED_CLOSE) ? now : today.atTime(EXTENDED_CLOSE);
+                return Math.floorDiv(BarSeries.toEpochSecond(end), step) * step - step;
+            }
+            // Вне сессии последний завершенный бар - последний бар предыдущего торгового дня
+            return BarSeries.toEpochSecond(previousTradingDay(today).atTime(EXTENDED_CLOSE)) - step;
+        }
+
+        LocalDate lastDay = lastCompletedTradingDay(now);
+        if (normalized.startsWith("weekly")) {
+            // Недельный бар помечен последним торговым днем недели
+            if (!isLastTradingDayOfWeek(lastDay)) {
+                lastDay = previousTradingDay(lastDay.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)));
+            }
+        } else if (normalized.startsWith("monthly")) {
+            if (marketHoursService.getNextTradingDay(lastDay).getMonth() == lastDay.getMonth()) {
+                lastDay = previousTradingDay(lastDay.withDayOfMonth(1));
+            }
+        }
+        return BarSeries.toEpochSecond(lastDay.atStartOfDay());
+    }
+
+    private long estimateMissingBars(String interval, long mark, long lastCompleted) {
+        String normalized = interval.toLowerCase();
+        LocalDate markDate = BarSeries.toDateTime(mark).toLocalDate();
+        LocalDate lastDate = BarSeries.toDateTime(lastCompleted).toLocalDate();
+
+        if (normalized.endsWith("min")) {
+            long step = intervalSeconds(normalized);
+            if (markDate.equals(lastDate)) {
+                return (lastCompleted - mark) / step;
+            }
+            long perDay = ChronoUnit.SECONDS.between(EXTENDED_OPEN, EXTENDED_CLOSE) / step;
+            long restOfMarkDay = Math.max(0,
+                    (BarSeries.toEpochSecond(markDate.atTime(EXTENDED_CLOSE)) - mark) / step - 1);
+            long lastDay = Math.max(0,
+                    (lastCompleted - BarSeries.toEpochSecond(lastDate.atTime(EXTENDED_OPEN))) / step + 1);
+            return restOfMarkDay + countTradingDaysBetween(markDate, lastDate, COMPACT_BARS) * perDay + lastDay;
+        }
+        if (normalized.startsWith("weekly")) {
+            return ChronoUnit.WEEKS.between(markDate.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)),
+                    lastDate.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)));
+        }
+        if (normalized.startsWith("monthly")) {
+            return ChronoUnit.MONTHS.between(markDate.withDayOfMonth(1), lastDate.withDayOfMonth(1));
+        }
+        return countTradingDaysBetween(markDate, lastDate, COMPACT_BARS) + 1;
+    }
+
+    /**
+     * Торговые дни строго между датами; счет останавливается на limit - дальше точность не нужна
+     */
+    private long countTradingDaysBetween(LocalDate from, LocalDate to, int limit) {
+        long count = 0;
+        for (LocalDate date = marketHoursService.getNextTradingDay(from); date.isBefore(to) && count < limit;
+             date = marketHoursService.getNextTradingDay(date)) {
+            count++;
+        }
+        return count;
+    }
+
+    private LocalDate lastCompletedTradingDay(LocalDateTime now) {
+        LocalDate today = now.toLocalDate();
+        if (marketHoursService.isTradingDay(today)
+                && !now.toLocalTime().isBefore(marketHoursService.getSessionClose(today))) {
+            return today;
+        }
+        return previousTradingDay(today);
+    }
+
+    private LocalDate previousTradingDay(LocalDate date) {
+        LocalDate previous = date.minusDays(1);
+        while (!marketHoursService.isTradingDay(previous)) {
+            previous = previous.minusDays(1);
+        }
+        return previous;
+    }
+
+    private boolean isLastTradingDayOfWeek(LocalDate date) {
+        LocalDate next = marketHoursService.getNextTradingDay(date);
+        return !next.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
+                .equals(date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)));
+    }
+
+    private static long intervalSeconds(String interval) {
+        return Long.parseLong(interval.substring(0, interval.length() - 3)) * 60L;
+    }
+
+    private static String key(String symbol, String interval) {
+        return symbol.toUpperCase() + "|" + interval.toLowerCase();
+    }
+}
@@ -0,0 +1,31 @@
+package com.tradeback.service;
+
+import com.tradeback.model.BarSeries;
+
+/**
+ * Событие о новых барах, сохранённых для пары (symbol, interval)
+ */
+public class MarketDataIngestedEvent {
+
+    private final String symbol;
+    private final String interval;
+    private final BarSeries bars;
+
+    public MarketDataIngestedEvent(String symbol, String interval, BarSeries bars) {
+        this.symbol = symbol;
+        this.interval = interval;
+        this.bars = bars;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public String getInterval() {
+        return interval;
+    }
+
+    public BarSeries getBars() {
+        return bars;
+    }
+}
@@ -1,23 +1,33 @@
 package com.tradeback.service;
 
 import com.tradeback.config.ApplicationConstants;
+import com.tradeback.dto.MarketDataPage;
+import com.tradeback.model.BarSeries;
 import com.tradeback.model.Listing;
 import com.tradeback.model.MarketData;
 import com.tradeback.repository.ListingRepository;
+import com.tradeback.repository.MarketDataBulkWriter;
 import com.tradeback.repository.MarketDataRepository;
+import com.tradeback.service.alphavantage.RequestPriority;
+import com.tradeback.service.provider.MarketDataProvider;
+import com.tradeback.service.store.BarStore;
+import com.tradeback.service.store.ResidentBarHistory;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -25,94 +35,21 @@ import java.util.stream.Collectors;
 public class MarketDataService {
 
     private final MarketDataRepository marketDataRepository;
+    private final MarketDataBulkWriter bulkWriter;
     private final ListingRepository listingRepository;
-    private final RestTemplate restTemplate;
-
-    @Value("${api.alpha-vantage.key}")
-    private String apiKey;
-
-    @Value("${api.alpha-vantage.base-url}")
-    private String baseUrl;
-
-    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-
-    /**
-     * Определяет функцию Alpha Vantage API на основе интервала
-     */
-    public String getAlphaVantageFunction(String interval) {
-        switch (interval.toLowerCase()) {
-            case "1min":
-            case "5min":
-            case "15min":
-            case "30min":
-            case "60min":
-                return "TIME_SERIES_INTRADAY";
-            case "daily":
-                return "TIME_SERIES_DAILY";
-            case "weekly":
-                return "TIME_SERIES_WEEKLY";
-            case "monthly":
-                return "TIME_SERIES_MONTHLY";
-            case "daily_adjusted":
-                return "TIME_SERIES_DAILY_ADJUSTED";
-            case "weekly_adjusted":
-                return "TIME_SERIES_WEEKLY_ADJUSTED";
-            case "monthly_adjusted":
-                return "TIME_SERIES_MONTHLY_ADJUSTED";
-            default:
-                log.warn("Unknown interval '{}', defaulting to TIME_SERIES_DAILY", interval);
-                return "TIME_SERIES_DAILY";
-        }
-    }
-
-    /**
-     * Строит URL для получения данных с правильной функцией API
-     */
-    public String buildMarketDataUrl(String symbol, String interval) {
-        String function = getAlphaVantageFunction(interval);
-        StringBuilder url = new StringBuilder(baseUrl);
-        url.append("?function=").append(function);
-        url.append("&symbol=").append(symbol);
-
-        // Добавляем interval только для intraday данных
-        if (function.equals("TIME_SERIES_INTRADAY")) {
-            url.append("&interval=").append(interval);
-        }
-
-        // Добавляем outputsize для получения полных данных
-        url.append("&outputsize=compact"); // compact = последние 100 точек, full = все данные
-
-        url.append("&apikey=").append(apiKey);
-
-        log.debug("Built URL for {} with interval {}: {}", symbol, interval, url.toString());
-        return url.toString();
-    }
-
-    /**
-     * Определяет ключ временного ряда в ответе API
-     */
-    public String getTimeSeriesKey(String interval) {
-        String function = getAlphaVantageFunction(interval);
-
-        switch (function) {
-            case "TIME_SERIES_INTRADAY":
-                return "Time Series (" + interval + ")";
-            case "TIME_SERIES_DAILY":
-                return "Time Series (Daily)";
-            case "TIME_SERIES_WEEKLY":
-                return "Weekly Time Series";
-            case "TIME_SERIES_MONTHLY":
-                return "Monthly Time Series";
-            case "TIME_SERIES_DAILY_ADJUSTED":
-                return "Time Series (Daily)";
-            case "TIME_SERIES_WEEKLY_ADJUSTED":
-                return "Weekly Adjusted Time Series";
-            case "TIME_SERIES_MONTHLY_ADJUSTED":
-                return "Monthly Adjusted Time Series";
-            default:
-                return "Time Series (Daily)";
-        }
-    }
+    private final MarketDataProvider marketDataProvider;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ResamplingService resamplingService;
+    private final MarketDataFetchPlanner fetchPlanner;
+    private final LastPriceService lastPriceService;
+    private final SymbolIndexService symbolIndexService;
+    private final BarStore barStore;
+    private final ResidentBarHistory residentHistory;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+
+    @Value("${market-data.page.max-size:5000}")
+    private int maxPageSize;
 
     /**
      * Проверяет, поддерживается ли интервал для VWAP
@@ -122,13 +59,6 @@ public class MarketDataService {
                 .contains(interval.toLowerCase());
     }
 
-    /**
-     * Проверяет, является ли интервал внутридневным
-     */
-    private boolean isIntradayInterval(String interval) {
-        return interval.contains("min");
-    }
-
     /**
      * Валидирует комбинацию интервала и индикатора
      */
@@ -144,52 +74,96 @@ public class MarketDataService {
     }
 
     /**
-     * Получает исторические данные с учетом правильного интервала
+     * Получает исторические данные с учетом правильного интервала (самые новые первыми)
      */
     public List<MarketData> getHistoricalData(String symbol, String interval) {
-        try {
-            String url = buildMarketDataUrl(symbol, interval);
-            Map<String, Object> response = restTemplate.getForObject(url, Map.class);
+        BarSeries series = getHistoricalSeries(symbol, interval);
+        List<MarketData> dataList = new ArrayList<>(series.size());
+        for (int i = series.size() - 1; i >= 0; i--) {
+            dataList.add(series.toMarketData(i));
+        }
+        return dataList;
+    }
 
-            if (!isValidResponse(response, symbol)) {
-                return new ArrayList<>();
+    /**
+     * Загружает бары для локальных расчетов: сохранённые дневные бары из БД, крупные интервалы,
+     * агрегированные из мелких баров, иначе один запрос временного ряда, общий для любого индикатора
+     */
+    public BarSeries getBarSeries(String symbol, String interval, int requiredBars) {
+        if ("daily".equalsIgnoreCase(interval)) {
+            BarSeries stored = getStoredSeries(symbol, "daily");
+            if (stored.size() >= requiredBars) {
+                return stored;
             }
+        } else if (residentHistory.isResident(interval)) {
+            BarSeries resident = residentHistory.tail(symbol, interval, requiredBars);
+            if (resident != null && resident.size() >= requiredBars) {
+                return resident;
+            }
+        }
 
-            String timeSeriesKey = getTimeSeriesKey(interval);
-            Map<String, Object> timeSeries = (Map<String, Object>) response.get(timeSeriesKey);
+        BarSeries derived = getDerivedSeries(symbol, interval);
+        if (derived.size() >= requiredBars) {
+            return derived;
+        }
 
-            if (timeSeries == null) {
-                log.warn("No time series data found for {} with interval {} using key '{}'",
-                        symbol, interval, timeSeriesKey);
-                return new ArrayList<>();
-            }
+        return getHistoricalSeries(symbol, interval);
+    }
 
-            List<MarketData> dataList = new ArrayList<>();
-
-            for (Map.Entry<String, Object> entry : timeSeries.entrySet()) {
-                try {
-                    MarketData marketData = parseMarketDataEntry(symbol, entry.getKey(),
-                            (Map<String, String>) entry.getValue(), interval);
-                    if (marketData != null) {
-                        dataList.add(marketData);
-                    }
-                } catch (Exception e) {
-                    log.debug("Error parsing entry for {}: {}", entry.getKey(), e.getMessage());
-                }
-            }
+    /**
+     * Завершенные бары крупного интервала, построенные локально: weekly/monthly - из дневных баров БД,
+     * внутридневные - из последних сохраненных 1min баров (история в памяти, BarStore или БД) либо из
+     * 1min баров, загруженных с момента старта, если их больше. Незавершенный бар не включается
+     */
+    public BarSeries getDerivedSeries(String symbol, String interval) {
+        if (!resamplingService.isDerived(interval)) {
+            return BarSeries.empty(symbol, interval);
+        }
+        String source = resamplingService.getSourceInterval(interval);
+        if ("daily".equals(source)) {
+            return resamplingService.resample(getStoredSeries(symbol, "daily"), interval, false);
+        }
+        BarSeries stored = resamplingService.resample(
+                getRecentStoredSeries(symbol, source, resamplingService.getSourceBarsFor(interval)), interval, false);
+        BarSeries recent = resamplingService.getRecentBars(symbol, interval, false);
+        return recent.size() > stored.size() ? recent : stored;
+    }
 
-            // Сортируем по дате (самые новые первыми)
-            dataList.sort((a, b) -> b.getDate().compareTo(a.getDate()));
+    /**
+     * Сохраненные бары пары: из истории в памяти или локального BarStore, если они доступны, иначе из БД
+     */
+    public BarSeries getStoredSeries(String symbol, String interval) {
+        BarSeries series = readStored(symbol, interval, Long.MIN_VALUE, Long.MAX_VALUE);
+        if (series != null) {
+            return series;
+        }
+        return BarSeries.fromMarketData(symbol, interval,
+                marketDataRepository.findBySymbolAndIntervalOrderByDateAsc(symbol, interval));
+    }
 
-            log.info("Retrieved {} data points for {} with interval {}",
-                    dataList.size(), symbol, interval);
+    /**
+     * Получает исторические данные сразу в колоночном виде, без создания MarketData на каждый бар
+     */
+    public BarSeries getHistoricalSeries(String symbol, String interval) {
+        return fetchSeries(symbol, interval, false, RequestPriority.INTERACTIVE);
+    }
 
-            return dataList;
+    /**
+     * Вся доступная история интервала
+     */
+    public BarSeries getFullHistorySeries(String symbol, String interval, RequestPriority priority) {
+        return fetchSeries(symbol, interval, true, priority);
+    }
 
+    private BarSeries fetchSeries(String symbol, String interval, boolean fullHistory, RequestPriority priority) {
+        try {
+            BarSeries series = marketDataProvider.getTimeSeries(symbol, interval, fullHistory, priority);
+            log.info("Retrieved {} bars for {} with interval {}", series.size(), symbol, interval);
+            return series;
         } catch (Exception e) {
-            log.error("Error getting historical data for {} with interval {}: {}",
+            log.error("Error getting historical series for {} with interval {}: {}",
                     symbol, interval, e.getMessage());
-            return new ArrayList<>();
+            return BarSeries.empty(symbol, interval);
         }
     }
 
@@ -197,60 +171,21 @@ public class MarketDataService {
      * Получает данные последнего торгового дня для любого символа
      */
     public List<MarketData> getLastTradingDayData(String symbol) {
-        try {
-            log.info("Fetching last trading day data for symbol: {}", symbol);
-
-            // Используем DAILY функцию Alpha Vantage - она всегда возвращает последний торговый день
-            String url = String.format("%s?function=TIME_SERIES_DAILY&symbol=%s&outputsize=compact&apikey=%s",
-                    baseUrl, symbol, apiKey);
-
-            log.debug("API URL: {}", url);
-
-            Map<String, Object> response = restTemplate.getForObject(url, Map.class);
-
-            if (!isValidResponse(response, symbol)) {
-                log.error("Invalid response for symbol: {}", symbol);
-                return new ArrayList<>();
-            }
-
-            // Получаем временной ряд
-            Map<String, Object> timeSeries = (Map<String, Object>) response.get("Time Series (Daily)");
-
-            if (timeSeries == null || timeSeries.isEmpty()) {
-                log.error("No daily time series data found for symbol: {}", symbol);
-                return new ArrayList<>();
-            }
-
-            log.info("Found {} days of data for {}", timeSeries.size(), symbol);
-
-            List<MarketData> dataList = new ArrayList<>();
-
-            // Конвертируем все данные
-            for (Map.Entry<String, Object> entry : timeSeries.entrySet()) {
-                try {
-                    MarketData marketData = parseMarketDataEntry(symbol, entry.getKey(),
-                            (Map<String, String>) entry.getValue(), "daily");
-                    if (marketData != null) {
-                        dataList.add(marketData);
-                    }
-                } catch (Exception e) {
-                    log.debug("Error parsing entry for {}: {}", entry.getKey(), e.getMessage());
-                }
-            }
-
-            // Сортируем по дате (самые новые первыми)
-            dataList.sort((a, b) -> b.getDate().compareTo(a.getDate()));
-
-            log.info("Successfully parsed {} data points for {}, latest date: {}",
-                    dataList.size(), symbol,
-                    dataList.isEmpty() ? "none" : dataList.get(0).getDate());
+        log.info("Fetching last trading day data for symbol: {}", symbol);
+
+        // Дневной ряд всегда заканчивается последним торговым днем
+        BarSeries series = fetchSeries(symbol, "daily", false, RequestPriority.INTERACTIVE);
+        List<MarketData> dataList = new ArrayList<>(series.size());
+        // Самые новые первыми
+        for (int i = series.size() - 1; i >= 0; i--) {
+            dataList.add(series.toMarketData(i));
+        }
 
-            return dataList;
+        log.info("Successfully parsed {} data points for {}, latest date: {}",
+                dataList.size(), symbol,
+                dataList.isEmpty() ? "none" : dataList.get(0).getDate());
 
-        } catch (Exception e) {
-            log.error("Error fetching last trading day data for {}: {}", symbol, e.getMessage(), e);
-            return new ArrayList<>();
-        }
+        return dataList;
     }
 
     /**
@@ -271,113 +206,23 @@ public class MarketDataService {
     }
 
     /**
-     * Проверяет доступность символа через API
+     * Проверяет символ по индексу listings в памяти; котировка запрашивается только для символов,
+     * которых в индексе нет
      */
     public boolean isSymbolValid(String symbol) {
+        if (symbolIndexService.contains(symbol)) {
+            return true;
+        }
         try {
-            log.info("Validating symbol: {}", symbol);
-
-            // Быстрая проверка через GLOBAL_QUOTE (1 API call)
-            String url = String.format("%s?function=GLOBAL_QUOTE&symbol=%s&apikey=%s",
-                    baseUrl, symbol, apiKey);
-
-            Map<String, Object> response = restTemplate.getForObject(url, Map.class);
-
-            if (response == null) {
-                return false;
-            }
-
-            // Проверяем наличие данных котировки
-            Map<String, Object> quote = (Map<String, Object>) response.get("Global Quote");
-
-            if (quote != null && !quote.isEmpty()) {
-                String price = (String) quote.get("05. price");
-                boolean isValid = price != null && !price.equals("0.0000");
-                log.info("Symbol {} validation: {} (price: {})", symbol, isValid ? "VALID" : "INVALID", price);
-                return isValid;
-            }
-
-            log.warn("Symbol {} validation failed: no quote data", symbol);
-            return false;
-
+            boolean isValid = lastPriceService.isKnownSymbol(symbol);
+            log.info("Symbol {} validation: {}", symbol, isValid ? "VALID" : "INVALID");
+            return isValid;
         } catch (Exception e) {
             log.error("Error validating symbol {}: {}", symbol, e.getMessage());
             return false;
         }
     }
 
-    /**
-     * Получает текущую цену символа (последний торговый день)
-     */
-    public double getCurrentPrice(String symbol) {
-        try {
-            log.info("Getting current price for: {}", symbol);
-
-            // Сначала пробуем GLOBAL_QUOTE (быстрее)
-            String url = String.format("%s?function=GLOBAL_QUOTE&symbol=%s&apikey=%s",
-                    baseUrl, symbol, apiKey);
-
-            Map<String, Object> response = restTemplate.getForObject(url, Map.class);
-
-            if (isValidResponse(response, symbol)) {
-                Map<String, Object> quote = (Map<String, Object>) response.get("Global Quote");
-
-                if (quote != null) {
-                    String priceStr = (String) quote.get("05. price");
-                    if (priceStr != null && !priceStr.equals("0.0000")) {
-                        double price = Double.parseDouble(priceStr);
-                        log.info("Current price for {}: ${}", symbol, price);
-                        return price;
-                    }
-                }
-            }
-
-            // Fallback: используем последний торговый день
-            MarketData latestData = getLatestTradingDayData(symbol);
-            if (latestData != null) {
-                return latestData.getClosePriceAsDouble();
-            }
-
-            log.warn("No current price found for symbol: {}", symbol);
-            return 0.0;
-
-        } catch (Exception e) {
-            log.error("Error getting current price for {}: {}", symbol, e.getMessage());
-            return 0.0;
-        }
-    }
-
-    /**
-     * Парсит отдельную запись данных о рынке
-     */
-    private MarketData parseMarketDataEntry(String symbol, String dateStr,
-                                            Map<String, String> data, String interval) {
-        try {
-            MarketData marketData = new MarketData();
-            marketData.setSymbol(symbol);
-
-            // Парсим дату в зависимости от интервала
-            if (isIntradayInterval(interval)) {
-                marketData.setDate(parseDateTime(dateStr));
-            } else {
-                marketData.setDate(parseDate(dateStr));
-            }
-
-            // Парсим OHLCV данные (ключи стандартные для Alpha Vantage)
-            marketData.setOpenPrice(Double.parseDouble(data.get("1. open")));
-            marketData.setHighPrice(Double.parseDouble(data.get("2. high")));
-            marketData.setLowPrice(Double.parseDouble(data.get("3. low")));
-            marketData.setClosePrice(Double.parseDouble(data.get("4. close")));
-            marketData.setVolume(Long.parseLong(data.get("5. volume")));
-
-            return marketData;
-
-        } catch (Exception e) {
-            log.debug("Error parsing market data entry for {}: {}", dateStr, e.getMessage());
-            return null;
-        }
-    }
-
     /**
      * Получает рекомендации по использованию интервала
      */
@@ -452,26 +297,61 @@ public class MarketDataService {
         return popularSymbols.contains(symbol);
     }
 
-    @Cacheable(value = ApplicationConstants.CACHE_MARKET_DATA, key = "#symbol")
-    public Iterable<MarketData> getAllMarketData(String symbol) {
-        return marketDataRepository.findBySymbolOrderByDateAsc(symbol);
+    /**
+     * Keyset-страница баров после курсора after (null - с начала); limit ограничен market-data.page.max-size
+     */
+    public MarketDataPage getMarketDataPage(String symbol, String interval, LocalDateTime after, int limit) {
+        Limit pageLimit = Limit.of(Math.max(1, Math.min(limit, maxPageSize)));
+        List<MarketData> data = after == null
+                ? marketDataRepository.findBySymbolAndIntervalOrderByDateAsc(symbol, interval, pageLimit)
+                : marketDataRepository.findBySymbolAndIntervalAndDateAfterOrderByDateAsc(symbol, interval, after, pageLimit);
+        LocalDateTime nextCursor = data.size() == pageLimit.max() ? data.get(data.size() - 1).getDate() : null;
+        return new MarketDataPage(data, nextCursor);
+    }
+
+    /**
+     * Передает все бары пары по возрастанию времени в consumer по одному, не держа историю в памяти:
+     * строки читаются потоком из БД, прочитанный бар сразу отсоединяется от persistence context.
+     * Возвращает число баров
+     */
+    public long streamMarketData(String symbol, String interval, Consumer<MarketData> consumer) {
+        Long count = transactionTemplate.execute(status -> {
+            long rows = 0;
+            try (Stream<MarketData> stream = marketDataRepository.streamBySymbolAndIntervalOrderByDateAsc(symbol, interval)) {
+                Iterator<MarketData> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    MarketData bar = iterator.next();
+                    entityManager.detach(bar);
+                    consumer.accept(bar);
+                    rows++;
+                }
+            }
+            return rows;
+        });
+        return count != null ? count : 0;
     }
 
-    public MarketData getMarketDataBySymbolAndDate(String symbol, LocalDate date) {
+    public MarketData getMarketDataBySymbolAndDate(String symbol, String interval, LocalDate date) {
         try {
-            return marketDataRepository.findFirstBySymbolAndDate(symbol, date);
+            return marketDataRepository.findFirstBySymbolAndIntervalAndDate(symbol, interval, date);
         } catch (Exception e) {
             log.error("Error getting market data by date for {} on {}: {}", symbol, date, e.getMessage());
             return null;
         }
     }
 
-    public List<MarketData> getMarketDataByDateRange(String symbol, LocalDate startDate, LocalDate endDate) {
+    public List<MarketData> getMarketDataByDateRange(String symbol, String interval,
+                                                     LocalDate startDate, LocalDate endDate) {
         try {
             LocalDateTime startDateTime = startDate.atStartOfDay();
             LocalDateTime endDateTime = endDate.atTime(23, 59, 59);
 
-            return marketDataRepository.findBySymbolAndDateRange(symbol, startDateTime, endDateTime);
+            BarSeries series = readStored(symbol, interval,
+                    BarSeries.toEpochSecond(startDateTime), BarSeries.toEpochSecond(endDateTime));
+            if (series != null) {
+                return toMarketData(series);
+            }
+            return marketDataRepository.findBySymbolAndIntervalAndDateRange(symbol, interval, startDateTime, endDateTime);
         } catch (Exception e) {
             log.error("Error getting market data by date range for {}: {}", symbol, e.getMessage());
             return new ArrayList<>();
@@ -483,19 +363,46 @@ public class MarketDataService {
         saveStockData(symbol, "daily"); // Default to daily
     }
 
+    /**
+     * Догружает и сохраняет только бары новее последнего сохраненного (см. MarketDataFetchPlanner)
+     */
     public void saveStockData(String symbol, String interval) {
         try {
-            List<MarketData> data = getHistoricalData(symbol, interval);
+            MarketDataFetchPlanner.FetchPlan plan = fetchPlanner.plan(symbol, interval);
+            if (plan.getMode() == MarketDataFetchPlanner.FetchMode.NONE) {
+                log.info("Market data for {} with interval {} is up to date", symbol, interval);
+                return;
+            }
 
-            if (data.isEmpty()) {
+            BarSeries fetched = plan.getMode() == MarketDataFetchPlanner.FetchMode.FULL
+                    ? getFullHistorySeries(symbol, interval, RequestPriority.INTERACTIVE)
+                    : getHistoricalSeries(symbol, interval);
+            if (fetched.isEmpty()) {
                 log.warn("No data retrieved for {} with interval {}", symbol, interval);
                 return;
             }
 
-            // Save to database
-            marketDataRepository.saveAll(data);
-            log.info("Successfully saved {} data points for {} with interval {}",
-                    data.size(), symbol, interval);
+            BarSeries fresh = plan.selectNew(fetched);
+            if (fresh.isEmpty()) {
+                log.info("No new bars for {} with interval {} ({} fetched)", symbol, interval, fetched.size());
+                return;
+            }
+
+            // Многострочный upsert мимо JPA: без round trip на каждую строку и без дублей.
+            // Локальные копии получают ровно то, что легло в БД
+            BarSeries saved = bulkWriter.upsert(fresh);
+            if (saved.isEmpty()) {
+                log.warn("No valid bars to save for {} with interval {} ({} fetched)", symbol, interval,
+                        fetched.size());
+                return;
+            }
+            barStore.append(symbol, interval, saved);
+            residentHistory.append(symbol, interval, saved);
+            fetchPlanner.advance(symbol, interval, saved.getLastTimestamp());
+            log.info("Successfully saved {} new data points for {} with interval {} ({} fetch of {} bars)",
+                    saved.size(), symbol, interval, plan.getMode(), fetched.size());
+
+            eventPublisher.publishEvent(new MarketDataIngestedEvent(symbol, interval, saved));
 
         } catch (Exception e) {
             log.error("Error saving market data for {} with interval {}: {}",
@@ -503,6 +410,16 @@ public class MarketDataService {
         }
     }
 
+    /**
+     * Сохраняет бары, пришедшие мимо saveStockData; локальный файл пары строится заново при следующем чтении
+     */
+    public int upsertBars(String symbol, String interval, List<MarketData> bars) {
+        int saved = bulkWriter.upsert(symbol, interval, bars);
+        barStore.invalidate(symbol, interval);
+        residentHistory.invalidate(symbol, interval);
+        return saved;
+    }
+
     public List<MarketData> getStockData(String symbol) {
         return getStockData(symbol, "1min"); // Default to 1min for intraday
     }
@@ -511,56 +428,34 @@ public class MarketDataService {
         return getHistoricalData(symbol, interval);
     }
 
-    // Helper methods
-    private boolean isValidResponse(Map<String, Object> response, String symbol) {
-        if (response == null) {
-            log.error("No response from API for symbol: {}", symbol);
-            return false;
-        }
-
-        if (response.containsKey("Error Message")) {
-            log.error("API Error for {}: {}", symbol, response.get("Error Message"));
-            return false;
+    /**
+     * Последние count сохраненных баров пары: без чтения всей истории, если она есть в памяти или в BarStore
+     */
+    private BarSeries getRecentStoredSeries(String symbol, String interval, int count) {
+        BarSeries series = residentHistory.tail(symbol, interval, count);
+        if (series == null) {
+            series = barStore.tail(symbol, interval, count);
         }
-
-        if (response.containsKey("Note")) {
-            log.warn("API Limit for {}: {}", symbol, response.get("Note"));
-            return false;
+        if (series == null) {
+            series = BarSeries.fromMarketData(symbol, interval,
+                    marketDataRepository.findBySymbolAndIntervalOrderByDateAsc(symbol, interval));
         }
-
-        return true;
+        return series.size() > count ? series.slice(series.size() - count, series.size()) : series;
     }
 
-    private LocalDateTime parseDate(String dateStr) {
-        try {
-            return LocalDate.parse(dateStr, DATE_FORMATTER).atStartOfDay();
-        } catch (DateTimeParseException e) {
-            log.error("Failed to parse date: {}", dateStr);
-            return LocalDateTime.now();
-        }
+    /**
+     * Бары из истории в памяти, затем из BarStore; null - читать БД
+     */
+    private BarSeries readStored(String symbol, String interval, long fromEpochSecond, long toEpochSecond) {
+        BarSeries series = residentHistory.read(symbol, interval, fromEpochSecond, toEpochSecond);
+        return series != null ? series : barStore.read(symbol, interval, fromEpochSecond, toEpochSecond);
     }
 
-    private LocalDateTime parseDateTime(String dateTimeStr) {
-        DateTimeFormatter[] formatters = {
-                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"),
-                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"),
-                DateTimeFormatter.ISO_LOCAL_DATE_TIME
-        };
-
-        for (DateTimeFormatter formatter : formatters) {
-            try {
-                return LocalDateTime.parse(dateTimeStr, formatter);
-            } catch (DateTimeParseException ignored) {
-                // Try next formatter
-            }
-        }
-
-        try {
-            LocalDate date = LocalDate.parse(dateTimeStr.substring(0, 10));
-            return date.atStartOfDay();
-        } catch (Exception e) {
-            log.error("Failed to parse datetime: {}", dateTimeStr);
-            return LocalDateTime.now();
+    private static List<MarketData> toMarketData(BarSeries series) {
+        List<MarketData> dataList = new ArrayList<>(series.size());
+        for (int i = 0; i < series.size(); i++) {
+            dataList.add(series.toMarketData(i));
         }
+        return dataList;
     }
-}
\ No newline at end of file
+}
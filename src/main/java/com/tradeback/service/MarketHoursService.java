@@ -13,6 +13,10 @@ public class MarketHoursService {
 
     private static final ZoneId EASTERN_TIME = ZoneId.of("America/New_York");
 
+    private static final LocalTime MARKET_OPEN = LocalTime.of(9, 30);   // 9:30 AM
+    private static final LocalTime MARKET_CLOSE = LocalTime.of(16, 0);  // 4:00 PM (regular close)
+    private static final LocalTime EARLY_CLOSE = LocalTime.of(13, 0);   // 1:00 PM (early close)
+
     // US Stock Market Holidays 2025
     private static final Set<LocalDate> HOLIDAYS_2025 = Set.of(
             LocalDate.of(2025, 1, 1),   // New Year's Day
@@ -62,12 +66,7 @@ public class MarketHoursService {
         }
 
         // Проверяем время работы
-        LocalTime marketOpen = LocalTime.of(9, 30);  // 9:30 AM
-        LocalTime marketClose = EARLY_CLOSE_DAYS_2025.contains(date)
-                ? LocalTime.of(13, 0)  // 1:00 PM (early close)
-                : LocalTime.of(16, 0); // 4:00 PM (regular close)
-
-        return time.isAfter(marketOpen) && time.isBefore(marketClose);
+        return time.isAfter(getSessionOpen(date)) && time.isBefore(getSessionClose(date));
     }
 
     /**
@@ -100,10 +99,8 @@ public class MarketHoursService {
         }
 
         // Проверяем время работы
-        LocalTime marketOpen = LocalTime.of(9, 30);
-        LocalTime marketClose = EARLY_CLOSE_DAYS_2025.contains(today)
-                ? LocalTime.of(13, 0)
-                : LocalTime.of(16, 0);
+        LocalTime marketOpen = getSessionOpen(today);
+        LocalTime marketClose = getSessionClose(today);
 
         if (currentTime.isBefore(marketOpen)) {
             status.setStatus("PRE_MARKET");
@@ -123,6 +120,20 @@ public class MarketHoursService {
         return status;
     }
 
+    /**
+     * Текущее биржевое время (ET)
+     */
+    public LocalDateTime getMarketTime() {
+        return LocalDateTime.now(EASTERN_TIME);
+    }
+
+    /**
+     * Биржевое время (ET) как момент времени
+     */
+    public Instant toInstant(LocalDateTime marketTime) {
+        return marketTime.atZone(EASTERN_TIME).toInstant();
+    }
+
     /**
      * Возвращает последний торговый день
      */
@@ -150,7 +161,7 @@ public class MarketHoursService {
         return getNextTradingDay(LocalDate.now(EASTERN_TIME));
     }
 
-    private LocalDate getNextTradingDay(LocalDate fromDate) {
+    public LocalDate getNextTradingDay(LocalDate fromDate) {
         LocalDate date = fromDate.plusDays(1);
         while (!isTradingDay(date)) {
             date = date.plusDays(1);
@@ -158,6 +169,36 @@ public class MarketHoursService {
         return date;
     }
 
+    /**
+     * Ближайшее открытие основной сессии после указанного момента (ET)
+     */
+    public LocalDateTime getNextSessionOpen(LocalDateTime from) {
+        LocalDate date = from.toLocalDate();
+        if (isTradingDay(date) && from.toLocalTime().isBefore(getSessionOpen(date))) {
+            return date.atTime(getSessionOpen(date));
+        }
+        LocalDate next = getNextTradingDay(date);
+        return next.atTime(getSessionOpen(next));
+    }
+
+    /**
+     * Время открытия основной сессии (ET)
+     */
+    public LocalTime getSessionOpen(LocalDate date) {
+        return MARKET_OPEN;
+    }
+
+    /**
+     * Время закрытия основной сессии (ET) с учетом сокращенных дней
+     */
+    public LocalTime getSessionClose(LocalDate date) {
+        return isEarlyClose(date) ? EARLY_CLOSE : MARKET_CLOSE;
+    }
+
+    public boolean isEarlyClose(LocalDate date) {
+        return EARLY_CLOSE_DAYS_2025.contains(date);
+    }
+
     /**
      * Проверяет, является ли день торговым
      */
@@ -0,0 +1,113 @@
+package com.tradeback.service;
+
+import com.tradeback.model.BarSeries;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Локальное построение крупных интервалов из мелких: 5/15/30/60min из 1min, weekly/monthly из daily.
+ * Держит инкрементальный агрегатор на каждую пару (symbol, interval) и публикует завершенные бары
+ * как MarketDataIngestedEvent целевого интервала - потоковые индикаторы продвигаются без запросов к API
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ResamplingService {
+
+    private final MarketHoursService marketHoursService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ConcurrentMap<String, BarResampler> resamplers = new ConcurrentHashMap<>();
+
+    @Value("${resampling.history-bars:1000}")
+    private int historyBars;
+
+    public boolean isDerived(String interval) {
+        return BarResampler.sourceIntervalFor(interval) != null;
+    }
+
+    public String getSourceInterval(String interval) {
+        return BarResampler.sourceIntervalFor(interval);
+    }
+
+    /**
+     * Сколько баров внутридневного источника покрывают resampling.history-bars баров целевого интервала
+     */
+    public int getSourceBarsFor(String interval) {
+        String source = getSourceInterval(interval);
+        if (source == null || !source.endsWith("min")) {
+            return historyBars;
+        }
+        long ratio = BarResampler.minutes(interval.toLowerCase()) / BarResampler.minutes(source);
+        return (int) Math.min(Integer.MAX_VALUE, historyBars * ratio);
+    }
+
+    /**
+     * Агрегирует готовый ряд мелких баров в целевой интервал
+     */
+    public BarSeries resample(BarSeries source, String targetInterval, boolean includePartial) {
+        try {
+            return BarResampler.resample(source, targetInterval, marketHoursService, includePartial);
+        } catch (Exception e) {
+            log.error("Error resampling {} {} to {}: {}",
+                    source.getSymbol(), source.getInterval(), targetInterval, e.getMessage());
+            return BarSeries.empty(source.getSymbol(), targetInterval);
+        }
+    }
+
+    /**
+     * Последние агрегированные бары, накопленные из событий загрузки (пустой ряд, если источник еще не приходил)
+     */
+    public BarSeries getRecentBars(String symbol, String interval, boolean includePartial) {
+        BarResampler resampler = resamplers.get(key(symbol, interval));
+        if (resampler == null) {
+            return BarSeries.empty(symbol, interval);
+        }
+        synchronized (resampler) {
+            return resampler.getBars(includePartial);
+        }
+    }
+
+    /**
+     * Продвигает агрегаторы всех производных интервалов на новые мелкие бары
+     */
+    @EventListener
+    public void onMarketDataIngested(MarketDataIngestedEvent event) {
+        if (event.getBars().isEmpty()) {
+            return;
+        }
+        for (String target : BarResampler.targetsFor(event.getInterval())) {
+            try {
+                BarResampler resampler = resamplers.computeIfAbsent(key(event.getSymbol(), target),
+                        k -> new BarResampler(event.getSymbol(), target, marketHoursService, historyBars));
+                BarSeries completed;
+                synchronized (resampler) {
+                    resampler.advance(event.getBars());
+                    completed = resampler.drainCompleted();
+                }
+                if (!completed.isEmpty()) {
+                    log.debug("Resampled {} completed {} bars for {}", completed.size(), target, event.getSymbol());
+                    eventPublisher.publishEvent(new MarketDataIngestedEvent(event.getSymbol(), target, completed));
+                }
+            } catch (Exception e) {
+                log.error("Error resampling {} {} to {}: {}",
+                        event.getSymbol(), event.getInterval(), target, e.getMessage());
+            }
+        }
+    }
+
+    public void evict(String symbol) {
+        resamplers.keySet().removeIf(k -> k.startsWith(symbol.toUpperCase() + "|"));
+    }
+
+    private String key(String symbol, String interval) {
+        return symbol.toUpperCase() + "|" + interval.toLowerCase();
+    }
+}
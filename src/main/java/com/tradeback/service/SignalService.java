@@ -25,6 +25,7 @@ public class SignalService {
 
     private final SignalRepository signalRepository;
     private final IndicatorService indicatorService;
+    private final LastPriceService lastPriceService;
     private final GroqChatService groqChatService;
 
     // Список индикаторов, которые не используют период
@@ -42,32 +43,30 @@ public class SignalService {
             Indicator firstIndicator = createIndicator(indicatorRequest.getSymbol(),
                     indicatorRequest.getFirstIndicatorType(), indicatorRequest.getFirstPeriod(),
                     indicatorRequest.getInterval());
-
-            log.info("Calculating first indicator: {} with period: {}",
-                    firstIndicator.getType(), firstIndicator.getPeriod());
-            double firstIndicatorValue = indicatorService.calculateIndicator(firstIndicator);
-            log.info("First indicator value: {}", firstIndicatorValue);
-
             Indicator secondIndicator = createIndicator(indicatorRequest.getSymbol(),
                     indicatorRequest.getSecondIndicatorType(), indicatorRequest.getSecondPeriod(),
                     indicatorRequest.getInterval());
-
-            log.info("Calculating second indicator: {} with period: {}",
-                    secondIndicator.getType(), secondIndicator.getPeriod());
-            double secondIndicatorValue = indicatorService.calculateIndicator(secondIndicator);
-            log.info("Second indicator value: {}", secondIndicatorValue);
-
             Indicator thirdIndicator = createIndicator(indicatorRequest.getSymbol(),
                     indicatorRequest.getThirdIndicatorType(), indicatorRequest.getThirdPeriod(),
                     indicatorRequest.getInterval());
 
-            log.info("Calculating third indicator: {} with period: {}",
+            log.info("Calculating indicators: {}({}), {}({}), {}({})",
+                    firstIndicator.getType(), firstIndicator.getPeriod(),
+                    secondIndicator.getType(), secondIndicator.getPeriod(),
                     thirdIndicator.getType(), thirdIndicator.getPeriod());
-            double thirdIndicatorValue = indicatorService.calculateIndicator(thirdIndicator);
+
+            // Все три индикатора считаются за одну загрузку баров
+            List<Double> values = indicatorService.calculateIndicators(
+                    Arrays.asList(firstIndicator, secondIndicator, thirdIndicator));
+            double firstIndicatorValue = values.get(0);
+            double secondIndicatorValue = values.get(1);
+            double thirdIndicatorValue = values.get(2);
+            log.info("First indicator value: {}", firstIndicatorValue);
+            log.info("Second indicator value: {}", secondIndicatorValue);
             log.info("Third indicator value: {}", thirdIndicatorValue);
 
-            // ✅ ИСПРАВЛЕНО: Get current price с fallback
-            double currentPrice = indicatorService.getCurrentPrice(indicatorRequest.getSymbol());
+            // Цена из таблицы последних цен (котировка запрашивается, только если цена устарела)
+            double currentPrice = lastPriceService.getPrice(indicatorRequest.getSymbol());
             log.info("Current price for {}: {}", indicatorRequest.getSymbol(), currentPrice);
 
             if (currentPrice == 0.0) {
@@ -0,0 +1,143 @@
+package com.tradeback.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * Неизменяемый индекс тикеров для проверки существования символа без сети и без аллокаций.
+ * Тикеры в верхнем регистре лежат отсортированными в одном массиве байтов (ASCII) с массивом смещений;
+ * поиск - двоичный по байтам. Перед поиском - фильтр Блума (10-20 бит на символ, 7 хешей, не больше
+ * ~1% ложных срабатываний): большинство отсутствующих символов отсеивается без двоичного поиска.
+ * Регистр запроса не важен
+ */
+public final class SymbolIndex {
+
+    private static final int BITS_PER_SYMBOL = 10;
+    private static final int HASHES = 7;
+
+    private static final SymbolIndex EMPTY = new SymbolIndex(new byte[0], new int[]{0}, new long[1]);
+
+    private final byte[] bytes;
+    // offsets[i]..offsets[i + 1] - i-й тикер; длина массива - size + 1
+    private final int[] offsets;
+    private final long[] bloom;
+
+    private SymbolIndex(byte[] bytes, int[] offsets, long[] bloom) {
+        this.bytes = bytes;
+        this.offsets = offsets;
+        this.bloom = bloom;
+    }
+
+    public static SymbolIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Индекс по тикерам; пустые и не-ASCII значения пропускаются, дубликаты схлопываются
+     */
+    public static SymbolIndex of(Collection<String> symbols) {
+        String[] sorted = symbols.stream()
+                .filter(symbol -> symbol != null && !symbol.isBlank())
+                .map(symbol -> symbol.trim().toUpperCase(Locale.ROOT))
+                .filter(symbol -> symbol.chars().allMatch(c -> c < 128))
+                .distinct()
+                .sorted()
+                .toArray(String[]::new);
+        if (sorted.length == 0) {
+            return EMPTY;
+        }
+
+        int[] offsets = new int[sorted.length + 1];
+        for (int i = 0; i < sorted.length; i++) {
+            offsets[i + 1] = offsets[i] + sorted[i].length();
+        }
+        byte[] bytes = new byte[offsets[sorted.length]];
+        // Размер фильтра - степень двойки: номер бита берется маской, без деления
+        long[] bloom = new long[Integer.highestOneBit(Math.max(1, (sorted.length * BITS_PER_SYMBOL + 63) / 64) * 2 - 1)];
+        for (int i = 0; i < sorted.length; i++) {
+            byte[] ascii = sorted[i].getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(ascii, 0, bytes, offsets[i], ascii.length);
+            long hash = hash(sorted[i]);
+            long mask = (long) bloom.length * 64 - 1;
+            for (int k = 0; k < HASHES; k++) {
+                long bit = (hash + k * ((hash >>> 32) | 1)) & mask;
+                bloom[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+        return new SymbolIndex(bytes, offsets, bloom);
+    }
+
+    public boolean contains(String symbol) {
+        if (symbol == null || size() == 0) {
+            return false;
+        }
+        long hash = hash(symbol);
+        long mask = (long) bloom.length * 64 - 1;
+        for (int k = 0; k < HASHES; k++) {
+            long bit = (hash + k * ((hash >>> 32) | 1)) & mask;
+            if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return find(symbol) >= 0;
+    }
+
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    private int find(String symbol) {
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(mid, symbol);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compare(int index, String symbol) {
+        int from = offsets[index];
+        int length = offsets[index + 1] - from;
+        int common = Math.min(length, symbol.length());
+        for (int i = 0; i < common; i++) {
+            int diff = (bytes[from + i] & 0xff) - upper(symbol.charAt(i));
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - symbol.length();
+    }
+
+    /**
+     * FNV-1a по символам в верхнем регистре с финальным перемешиванием (как в SplitMix64)
+     */
+    private static long hash(String symbol) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < symbol.length(); i++) {
+            hash ^= upper(symbol.charAt(i));
+            hash *= 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+
+    private static int upper(char c) {
+        return c >= 'a' && c <= 'z' ? c - ('a' - 'A') : c;
+    }
+
+    @Override
+    public String toString() {
+        return "SymbolIndex[" + size() + " symbols, " + (bytes.length + offsets.length * 4 + bloom.length * 8)
+                + " bytes]";
+    }
+}
@@ -0,0 +1,63 @@
+package com.tradeback.service;
+
+import com.tradeback.repository.ListingRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Индекс тикеров из listings в памяти: проверка символа без обращения к БД и к API.
+ * Строится при старте и перестраивается целиком при ListingsChangedEvent; читатели видят
+ * либо старый, либо новый индекс
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SymbolIndexService {
+
+    private final ListingRepository listingRepository;
+
+    private volatile SymbolIndex index = SymbolIndex.empty();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    @EventListener
+    public void onListingsChanged(ListingsChangedEvent event) {
+        log.debug("Listings changed ({} saved), rebuilding symbol index", event.getCount());
+        rebuild();
+    }
+
+    /**
+     * Есть ли символ в listings (регистр не важен)
+     */
+    public boolean contains(String symbol) {
+        return symbol != null && index.contains(symbol.trim());
+    }
+
+    /**
+     * Построен ли индекс: пустой индекс ничего не говорит об отсутствии символа
+     */
+    public boolean isLoaded() {
+        return index.size() > 0;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public void rebuild() {
+        try {
+            long started = System.nanoTime();
+            SymbolIndex rebuilt = SymbolIndex.of(listingRepository.findAllSymbols());
+            index = rebuilt;
+            log.info("Built {} in {} ms", rebuilt, (System.nanoTime() - started) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Error building symbol index: {}", e.getMessage());
+        }
+    }
+}
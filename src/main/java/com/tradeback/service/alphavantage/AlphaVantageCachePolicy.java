@@ -0,0 +1,88 @@
+package com.tradeback.service.alphavantage;
+
+import com.tradeback.service.MarketHoursService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Срок годности ответа Alpha Vantage в дисковом кеше. Пока идут торги, данные меняются с каждым баром:
+ * внутридневной ответ годен до границы следующего бара интервала, остальные (дневные ряды, котировка) -
+ * до следующей минуты. Вне торгов новых данных не будет до открытия: дневной ряд, полученный после
+ * закрытия, годен до следующего открытия основной сессии, внутридневной - до начала расширенной сессии
+ */
+@Component
+@RequiredArgsConstructor
+public class AlphaVantageCachePolicy {
+
+    // Внутридневные ряды включают расширенные сессии: 4:00-20:00 ET
+    private static final LocalTime EXTENDED_OPEN = LocalTime.of(4, 0);
+    private static final LocalTime EXTENDED_CLOSE = LocalTime.of(20, 0);
+
+    private final MarketHoursService marketHoursService;
+
+    /**
+     * Момент истечения (epoch millis) для ответа на запрос url
+     */
+    public long expiresAt(String url) {
+        return expiresAt(url, marketHoursService.getMarketTime());
+    }
+
+    long expiresAt(String url, LocalDateTime now) {
+        String interval = param(url, "interval");
+        long intradayMinutes = interval != null && interval.endsWith("min")
+                ? parseMinutes(interval.substring(0, interval.length() - 3)) : 0;
+
+        LocalDate today = now.toLocalDate();
+        boolean tradingDay = marketHoursService.isTradingDay(today);
+        LocalTime time = now.toLocalTime();
+
+        LocalDateTime expiry;
+        if (intradayMinutes > 0) {
+            if (tradingDay && !time.isBefore(EXTENDED_OPEN) && time.isBefore(EXTENDED_CLOSE)) {
+                expiry = nextBoundary(now, intradayMinutes);
+            } else {
+                LocalDate next = tradingDay && time.isBefore(EXTENDED_OPEN)
+                        ? today : marketHoursService.getNextTradingDay(today);
+                expiry = next.atTime(EXTENDED_OPEN);
+            }
+        } else if (tradingDay && !time.isBefore(marketHoursService.getSessionOpen(today))
+                && time.isBefore(marketHoursService.getSessionClose(today))) {
+            expiry = nextBoundary(now, 1);
+        } else {
+            expiry = marketHoursService.getNextSessionOpen(now);
+        }
+        return marketHoursService.toInstant(expiry).toEpochMilli();
+    }
+
+    private static LocalDateTime nextBoundary(LocalDateTime now, long minutes) {
+        LocalDateTime midnight = now.toLocalDate().atStartOfDay();
+        long elapsed = ChronoUnit.MINUTES.between(midnight, now);
+        return midnight.plusMinutes((elapsed / minutes + 1) * minutes);
+    }
+
+    private static long parseMinutes(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String param(String url, String name) {
+        int query = url.indexOf('?');
+        if (query < 0) {
+            return null;
+        }
+        for (String param : url.substring(query + 1).split("&")) {
+            if (param.startsWith(name + "=")) {
+                return param.substring(name.length() + 1);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,471 @@
+package com.tradeback.service.alphavantage;
+
+import com.tradeback.service.http.DiskResponseCache;
+import com.tradeback.service.http.UpstreamClient;
+import com.tradeback.service.http.UpstreamException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Единая точка выхода к Alpha Vantage: каждый запрос сначала получает разрешение
+ * у AlphaVantageRateLimiter, поэтому всплески сглаживаются очередью, а не превращаются в ошибки лимита.
+ * Одинаковые одновременные запросы (ключ - параметры запроса без apikey) объединяются в один вызов:
+ * остальные ждут его результат и получают тот же разобранный ответ. Ответы считаются только для чтения.
+ * HTTP выполняется асинхронно через UpstreamClient; синхронные методы - обертка над асинхронными.
+ * Крупные ответы (временные ряды, индикаторы) лучше запрашивать через getParsed - без промежуточного Map.
+ * Успешные ответы сохраняются в DiskResponseCache со сроком из AlphaVantageCachePolicy: попадание в диск
+ * не тратит разрешение лимитера и переживает перезапуск
+ */
+@Slf4j
+@Service
+public class AlphaVantageClient {
+
+    private final UpstreamClient upstream;
+    private final AlphaVantageRateLimiter rateLimiter;
+    private final DiskResponseCache diskCache;
+    private final AlphaVantageCachePolicy cachePolicy;
+
+    // Сколько держать успешный ответ для повторных одинаковых запросов (0 - только пока запрос в полете)
+    private final long retentionMillis;
+
+    // Потоковые тела копируются для дискового кеша только до этого размера, чтобы не буферизовать большие ответы
+    private final int maxStreamedCaptureBytes;
+
+    // Ожидание разрешения лимитера блокирующее, поэтому для асинхронных вызовов оно идет на отдельных потоках
+    private final ExecutorService permitExecutor;
+
+    // Запросы в полете по ключу запроса и приоритету
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Retained> retained = new ConcurrentHashMap<>();
+    private final AtomicLong upstreamCalls = new AtomicLong();
+    private final AtomicLong coalescedCalls = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+
+    public AlphaVantageClient(@Qualifier("alphaVantageUpstream") UpstreamClient upstream,
+                              AlphaVantageRateLimiter rateLimiter,
+                              @Qualifier("alphaVantageDiskCache") DiskResponseCache diskCache,
+                              AlphaVantageCachePolicy cachePolicy,
+                              @Value("${api.alpha-vantage.coalesce.retention-ms:2000}") long retentionMillis,
+                              @Value("${api.alpha-vantage.disk-cache.max-streamed-body-kb:1024}") int maxStreamedBodyKb) {
+        this.upstream = upstream;
+        this.rateLimiter = rateLimiter;
+        this.diskCache = diskCache;
+        this.cachePolicy = cachePolicy;
+        this.retentionMillis = retentionMillis;
+        this.maxStreamedCaptureBytes = diskCache.isEnabled() ? Math.max(0, maxStreamedBodyKb) * 1024 : 0;
+        AtomicInteger counter = new AtomicInteger();
+        this.permitExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "alpha-vantage-permit-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Синхронный запрос: ожидание ограничено дедлайном приоритета в лимитере и таймаутом запроса
+     */
+    public <T> T getForObject(String url, Class<T> responseType, RequestPriority priority) {
+        try {
+            return getForObjectAsync(url, responseType, priority).join();
+        } catch (CompletionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    public <T> CompletableFuture<T> getForObjectAsync(String url, Class<T> responseType, RequestPriority priority) {
+        return execute(url, responseType, priority, new Fetch() {
+            @Override
+            public CompletableFuture<?> fromNetwork(Consumer<byte[]> capture) {
+                return upstream.getBytes(url).thenApply(body -> {
+                    capture.accept(body);
+                    return upstream.decode(body, responseType);
+                });
+            }
+
+            @Override
+            public Object fromBytes(byte[] body) {
+                return upstream.decode(body, responseType);
+            }
+        }).thenApply(responseType::cast);
+    }
+
+    /**
+     * Синхронный запрос с потоковым разбором тела (см. AlphaVantageResponseParser)
+     */
+    public <T> T getParsed(String url, Class<T> resultType, UpstreamClient.BodyReader<T> reader,
+                           RequestPriority priority) {
+        try {
+            return getParsedAsync(url, resultType, reader, priority).join();
+        } catch (CompletionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Ответ разбирается reader-ом из байтов тела; объединяются запросы с одинаковыми параметрами и resultType
+     */
+    public <T> CompletableFuture<T> getParsedAsync(String url, Class<T> resultType, UpstreamClient.BodyReader<T> reader,
+                                                   RequestPriority priority) {
+        return execute(url, resultType, priority, new Fetch() {
+            @Override
+            public CompletableFuture<?> fromNetwork(Consumer<byte[]> capture) {
+                return upstream.getBytes(url).thenApply(body -> {
+                    capture.accept(body);
+                    return read(reader, body);
+                });
+            }
+
+            @Override
+            public Object fromBytes(byte[] body) {
+                return read(reader, body);
+            }
+        }).thenApply(resultType::cast);
+    }
+
+    /**
+     * Синхронный запрос с разбором тела по мере поступления (см. AlphaVantageCsvReader)
+     */
+    public <T> T getStreamed(String url, Class<T> resultType, Supplier<HttpResponse.BodySubscriber<T>> subscriber,
+                             RequestPriority priority) {
+        try {
+            return getStreamedAsync(url, resultType, subscriber, priority).join();
+        } catch (CompletionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    public <T> CompletableFuture<T> getStreamedAsync(String url, Class<T> resultType,
+                                                     Supplier<HttpResponse.BodySubscriber<T>> subscriber,
+                                                     RequestPriority priority) {
+        return execute(url, resultType, priority, new Fetch() {
+            @Override
+            public CompletableFuture<?> fromNetwork(Consumer<byte[]> capture) {
+                return upstream.stream(url, () -> new CapturingSubscriber<>(subscriber.get(), capture, maxStreamedCaptureBytes));
+            }
+
+            @Override
+            public Object fromBytes(byte[] body) {
+                return replay(subscriber.get(), body);
+            }
+        }).thenApply(resultType::cast);
+    }
+
+    private CompletableFuture<Object> execute(String url, Class<?> resultType, RequestPriority priority,
+                                              Fetch fetch) {
+        String request = normalizedRequest(url);
+        String key = request + '#' + resultType.getSimpleName();
+        Retained recent = retained.get(key);
+        if (recent != null) {
+            if (recent.expiresAt > System.currentTimeMillis()) {
+                coalescedCalls.incrementAndGet();
+                return CompletableFuture.completedFuture(recent.response);
+            }
+            retained.remove(key, recent);
+        }
+
+        // Присоединяемся только к запросу не ниже своего приоритета: иначе интерактивный вызов ждал бы
+        // в очереди фоновой загрузки и мог получить отказ из-за резерва квоты для фоновых запросов
+        for (RequestPriority joinable : RequestPriority.values()) {
+            CompletableFuture<Object> leader = inFlight.get(flightKey(key, joinable));
+            if (leader != null) {
+                coalescedCalls.incrementAndGet();
+                log.debug("Joining in-flight Alpha Vantage request {} ({})", key, joinable);
+                return leader;
+            }
+            if (joinable == priority) {
+                break;
+            }
+        }
+
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        String flightKey = flightKey(key, priority);
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(flightKey, flight);
+        if (leader != null) {
+            coalescedCalls.incrementAndGet();
+            log.debug("Joining in-flight Alpha Vantage request {}", key);
+            return leader;
+        }
+
+        Object stored = readDisk(request, fetch);
+        if (stored != null) {
+            diskHits.incrementAndGet();
+            retain(key, stored);
+            inFlight.remove(flightKey, flight);
+            flight.complete(stored);
+            return flight;
+        }
+
+        if (!upstream.isAvailable()) {
+            // Цепь разомкнута: отказываем сразу, не расходуя квоту и не ожидая разрешения лимитера
+            inFlight.remove(flightKey, flight);
+            flight.completeExceptionally(new UpstreamException(
+                    "Alpha Vantage is temporarily unavailable (circuit open)", 503, null));
+            return flight;
+        }
+
+        AtomicReference<byte[]> body = new AtomicReference<>();
+        CompletableFuture.runAsync(() -> rateLimiter.acquire(priority), permitExecutor)
+                .thenCompose(permit -> {
+                    upstreamCalls.incrementAndGet();
+                    return fetch.fromNetwork(body::set);
+                })
+                .whenComplete((response, error) -> {
+                    if (error == null && inspect(response)) {
+                        retain(key, response);
+                        if (body.get() != null) {
+                            diskCache.put(request, body.get(), cachePolicy.expiresAt(url));
+                        }
+                    }
+                    inFlight.remove(flightKey, flight);
+                    if (error != null) {
+                        RuntimeException cause = unwrap(error);
+                        // Потоковый разбор сообщает о частоте вызовов исключением со статусом 429
+                        if (cause instanceof UpstreamException
+                                && ((UpstreamException) cause).getStatusCode() == AlphaVantageResponseParser.THROTTLED_STATUS) {
+                            rateLimiter.onThrottled();
+                        }
+                        flight.completeExceptionally(cause);
+                    } else {
+                        flight.complete(response);
+                    }
+                });
+        return flight;
+    }
+
+    public long getUpstreamCalls() {
+        return upstreamCalls.get();
+    }
+
+    public long getCoalescedCalls() {
+        return coalescedCalls.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        permitExecutor.shutdownNow();
+    }
+
+    private static RuntimeException unwrap(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+    }
+
+    private static String flightKey(String key, RequestPriority priority) {
+        return key + '@' + priority;
+    }
+
+    private void retain(String key, Object response) {
+        if (retentionMillis <= 0) {
+            return;
+        }
+        retained.put(key, new Retained(response, System.currentTimeMillis() + retentionMillis));
+        if (retained.size() > 1000) {
+            long now = System.currentTimeMillis();
+            retained.values().removeIf(r -> r.expiresAt <= now);
+        }
+    }
+
+    /**
+     * Ответ из дискового кеша или null. Запись, которую не удалось разобрать, удаляется
+     */
+    private Object readDisk(String request, Fetch fetch) {
+        byte[] body = diskCache.get(request);
+        if (body == null) {
+            return null;
+        }
+        try {
+            Object response = fetch.fromBytes(body);
+            if (inspect(response)) {
+                log.debug("Serving Alpha Vantage request {} from disk cache", request);
+                return response;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to read disk cached response for {}: {}", request, e.getMessage());
+        }
+        diskCache.remove(request);
+        return null;
+    }
+
+    private static Object read(UpstreamClient.BodyReader<?> reader, byte[] body) {
+        try {
+            return reader.read(body);
+        } catch (IOException e) {
+            throw new UpstreamException("Alpha Vantage returned unparseable response: " + e.getMessage(), 200, e);
+        }
+    }
+
+    /**
+     * Прогоняет сохраненное тело через свежего подписчика так же, как его отдал бы HttpClient
+     */
+    private static <T> T replay(HttpResponse.BodySubscriber<T> subscriber, byte[] body) {
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        subscriber.onNext(List.of(ByteBuffer.wrap(body)));
+        subscriber.onComplete();
+        try {
+            return subscriber.getBody().toCompletableFuture().join();
+        } catch (CompletionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Запрос в нормализованном виде: параметры без apikey в отсортированном порядке
+     */
+    private static String normalizedRequest(String url) {
+        int query = url.indexOf('?');
+        StringBuilder key = new StringBuilder(query >= 0 ? url.substring(0, query) : url);
+        if (query >= 0) {
+            String[] params = url.substring(query + 1).split("&");
+            Arrays.sort(params);
+            char separator = '?';
+            for (String param : params) {
+                if (param.isEmpty() || param.startsWith("apikey=")) {
+                    continue;
+                }
+                key.append(separator).append(param);
+                separator = '&';
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Проверяет ответ: сообщение о частоте вызовов значит, что лимит ключа исчерпан раньше, чем
+     * рассчитывал локальный счетчик (например, ключ используется еще где-то). Возвращает,
+     * можно ли переиспользовать ответ для повторных запросов
+     */
+    private boolean inspect(Object body) {
+        String message = null;
+        boolean error = false;
+        if (body instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) body;
+            Object note = map.containsKey("Note") ? map.get("Note") : map.get("Information");
+            message = note != null ? note.toString() : null;
+            error = note != null || map.containsKey("Error Message");
+        } else if (body instanceof String) {
+            String text = (String) body;
+            message = text.length() < 1000 ? text : null;
+            error = message != null && message.contains("Error Message");
+        }
+        if (message != null && (message.contains("call frequency") || message.contains("rate limit"))) {
+            rateLimiter.onThrottled();
+            return false;
+        }
+        return body != null && !error;
+    }
+
+    /**
+     * Способ получить ответ: из сети (тело отдается в capture для дискового кеша) или из сохраненных байтов
+     */
+    private interface Fetch {
+        CompletableFuture<?> fromNetwork(Consumer<byte[]> capture);
+
+        Object fromBytes(byte[] body);
+    }
+
+    /**
+     * Подписчик-тройник: копирует куски тела для дискового кеша и передает их разбору дальше.
+     * Тело больше limit не кешируется: копия сбрасывается, как только лимит превышен
+     */
+    private static class CapturingSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+        private final HttpResponse.BodySubscriber<T> delegate;
+        private final Consumer<byte[]> capture;
+        private final int limit;
+        private ByteArrayOutputStream copy;
+
+        CapturingSubscriber(HttpResponse.BodySubscriber<T> delegate, Consumer<byte[]> capture, int limit) {
+            this.delegate = delegate;
+            this.capture = capture;
+            this.limit = limit;
+            this.copy = limit > 0 ? new ByteArrayOutputStream() : null;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            delegate.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (copy != null) {
+                for (ByteBuffer buffer : buffers) {
+                    if (copy.size() + buffer.remaining() > limit) {
+                        copy = null;
+                        break;
+                    }
+                    byte[] chunk = new byte[buffer.remaining()];
+                    buffer.duplicate().get(chunk);
+                    copy.write(chunk, 0, chunk.length);
+                }
+            }
+            delegate.onNext(buffers);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            delegate.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (copy != null) {
+                capture.accept(copy.toByteArray());
+            }
+            delegate.onComplete();
+        }
+    }
+
+    private static class Retained {
+        private final Object response;
+        private final long expiresAt;
+
+        Retained(Object response, long expiresAt) {
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
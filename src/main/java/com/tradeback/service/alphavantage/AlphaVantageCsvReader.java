@@ -0,0 +1,231 @@
+package com.tradeback.service.alphavantage;
+
+import com.tradeback.model.BarSeries;
+import com.tradeback.service.http.UpstreamException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+/**
+ * Потоковый разбор временного ряда в формате CSV (datatype=csv) по мере поступления тела ответа:
+ * байты куска копируются в буфер текущей строки, строка режется по запятым на месте и значения
+ * пишутся сразу в BarSeries.Builder - без String на строку или поле и без сборки всего тела.
+ * Колонки определяются по заголовку (timestamp, open, high, low, close, volume; у adjusted - лишние
+ * колонки пропускаются). Ошибки Alpha Vantage приходят JSON-ом и в CSV режиме - такой ответ
+ * собирается целиком и разбирается AlphaVantageResponseParser. Экземпляр одноразовый
+ */
+public class AlphaVantageCsvReader implements Flow.Subscriber<List<ByteBuffer>> {
+
+    private final String symbol;
+    private final String interval;
+    private final BarSeries.Builder builder;
+
+    private char[] line = new char[128];
+    private int length;
+    private boolean started;
+    private ByteArrayOutputStream jsonBody;
+
+    private boolean headerRead;
+    private int timestampColumn = -1;
+    private int openColumn = -1;
+    private int highColumn = -1;
+    private int lowColumn = -1;
+    private int closeColumn = -1;
+    private int volumeColumn = -1;
+
+    public AlphaVantageCsvReader(String symbol, String interval) {
+        this.symbol = symbol;
+        this.interval = interval;
+        this.builder = BarSeries.builder(symbol, interval, 128);
+    }
+
+    /**
+     * Подписчик тела ответа для UpstreamClient.stream
+     */
+    public static HttpResponse.BodySubscriber<BarSeries> bodySubscriber(String symbol, String interval) {
+        return HttpResponse.BodySubscribers.fromSubscriber(new AlphaVantageCsvReader(symbol, interval),
+                AlphaVantageCsvReader::finish);
+    }
+
+    /**
+     * Разбор уже загруженного тела целиком
+     */
+    public static BarSeries parse(byte[] body, String symbol, String interval) {
+        AlphaVantageCsvReader reader = new AlphaVantageCsvReader(symbol, interval);
+        reader.accept(ByteBuffer.wrap(body));
+        return reader.finish();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+        for (ByteBuffer buffer : buffers) {
+            accept(buffer);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        // Ошибку транспорта завершает сам BodySubscriber, частичный результат не нужен
+    }
+
+    @Override
+    public void onComplete() {
+    }
+
+    public void accept(ByteBuffer buffer) {
+        if (jsonBody != null) {
+            copyTo(jsonBody, buffer);
+            return;
+        }
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (!started) {
+                if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                    continue;
+                }
+                started = true;
+                if (b == '{') {
+                    jsonBody = new ByteArrayOutputStream();
+                    jsonBody.write(b);
+                    copyTo(jsonBody, buffer);
+                    return;
+                }
+            }
+            if (b == '\n') {
+                endLine();
+            } else if (b != '\r') {
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = (char) (b & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * Завершает разбор: дописывает последнюю строку без перевода строки и собирает ряд по возрастанию времени
+     */
+    public BarSeries finish() {
+        if (jsonBody != null) {
+            try {
+                return AlphaVantageResponseParser.parseTimeSeries(jsonBody.toByteArray(), symbol, interval);
+            } catch (IOException e) {
+                throw new UpstreamException("Alpha Vantage returned unparseable response: " + e.getMessage(), 200, e);
+            }
+        }
+        endLine();
+        if (!headerRead) {
+            throw new UpstreamException("Alpha Vantage returned empty CSV for " + symbol + " " + interval, 200, null);
+        }
+        if (timestampColumn < 0 || openColumn < 0 || highColumn < 0 || lowColumn < 0 || closeColumn < 0) {
+            throw new UpstreamException("Alpha Vantage CSV has no OHLC columns for " + symbol + " " + interval,
+                    200, null);
+        }
+        return builder.build();
+    }
+
+    private void endLine() {
+        if (length == 0) {
+            return;
+        }
+        if (headerRead) {
+            readBar();
+        } else {
+            readHeader();
+        }
+        length = 0;
+    }
+
+    private void readHeader() {
+        headerRead = true;
+        int column = 0;
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || line[i] == ',') {
+                String name = new String(line, start, i - start).trim();
+                switch (name) {
+                    case "timestamp":
+                        timestampColumn = column;
+                        break;
+                    case "open":
+                        openColumn = column;
+                        break;
+                    case "high":
+                        highColumn = column;
+                        break;
+                    case "low":
+                        lowColumn = column;
+                        break;
+                    case "close":
+                        closeColumn = column;
+                        break;
+                    case "volume":
+                        volumeColumn = column;
+                        break;
+                    default:
+                        break;
+                }
+                column++;
+                start = i + 1;
+            }
+        }
+    }
+
+    private void readBar() {
+        long timestamp = -1;
+        double open = Double.NaN;
+        double high = Double.NaN;
+        double low = Double.NaN;
+        double close = Double.NaN;
+        long volume = 0;
+
+        int column = 0;
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || line[i] == ',') {
+                int fieldLength = i - start;
+                if (column == timestampColumn) {
+                    timestamp = AlphaVantageResponseParser.parseTimestamp(line, start, fieldLength);
+                } else if (column == openColumn) {
+                    open = AlphaVantageResponseParser.parseDouble(line, start, fieldLength);
+                } else if (column == highColumn) {
+                    high = AlphaVantageResponseParser.parseDouble(line, start, fieldLength);
+                } else if (column == lowColumn) {
+                    low = AlphaVantageResponseParser.parseDouble(line, start, fieldLength);
+                } else if (column == closeColumn) {
+                    close = AlphaVantageResponseParser.parseDouble(line, start, fieldLength);
+                } else if (column == volumeColumn) {
+                    volume = AlphaVantageResponseParser.parseLong(line, start, fieldLength);
+                }
+                column++;
+                start = i + 1;
+            }
+        }
+
+        if (timestamp >= 0 && !Double.isNaN(open) && !Double.isNaN(high)
+                && !Double.isNaN(low) && !Double.isNaN(close)) {
+            builder.add(timestamp, open, high, low, close, volume);
+        }
+    }
+
+    private static void copyTo(ByteArrayOutputStream out, ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+        } else {
+            while (buffer.hasRemaining()) {
+                out.write(buffer.get());
+            }
+        }
+    }
+}
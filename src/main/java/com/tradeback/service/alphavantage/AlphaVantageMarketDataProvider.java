@@ -0,0 +1,518 @@
+package com.tradeback.service.alphavantage;
+
+import com.tradeback.dto.GlobalQuote;
+import com.tradeback.dto.IndicatorSeries;
+import com.tradeback.model.BarSeries;
+import com.tradeback.model.Indicator;
+import com.tradeback.model.Listing;
+import com.tradeback.service.http.UpstreamClient;
+import com.tradeback.service.http.UpstreamException;
+import com.tradeback.service.provider.MarketDataProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Рыночные данные из Alpha Vantage: построение запросов и разбор ответов. Все вызовы идут через
+ * AlphaVantageClient (лимит, объединение одинаковых запросов, дисковый кеш)
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "market-data.provider", havingValue = "alpha-vantage", matchIfMissing = true)
+public class AlphaVantageMarketDataProvider implements MarketDataProvider {
+
+    private static final int BULK_QUOTE_LIMIT = 100;
+
+    private final AlphaVantageClient alphaVantageClient;
+    private final String apiKey;
+    private final String baseUrl;
+
+    // Интервалы, временные ряды которых запрашиваются в CSV (datatype=csv) вместо JSON
+    private final Set<String> csvIntervals;
+
+    // REALTIME_BULK_QUOTES доступен только на премиум-ключах
+    private final boolean bulkQuotes;
+
+    public AlphaVantageMarketDataProvider(AlphaVantageClient alphaVantageClient,
+                                          @Value("${api.alpha-vantage.key}") String apiKey,
+                                          @Value("${api.alpha-vantage.base-url}") String baseUrl,
+                                          @Value("${market-data.csv-intervals:daily,weekly,monthly}") Set<String> csvIntervals,
+                                          @Value("${api.alpha-vantage.bulk-quotes.enabled:false}") boolean bulkQuotes) {
+        this.alphaVantageClient = alphaVantageClient;
+        this.apiKey = apiKey;
+        this.baseUrl = baseUrl;
+        this.csvIntervals = csvIntervals;
+        this.bulkQuotes = bulkQuotes;
+    }
+
+    @Override
+    public String getName() {
+        return "alpha-vantage";
+    }
+
+    /**
+     * Временной ряд с потоковым разбором ответа прямо в массивы BarSeries:
+     * CSV - по мере поступления тела, JSON - по токенам после загрузки
+     */
+    @Override
+    public BarSeries getTimeSeries(String symbol, String interval, boolean fullHistory, RequestPriority priority) {
+        String url = buildMarketDataUrl(symbol, interval, fullHistory ? "full" : "compact");
+        return isCsvInterval(interval)
+                ? alphaVantageClient.getStreamed(url, BarSeries.class,
+                        () -> AlphaVantageCsvReader.bodySubscriber(symbol, interval), priority)
+                : alphaVantageClient.getParsed(url, BarSeries.class,
+                        body -> AlphaVantageResponseParser.parseTimeSeries(body, symbol, interval), priority);
+    }
+
+    @Override
+    public GlobalQuote getQuote(String symbol, RequestPriority priority) {
+        String url = String.format("%s?function=GLOBAL_QUOTE&symbol=%s&apikey=%s", baseUrl, symbol, apiKey);
+        return alphaVantageClient.getParsed(url, GlobalQuote.class, AlphaVantageResponseParser::parseGlobalQuote,
+                priority);
+    }
+
+    @Override
+    public int getQuoteBatchSize() {
+        return bulkQuotes ? BULK_QUOTE_LIMIT : 1;
+    }
+
+    /**
+     * С премиум-ключом - REALTIME_BULK_QUOTES по 100 символов за вызов, иначе GLOBAL_QUOTE на каждый символ.
+     * Символ, отсутствующий в ответе пачки, получает пустую котировку, как неизвестный символ в GLOBAL_QUOTE.
+     * Отказ лимитера после первой пачки возвращает уже полученные котировки
+     */
+    @Override
+    public Map<String, GlobalQuote> getQuotes(Collection<String> symbols, RequestPriority priority) {
+        if (!bulkQuotes) {
+            return MarketDataProvider.super.getQuotes(symbols, priority);
+        }
+        List<String> pending = new ArrayList<>(symbols);
+        Map<String, GlobalQuote> quotes = new LinkedHashMap<>();
+        for (int from = 0; from < pending.size(); from += BULK_QUOTE_LIMIT) {
+            List<String> batch = pending.subList(from, Math.min(from + BULK_QUOTE_LIMIT, pending.size()));
+            String url = String.format("%s?function=REALTIME_BULK_QUOTES&symbol=%s&apikey=%s",
+                    baseUrl, String.join(",", batch), apiKey);
+            List<?> received;
+            try {
+                received = alphaVantageClient.getParsed(url, List.class,
+                        AlphaVantageResponseParser::parseBulkQuotes, priority);
+            } catch (RateLimitExceededException e) {
+                if (quotes.isEmpty()) {
+                    throw e;
+                }
+                break;
+            }
+
+            Map<String, GlobalQuote> bySymbol = new HashMap<>();
+            for (Object item : received) {
+                GlobalQuote quote = (GlobalQuote) item;
+                if (quote.getSymbol() != null) {
+                    bySymbol.put(quote.getSymbol().toUpperCase(), quote);
+                }
+            }
+            for (String symbol : batch) {
+                GlobalQuote quote = bySymbol.get(symbol.toUpperCase());
+                if (quote == null) {
+                    quote = new GlobalQuote();
+                    quote.setSymbol(symbol);
+                }
+                quotes.put(symbol, quote);
+            }
+        }
+        return quotes;
+    }
+
+    /**
+     * Все активные инструменты из LISTING_STATUS (CSV, ~8000 строк)
+     */
+    @Override
+    public List<Listing> getListings(RequestPriority priority) {
+        String url = String.format("%s?function=LISTING_STATUS&apikey=%s&state=active", baseUrl, apiKey);
+        String csvContent = alphaVantageClient.getForObject(url, String.class, priority);
+
+        // Ошибки приходят JSON-ом вместо CSV
+        if (csvContent == null || csvContent.contains("Error Message")) {
+            throw new UpstreamException("Alpha Vantage returned error for LISTING_STATUS: " + abbreviate(csvContent),
+                    200, null);
+        }
+        // Предупреждения о лимитах не останавливают загрузку
+        if (csvContent.contains("Note")) {
+            log.info("Alpha Vantage API note (proceeding with data loading): {}", abbreviate(csvContent));
+        }
+        if (!csvContent.contains("symbol,name,exchange") || csvContent.split("\n").length < 2) {
+            throw new UpstreamException("Invalid CSV format received for LISTING_STATUS", 200, null);
+        }
+        return parseListings(csvContent);
+    }
+
+    /**
+     * Название и биржа из OVERVIEW
+     */
+    @Override
+    public Listing getSymbolDetails(String symbol, RequestPriority priority) {
+        String url = String.format("%s?function=OVERVIEW&symbol=%s&apikey=%s", baseUrl, symbol, apiKey);
+        Map<?, ?> overview = alphaVantageClient.getForObject(url, Map.class, priority);
+        if (overview == null || overview.containsKey("Error Message") || !overview.containsKey("Name")) {
+            return null;
+        }
+        Listing details = new Listing();
+        details.setSymbol(symbol);
+        details.setName(textValue(overview.get("Name")));
+        details.setExchange(textValue(overview.get("Exchange")));
+        return details;
+    }
+
+    @Override
+    public CompletableFuture<IndicatorSeries> getIndicatorSeriesAsync(Indicator indicator, RequestPriority priority) {
+        String url = buildIndicatorUrl(indicator);
+        log.info("API URL: {}", url);
+
+        String[] lineKeys = getLineKeys(indicator.getType());
+        UpstreamClient.BodyReader<IndicatorSeries> reader = body -> AlphaVantageResponseParser.parseTechnicalAnalysis(
+                body, indicator.getSymbol(), indicator.getInterval(), indicator.getType(), indicator.getPeriod(),
+                lineKeys);
+        return alphaVantageClient.getParsedAsync(url, IndicatorSeries.class, reader, priority);
+    }
+
+    /**
+     * Определяет функцию Alpha Vantage API на основе интервала
+     */
+    public String getAlphaVantageFunction(String interval) {
+        switch (interval.toLowerCase()) {
+            case "1min":
+            case "5min":
+            case "15min":
+            case "30min":
+            case "60min":
+                return "TIME_SERIES_INTRADAY";
+            case "daily":
+                return "TIME_SERIES_DAILY";
+            case "weekly":
+                return "TIME_SERIES_WEEKLY";
+            case "monthly":
+                return "TIME_SERIES_MONTHLY";
+            case "daily_adjusted":
+                return "TIME_SERIES_DAILY_ADJUSTED";
+            case "weekly_adjusted":
+                return "TIME_SERIES_WEEKLY_ADJUSTED";
+            case "monthly_adjusted":
+                return "TIME_SERIES_MONTHLY_ADJUSTED";
+            default:
+                log.warn("Unknown interval '{}', defaulting to TIME_SERIES_DAILY", interval);
+                return "TIME_SERIES_DAILY";
+        }
+    }
+
+    /**
+     * URL временного ряда: outputSize compact = последние 100 точек, full = вся история
+     */
+    public String buildMarketDataUrl(String symbol, String interval, String outputSize) {
+        String function = getAlphaVantageFunction(interval);
+        StringBuilder url = new StringBuilder(baseUrl);
+        url.append("?function=").append(function);
+        url.append("&symbol=").append(symbol);
+
+        // Добавляем interval только для intraday данных
+        if (function.equals("TIME_SERIES_INTRADAY")) {
+            url.append("&interval=").append(interval);
+        }
+
+        url.append("&outputsize=").append(outputSize);
+
+        if (isCsvInterval(interval)) {
+            url.append("&datatype=csv");
+        }
+
+        url.append("&apikey=").append(apiKey);
+
+        log.debug("Built URL for {} with interval {}: {}", symbol, interval, url.toString());
+        return url.toString();
+    }
+
+    /**
+     * Запрашивается ли ряд интервала в CSV: CSV ответ в несколько раз меньше JSON и разбирается без дерева объектов
+     */
+    public boolean isCsvInterval(String interval) {
+        return csvIntervals.contains(interval.toLowerCase());
+    }
+
+    /**
+     * Построение URL для API запроса с учетом Alpha Vantage интервалов
+     */
+    private String buildIndicatorUrl(Indicator indicator) {
+        StringBuilder url = new StringBuilder(baseUrl);
+        url.append("?function=").append(indicator.getType().name());
+        url.append("&symbol=").append(indicator.getSymbol());
+
+        // Добавляем interval для технических индикаторов
+        url.append("&interval=").append(convertIntervalForIndicators(indicator.getInterval()));
+
+        // Добавляем параметры в зависимости от типа индикатора
+        switch (indicator.getType()) {
+            case MACD:
+                url.append("&fastperiod=12&slowperiod=26&signalperiod=9");
+                url.append("&series_type=close");
+                break;
+
+            case BBANDS:
+                // Для Bollinger Bands используем период если он больше 0, иначе 20
+                int bbandsPeriod = indicator.getPeriod() > 0 ? indicator.getPeriod() : 20;
+                url.append("&time_period=").append(bbandsPeriod);
+                url.append("&series_type=close");
+                url.append("&nbdevup=2&nbdevdn=2&matype=0");
+                break;
+
+            case STOCH:
+                url.append("&fastkperiod=5&slowkperiod=3&slowdperiod=3");
+                url.append("&slowkmatype=0&slowdmatype=0");
+                break;
+
+            case VWAP:
+                // VWAP имеет особые требования к интервалам
+                if (!indicator.getInterval().toLowerCase().endsWith("min")) {
+                    throw new IllegalArgumentException("VWAP requires intraday interval");
+                }
+                break;
+
+            case SAR:
+                url.append("&acceleration=0.02&maximum=0.20");
+                break;
+
+            // Большинство остальных индикаторов используют стандартные параметры
+            default:
+                if (needsTimePeriod(indicator.getType()) && indicator.getPeriod() > 0) {
+                    url.append("&time_period=").append(indicator.getPeriod());
+                }
+                if (needsSeriesType(indicator.getType())) {
+                    url.append("&series_type=close");
+                }
+                break;
+        }
+
+        url.append("&apikey=").append(apiKey);
+
+        log.debug("Built indicator URL: {}", url.toString());
+        return url.toString();
+    }
+
+    /**
+     * Конвертирует интервалы приложения в интервалы для технических индикаторов
+     * Технические индикаторы Alpha Vantage поддерживают другой набор интервалов
+     */
+    private String convertIntervalForIndicators(String appInterval) {
+        switch (appInterval.toLowerCase()) {
+            case "1min":
+            case "5min":
+            case "15min":
+            case "30min":
+            case "60min":
+                return appInterval; // Intraday интервалы остаются как есть
+            case "daily":
+            case "daily_adjusted":
+                return "daily";
+            case "weekly":
+            case "weekly_adjusted":
+                return "weekly";
+            case "monthly":
+            case "monthly_adjusted":
+                return "monthly";
+            default:
+                log.warn("Unknown interval for indicators: {}, defaulting to daily", appInterval);
+                return "daily";
+        }
+    }
+
+    /**
+     * Проверяет, нужен ли параметр time_period для данного индикатора
+     */
+    private boolean needsTimePeriod(Indicator.IndicatorType type) {
+        return type != Indicator.IndicatorType.MACD &&
+                type != Indicator.IndicatorType.STOCH &&
+                type != Indicator.IndicatorType.SAR &&
+                type != Indicator.IndicatorType.VWAP &&
+                type != Indicator.IndicatorType.OBV;
+    }
+
+    /**
+     * Проверяет, нужен ли параметр series_type для данного индикатора
+     */
+    private boolean needsSeriesType(Indicator.IndicatorType type) {
+        return type != Indicator.IndicatorType.OBV &&
+                type != Indicator.IndicatorType.VWAP &&
+                type != Indicator.IndicatorType.STOCH &&
+                type != Indicator.IndicatorType.SAR;
+    }
+
+    /**
+     * Ключи линий в ответе API в порядке value / secondaryValue / tertiaryValue
+     */
+    public static String[] getLineKeys(Indicator.IndicatorType type) {
+        switch (type) {
+            case MACD:
+                return new String[]{"MACD", "MACD_Signal", "MACD_Hist"};
+            case BBANDS:
+                return new String[]{"Real Middle Band", "Real Upper Band", "Real Lower Band"};
+            case STOCH:
+                return new String[]{"SlowK", "SlowD"};
+            default:
+                return new String[]{getValueKey(type)};
+        }
+    }
+
+    /**
+     * Получает ключ для извлечения значения в зависимости от типа индикатора
+     */
+    private static String getValueKey(Indicator.IndicatorType type) {
+        switch (type) {
+            case RSI:
+                return "RSI";
+            case SMA:
+                return "SMA";
+            case EMA:
+                return "EMA";
+            case WMA:
+                return "WMA";
+            case DEMA:
+                return "DEMA";
+            case TEMA:
+                return "TEMA";
+            case TRIMA:
+                return "TRIMA";
+            case KAMA:
+                return "KAMA";
+            case MAMA:
+                return "MAMA";
+            case T3:
+                return "T3";
+            case WILLR:
+                return "WILLR";
+            case CCI:
+                return "CCI";
+            case CMO:
+                return "CMO";
+            case ROC:
+                return "ROC";
+            case ROCP:
+                return "ROCP";
+            case ROCR:
+                return "ROCR";
+            case MFI:
+                return "MFI";
+            case BOP:
+                return "BOP";
+            case ATR:
+                return "ATR";
+            case NATR:
+                return "NATR";
+            case TRANGE:
+                return "TRANGE";
+            case ADX:
+                return "ADX";
+            case ADXR:
+                return "ADXR";
+            case DX:
+                return "DX";
+            case MINUS_DI:
+                return "MINUS_DI";
+            case PLUS_DI:
+                return "PLUS_DI";
+            case MINUS_DM:
+                return "MINUS_DM";
+            case PLUS_DM:
+                return "PLUS_DM";
+            case SAR:
+                return "SAR";
+            case TRIX:
+                return "TRIX";
+            case OBV:
+                return "OBV";
+            case AD:
+                return "Chaikin A/D";
+            case ADOSC:
+                return "ADOSC";
+            case VWAP:
+                return "VWAP";
+            case AVGPRICE:
+                return "AVGPRICE";
+            case MEDPRICE:
+                return "MEDPRICE";
+            case TYPPRICE:
+                return "TYPPRICE";
+            case WCLPRICE:
+                return "WCLPRICE";
+            case HT_DCPERIOD:
+                return "HT_DCPERIOD";
+            case HT_DCPHASE:
+                return "HT_DCPHASE";
+            case HT_TRENDMODE:
+                return "HT_TRENDMODE";
+            default:
+                return type.name();
+        }
+    }
+
+    /**
+     * Разбор CSV LISTING_STATUS: symbol,name,exchange,assetType,ipoDate,delistingDate,status
+     */
+    public static List<Listing> parseListings(String csvContent) {
+        if (csvContent == null || csvContent.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Listing> listings = new ArrayList<>();
+        String[] lines = csvContent.split("\n");
+
+        // Пропускаем заголовок (первая строка)
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty()) continue;
+
+            try {
+                String[] values = line.split(",", -1);
+
+                if (values.length >= 7) {
+                    Listing listing = new Listing(
+                            values[0].trim(),  // symbol
+                            values[1].trim(),  // name
+                            values[2].trim(),  // exchange
+                            values[3].trim(),  // assetType
+                            values[4].trim(),  // ipoDate (String)
+                            values[5].equals("null") ? null : values[5].trim(), // delistingDate
+                            values[6].trim()   // status
+                    );
+                    listings.add(listing);
+                }
+            } catch (Exception e) {
+                log.debug("Error parsing CSV line {}: {} - {}", i, line, e.getMessage());
+            }
+        }
+
+        log.info("Parsed {} listings from CSV content", listings.size());
+        return listings;
+    }
+
+    private static String textValue(Object value) {
+        if (value == null) {
+            return null;
+        }
+        String text = value.toString().trim();
+        return text.isEmpty() || "None".equals(text) ? null : text;
+    }
+
+    private static String abbreviate(String text) {
+        if (text == null) {
+            return "empty response";
+        }
+        return text.length() > 200 ? text.substring(0, 200) + "..." : text;
+    }
+}
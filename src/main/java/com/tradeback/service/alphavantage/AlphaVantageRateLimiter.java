@@ -0,0 +1,237 @@
+package com.tradeback.service.alphavantage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Общий лимит запросов к Alpha Vantage: token bucket на минуту (с запасом на всплеск) и дневная квота,
+ * которая обнуляется в полночь ET. Запросы ждут в очереди по приоритету (INTERACTIVE > PREFETCH > BACKFILL,
+ * внутри класса - по порядку прихода), у каждого класса свой дедлайн ожидания.
+ * Последние reserved-for-interactive запросов дня доступны только интерактивным запросам
+ */
+@Slf4j
+@Component
+public class AlphaVantageRateLimiter {
+
+    private static final ZoneId EASTERN_TIME = ZoneId.of("America/New_York");
+
+    private final int perMinute;
+    private final int perDay;
+    private final int interactiveReserve;
+    private final long interactiveTimeoutNanos;
+    private final long prefetchTimeoutNanos;
+    private final long backfillTimeoutNanos;
+    private final double nanosPerToken;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>();
+    private long sequence;
+
+    // Минутное ведро
+    private double tokens;
+    private long lastRefillNanos;
+
+    // Дневная квота
+    private LocalDate quotaDay;
+    private int usedToday;
+
+    public AlphaVantageRateLimiter(@Value("${api.alpha-vantage.rate-limit.per-minute:5}") int perMinute,
+                                   @Value("${api.alpha-vantage.rate-limit.per-day:25}") int perDay,
+                                   @Value("${api.alpha-vantage.rate-limit.reserved-for-interactive:5}") int interactiveReserve,
+                                   @Value("${api.alpha-vantage.rate-limit.interactive-timeout-seconds:30}") long interactiveTimeoutSeconds,
+                                   @Value("${api.alpha-vantage.rate-limit.prefetch-timeout-seconds:300}") long prefetchTimeoutSeconds,
+                                   @Value("${api.alpha-vantage.rate-limit.backfill-timeout-seconds:1800}") long backfillTimeoutSeconds) {
+        this.perMinute = Math.max(1, perMinute);
+        this.perDay = perDay;
+        this.interactiveReserve = Math.max(0, interactiveReserve);
+        this.interactiveTimeoutNanos = TimeUnit.SECONDS.toNanos(interactiveTimeoutSeconds);
+        this.prefetchTimeoutNanos = TimeUnit.SECONDS.toNanos(prefetchTimeoutSeconds);
+        this.backfillTimeoutNanos = TimeUnit.SECONDS.toNanos(backfillTimeoutSeconds);
+        this.nanosPerToken = (double) TimeUnit.MINUTES.toNanos(1) / this.perMinute;
+        this.tokens = this.perMinute;
+        this.lastRefillNanos = System.nanoTime();
+        this.quotaDay = LocalDate.now(EASTERN_TIME);
+    }
+
+    /**
+     * Ждет разрешения на один запрос. Бросает RateLimitExceededException, если разрешение
+     * не будет получено до дедлайна класса приоритета или дневная квота для него исчерпана
+     */
+    public void acquire(RequestPriority priority) {
+        long start = System.nanoTime();
+        long deadline = start + timeoutNanos(priority);
+
+        lock.lock();
+        Waiter waiter = new Waiter(priority, sequence++);
+        queue.add(waiter);
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                refill(now);
+
+                if (queue.peek() != waiter) {
+                    // Впереди запросы с более высоким приоритетом или пришедшие раньше
+                    if (now >= deadline) {
+                        throw rejected(priority, "timed out after " + TimeUnit.NANOSECONDS.toMillis(now - start) + " ms in queue");
+                    }
+                    changed.awaitNanos(deadline - now);
+                    continue;
+                }
+
+                if (remainingToday(priority) <= 0) {
+                    throw rejected(priority, "daily quota of " + perDay + " requests is exhausted");
+                }
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    usedToday++;
+                    queue.poll();
+                    changed.signalAll();
+                    long waited = TimeUnit.NANOSECONDS.toMillis(now - start);
+                    if (waited > 0) {
+                        log.debug("{} Alpha Vantage request waited {} ms for rate limit", priority, waited);
+                    }
+                    return;
+                }
+
+                long untilToken = (long) Math.ceil((1 - tokens) * nanosPerToken);
+                if (now + untilToken > deadline) {
+                    // Дождаться токена до дедлайна не получится - отказываем сразу, а не по таймауту
+                    throw rejected(priority, "next request slot is " + TimeUnit.NANOSECONDS.toMillis(untilToken)
+                            + " ms away");
+                }
+                changed.awaitNanos(untilToken);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw rejected(priority, "interrupted while waiting");
+        } finally {
+            if (queue.remove(waiter)) {
+                changed.signalAll();
+            }
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Разрешение без ожидания: только если очередь пуста, в минутном ведре есть токен и дневная квота
+     * класса приоритета не исчерпана
+     */
+    public boolean tryAcquire(RequestPriority priority) {
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            if (!queue.isEmpty() || tokens < 1 || remainingToday(priority) <= 0) {
+                return false;
+            }
+            tokens -= 1;
+            usedToday++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Alpha Vantage сообщил о превышении частоты - обнуляем минутное ведро, чтобы очередь притормозила
+     */
+    public void onThrottled() {
+        lock.lock();
+        try {
+            tokens = 0;
+            lastRefillNanos = System.nanoTime();
+            log.warn("Alpha Vantage reported call frequency limit, pausing queued requests");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getAvailableTokens() {
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            return tokens;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getUsedToday() {
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            return usedToday;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueLength() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(perMinute, tokens + (now - lastRefillNanos) / nanosPerToken);
+        lastRefillNanos = now;
+
+        LocalDate today = LocalDate.now(EASTERN_TIME);
+        if (!today.equals(quotaDay)) {
+            quotaDay = today;
+            usedToday = 0;
+        }
+    }
+
+    private int remainingToday(RequestPriority priority) {
+        if (perDay <= 0) {
+            return Integer.MAX_VALUE; // Без дневного лимита (платный ключ)
+        }
+        int reserve = priority == RequestPriority.INTERACTIVE ? 0 : interactiveReserve;
+        return perDay - reserve - usedToday;
+    }
+
+    private long timeoutNanos(RequestPriority priority) {
+        switch (priority) {
+            case INTERACTIVE:
+                return interactiveTimeoutNanos;
+            case PREFETCH:
+                return prefetchTimeoutNanos;
+            case BACKFILL:
+            default:
+                return backfillTimeoutNanos;
+        }
+    }
+
+    private RateLimitExceededException rejected(RequestPriority priority, String reason) {
+        log.warn("{} Alpha Vantage request rejected: {}", priority, reason);
+        return new RateLimitExceededException("Alpha Vantage rate limit: " + reason);
+    }
+
+    private static class Waiter implements Comparable<Waiter> {
+        private final RequestPriority priority;
+        private final long sequence;
+
+        Waiter(RequestPriority priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
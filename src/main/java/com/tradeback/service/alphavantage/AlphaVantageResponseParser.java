@@ -0,0 +1,538 @@
+package com.tradeback.service.alphavantage;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.tradeback.dto.GlobalQuote;
+import com.tradeback.dto.IndicatorSeries;
+import com.tradeback.model.BarSeries;
+import com.tradeback.model.Indicator;
+import com.tradeback.service.http.UpstreamException;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Потоковый разбор ответов Alpha Vantage по токенам Jackson: значения пишутся сразу в примитивные
+ * массивы, без промежуточных Map, строк на каждое число и MarketData. Даты и числа разбираются прямо
+ * из буфера символов парсера; числа с не более чем 15 значащими цифрами - точным быстрым путем
+ * (целая мантисса / степень десяти), остальные через Double.parseDouble.
+ * Ответ без данных с "Error Message" / "Note" / "Information" превращается в UpstreamException,
+ * сообщение о частоте вызовов - со статусом 429
+ */
+public final class AlphaVantageResponseParser {
+
+    public static final int THROTTLED_STATUS = 429;
+
+    // Ключи временного ряда - тысячи уникальных дат: канонизация имен полей только забивает таблицу символов
+    private static final JsonFactory JSON = JsonFactory.builder()
+            .disable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES)
+            .build();
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private AlphaVantageResponseParser() {
+    }
+
+    /**
+     * TIME_SERIES_* (в том числе adjusted, weekly, monthly) в BarSeries по возрастанию времени
+     */
+    public static BarSeries parseTimeSeries(byte[] body, String symbol, String interval) throws IOException {
+        return readSection(body, "Time Series", parser -> readBars(parser, symbol, interval));
+    }
+
+    /**
+     * Технический индикатор ("Technical Analysis: X") в IndicatorSeries; lineKeys - поля линий
+     * в порядке values / secondary / tertiary
+     */
+    public static IndicatorSeries parseTechnicalAnalysis(byte[] body, String symbol, String interval,
+                                                         Indicator.IndicatorType type, Integer period,
+                                                         String[] lineKeys) throws IOException {
+        return readSection(body, "Technical Analysis", parser -> {
+            LineBuffer buffer = readLines(parser, lineKeys);
+            double[][] lines = buffer.lines();
+            return new IndicatorSeries(symbol, interval, type, period, buffer.timestamps(), lines[0],
+                    lines.length > 1 ? lines[1] : null, lines.length > 2 ? lines[2] : null);
+        });
+    }
+
+    /**
+     * GLOBAL_QUOTE. Для неизвестного символа Alpha Vantage отдает пустой объект - тогда hasPrice() == false
+     */
+    public static GlobalQuote parseGlobalQuote(byte[] body) throws IOException {
+        return readSection(body, "Global Quote", AlphaVantageResponseParser::readQuote);
+    }
+
+    /**
+     * REALTIME_BULK_QUOTES: массив "data" с котировками до 100 символов. Неизвестные символы в ответ не попадают
+     */
+    public static List<GlobalQuote> parseBulkQuotes(byte[] body) throws IOException {
+        return readSection(body, "data", parser -> {
+            List<GlobalQuote> quotes = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                quotes.add(readBulkQuote(parser));
+            }
+            return quotes;
+        });
+    }
+
+    // Разбор верхнего уровня
+
+    private interface SectionReader<T> {
+        T read(JsonParser parser) throws IOException;
+    }
+
+    private static <T> T readSection(byte[] body, String sectionPrefix, SectionReader<T> reader) throws IOException {
+        try (JsonParser parser = JSON.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new UpstreamException("Alpha Vantage response is not a JSON object", 200, null);
+            }
+
+            T result = null;
+            String error = null;
+            String note = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (result == null && (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY)
+                        && name.contains(sectionPrefix)) {
+                    result = reader.read(parser);
+                } else if ("Error Message".equals(name)) {
+                    error = parser.getValueAsString();
+                } else if ("Note".equals(name) || "Information".equals(name)) {
+                    note = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            if (result != null) {
+                return result;
+            }
+            if (error != null) {
+                throw new UpstreamException("Alpha Vantage error: " + error, 200, null);
+            }
+            if (note != null) {
+                boolean throttled = note.contains("call frequency") || note.contains("rate limit");
+                throw new UpstreamException("Alpha Vantage: " + note, throttled ? THROTTLED_STATUS : 200, null);
+            }
+            throw new UpstreamException("Alpha Vantage response has no '" + sectionPrefix + "' section", 200, null);
+        }
+    }
+
+    private static BarSeries readBars(JsonParser parser, String symbol, String interval) throws IOException {
+        BarSeries.Builder builder = BarSeries.builder(symbol, interval, 128);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            long timestamp = readTimestamp(parser);
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+
+            double open = Double.NaN;
+            double high = Double.NaN;
+            double low = Double.NaN;
+            double close = Double.NaN;
+            long volume = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "1. open":
+                        open = readDouble(parser);
+                        break;
+                    case "2. high":
+                        high = readDouble(parser);
+                        break;
+                    case "3. low":
+                        low = readDouble(parser);
+                        break;
+                    case "4. close":
+                        close = readDouble(parser);
+                        break;
+                    case "5. volume":
+                    case "6. volume":
+                        volume = readLong(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+
+            if (timestamp >= 0 && !Double.isNaN(open) && !Double.isNaN(high)
+                    && !Double.isNaN(low) && !Double.isNaN(close)) {
+                builder.add(timestamp, open, high, low, close, volume);
+            }
+        }
+        return builder.build();
+    }
+
+    private static LineBuffer readLines(JsonParser parser, String[] lineKeys) throws IOException {
+        LineBuffer buffer = new LineBuffer(lineKeys.length);
+        double[] point = new double[lineKeys.length];
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            long timestamp = readTimestamp(parser);
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+
+            Arrays.fill(point, Double.NaN);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                int line = indexOf(lineKeys, field);
+                if (line >= 0) {
+                    point[line] = readDouble(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            if (timestamp >= 0) {
+                buffer.add(timestamp, point);
+            }
+        }
+        return buffer;
+    }
+
+    private static GlobalQuote readQuote(JsonParser parser) throws IOException {
+        GlobalQuote quote = new GlobalQuote();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "01. symbol":
+                    quote.setSymbol(parser.getValueAsString());
+                    break;
+                case "02. open":
+                    quote.setOpen(readDouble(parser));
+                    break;
+                case "03. high":
+                    quote.setHigh(readDouble(parser));
+                    break;
+                case "04. low":
+                    quote.setLow(readDouble(parser));
+                    break;
+                case "05. price":
+                    quote.setPrice(readDouble(parser));
+                    break;
+                case "06. volume":
+                    quote.setVolume(readLong(parser));
+                    break;
+                case "07. latest trading day":
+                    long timestamp = readTimestamp(parser);
+                    quote.setLatestTradingDay(timestamp >= 0 ? LocalDate.ofEpochDay(timestamp / 86400) : null);
+                    break;
+                case "08. previous close":
+                    quote.setPreviousClose(readDouble(parser));
+                    break;
+                case "09. change":
+                    quote.setChange(readDouble(parser));
+                    break;
+                case "10. change percent":
+                    quote.setChangePercent(readDouble(parser));
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return quote;
+    }
+
+    private static GlobalQuote readBulkQuote(JsonParser parser) throws IOException {
+        GlobalQuote quote = new GlobalQuote();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "symbol":
+                    quote.setSymbol(parser.getValueAsString());
+                    break;
+                case "timestamp":
+                    long timestamp = readTimestamp(parser);
+                    quote.setLatestTradingDay(timestamp >= 0 ? LocalDate.ofEpochDay(timestamp / 86400) : null);
+                    break;
+                case "open":
+                    quote.setOpen(readDouble(parser));
+                    break;
+                case "high":
+                    quote.setHigh(readDouble(parser));
+                    break;
+                case "low":
+                    quote.setLow(readDouble(parser));
+                    break;
+                case "close":
+                    quote.setPrice(readDouble(parser));
+                    break;
+                case "volume":
+                    quote.setVolume(readLong(parser));
+                    break;
+                case "previous_close":
+                    quote.setPreviousClose(readDouble(parser));
+                    break;
+                case "change":
+                    quote.setChange(readDouble(parser));
+                    break;
+                case "change_percent":
+                    quote.setChangePercent(readDouble(parser));
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return quote;
+    }
+
+    private static int indexOf(String[] keys, String field) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(field)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Разбор значений из буфера символов парсера
+
+    private static double readDouble(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NUMBER_FLOAT || token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getDoubleValue();
+        }
+        if (token != JsonToken.VALUE_STRING) {
+            parser.skipChildren();
+            return Double.NaN;
+        }
+        int length = parser.getTextLength();
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        // "0.5000%" в GLOBAL_QUOTE
+        if (length > 0 && chars[offset + length - 1] == '%') {
+            length--;
+        }
+        return parseDouble(chars, offset, length);
+    }
+
+    private static long readLong(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue();
+        }
+        if (token != JsonToken.VALUE_STRING && token != JsonToken.VALUE_NUMBER_FLOAT) {
+            parser.skipChildren();
+            return 0;
+        }
+        return parseLong(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+    }
+
+    /**
+     * Неотрицательное целое (объем); дробная или нестандартная запись - через parseDouble, мусор - 0
+     */
+    static long parseLong(char[] chars, int offset, int length) {
+        int end = offset + length;
+        long value = 0;
+        for (int i = offset; i < end; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9' || i - offset >= 18) {
+                double parsed = parseDouble(chars, offset, length);
+                return Double.isNaN(parsed) ? 0 : (long) parsed;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Время из имени поля или строки: "yyyy-MM-dd", "yyyy-MM-dd HH:mm" или "yyyy-MM-dd HH:mm:ss".
+     * Возвращает epoch seconds (как в BarSeries) или -1, если формат не распознан
+     */
+    private static long readTimestamp(JsonParser parser) throws IOException {
+        return parseTimestamp(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+    }
+
+    static long parseTimestamp(char[] chars, int offset, int length) {
+        if (length < 10 || chars[offset + 4] != '-' || chars[offset + 7] != '-') {
+            return -1;
+        }
+        int year = parseDigits(chars, offset, 4);
+        int month = parseDigits(chars, offset + 5, 2);
+        int day = parseDigits(chars, offset + 8, 2);
+
+        int secondOfDay = 0;
+        if (length >= 16) {
+            char separator = chars[offset + 10];
+            if ((separator != ' ' && separator != 'T') || chars[offset + 13] != ':') {
+                return -1;
+            }
+            int hour = parseDigits(chars, offset + 11, 2);
+            int minute = parseDigits(chars, offset + 14, 2);
+            int second = length >= 19 && chars[offset + 16] == ':' ? parseDigits(chars, offset + 17, 2) : 0;
+            if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+                return -1;
+            }
+            secondOfDay = hour * 3600 + minute * 60 + second;
+        } else if (length != 10) {
+            return -1;
+        }
+
+        if (year < 0 || month < 0 || day < 0) {
+            return -1;
+        }
+        try {
+            return LocalDate.of(year, month, day).toEpochDay() * 86400 + secondOfDay;
+        } catch (DateTimeException e) {
+            return -1;
+        }
+    }
+
+    private static int parseDigits(char[] chars, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Десятичное число без экспоненты. При мантиссе до 2^53 и не более 22 знаках после точки
+     * деление на точную степень десяти дает корректно округленный результат
+     */
+    static double parseDouble(char[] chars, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        boolean negative = false;
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            negative = chars[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int scale = 0;
+        boolean point = false;
+        boolean digits = false;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                digits = true;
+                if (mantissa != 0 || c != '0') {
+                    significantDigits++;
+                }
+                if (significantDigits > 15) {
+                    return parseDoubleSlow(chars, offset, length);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (point) {
+                    scale++;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                return parseDoubleSlow(chars, offset, length);
+            }
+        }
+
+        if (!digits || scale >= POWERS_OF_TEN.length) {
+            return parseDoubleSlow(chars, offset, length);
+        }
+        double value = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    private static double parseDoubleSlow(char[] chars, int offset, int length) {
+        try {
+            return Double.parseDouble(new String(chars, offset, length));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Накопитель точек индикатора; порядок ответа (обычно от новых к старым) приводится к возрастанию
+     */
+    private static class LineBuffer {
+        private long[] timestamps = new long[128];
+        private double[][] lines;
+        private int size;
+        private boolean ascending = true;
+        private boolean descending = true;
+
+        LineBuffer(int lineCount) {
+            lines = new double[lineCount][128];
+        }
+
+        void add(long timestamp, double[] point) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                for (int line = 0; line < lines.length; line++) {
+                    lines[line] = Arrays.copyOf(lines[line], size * 2);
+                }
+            }
+            if (size > 0) {
+                ascending &= timestamp >= timestamps[size - 1];
+                descending &= timestamp <= timestamps[size - 1];
+            }
+            timestamps[size] = timestamp;
+            for (int line = 0; line < lines.length; line++) {
+                lines[line][size] = point[line];
+            }
+            size++;
+        }
+
+        long[] timestamps() {
+            order();
+            return Arrays.copyOf(timestamps, size);
+        }
+
+        double[][] lines() {
+            order();
+            double[][] result = new double[lines.length][];
+            for (int line = 0; line < lines.length; line++) {
+                result[line] = Arrays.copyOf(lines[line], size);
+            }
+            return result;
+        }
+
+        private void order() {
+            if (ascending) {
+                return;
+            }
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = descending ? size - 1 - i : i;
+            }
+            if (!descending) {
+                long[] ts = timestamps;
+                Arrays.sort(order, (a, b) -> Long.compare(ts[a], ts[b]));
+            }
+            long[] sortedTimestamps = new long[timestamps.length];
+            for (int i = 0; i < size; i++) {
+                sortedTimestamps[i] = timestamps[order[i]];
+            }
+            timestamps = sortedTimestamps;
+            for (int line = 0; line < lines.length; line++) {
+                double[] sorted = new double[lines[line].length];
+                for (int i = 0; i < size; i++) {
+                    sorted[i] = lines[line][order[i]];
+                }
+                lines[line] = sorted;
+            }
+            ascending = true;
+        }
+    }
+}
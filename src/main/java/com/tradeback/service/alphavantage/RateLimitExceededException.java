@@ -0,0 +1,13 @@
+package com.tradeback.service.alphavantage;
+
+/**
+ * Запрос к Alpha Vantage не получил разрешения до своего дедлайна или дневная квота исчерпана
+ */
+public class RateLimitExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RateLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,13 @@
+package com.tradeback.service.alphavantage;
+
+/**
+ * Класс приоритета запроса к Alpha Vantage: при нехватке лимита первыми обслуживаются интерактивные запросы
+ */
+public enum RequestPriority {
+    // Запрос пользователя, который ждет ответа
+    INTERACTIVE,
+    // Упреждающая загрузка данных, которые скоро понадобятся
+    PREFETCH,
+    // Фоновое заполнение истории и справочников
+    BACKFILL
+}
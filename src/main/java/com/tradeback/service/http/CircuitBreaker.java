@@ -0,0 +1,197 @@
+package com.tradeback.service.http;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Автомат отключения внешнего API. По последним windowSize вызовам считается доля сбоев; когда она
+ * достигает порога (при не менее чем minimumCalls вызовах), цепь размыкается и вызовы сразу
+ * отклоняются openDuration. Затем пропускается halfOpenCalls пробных вызовов: все успешны - цепь
+ * замыкается, любой сбой - снова размыкается. Сбой - отсутствие ответа (таймаут, ошибка соединения)
+ * или HTTP 5xx; ответы 4xx и ошибки разбора говорят о запросе, а не о состоянии API
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final long openDurationMillis;
+    private final int halfOpenCalls;
+
+    // Кольцо исходов последних вызовов: true - сбой
+    private final boolean[] outcomes;
+    private int position;
+    private int recorded;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    private final AtomicLong rejectedCalls = new AtomicLong();
+    private final AtomicLong openings = new AtomicLong();
+
+    public CircuitBreaker(String name, double failureRateThreshold, int minimumCalls, int windowSize,
+                          Duration openDuration, int halfOpenCalls) {
+        this.name = name;
+        this.failureRateThreshold = failureRateThreshold;
+        this.outcomes = new boolean[Math.max(1, windowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, outcomes.length));
+        this.openDurationMillis = openDuration.toMillis();
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+    }
+
+    /**
+     * Можно ли начать вызов. Каждый разрешенный вызов должен завершиться onSuccess или onFailure
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openDurationMillis) {
+                rejectedCalls.incrementAndGet();
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesStarted = 0;
+            probesSucceeded = 0;
+            log.info("Circuit for {} is half-open, probing with {} calls", name, halfOpenCalls);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesStarted >= halfOpenCalls) {
+                rejectedCalls.incrementAndGet();
+                return false;
+            }
+            probesStarted++;
+        }
+        return true;
+    }
+
+    /**
+     * Без побочных эффектов: пропустил бы автомат вызов сейчас
+     */
+    public synchronized boolean isCallPermitted() {
+        if (state == State.OPEN) {
+            return System.currentTimeMillis() - openedAt >= openDurationMillis;
+        }
+        return state == State.CLOSED || probesStarted < halfOpenCalls;
+    }
+
+    /**
+     * Вызов отклонен без tryAcquire по результату isCallPermitted - для статистики
+     */
+    void recordRejection() {
+        rejectedCalls.incrementAndGet();
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.OPEN) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (++probesSucceeded >= halfOpenCalls) {
+                reset();
+                log.info("Circuit for {} closed after successful probes", name);
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+        record(true);
+        if (recorded >= minimumCalls && failures >= failureRateThreshold * recorded) {
+            open();
+        }
+    }
+
+    /**
+     * Разрешенный вызов отменен до ответа: исход не учитывается, пробный вызов возвращается
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && probesStarted > 0) {
+            probesStarted--;
+        }
+    }
+
+    /**
+     * Считается ли исключение сбоем API
+     */
+    public static boolean isFailure(Throwable error) {
+        if (error instanceof UpstreamException) {
+            int status = ((UpstreamException) error).getStatusCode();
+            return status == 0 || status >= 500;
+        }
+        return true;
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDurationMillis) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized double getFailureRate() {
+        return recorded == 0 ? 0.0 : (double) failures / recorded;
+    }
+
+    public long getRejectedCalls() {
+        return rejectedCalls.get();
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("state", getState());
+        snapshot.put("failureRate", getFailureRate());
+        snapshot.put("bufferedCalls", recorded);
+        snapshot.put("rejectedCalls", rejectedCalls.get());
+        snapshot.put("openings", openings.get());
+        return snapshot;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == outcomes.length) {
+            if (outcomes[position]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[position] = failure;
+        if (failure) {
+            failures++;
+        }
+        position = (position + 1) % outcomes.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        openings.incrementAndGet();
+        log.warn("Circuit for {} opened (failure rate {}%), rejecting calls for {} ms",
+                name, Math.round(getFailureRate() * 100), openDurationMillis);
+    }
+
+    private void reset() {
+        state = State.CLOSED;
+        position = 0;
+        recorded = 0;
+        failures = 0;
+    }
+}
@@ -0,0 +1,391 @@
+package com.tradeback.service.http;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Дисковый кеш тел ответов: записи (ключ, срок годности, тело в Deflate) дописываются в конец
+ * memory-mapped сегментов фиксированного размера. Индекс ключей держится в памяти и при старте
+ * восстанавливается чтением сегментов, поэтому после перезапуска ответы отдаются с диска.
+ * Повторная запись ключа просто добавляет новую запись; место освобождается удалением самого
+ * старого сегмента, когда их больше max-segments. Запись публикуется маркером в заголовке,
+ * который пишется последним - оборванная запись при чтении сегмента отбрасывается
+ */
+@Slf4j
+public class DiskResponseCache implements Closeable {
+
+    private static final int SEGMENT_MAGIC = 0x54424331;
+    private static final int RECORD_MAGIC = 0x52454331;
+    private static final int SEGMENT_HEADER = 8;
+    // magic, длина записи, срок годности, длина ключа, длина тела, CRC ключа и сжатого тела
+    private static final int RECORD_HEADER = 4 + 4 + 8 + 4 + 4 + 4;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final boolean enabled;
+
+    private final ConcurrentMap<String, Entry> index = new ConcurrentHashMap<>();
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final Object writeLock = new Object();
+    private Segment active;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private DiskResponseCache(Path directory, int segmentSize, int maxSegments, boolean enabled) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = Math.max(2, maxSegments);
+        this.enabled = enabled;
+    }
+
+    /**
+     * Открывает кеш в каталоге и восстанавливает индекс из существующих сегментов
+     */
+    public static DiskResponseCache open(Path directory, int segmentSize, int maxSegments) throws IOException {
+        Files.createDirectories(directory);
+        DiskResponseCache cache = new DiskResponseCache(directory, segmentSize, maxSegments, true);
+        cache.load();
+        return cache;
+    }
+
+    /**
+     * Кеш-заглушка: ничего не хранит
+     */
+    public static DiskResponseCache disabled() {
+        return new DiskResponseCache(null, 0, 2, false);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Тело ответа или null, если записи нет или срок ее годности истек
+     */
+    public byte[] get(String key) {
+        Entry entry = enabled ? index.get(key) : null;
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            index.remove(key, entry);
+            misses.incrementAndGet();
+            return null;
+        }
+
+        byte[] compressed = new byte[entry.compressedLength];
+        entry.segment.buffer.get(entry.offset + RECORD_HEADER + entry.keyLength, compressed);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] body = new byte[entry.rawLength];
+            int read = 0;
+            while (read < body.length && !inflater.finished()) {
+                int n = inflater.inflate(body, read, body.length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != body.length) {
+                throw new DataFormatException("expected " + body.length + " bytes, inflated " + read);
+            }
+            hits.incrementAndGet();
+            return body;
+        } catch (DataFormatException e) {
+            log.warn("Dropping corrupt disk cache entry {}: {}", key, e.getMessage());
+            index.remove(key, entry);
+            misses.incrementAndGet();
+            return null;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Сохраняет тело до expiresAtMillis (epoch millis). Ошибки записи только логируются
+     */
+    public void put(String key, byte[] body, long expiresAtMillis) {
+        if (!enabled || expiresAtMillis <= System.currentTimeMillis()) {
+            return;
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = deflate(body);
+        int recordLength = RECORD_HEADER + keyBytes.length + compressed.length;
+        if (recordLength > segmentSize - SEGMENT_HEADER) {
+            log.debug("Response for {} is too large for the disk cache ({} bytes compressed)", key, compressed.length);
+            return;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(keyBytes);
+        crc.update(compressed);
+
+        synchronized (writeLock) {
+            try {
+                if (active == null || active.writePosition + recordLength > segmentSize) {
+                    rollSegment();
+                }
+                MappedByteBuffer buffer = active.buffer;
+                int offset = active.writePosition;
+                buffer.putInt(offset + 4, recordLength);
+                buffer.putLong(offset + 8, expiresAtMillis);
+                buffer.putInt(offset + 16, keyBytes.length);
+                buffer.putInt(offset + 20, body.length);
+                buffer.putInt(offset + 24, (int) crc.getValue());
+                buffer.put(offset + RECORD_HEADER, keyBytes);
+                buffer.put(offset + RECORD_HEADER + keyBytes.length, compressed);
+                buffer.putInt(offset, RECORD_MAGIC);
+                active.writePosition += recordLength;
+
+                index.put(key, new Entry(active, offset, keyBytes.length, compressed.length, body.length,
+                        expiresAtMillis));
+            } catch (IOException e) {
+                log.warn("Failed to write disk cache entry {}: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    public void remove(String key) {
+        index.remove(key);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public void close() {
+        synchronized (writeLock) {
+            for (Segment segment : segments) {
+                segment.buffer.force();
+                closeQuietly(segment);
+            }
+            segments.clear();
+            active = null;
+            index.clear();
+        }
+    }
+
+    private void load() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(directory)) {
+            listing.filter(path -> segmentId(path) >= 0).forEach(files::add);
+        }
+        files.sort((a, b) -> Long.compare(segmentId(a), segmentId(b)));
+
+        long now = System.currentTimeMillis();
+        int records = 0;
+        for (Path file : files) {
+            Segment segment;
+            try {
+                segment = Segment.open(file, segmentId(file), segmentSize);
+            } catch (IOException e) {
+                log.warn("Skipping unreadable disk cache segment {}: {}", file, e.getMessage());
+                continue;
+            }
+            if (segment.buffer.getInt(0) != SEGMENT_MAGIC) {
+                log.warn("Skipping disk cache segment {} with unknown format", file);
+                closeQuietly(segment);
+                continue;
+            }
+            records += scan(segment, now);
+            segments.addLast(segment);
+        }
+        active = segments.peekLast();
+        while (segments.size() > maxSegments) {
+            dropOldestSegment();
+        }
+        log.info("Disk response cache at {}: {} live entries from {} records in {} segments",
+                directory, index.size(), records, segments.size());
+    }
+
+    /**
+     * Читает записи сегмента до первой незавершенной или поврежденной
+     */
+    private int scan(Segment segment, long now) {
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = SEGMENT_HEADER;
+        int records = 0;
+        while (offset + RECORD_HEADER <= segment.size && buffer.getInt(offset) == RECORD_MAGIC) {
+            int recordLength = buffer.getInt(offset + 4);
+            int keyLength = buffer.getInt(offset + 16);
+            int rawLength = buffer.getInt(offset + 20);
+            int compressedLength = recordLength - RECORD_HEADER - keyLength;
+            if (recordLength < RECORD_HEADER || keyLength < 0 || compressedLength < 0 || rawLength < 0
+                    || offset + recordLength > segment.size) {
+                break;
+            }
+
+            byte[] keyBytes = new byte[keyLength];
+            byte[] compressed = new byte[compressedLength];
+            buffer.get(offset + RECORD_HEADER, keyBytes);
+            buffer.get(offset + RECORD_HEADER + keyLength, compressed);
+            CRC32 crc = new CRC32();
+            crc.update(keyBytes);
+            crc.update(compressed);
+            if ((int) crc.getValue() != buffer.getInt(offset + 24)) {
+                log.warn("Disk cache segment {} is corrupt at offset {}, ignoring the rest", segment.path, offset);
+                break;
+            }
+
+            long expiresAt = buffer.getLong(offset + 8);
+            String key = new String(keyBytes, StandardCharsets.UTF_8);
+            if (expiresAt > now) {
+                index.put(key, new Entry(segment, offset, keyLength, compressedLength, rawLength, expiresAt));
+            } else {
+                index.remove(key);
+            }
+            offset += recordLength;
+            records++;
+        }
+        segment.writePosition = offset;
+        return records;
+    }
+
+    private void rollSegment() throws IOException {
+        long id = active != null ? active.id + 1 : 1;
+        Path file = directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        Segment segment = Segment.open(file, id, segmentSize);
+        segment.buffer.putInt(0, SEGMENT_MAGIC);
+        segment.buffer.putInt(4, 1);
+        segment.writePosition = SEGMENT_HEADER;
+        segments.addLast(segment);
+        active = segment;
+        while (segments.size() > maxSegments) {
+            dropOldestSegment();
+        }
+    }
+
+    private void dropOldestSegment() {
+        Segment oldest = segments.pollFirst();
+        if (oldest == null) {
+            return;
+        }
+        index.values().removeIf(entry -> entry.segment == oldest);
+        closeQuietly(oldest);
+        try {
+            Files.deleteIfExists(oldest.path);
+        } catch (IOException e) {
+            log.warn("Failed to delete disk cache segment {}: {}", oldest.path, e.getMessage());
+        }
+    }
+
+    private static byte[] deflate(byte[] body) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(body);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static long segmentId(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void closeQuietly(Segment segment) {
+        try {
+            segment.channel.close();
+        } catch (IOException e) {
+            log.debug("Failed to close disk cache segment {}: {}", segment.path, e.getMessage());
+        }
+    }
+
+    private static class Segment {
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int size;
+        private int writePosition;
+
+        private Segment(long id, Path path, FileChannel channel, MappedByteBuffer buffer, int size) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.size = size;
+        }
+
+        static Segment open(Path path, long id, int size) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            try {
+                // Сегмент любого прежнего размера отображается целиком, новый - размером segmentSize
+                int mapped = (int) Math.max(size, Math.min(channel.size(), Integer.MAX_VALUE));
+                return new Segment(id, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, mapped), mapped);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+    }
+
+    private static class Entry {
+        private final Segment segment;
+        private final int offset;
+        private final int keyLength;
+        private final int compressedLength;
+        private final int rawLength;
+        private final long expiresAt;
+
+        Entry(Segment segment, int offset, int keyLength, int compressedLength, int rawLength, long expiresAt) {
+            this.segment = segment;
+            this.offset = offset;
+            this.keyLength = keyLength;
+            this.compressedLength = compressedLength;
+            this.rawLength = rawLength;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
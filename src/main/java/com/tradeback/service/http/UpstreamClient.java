@@ -0,0 +1,446 @@
+package com.tradeback.service.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Неблокирующий клиент одного внешнего API поверх общего JDK HttpClient (HTTP/2, переиспользование соединений).
+ * У каждого API свой таймаут запроса и лимит одновременных запросов (bulkhead): запросы сверх лимита ждут
+ * в очереди без занятого потока и стартуют по мере завершения предыдущих, при полной очереди - сразу
+ * отклоняются. CircuitBreaker отключает API после серии сбоев, чтобы вызывающие не ждали таймаутов.
+ * Для идемпотентных GET можно включить hedging: если ответа нет дольше p95 задержки, отправляется
+ * второй такой же запрос и берется первый успешный ответ, а проигравший отменяется. Для API с лимитом
+ * частоты копия отправляется, только если hedgePermit выдал на нее отдельное разрешение.
+ * Отказы по очереди и цепи - UpstreamException 503
+ */
+@Slf4j
+public class UpstreamClient {
+
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    private final String name;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final Duration requestTimeout;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final CircuitBreaker circuitBreaker;
+    private final boolean hedging;
+    private final long minHedgeDelayMillis;
+    private final BooleanSupplier hedgePermit;
+
+    private final Semaphore permits;
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final LatencyWindow latencies = new LatencyWindow(128);
+
+    private final AtomicLong bulkheadRejections = new AtomicLong();
+    private final AtomicLong hedgedCalls = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong hedgesDenied = new AtomicLong();
+
+    public UpstreamClient(String name, HttpClient httpClient, ObjectMapper objectMapper,
+                          Duration requestTimeout, int maxConcurrent) {
+        this(name, httpClient, objectMapper, requestTimeout, maxConcurrent, Integer.MAX_VALUE, null, false, 0, null);
+    }
+
+    /**
+     * circuitBreaker == null - без автомата отключения; hedging - только для GET. hedgePermit - неблокирующая
+     * попытка получить разрешение лимитера на копию запроса (null - API без лимита частоты)
+     */
+    public UpstreamClient(String name, HttpClient httpClient, ObjectMapper objectMapper,
+                          Duration requestTimeout, int maxConcurrent, int maxQueued,
+                          CircuitBreaker circuitBreaker, boolean hedging, long minHedgeDelayMillis,
+                          BooleanSupplier hedgePermit) {
+        this.name = name;
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.requestTimeout = requestTimeout;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.circuitBreaker = circuitBreaker;
+        this.hedging = hedging;
+        this.minHedgeDelayMillis = Math.max(0, minHedgeDelayMillis);
+        this.hedgePermit = hedgePermit;
+        this.permits = new Semaphore(this.maxConcurrent);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * GET с разбором ответа: String.class - тело как есть, иначе JSON в указанный тип
+     */
+    public <T> CompletableFuture<T> get(String url, Class<T> responseType) {
+        return getBytes(url).thenApply(body -> decode(body, responseType));
+    }
+
+    /**
+     * GET с собственным разбором тела: reader получает байты ответа как есть, без промежуточной строки
+     */
+    public <T> CompletableFuture<T> get(String url, BodyReader<T> reader) {
+        return getBytes(url).thenApply(body -> {
+            try {
+                return reader.read(body);
+            } catch (IOException e) {
+                throw new UpstreamException(name + " returned unparseable response: " + e.getMessage(), 200, e);
+            }
+        });
+    }
+
+    /**
+     * GET без разбора: тело ответа как есть
+     */
+    public CompletableFuture<byte[]> getBytes(String url) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(requestTimeout)
+                .GET()
+                .build();
+        return hedging ? hedged(request) : send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    /**
+     * Разбор тела в тип ответа так же, как в get(url, responseType): String.class - текст UTF-8, иначе JSON
+     */
+    public <T> T decode(byte[] body, Class<T> responseType) {
+        if (responseType == String.class) {
+            return responseType.cast(new String(body, StandardCharsets.UTF_8));
+        }
+        try {
+            return objectMapper.readValue(body, responseType);
+        } catch (Exception e) {
+            throw new UpstreamException(name + " returned unparseable response: " + e.getMessage(), 200, e);
+        }
+    }
+
+    /**
+     * GET с разбором тела по мере поступления: подписчик получает куски ответа, целиком тело не собирается.
+     * Для ответов с ошибочным HTTP статусом подписчик не создается
+     */
+    public <T> CompletableFuture<T> stream(String url, Supplier<HttpResponse.BodySubscriber<T>> subscriber) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(requestTimeout)
+                .GET()
+                .build();
+        return send(request, info -> info.statusCode() / 100 == 2
+                ? subscriber.get()
+                : HttpResponse.BodySubscribers.replacing(null));
+    }
+
+    /**
+     * POST с JSON телом и разбором JSON ответа
+     */
+    public <T> CompletableFuture<T> postJson(String url, Map<String, String> headers, Object body,
+                                             Class<T> responseType) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json");
+        headers.forEach(builder::header);
+        try {
+            builder.POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(new UpstreamException(
+                    name + " request body is not serializable: " + e.getMessage(), 0, e));
+        }
+        return send(builder.build(), HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> parse(response, responseType));
+    }
+
+    public int getActiveRequests() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public int getQueuedRequests() {
+        return pending.size();
+    }
+
+    /**
+     * Принимает ли API вызовы сейчас: false, пока цепь разомкнута
+     */
+    public boolean isAvailable() {
+        return circuitBreaker == null || circuitBreaker.isCallPermitted();
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Состояние для actuator
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("activeRequests", getActiveRequests());
+        snapshot.put("queuedRequests", getQueuedRequests());
+        snapshot.put("maxConcurrent", maxConcurrent);
+        snapshot.put("maxQueued", maxQueued);
+        snapshot.put("bulkheadRejections", bulkheadRejections.get());
+        snapshot.put("p95LatencyMs", latencies.percentile(0.95));
+        snapshot.put("hedging", hedging);
+        snapshot.put("hedgedCalls", hedgedCalls.get());
+        snapshot.put("hedgeWins", hedgeWins.get());
+        snapshot.put("hedgesDenied", hedgesDenied.get());
+        if (circuitBreaker != null) {
+            snapshot.put("circuit", circuitBreaker.snapshot());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Основной запрос и, если он не ответил за задержку hedging-а, второй такой же; побеждает первый
+     * успешный, проигравший отменяется и освобождает место в bulkhead
+     */
+    private CompletableFuture<byte[]> hedged(HttpRequest request) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+
+        CompletableFuture<byte[]> primary = send(request, HttpResponse.BodyHandlers.ofByteArray());
+        primary.whenComplete((body, error) -> {
+            if (error == null) {
+                result.complete(body);
+            } else if (outstanding.decrementAndGet() == 0) {
+                result.completeExceptionally(error);
+            }
+        });
+
+        CompletableFuture.delayedExecutor(hedgeDelayMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+            if (result.isDone() || !isAvailable()) {
+                return;
+            }
+            if (hedgePermit != null && !hedgePermit.getAsBoolean()) {
+                // Копия расходовала бы квоту, которую лимитер не выдавал
+                hedgesDenied.incrementAndGet();
+                return;
+            }
+            outstanding.incrementAndGet();
+            hedgedCalls.incrementAndGet();
+            log.debug("{} request to {} is slow, sending a hedged copy", name, request.uri().getPath());
+            CompletableFuture<byte[]> hedge = send(request, HttpResponse.BodyHandlers.ofByteArray());
+            hedge.whenComplete((body, error) -> {
+                if (error == null) {
+                    if (result.complete(body)) {
+                        hedgeWins.incrementAndGet();
+                        primary.cancel(true);
+                    }
+                } else if (outstanding.decrementAndGet() == 0) {
+                    result.completeExceptionally(error);
+                }
+            });
+            result.whenComplete((body, error) -> hedge.cancel(true));
+        });
+        return result;
+    }
+
+    /**
+     * p95 задержки последних ответов, но не меньше минимальной; пока замеров мало - половина таймаута
+     */
+    private long hedgeDelayMillis() {
+        long p95 = latencies.percentile(0.95);
+        long delay = p95 > 0 ? p95 : requestTimeout.toMillis() / 2;
+        return Math.max(minHedgeDelayMillis, delay);
+    }
+
+    private UpstreamException circuitOpen() {
+        return new UpstreamException(name + " circuit is open, failing fast", SERVICE_UNAVAILABLE, null);
+    }
+
+    private <B> CompletableFuture<B> send(HttpRequest request, HttpResponse.BodyHandler<B> bodyHandler) {
+        if (!isAvailable()) {
+            circuitBreaker.recordRejection();
+            return CompletableFuture.failedFuture(circuitOpen());
+        }
+        return limited(() -> {
+            // Разрешение цепи берется при старте вызова: ожидание в очереди не занимает пробные вызовы
+            if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+                throw circuitOpen();
+            }
+            long started = System.nanoTime();
+            CompletableFuture<HttpResponse<B>> exchange = httpClient.sendAsync(request, bodyHandler);
+            CompletableFuture<B> call = exchange
+                .handle((response, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        if (cause instanceof CancellationException) {
+                            throw (CancellationException) cause;
+                        }
+                        if (cause instanceof UpstreamException) {
+                            // Ошибка разбора тела подписчиком - уже в нужном виде
+                            throw (UpstreamException) cause;
+                        }
+                        String reason = cause instanceof HttpTimeoutException
+                                ? "timed out after " + requestTimeout.toMillis() + " ms"
+                                : cause.getMessage();
+                        throw new UpstreamException(name + " request failed: " + reason, 0, cause);
+                    }
+                    if (response.statusCode() / 100 != 2) {
+                        throw new UpstreamException(name + " responded with HTTP " + response.statusCode(),
+                                response.statusCode(), null);
+                    }
+                    return response.body();
+                })
+                .whenComplete((body, error) -> recordOutcome(started, error));
+            // Отмена вызова (проигравшая копия hedged-запроса) прерывает сам HTTP обмен
+            call.whenComplete((body, error) -> {
+                if (call.isCancelled()) {
+                    exchange.cancel(true);
+                }
+            });
+            return call;
+        });
+    }
+
+    private void recordOutcome(long startedNanos, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof CancellationException) {
+            // Отмененный вызов ничего не говорит о состоянии API
+            if (circuitBreaker != null) {
+                circuitBreaker.onIgnored();
+            }
+            return;
+        }
+        if (cause == null) {
+            latencies.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos));
+        }
+        if (circuitBreaker != null) {
+            if (cause != null && CircuitBreaker.isFailure(cause)) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+        }
+    }
+
+    /**
+     * Запускает вызов, если есть свободное место, иначе ставит его в очередь
+     */
+    private <T> CompletableFuture<T> limited(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            if (result.isDone()) {
+                // Вызов отменен, пока ждал в очереди
+                permits.release();
+                drain();
+                return;
+            }
+            CompletableFuture<T> future;
+            try {
+                future = call.get();
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            CompletableFuture<T> started = future;
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) {
+                    started.cancel(true);
+                }
+            });
+            future.whenComplete((value, error) -> {
+                permits.release();
+                drain();
+                if (error != null) {
+                    result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        };
+
+        if (permits.tryAcquire()) {
+            start.run();
+        } else if (pending.size() >= maxQueued) {
+            bulkheadRejections.incrementAndGet();
+            log.warn("{} bulkhead is full ({} active, {} queued), rejecting request", name, maxConcurrent,
+                    pending.size());
+            result.completeExceptionally(new UpstreamException(name + " is overloaded, request rejected",
+                    SERVICE_UNAVAILABLE, null));
+        } else {
+            pending.add(start);
+            log.debug("{} concurrency limit of {} reached, {} requests queued", name, maxConcurrent, pending.size());
+            drain();
+        }
+        return result;
+    }
+
+    private void drain() {
+        while (!pending.isEmpty() && permits.tryAcquire()) {
+            Runnable next = pending.poll();
+            if (next == null) {
+                permits.release();
+                return;
+            }
+            next.run();
+        }
+    }
+
+    private <T> T parse(String body, Class<T> responseType) {
+        if (responseType == String.class) {
+            return responseType.cast(body);
+        }
+        try {
+            return objectMapper.readValue(body, responseType);
+        } catch (Exception e) {
+            throw new UpstreamException(name + " returned unparseable response: " + e.getMessage(), 200, e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface BodyReader<T> {
+        T read(byte[] body) throws IOException;
+    }
+
+    /**
+     * Задержки последних успешных ответов (мс) для оценки перцентилей
+     */
+    private static class LatencyWindow {
+        private final long[] samples;
+        private int position;
+        private int count;
+
+        LatencyWindow(int size) {
+            this.samples = new long[size];
+        }
+
+        synchronized void record(long millis) {
+            samples[position] = millis;
+            position = (position + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        /**
+         * Перцентиль или 0, пока замеров меньше 20
+         */
+        synchronized long percentile(double quantile) {
+            if (count < 20) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.min(count - 1, Math.ceil(quantile * count) - 1)];
+        }
+    }
+}
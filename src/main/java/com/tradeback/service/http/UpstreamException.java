@@ -0,0 +1,27 @@
+package com.tradeback.service.http;
+
+/**
+ * Ошибка обращения к внешнему API: неуспешный HTTP статус, таймаут или неразбираемый ответ
+ */
+public class UpstreamException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public UpstreamException(String message) {
+        this(message, 0, null);
+    }
+
+    public UpstreamException(String message, int statusCode, Throwable cause) {
+        super(message, cause);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * HTTP статус ответа (0 - ответа не было)
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,682 @@
+package com.tradeback.service.indicator;
+
+import com.tradeback.model.BarSeries;
+import com.tradeback.model.Indicator.IndicatorType;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Распознавание свечных паттернов (CDL*) за один проход по ряду баров.
+ * Геометрия свечей (тело, тени, цвет) и средние размеры для порогов считаются один раз
+ * и используются всеми паттернами. Пороги и определения паттернов совпадают с TA-Lib,
+ * на котором построены CDL-функции Alpha Vantage.
+ */
+public final class CandlestickPatterns {
+
+    // Период средних для порогов "длинное/короткое тело", "очень короткая тень" и т.п.
+    public static final int AVERAGE_PERIOD = 10;
+    public static final int TREND_PERIOD = 10;
+
+    private static final double PENETRATION_STAR = 0.3;
+    private static final double PENETRATION_HALF = 0.5;
+
+    private static final Set<IndicatorType> PATTERNS = EnumSet.noneOf(IndicatorType.class);
+
+    static {
+        for (IndicatorType type : IndicatorType.values()) {
+            if (type.name().startsWith("CDL")) {
+                PATTERNS.add(type);
+            }
+        }
+    }
+
+    private CandlestickPatterns() {
+        // Utility class - prevent instantiation
+    }
+
+    public static boolean isPattern(IndicatorType type) {
+        return type != null && PATTERNS.contains(type);
+    }
+
+    public static Set<IndicatorType> all() {
+        return EnumSet.copyOf(PATTERNS);
+    }
+
+    /**
+     * Количество свечей в паттерне
+     */
+    public static int candles(IndicatorType type) {
+        switch (type) {
+            case CDLBELTHOLD:
+            case CDLCLOSINGMARUBOZU:
+            case CDLDOJI:
+            case CDLDRAGONFLYDOJI:
+            case CDLGRAVESTONEDOJI:
+            case CDLHIGHWAVE:
+            case CDLLONGLEGGEDDOJI:
+            case CDLLONGLINE:
+            case CDLMARUBOZU:
+            case CDLRICKSHAWMAN:
+            case CDLSHORTLINE:
+            case CDLSPINNINGTOP:
+            case CDLTAKURI:
+                return 1;
+            case CDLCOUNTERATTACK:
+            case CDLDARKCLOUDCOVER:
+            case CDLDOJISTAR:
+            case CDLENGULFING:
+            case CDLHAMMER:
+            case CDLHANGINGMAN:
+            case CDLHARAMI:
+            case CDLHARAMICROSS:
+            case CDLHOMINGPIGEON:
+            case CDLINNECK:
+            case CDLINVERTEDHAMMER:
+            case CDLKICKING:
+            case CDLKICKINGBYLENGTH:
+            case CDLMATCHINGLOW:
+            case CDLONNECK:
+            case CDLPIERCING:
+            case CDLSEPARATINGLINES:
+            case CDLSHOOTINGSTAR:
+            case CDLTHRUSTING:
+                return 2;
+            case CDL3BLACKCROWS:
+            case CDL3LINESTRIKE:
+            case CDLCONCEALBABYSWALL:
+            case CDLHIKKAKEMOD:
+                return 4;
+            case CDLBREAKAWAY:
+            case CDLLADDERBOTTOM:
+            case CDLMATHOLD:
+            case CDLRISEFALL3METHODS:
+                return 5;
+            default:
+                return 3;
+        }
+    }
+
+    /**
+     * Минимальное количество баров, после которого паттерн может быть распознан
+     */
+    public static int requiredBars(IndicatorType type) {
+        return AVERAGE_PERIOD + candles(type);
+    }
+
+    public static CandlestickScan scan(BarSeries series) {
+        return scan(series, PATTERNS);
+    }
+
+    /**
+     * Один проход по барам: на каждом баре проверяются все запрошенные паттерны
+     */
+    public static CandlestickScan scan(BarSeries series, Set<IndicatorType> patterns) {
+        Scanner scanner = new Scanner(series);
+        Map<IndicatorType, int[]> signals = new EnumMap<>(IndicatorType.class);
+        for (IndicatorType type : patterns) {
+            if (!isPattern(type)) {
+                throw new IllegalArgumentException("Indicator " + type + " is not a candlestick pattern");
+            }
+            signals.put(type, new int[series.size()]);
+        }
+
+        IndicatorType[] types = signals.keySet().toArray(new IndicatorType[0]);
+        int[][] outputs = new int[types.length][];
+        int[] lookbacks = new int[types.length];
+        for (int k = 0; k < types.length; k++) {
+            outputs[k] = signals.get(types[k]);
+            lookbacks[k] = requiredBars(types[k]) - 1;
+        }
+
+        for (int i = 0; i < series.size(); i++) {
+            for (int k = 0; k < types.length; k++) {
+                if (i >= lookbacks[k]) {
+                    outputs[k][i] = scanner.detect(types[k], i);
+                }
+            }
+        }
+        return new CandlestickScan(series, signals, scanner.trend);
+    }
+
+    /**
+     * Пороговые настройки свечей (значения по умолчанию TA-Lib)
+     */
+    private enum Setting {
+        BODY_LONG(Range.REAL_BODY, AVERAGE_PERIOD, 1.0),
+        BODY_VERY_LONG(Range.REAL_BODY, AVERAGE_PERIOD, 3.0),
+        BODY_SHORT(Range.REAL_BODY, AVERAGE_PERIOD, 1.0),
+        BODY_DOJI(Range.HIGH_LOW, AVERAGE_PERIOD, 0.1),
+        SHADOW_LONG(Range.REAL_BODY, 0, 1.0),
+        SHADOW_VERY_LONG(Range.REAL_BODY, 0, 2.0),
+        SHADOW_SHORT(Range.SHADOWS, AVERAGE_PERIOD, 1.0),
+        SHADOW_VERY_SHORT(Range.HIGH_LOW, AVERAGE_PERIOD, 0.1),
+        NEAR(Range.HIGH_LOW, 5, 0.2),
+        FAR(Range.HIGH_LOW, 5, 0.6),
+        EQUAL(Range.HIGH_LOW, 5, 0.05);
+
+        private final Range range;
+        private final int period;
+        private final double factor;
+
+        Setting(Range range, int period, double factor) {
+            this.range = range;
+            this.period = period;
+            this.factor = factor;
+        }
+    }
+
+    private enum Range {
+        REAL_BODY, HIGH_LOW, SHADOWS
+    }
+
+    /**
+     * Предрасчитанная геометрия свечей и проверки паттернов над ней
+     */
+    private static final class Scanner {
+        private final double[] open;
+        private final double[] high;
+        private final double[] low;
+        private final double[] close;
+        private final double[] body;
+        private final double[] top;
+        private final double[] bottom;
+        private final double[] upper;
+        private final double[] lower;
+        private final int[] color;
+        private final int[] trend;
+        private final double[][] averages = new double[Setting.values().length][];
+
+        // Состояние Hikkake: бар паттерна и его сигнал, ждущие подтверждения
+        private int hikkakeBar = -1;
+        private int hikkakeSignal;
+        private int hikkakeModBar = -1;
+        private int hikkakeModSignal;
+
+        private Scanner(BarSeries series) {
+            int n = series.size();
+            open = series.getOpen();
+            high = series.getHigh();
+            low = series.getLow();
+            close = series.getClose();
+            body = new double[n];
+            top = new double[n];
+            bottom = new double[n];
+            upper = new double[n];
+            lower = new double[n];
+            color = new int[n];
+            double[] range = new double[n];
+            double[] shadows = new double[n];
+            for (int i = 0; i < n; i++) {
+                top[i] = Math.max(open[i], close[i]);
+                bottom[i] = Math.min(open[i], close[i]);
+                body[i] = top[i] - bottom[i];
+                upper[i] = high[i] - top[i];
+                lower[i] = bottom[i] - low[i];
+                range[i] = high[i] - low[i];
+                shadows[i] = upper[i] + lower[i];
+                color[i] = close[i] >= open[i] ? 1 : -1;
+            }
+
+            Map<String, double[]> trailing = new HashMap<>();
+            for (Setting setting : Setting.values()) {
+                double[] source = setting.range == Range.REAL_BODY ? body
+                        : setting.range == Range.HIGH_LOW ? range : shadows;
+                double divisor = setting.range == Range.SHADOWS ? 2.0 : 1.0;
+                double[] out = new double[n];
+                if (setting.period == 0) {
+                    for (int i = 0; i < n; i++) {
+                        out[i] = setting.factor * source[i] / divisor;
+                    }
+                } else {
+                    double[] mean = trailing.computeIfAbsent(setting.range + ":" + setting.period,
+                            key -> trailingMean(source, setting.period));
+                    for (int i = 0; i < n; i++) {
+                        out[i] = setting.factor * mean[i] / divisor;
+                    }
+                }
+                averages[setting.ordinal()] = out;
+            }
+
+            trend = new int[n];
+            double[] sma = IndicatorMath.sma(close, TREND_PERIOD);
+            for (int i = 1; i < n; i++) {
+                if (!Double.isNaN(sma[i - 1])) {
+                    trend[i] = (int) Math.signum(close[i - 1] - sma[i - 1]);
+                }
+            }
+        }
+
+        /**
+         * Среднее по period барам перед текущим (сам бар не входит), как в TA-Lib
+         */
+        private static double[] trailingMean(double[] source, int period) {
+            double[] sums = IndicatorMath.nanArray(source.length);
+            IndicatorKernelSelector.get().rollingSum(source, 0, period, sums);
+            double[] mean = IndicatorMath.nanArray(source.length);
+            for (int i = period; i < source.length; i++) {
+                mean[i] = sums[i - 1] / period;
+            }
+            return mean;
+        }
+
+        private double avg(Setting setting, int bar) {
+            return averages[setting.ordinal()][bar];
+        }
+
+        private boolean longBody(int bar) {
+            return body[bar] > avg(Setting.BODY_LONG, bar);
+        }
+
+        private boolean shortBody(int bar) {
+            return body[bar] < avg(Setting.BODY_SHORT, bar);
+        }
+
+        private boolean doji(int bar) {
+            return body[bar] <= avg(Setting.BODY_DOJI, bar);
+        }
+
+        private boolean veryShortUpper(int bar) {
+            return upper[bar] < avg(Setting.SHADOW_VERY_SHORT, bar);
+        }
+
+        private boolean veryShortLower(int bar) {
+            return lower[bar] < avg(Setting.SHADOW_VERY_SHORT, bar);
+        }
+
+        private boolean marubozu(int bar) {
+            return longBody(bar) && veryShortUpper(bar) && veryShortLower(bar);
+        }
+
+        private boolean near(double value, double reference, int bar) {
+            double tolerance = avg(Setting.NEAR, bar);
+            return value >= reference - tolerance && value <= reference + tolerance;
+        }
+
+        private boolean equal(double value, double reference, int bar) {
+            double tolerance = avg(Setting.EQUAL, bar);
+            return value >= reference - tolerance && value <= reference + tolerance;
+        }
+
+        // Тело бара a целиком выше/ниже тела бара b
+        private boolean bodyGapUp(int a, int b) {
+            return bottom[a] > top[b];
+        }
+
+        private boolean bodyGapDown(int a, int b) {
+            return top[a] < bottom[b];
+        }
+
+        // Весь диапазон бара a выше/ниже диапазона бара b
+        private boolean gapUp(int a, int b) {
+            return low[a] > high[b];
+        }
+
+        private boolean gapDown(int a, int b) {
+            return high[a] < low[b];
+        }
+
+        private int detect(IndicatorType type, int i) {
+            switch (type) {
+                // ===== Одна свеча =====
+                case CDLBELTHOLD:
+                    return longBody(i) && (color[i] == 1 ? veryShortLower(i) : veryShortUpper(i)) ? color[i] * 100 : 0;
+                case CDLCLOSINGMARUBOZU:
+                    return longBody(i) && (color[i] == 1 ? veryShortUpper(i) : veryShortLower(i)) ? color[i] * 100 : 0;
+                case CDLDOJI:
+                    return doji(i) ? 100 : 0;
+                case CDLDRAGONFLYDOJI:
+                    return doji(i) && veryShortUpper(i) && lower[i] > avg(Setting.SHADOW_VERY_SHORT, i) ? 100 : 0;
+                case CDLGRAVESTONEDOJI:
+                    return doji(i) && veryShortLower(i) && upper[i] > avg(Setting.SHADOW_VERY_SHORT, i) ? 100 : 0;
+                case CDLHIGHWAVE:
+                    return shortBody(i) && upper[i] > avg(Setting.SHADOW_VERY_LONG, i)
+                            && lower[i] > avg(Setting.SHADOW_VERY_LONG, i) ? color[i] * 100 : 0;
+                case CDLLONGLEGGEDDOJI:
+                    return doji(i) && (lower[i] > avg(Setting.SHADOW_LONG, i)
+                            || upper[i] > avg(Setting.SHADOW_LONG, i)) ? 100 : 0;
+                case CDLLONGLINE:
+                    return longBody(i) && upper[i] < avg(Setting.SHADOW_SHORT, i)
+                            && lower[i] < avg(Setting.SHADOW_SHORT, i) ? color[i] * 100 : 0;
+                case CDLMARUBOZU:
+                    return marubozu(i) ? color[i] * 100 : 0;
+                case CDLRICKSHAWMAN: {
+                    double middle = low[i] + (high[i] - low[i]) / 2;
+                    return doji(i) && lower[i] > avg(Setting.SHADOW_LONG, i) && upper[i] > avg(Setting.SHADOW_LONG, i)
+                            && bottom[i] <= middle + avg(Setting.NEAR, i)
+                            && top[i] >= middle - avg(Setting.NEAR, i) ? 100 : 0;
+                }
+                case CDLSHORTLINE:
+                    return shortBody(i) && upper[i] < avg(Setting.SHADOW_SHORT, i)
+                            && lower[i] < avg(Setting.SHADOW_SHORT, i) ? color[i] * 100 : 0;
+                case CDLSPINNINGTOP:
+                    return shortBody(i) && upper[i] > avg(Setting.SHADOW_LONG, i)
+                            && lower[i] > avg(Setting.SHADOW_LONG, i) ? color[i] * 100 : 0;
+                case CDLTAKURI:
+                    return doji(i) && veryShortUpper(i) && lower[i] > avg(Setting.SHADOW_VERY_LONG, i) ? 100 : 0;
+
+                // ===== Две свечи =====
+                case CDLCOUNTERATTACK:
+                    return color[i - 1] == -color[i] && longBody(i - 1) && longBody(i)
+                            && equal(close[i], close[i - 1], i - 1) ? color[i] * 100 : 0;
+                case CDLDARKCLOUDCOVER:
+                    return color[i - 1] == 1 && longBody(i - 1) && color[i] == -1 && open[i] > high[i - 1]
+                            && close[i] > open[i - 1]
+                            && close[i] < close[i - 1] - body[i - 1] * PENETRATION_HALF ? -100 : 0;
+                case CDLDOJISTAR:
+                    return longBody(i - 1) && doji(i)
+                            && (color[i - 1] == 1 ? bodyGapUp(i, i - 1) : bodyGapDown(i, i - 1))
+                            ? -color[i - 1] * 100 : 0;
+                case CDLENGULFING:
+                    return (color[i] == 1 && color[i - 1] == -1 && close[i] > open[i - 1] && open[i] < close[i - 1])
+                            || (color[i] == -1 && color[i - 1] == 1 && open[i] > close[i - 1] && close[i] < open[i - 1])
+                            ? color[i] * 100 : 0;
+                case CDLHAMMER:
+                    return shortBody(i) && lower[i] > avg(Setting.SHADOW_LONG, i) && veryShortUpper(i)
+                            && bottom[i] <= low[i - 1] + avg(Setting.NEAR, i - 1) ? 100 : 0;
+                case CDLHANGINGMAN:
+                    return shortBody(i) && lower[i] > avg(Setting.SHADOW_LONG, i) && veryShortUpper(i)
+                            && bottom[i] >= high[i - 1] - avg(Setting.NEAR, i - 1) ? -100 : 0;
+                case CDLHARAMI:
+                    return longBody(i - 1) && body[i] <= avg(Setting.BODY_SHORT, i)
+                            && top[i] < top[i - 1] && bottom[i] > bottom[i - 1] ? -color[i - 1] * 100 : 0;
+                case CDLHARAMICROSS:
+                    return longBody(i - 1) && doji(i)
+                            && top[i] < top[i - 1] && bottom[i] > bottom[i - 1] ? -color[i - 1] * 100 : 0;
+                case CDLHOMINGPIGEON:
+                    return color[i - 1] == -1 && color[i] == -1 && longBody(i - 1)
+                            && body[i] <= avg(Setting.BODY_SHORT, i)
+                            && open[i] < open[i - 1] && close[i] > close[i - 1] ? 100 : 0;
+                case CDLINNECK:
+                    return color[i - 1] == -1 && longBody(i - 1) && color[i] == 1 && open[i] < low[i - 1]
+                            && close[i] <= close[i - 1] + avg(Setting.EQUAL, i - 1) && close[i] >= close[i - 1] ? -100 : 0;
+                case CDLINVERTEDHAMMER:
+                    return shortBody(i) && upper[i] > avg(Setting.SHADOW_LONG, i) && veryShortLower(i)
+                            && bodyGapDown(i, i - 1) ? 100 : 0;
+                case CDLKICKING:
+                    return kicking(i) ? color[i] * 100 : 0;
+                case CDLKICKINGBYLENGTH:
+                    return kicking(i) ? (body[i] > body[i - 1] ? color[i] : color[i - 1]) * 100 : 0;
+                case CDLMATCHINGLOW:
+                    return color[i - 1] == -1 && color[i] == -1 && equal(close[i], close[i - 1], i - 1) ? 100 : 0;
+                case CDLONNECK:
+                    return color[i - 1] == -1 && longBody(i - 1) && color[i] == 1 && open[i] < low[i - 1]
+                            && equal(close[i], low[i - 1], i - 1) ? -100 : 0;
+                case CDLPIERCING:
+                    return color[i - 1] == -1 && longBody(i - 1) && color[i] == 1 && longBody(i)
+                            && open[i] < low[i - 1] && close[i] < open[i - 1]
+                            && close[i] > close[i - 1] + body[i - 1] * PENETRATION_HALF ? 100 : 0;
+                case CDLSEPARATINGLINES:
+                    return color[i - 1] == -color[i] && equal(open[i], open[i - 1], i - 1) && longBody(i)
+                            && (color[i] == 1 ? veryShortLower(i) : veryShortUpper(i)) ? color[i] * 100 : 0;
+                case CDLSHOOTINGSTAR:
+                    return shortBody(i) && upper[i] > avg(Setting.SHADOW_LONG, i) && veryShortLower(i)
+                            && bodyGapUp(i, i - 1) ? -100 : 0;
+                case CDLTHRUSTING:
+                    return color[i - 1] == -1 && longBody(i - 1) && color[i] == 1 && open[i] < low[i - 1]
+                            && close[i] > close[i - 1] + avg(Setting.EQUAL, i - 1)
+                            && close[i] <= close[i - 1] + body[i - 1] * PENETRATION_HALF ? -100 : 0;
+
+                // ===== Три свечи =====
+                case CDL2CROWS:
+                    return color[i - 2] == 1 && longBody(i - 2) && color[i - 1] == -1 && bodyGapUp(i - 1, i - 2)
+                            && color[i] == -1 && open[i] < open[i - 1] && open[i] > close[i - 1]
+                            && close[i] > open[i - 2] && close[i] < close[i - 2] ? -100 : 0;
+                case CDL3INSIDE:
+                    return longBody(i - 2) && body[i - 1] <= avg(Setting.BODY_SHORT, i - 1)
+                            && top[i - 1] < top[i - 2] && bottom[i - 1] > bottom[i - 2]
+                            && ((color[i - 2] == 1 && color[i] == -1 && close[i] < open[i - 2])
+                            || (color[i - 2] == -1 && color[i] == 1 && close[i] > open[i - 2]))
+                            ? -color[i - 2] * 100 : 0;
+                case CDL3OUTSIDE:
+                    if (color[i - 1] == 1 && color[i - 2] == -1 && close[i - 1] > open[i - 2]
+                            && open[i - 1] < close[i - 2] && close[i] > close[i - 1]) {
+                        return 100;
+                    }
+                    return color[i - 1] == -1 && color[i - 2] == 1 && open[i - 1] > close[i - 2]
+                            && close[i - 1] < open[i - 2] && close[i] < close[i - 1] ? -100 : 0;
+                case CDL3STARSINSOUTH:
+                    return color[i - 2] == -1 && color[i - 1] == -1 && color[i] == -1
+                            && longBody(i - 2) && lower[i - 2] > avg(Setting.SHADOW_LONG, i - 2)
+                            && body[i - 1] < body[i - 2] && open[i - 1] > close[i - 2] && open[i - 1] <= high[i - 2]
+                            && low[i - 1] < close[i - 2] && low[i - 1] >= low[i - 2]
+                            && lower[i - 1] > avg(Setting.SHADOW_VERY_SHORT, i - 1)
+                            && shortBody(i) && veryShortLower(i) && veryShortUpper(i)
+                            && low[i] > low[i - 1] && high[i] < high[i - 1] ? 100 : 0;
+                case CDL3WHITESOLDIERS:
+                    return color[i - 2] == 1 && veryShortUpper(i - 2)
+                            && color[i - 1] == 1 && veryShortUpper(i - 1)
+                            && color[i] == 1 && veryShortUpper(i)
+                            && close[i] > close[i - 1] && close[i - 1] > close[i - 2]
+                            && open[i - 1] > open[i - 2] && open[i - 1] <= close[i - 2] + avg(Setting.NEAR, i - 2)
+                            && open[i] > open[i - 1] && open[i] <= close[i - 1] + avg(Setting.NEAR, i - 1)
+                            && body[i - 1] > body[i - 2] - avg(Setting.FAR, i - 2)
+                            && body[i] > body[i - 1] - avg(Setting.FAR, i - 1)
+                            && body[i] > avg(Setting.BODY_SHORT, i) ? 100 : 0;
+                case CDLABANDONEDBABY:
+                    if (!longBody(i - 2) || !doji(i - 1) || body[i] <= avg(Setting.BODY_SHORT, i)) {
+                        return 0;
+                    }
+                    if (color[i - 2] == 1 && color[i] == -1
+                            && close[i] < close[i - 2] - body[i - 2] * PENETRATION_STAR
+                            && gapUp(i - 1, i - 2) && gapDown(i, i - 1)) {
+                        return -100;
+                    }
+                    return color[i - 2] == -1 && color[i] == 1
+                            && close[i] > close[i - 2] + body[i - 2] * PENETRATION_STAR
+                            && gapDown(i - 1, i - 2) && gapUp(i, i - 1) ? 100 : 0;
+                case CDLEVENINGDOJISTAR:
+                    return color[i - 2] == 1 && longBody(i - 2) && doji(i - 1) && bodyGapUp(i - 1, i - 2)
+                            && color[i] == -1 && body[i] > avg(Setting.BODY_SHORT, i)
+                            && close[i] < close[i - 2] - body[i - 2] * PENETRATION_STAR ? -100 : 0;
+                case CDLEVENINGSTAR:
+                    return color[i - 2] == 1 && longBody(i - 2)
+                            && body[i - 1] <= avg(Setting.BODY_SHORT, i - 1) && bodyGapUp(i - 1, i - 2)
+                            && color[i] == -1 && body[i] > avg(Setting.BODY_SHORT, i)
+                            && close[i] < close[i - 2] - body[i - 2] * PENETRATION_STAR ? -100 : 0;
+                case CDLMORNINGDOJISTAR:
+                    return color[i - 2] == -1 && longBody(i - 2) && doji(i - 1) && bodyGapDown(i - 1, i - 2)
+                            && color[i] == 1 && body[i] > avg(Setting.BODY_SHORT, i)
+                            && close[i] > close[i - 2] + body[i - 2] * PENETRATION_STAR ? 100 : 0;
+                case CDLMORNINGSTAR:
+                    return color[i - 2] == -1 && longBody(i - 2)
+                            && body[i - 1] <= avg(Setting.BODY_SHORT, i - 1) && bodyGapDown(i - 1, i - 2)
+                            && color[i] == 1 && body[i] > avg(Setting.BODY_SHORT, i)
+                            && close[i] > close[i - 2] + body[i - 2] * PENETRATION_STAR ? 100 : 0;
+                case CDLGAPSIDESIDEWHITE: {
+                    boolean up = bodyGapUp(i - 1, i - 2) && bodyGapUp(i, i - 2);
+                    boolean down = bodyGapDown(i - 1, i - 2) && bodyGapDown(i, i - 2);
+                    return (up || down) && color[i - 1] == 1 && color[i] == 1
+                            && near(body[i], body[i - 1], i - 1) && equal(open[i], open[i - 1], i - 1)
+                            ? (up ? 100 : -100) : 0;
+                }
+                case CDLHIKKAKE:
+                    return hikkake(i);
+                case CDLIDENTICAL3CROWS:
+                    return color[i - 2] == -1 && veryShortLower(i - 2)
+                            && color[i - 1] == -1 && veryShortLower(i - 1)
+                            && color[i] == -1 && veryShortLower(i)
+                            && close[i - 2] > close[i - 1] && close[i - 1] > close[i]
+                            && equal(open[i - 1], close[i - 2], i - 2)
+                            && equal(open[i], close[i - 1], i - 1) ? -100 : 0;
+                case CDLSTALLEDPATTERN:
+                    return color[i - 2] == 1 && color[i - 1] == 1 && color[i] == 1
+                            && close[i] > close[i - 1] && close[i - 1] > close[i - 2]
+                            && longBody(i - 2) && longBody(i - 1) && veryShortUpper(i - 1)
+                            && open[i - 1] > open[i - 2] && open[i - 1] <= close[i - 2] + avg(Setting.NEAR, i - 2)
+                            && shortBody(i)
+                            && open[i] >= close[i - 1] - body[i] - avg(Setting.NEAR, i - 1) ? -100 : 0;
+                case CDLSTICKSANDWICH:
+                    return color[i - 2] == -1 && color[i - 1] == 1 && color[i] == -1
+                            && low[i - 1] > close[i - 2] && equal(close[i], close[i - 2], i - 2) ? 100 : 0;
+                case CDLTASUKIGAP:
+                    if (bodyGapUp(i - 1, i - 2) && color[i - 1] == 1 && color[i] == -1
+                            && open[i] < close[i - 1] && open[i] > open[i - 1]
+                            && close[i] < open[i - 1] && close[i] > top[i - 2]
+                            && Math.abs(body[i - 1] - body[i]) < avg(Setting.NEAR, i - 1)) {
+                        return 100;
+                    }
+                    return bodyGapDown(i - 1, i - 2) && color[i - 1] == -1 && color[i] == 1
+                            && open[i] < open[i - 1] && open[i] > close[i - 1]
+                            && close[i] > open[i - 1] && close[i] < bottom[i - 2]
+                            && Math.abs(body[i - 1] - body[i]) < avg(Setting.NEAR, i - 1) ? -100 : 0;
+                case CDLTRISTAR: {
+                    // Все три доджи сравниваются со средним первого бара
+                    double dojiLimit = avg(Setting.BODY_DOJI, i - 2);
+                    if (body[i - 2] > dojiLimit || body[i - 1] > dojiLimit || body[i] > dojiLimit) {
+                        return 0;
+                    }
+                    if (bodyGapUp(i - 1, i - 2) && top[i] < top[i - 1]) {
+                        return -100;
+                    }
+                    return bodyGapDown(i - 1, i - 2) && bottom[i] > bottom[i - 1] ? 100 : 0;
+                }
+                case CDLUNIQUE3RIVER:
+                    return color[i - 2] == -1 && longBody(i - 2)
+                            && color[i - 1] == -1 && close[i - 1] > close[i - 2] && open[i - 1] <= open[i - 2]
+                            && low[i - 1] < low[i - 2]
+                            && color[i] == 1 && shortBody(i) && open[i] > low[i - 1] ? 100 : 0;
+                case CDLUPSIDEGAP2CROWS:
+                    return color[i - 2] == 1 && longBody(i - 2)
+                            && color[i - 1] == -1 && body[i - 1] <= avg(Setting.BODY_SHORT, i - 1)
+                            && bodyGapUp(i - 1, i - 2)
+                            && color[i] == -1 && open[i] > open[i - 1] && close[i] < close[i - 1]
+                            && close[i] > close[i - 2] ? -100 : 0;
+                case CDLXSIDEGAP3METHODS:
+                    return color[i - 2] == color[i - 1] && color[i - 1] == -color[i]
+                            && open[i] < top[i - 1] && open[i] > bottom[i - 1]
+                            && close[i] < top[i - 2] && close[i] > bottom[i - 2]
+                            && (color[i - 2] == 1 ? bodyGapUp(i - 1, i - 2) : bodyGapDown(i - 1, i - 2))
+                            ? color[i - 2] * 100 : 0;
+
+                // ===== Четыре свечи =====
+                case CDL3BLACKCROWS:
+                    return color[i - 3] == 1
+                            && color[i - 2] == -1 && veryShortLower(i - 2)
+                            && color[i - 1] == -1 && veryShortLower(i - 1)
+                            && color[i] == -1 && veryShortLower(i)
+                            && open[i - 1] < open[i - 2] && open[i - 1] > close[i - 2]
+                            && open[i] < open[i - 1] && open[i] > close[i - 1]
+                            && high[i - 3] > close[i - 2]
+                            && close[i - 2] > close[i - 1] && close[i - 1] > close[i] ? -100 : 0;
+                case CDL3LINESTRIKE:
+                    return color[i - 3] == color[i - 2] && color[i - 2] == color[i - 1] && color[i] == -color[i - 1]
+                            && open[i - 2] >= bottom[i - 3] - avg(Setting.NEAR, i - 3)
+                            && open[i - 2] <= top[i - 3] + avg(Setting.NEAR, i - 3)
+                            && open[i - 1] >= bottom[i - 2] - avg(Setting.NEAR, i - 2)
+                            && open[i - 1] <= top[i - 2] + avg(Setting.NEAR, i - 2)
+                            && ((color[i - 1] == 1 && close[i - 1] > close[i - 2] && close[i - 2] > close[i - 3]
+                            && open[i] > close[i - 1] && close[i] < open[i - 3])
+                            || (color[i - 1] == -1 && close[i - 1] < close[i - 2] && close[i - 2] < close[i - 3]
+                            && open[i] < close[i - 1] && close[i] > open[i - 3]))
+                            ? color[i - 1] * 100 : 0;
+                case CDLCONCEALBABYSWALL:
+                    return color[i - 3] == -1 && color[i - 2] == -1 && color[i - 1] == -1 && color[i] == -1
+                            && veryShortLower(i - 3) && veryShortUpper(i - 3)
+                            && veryShortLower(i - 2) && veryShortUpper(i - 2)
+                            && bodyGapDown(i - 1, i - 2) && upper[i - 1] > avg(Setting.SHADOW_VERY_SHORT, i - 1)
+                            && high[i - 1] > close[i - 2]
+                            && high[i] > high[i - 1] && low[i] < low[i - 1] ? 100 : 0;
+                case CDLHIKKAKEMOD:
+                    return hikkakeMod(i);
+
+                // ===== Пять свечей =====
+                case CDLBREAKAWAY:
+                    if (!longBody(i - 4) || color[i - 4] != color[i - 3] || color[i - 3] != color[i - 1]
+                            || color[i - 1] != -color[i]) {
+                        return 0;
+                    }
+                    if (color[i - 4] == -1 && bodyGapDown(i - 3, i - 4)
+                            && high[i - 2] < high[i - 3] && low[i - 2] < low[i - 3]
+                            && high[i - 1] < high[i - 2] && low[i - 1] < low[i - 2]
+                            && close[i] > open[i - 3] && close[i] < close[i - 4]) {
+                        return 100;
+                    }
+                    return color[i - 4] == 1 && bodyGapUp(i - 3, i - 4)
+                            && high[i - 2] > high[i - 3] && low[i - 2] > low[i - 3]
+                            && high[i - 1] > high[i - 2] && low[i - 1] > low[i - 2]
+                            && close[i] < open[i - 3] && close[i] > close[i - 4] ? -100 : 0;
+                case CDLLADDERBOTTOM:
+                    return color[i - 4] == -1 && color[i - 3] == -1 && color[i - 2] == -1
+                            && open[i - 4] > open[i - 3] && open[i - 3] > open[i - 2]
+                            && close[i - 4] > close[i - 3] && close[i - 3] > close[i - 2]
+                            && color[i - 1] == -1 && upper[i - 1] > avg(Setting.SHADOW_VERY_SHORT, i - 1)
+                            && color[i] == 1 && open[i] > open[i - 1] && close[i] > high[i - 1] ? 100 : 0;
+                case CDLMATHOLD:
+                    return longBody(i - 4) && shortBody(i - 3) && shortBody(i - 2) && shortBody(i - 1)
+                            && color[i - 4] == 1 && color[i - 3] == -1 && color[i] == 1
+                            && bodyGapUp(i - 3, i - 4)
+                            && bottom[i - 2] < close[i - 4] && bottom[i - 1] < close[i - 4]
+                            && bottom[i - 2] > close[i - 4] - body[i - 4] * PENETRATION_HALF
+                            && bottom[i - 1] > close[i - 4] - body[i - 4] * PENETRATION_HALF
+                            && top[i - 2] < open[i - 3] && top[i - 1] < top[i - 2]
+                            && open[i] > close[i - 1]
+                            && close[i] > Math.max(high[i - 3], Math.max(high[i - 2], high[i - 1])) ? 100 : 0;
+                case CDLRISEFALL3METHODS: {
+                    int direction = color[i - 4];
+                    return longBody(i - 4) && shortBody(i - 3) && shortBody(i - 2) && shortBody(i - 1) && longBody(i)
+                            && direction == -color[i - 3] && color[i - 3] == color[i - 2]
+                            && color[i - 2] == color[i - 1] && color[i - 1] == -color[i]
+                            && bottom[i - 3] < high[i - 4] && top[i - 3] > low[i - 4]
+                            && bottom[i - 2] < high[i - 4] && top[i - 2] > low[i - 4]
+                            && bottom[i - 1] < high[i - 4] && top[i - 1] > low[i - 4]
+                            && close[i - 2] * direction < close[i - 3] * direction
+                            && close[i - 1] * direction < close[i - 2] * direction
+                            && open[i] * direction > close[i - 1] * direction
+                            && close[i] * direction > close[i - 4] * direction ? direction * 100 : 0;
+                }
+
+                default:
+                    throw new IllegalArgumentException("Indicator " + type + " is not a candlestick pattern");
+            }
+        }
+
+        private boolean kicking(int i) {
+            return color[i - 1] == -color[i] && marubozu(i - 1) && marubozu(i)
+                    && (color[i - 1] == -1 ? gapUp(i, i - 1) : gapDown(i, i - 1));
+        }
+
+        /**
+         * Hikkake: внутренний бар и ложный пробой (+-100), подтверждение в течение 3 баров (+-200)
+         */
+        private int hikkake(int i) {
+            if (high[i - 1] < high[i - 2] && low[i - 1] > low[i - 2]
+                    && ((high[i] < high[i - 1] && low[i] < low[i - 1]) || (high[i] > high[i - 1] && low[i] > low[i - 1]))) {
+                hikkakeBar = i;
+                hikkakeSignal = high[i] < high[i - 1] ? 100 : -100;
+                return hikkakeSignal;
+            }
+            if (hikkakeBar >= 0 && i <= hikkakeBar + 3 && confirmsHikkake(i, hikkakeBar, hikkakeSignal)) {
+                hikkakeBar = -1;
+                return hikkakeSignal * 2;
+            }
+            return 0;
+        }
+
+        private int hikkakeMod(int i) {
+            if (high[i - 2] < high[i - 3] && low[i - 2] > low[i - 3]
+                    && high[i - 1] < high[i - 2] && low[i - 1] > low[i - 2]
+                    && ((high[i] < high[i - 1] && low[i] < low[i - 1]
+                    && close[i - 2] <= low[i - 2] + avg(Setting.NEAR, i - 2))
+                    || (high[i] > high[i - 1] && low[i] > low[i - 1]
+                    && close[i - 2] >= high[i - 2] - avg(Setting.NEAR, i - 2)))) {
+                hikkakeModBar = i;
+                hikkakeModSignal = high[i] < high[i - 1] ? 100 : -100;
+                return hikkakeModSignal;
+            }
+            if (hikkakeModBar >= 0 && i <= hikkakeModBar + 3 && confirmsHikkake(i, hikkakeModBar, hikkakeModSignal)) {
+                hikkakeModBar = -1;
+                return hikkakeModSignal * 2;
+            }
+            return 0;
+        }
+
+        // Подтверждение - закрытие за пределами внутреннего бара
+        private boolean confirmsHikkake(int i, int patternBar, int signal) {
+            return signal > 0 ? close[i] > high[patternBar - 1] : close[i] < low[patternBar - 1];
+        }
+    }
+}
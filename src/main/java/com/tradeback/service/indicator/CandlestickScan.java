@@ -0,0 +1,66 @@
+package com.tradeback.service.indicator;
+
+import com.tradeback.model.BarSeries;
+import com.tradeback.model.Indicator.IndicatorType;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Результат прохода распознавателя свечных паттернов по ряду баров.
+ * Для каждого паттерна - сигнал на каждом баре: +100/-100 (бычий/медвежий), +-200 - подтверждение (Hikkake), 0 - нет.
+ */
+public class CandlestickScan {
+
+    private final BarSeries series;
+    private final Map<IndicatorType, int[]> signals;
+    private final int[] trend;
+
+    CandlestickScan(BarSeries series, Map<IndicatorType, int[]> signals, int[] trend) {
+        this.series = series;
+        this.signals = signals;
+        this.trend = trend;
+    }
+
+    public BarSeries getSeries() {
+        return series;
+    }
+
+    public int size() {
+        return series.size();
+    }
+
+    /**
+     * Сигналы паттерна по всем барам (пустой массив, если паттерн не сканировался)
+     */
+    public int[] getSignals(IndicatorType type) {
+        int[] values = signals.get(type);
+        return values != null ? values : new int[0];
+    }
+
+    /**
+     * Все паттерны, сработавшие на баре, с их сигналами
+     */
+    public Map<IndicatorType, Integer> getPatternsAt(int bar) {
+        Map<IndicatorType, Integer> hits = new EnumMap<>(IndicatorType.class);
+        for (Map.Entry<IndicatorType, int[]> entry : signals.entrySet()) {
+            int signal = entry.getValue()[bar];
+            if (signal != 0) {
+                hits.put(entry.getKey(), signal);
+            }
+        }
+        return hits;
+    }
+
+    public Map<IndicatorType, Integer> getLatestPatterns() {
+        return size() == 0 ? Collections.emptyMap() : getPatternsAt(size() - 1);
+    }
+
+    /**
+     * Направление тренда перед баром: 1 - вверх, -1 - вниз, 0 - не определено
+     */
+    public int getTrend(int bar) {
+        return trend[bar];
+    }
+}
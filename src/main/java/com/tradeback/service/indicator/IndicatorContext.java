@@ -0,0 +1,162 @@
+package com.tradeback.service.indicator;
+
+import com.tradeback.model.BarSeries;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Общий контекст расчета над одним рядом баров.
+ * Промежуточные линии (EMA12/EMA26, true range, сглаженные DM и т.д.) считаются один раз
+ * и переиспользуются всеми индикаторами пакета. Не потокобезопасен - один контекст на запрос.
+ */
+public class IndicatorContext {
+
+    private final BarSeries series;
+    private final Map<String, Object> memo = new HashMap<>();
+
+    public IndicatorContext(BarSeries series) {
+        this.series = series;
+    }
+
+    public BarSeries getSeries() {
+        return series;
+    }
+
+    public int size() {
+        return series.size();
+    }
+
+    public double[] open() {
+        return series.getOpen();
+    }
+
+    public double[] high() {
+        return series.getHigh();
+    }
+
+    public double[] low() {
+        return series.getLow();
+    }
+
+    public double[] close() {
+        return series.getClose();
+    }
+
+    public double[] volume() {
+        return memoize("volume", series::getVolumeAsDouble);
+    }
+
+    public long[] sessions() {
+        return memoize("sessions", series::getSessionKeys);
+    }
+
+    // ===== Общие промежуточные линии =====
+
+    public double[] sma(int period) {
+        return memoize("sma:" + period, () -> IndicatorMath.sma(close(), period));
+    }
+
+    public double[] ema(int period) {
+        return memoize("ema:" + period, () -> IndicatorMath.ema(close(), period));
+    }
+
+    public double[] stdDev(int period) {
+        return memoize("stddev:" + period, () -> IndicatorMath.stdDev(close(), period));
+    }
+
+    public double[] rsi(int period) {
+        return memoize("rsi:" + period, () -> IndicatorMath.rsi(close(), period));
+    }
+
+    public double[] trueRange() {
+        return memoize("trange", () -> IndicatorMath.trueRange(high(), low(), close()));
+    }
+
+    public double[] atr(int period) {
+        return memoize("atr:" + period, () -> IndicatorMath.wilder(trueRange(), period));
+    }
+
+    /**
+     * +DM/-DM и TR для DI сглаживаются суммами, как в TA-Lib (ATR - средним)
+     */
+    public double[] plusDm(int period) {
+        return memoize("plusdm:" + period, () -> IndicatorMath.wilderSum(IndicatorMath.plusDm(high(), low()), period));
+    }
+
+    public double[] minusDm(int period) {
+        return memoize("minusdm:" + period, () -> IndicatorMath.wilderSum(IndicatorMath.minusDm(high(), low()), period));
+    }
+
+    public double[] trueRangeSum(int period) {
+        return memoize("trsum:" + period, () -> IndicatorMath.wilderSum(trueRange(), period));
+    }
+
+    public double[] plusDi(int period) {
+        return memoize("plusdi:" + period,
+                () -> IndicatorMath.directionalIndicator(plusDm(period), trueRangeSum(period)));
+    }
+
+    public double[] minusDi(int period) {
+        return memoize("minusdi:" + period,
+                () -> IndicatorMath.directionalIndicator(minusDm(period), trueRangeSum(period)));
+    }
+
+    public double[] dx(int period) {
+        return memoize("dx:" + period, () -> IndicatorMath.dx(plusDi(period), minusDi(period)));
+    }
+
+    public double[] adx(int period) {
+        return memoize("adx:" + period, () -> IndicatorMath.wilder(dx(period), period));
+    }
+
+    public double[] typicalPrice() {
+        return memoize("typprice", () -> IndicatorMath.typicalPrice(high(), low(), close()));
+    }
+
+    public double[] chaikinAd() {
+        return memoize("ad", () -> IndicatorMath.chaikinAd(high(), low(), close(), volume()));
+    }
+
+    public double[] stochFastK(int period) {
+        return memoize("fastk:" + period, () -> IndicatorMath.stochFastK(high(), low(), close(), period));
+    }
+
+    public double[][] aroon(int period) {
+        return memoize("aroon:" + period, () -> IndicatorMath.aroon(high(), low(), period));
+    }
+
+    /**
+     * Быстрая EMA стартует вместе с медленной (на баре slow - 1), как в TA-Lib
+     */
+    public double[] macd(int fast, int slow) {
+        return memoize("macd:" + fast + ":" + slow, () -> IndicatorMath.difference(
+                IndicatorMath.ema(close(), fast, slow - fast), ema(slow)));
+    }
+
+    public double[] macdSignal(int fast, int slow, int signal) {
+        return memoize("macdsignal:" + fast + ":" + slow + ":" + signal,
+                () -> IndicatorMath.ema(macd(fast, slow), signal));
+    }
+
+    /**
+     * Все свечные паттерны за один проход - общий результат для любых CDL* индикаторов пакета
+     */
+    public CandlestickScan candlesticks() {
+        return memoize("candlesticks", () -> CandlestickPatterns.scan(series));
+    }
+
+    /**
+     * Мемоизация без computeIfAbsent: вычисления рекурсивно запрашивают другие линии контекста
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T memoize(String key, Supplier<T> calculation) {
+        Object cached = memo.get(key);
+        if (cached == null) {
+            cached = calculation.get();
+            memo.put(key, cached);
+        }
+        return (T) cached;
+    }
+}
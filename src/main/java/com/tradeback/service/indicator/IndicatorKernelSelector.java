@@ -0,0 +1,74 @@
+package com.tradeback.service.indicator;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Выбор реализации ядер: Vector API, если модуль jdk.incubator.vector подключен и
+ * векторный режим не выключен (-Dtradeback.indicator.vector=false или indicator.kernels.vector=false),
+ * иначе скалярная реализация
+ */
+@Slf4j
+public final class IndicatorKernelSelector {
+
+    public static final String VECTOR_PROPERTY = "tradeback.indicator.vector";
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private static final IndicatorKernels SCALAR = new ScalarKernels();
+    private static final IndicatorKernels VECTOR = loadVectorKernels();
+
+    private static volatile IndicatorKernels current =
+            Boolean.parseBoolean(System.getProperty(VECTOR_PROPERTY, "true")) && VECTOR != null ? VECTOR : SCALAR;
+
+    private IndicatorKernelSelector() {
+        // Utility class - prevent instantiation
+    }
+
+    public static IndicatorKernels get() {
+        return current;
+    }
+
+    public static IndicatorKernels scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * Векторные ядра или null, если Vector API в этой JVM недоступен
+     */
+    public static IndicatorKernels vector() {
+        return VECTOR;
+    }
+
+    /**
+     * Переключает режим во время работы. Возвращает, включены ли векторные ядра в итоге
+     */
+    public static boolean setVectorEnabled(boolean enabled) {
+        current = enabled && VECTOR != null ? VECTOR : SCALAR;
+        if (enabled && VECTOR == null) {
+            log.info("Vector kernels requested but {} is not available, using scalar kernels", VECTOR_MODULE);
+        }
+        return isVectorActive();
+    }
+
+    public static boolean isVectorActive() {
+        return current == VECTOR && VECTOR != null;
+    }
+
+    /**
+     * Класс с Vector API загружается рефлексивно: без --add-modules его нельзя даже слинковать
+     */
+    private static IndicatorKernels loadVectorKernels() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return null;
+        }
+        try {
+            IndicatorKernels kernels = (IndicatorKernels) Class.forName(IndicatorKernelSelector.class.getPackageName()
+                    + ".VectorKernels").getDeclaredConstructor().newInstance();
+            log.info("Vector indicator kernels enabled ({} double lanes)", VectorKernels.lanes());
+            return kernels;
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            log.warn("Vector indicator kernels unavailable, using scalar kernels: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.tradeback.service.indicator;
+
+import com.tradeback.model.Indicator.IndicatorType;
+
+/**
+ * Поэлементные и оконные ядра, на которых построены индикаторы.
+ * Реализации: скалярная ({@link ScalarKernels}) и SIMD на Vector API ({@link VectorKernels}),
+ * выбор - через {@link IndicatorKernelSelector}.
+ */
+public interface IndicatorKernels {
+
+    /**
+     * Математическое преобразование (SQRT, LN, EXP, SIN...) каждого элемента src в out
+     */
+    void mathTransform(IndicatorType type, double[] src, double[] out);
+
+    /**
+     * (open + high + low + close) / 4
+     */
+    void avgPrice(double[] open, double[] high, double[] low, double[] close, double[] out);
+
+    /**
+     * (high + low) / 2
+     */
+    void medPrice(double[] high, double[] low, double[] out);
+
+    /**
+     * (high + low + close) / 3
+     */
+    void typicalPrice(double[] high, double[] low, double[] close, double[] out);
+
+    /**
+     * (high + low + 2 * close) / 4
+     */
+    void weightedClose(double[] high, double[] low, double[] close, double[] out);
+
+    /**
+     * Скользящая сумма окна period, начиная с индекса start:
+     * заполняет out[i] для i >= start + period - 1, остальные элементы не трогает
+     */
+    void rollingSum(double[] src, int start, int period, double[] out);
+}
@@ -0,0 +1,659 @@
+package com.tradeback.service.indicator;
+
+import com.tradeback.model.Indicator.IndicatorType;
+
+import java.util.Arrays;
+
+/**
+ * Примитивные функции технического анализа над массивами double.
+ * Неопределённые значения (период прогрева) заполняются NaN.
+ */
+public final class IndicatorMath {
+
+    // Порог нуля TA-Lib (TA_IS_ZERO) для знаменателей осцилляторов
+    private static final double ZERO = 1e-14;
+
+    private IndicatorMath() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * Создает массив заданной длины, заполненный NaN
+     */
+    public static double[] nanArray(int length) {
+        double[] result = new double[length];
+        Arrays.fill(result, Double.NaN);
+        return result;
+    }
+
+    /**
+     * Индекс первого не-NaN значения (или length, если таких нет)
+     */
+    public static int firstValid(double[] src) {
+        int i = 0;
+        while (i < src.length && Double.isNaN(src[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Последнее определённое значение ряда
+     */
+    public static double last(double[] src) {
+        for (int i = src.length - 1; i >= 0; i--) {
+            if (!Double.isNaN(src[i])) {
+                return src[i];
+            }
+        }
+        return Double.NaN;
+    }
+
+    // ===== Moving Averages =====
+
+    public static double[] sma(double[] src, int period) {
+        double[] out = nanArray(src.length);
+        int start = firstValid(src);
+        if (period <= 0 || src.length - start < period) {
+            return out;
+        }
+        IndicatorKernelSelector.get().rollingSum(src, start, period, out);
+        for (int i = start + period - 1; i < src.length; i++) {
+            out[i] /= period;
+        }
+        return out;
+    }
+
+    public static double[] ema(double[] src, int period) {
+        return smoothed(src, period, 2.0 / (period + 1));
+    }
+
+    /**
+     * EMA, которая начинается с индекса from: более ранние значения не входят в затравку.
+     * Так TA-Lib выравнивает быструю EMA MACD по медленной
+     */
+    public static double[] ema(double[] src, int period, int from) {
+        double[] shifted = src.clone();
+        Arrays.fill(shifted, 0, Math.min(Math.max(from, 0), shifted.length), Double.NaN);
+        return ema(shifted, period);
+    }
+
+    /**
+     * Сглаживание Уайлдера (RMA), используется в RSI/ATR/ADX
+     */
+    public static double[] wilder(double[] src, int period) {
+        return smoothed(src, period, 1.0 / period);
+    }
+
+    /**
+     * Сглаживание Уайлдера в форме сумм, как у +DM/-DM и DI в TA-Lib: затравка - сумма первых
+     * period - 1 значений, далее S = S - S / period + x
+     */
+    public static double[] wilderSum(double[] src, int period) {
+        double[] out = nanArray(src.length);
+        int start = firstValid(src);
+        if (period <= 0 || src.length - start < period) {
+            return out;
+        }
+        double sum = 0;
+        for (int i = start; i < start + period - 1; i++) {
+            sum += src[i];
+        }
+        for (int i = start + period - 1; i < src.length; i++) {
+            sum += src[i] - sum / period;
+            out[i] = sum;
+        }
+        return out;
+    }
+
+    private static double[] smoothed(double[] src, int period, double alpha) {
+        double[] out = nanArray(src.length);
+        int start = firstValid(src);
+        if (period <= 0 || src.length - start < period) {
+            return out;
+        }
+        double sum = 0;
+        for (int i = start; i < start + period; i++) {
+            sum += src[i];
+        }
+        double prev = sum / period;
+        out[start + period - 1] = prev;
+        for (int i = start + period; i < src.length; i++) {
+            prev += alpha * (src[i] - prev);
+            out[i] = prev;
+        }
+        return out;
+    }
+
+    public static double[] wma(double[] src, int period) {
+        double[] out = nanArray(src.length);
+        int start = firstValid(src);
+        if (period <= 0 || src.length - start < period) {
+            return out;
+        }
+        double divisor = period * (period + 1) / 2.0;
+        double weighted = 0;
+        double plain = 0;
+        for (int i = 0; i < period; i++) {
+            weighted += src[start + i] * (i + 1);
+            plain += src[start + i];
+        }
+        out[start + period - 1] = weighted / divisor;
+        for (int i = start + period; i < src.length; i++) {
+            weighted += period * src[i] - plain;
+            plain += src[i] - src[i - period];
+            out[i] = weighted / divisor;
+        }
+        return out;
+    }
+
+    public static double[] dema(double[] src, int period) {
+        double[] e1 = ema(src, period);
+        double[] e2 = ema(e1, period);
+        double[] out = nanArray(src.length);
+        for (int i = 0; i < src.length; i++) {
+            out[i] = 2 * e1[i] - e2[i];
+        }
+        return out;
+    }
+
+    public static double[] tema(double[] src, int period) {
+        double[] e1 = ema(src, period);
+        double[] e2 = ema(e1, period);
+        double[] e3 = ema(e2, period);
+        double[] out = nanArray(src.length);
+        for (int i = 0; i < src.length; i++) {
+            out[i] = 3 * e1[i] - 3 * e2[i] + e3[i];
+        }
+        return out;
+    }
+
+    public static double[] trima(double[] src, int period) {
+        int first = (period + 1) / 2;
+        int second = period / 2 + 1;
+        return sma(sma(src, first), second);
+    }
+
+    /**
+     * Kaufman Adaptive Moving Average (fast=2, slow=30)
+     */
+    public static double[] kama(double[] src, int period) {
+        double[] out = nanArray(src.length);
+        int start = firstValid(src);
+        if (period <= 0 || src.length - start <= period) {
+            return out;
+        }
+        double fast = 2.0 / (2 + 1);
+        double slow = 2.0 / (30 + 1);
+        double prev = src[start + period - 1];
+        for (int i = start + period; i < src.length; i++) {
+            double change = Math.abs(src[i] - src[i - period]);
+            double volatility = 0;
+            for (int j = i - period + 1; j <= i; j++) {
+                volatility += Math.abs(src[j] - src[j - 1]);
+            }
+            double er = volatility == 0 ? 0 : change / volatility;
+            double sc = er * (fast - slow) + slow;
+            prev += sc * sc * (src[i] - prev);
+            out[i] = prev;
+        }
+        return out;
+    }
+
+    /**
+     * T3 Тиллсона (volume factor 0.7)
+     */
+    public static double[] t3(double[] src, int period) {
+        double v = 0.7;
+        double[] e1 = ema(src, period);
+        double[] e2 = ema(e1, period);
+        double[] e3 = ema(e2, period);
+        double[] e4 = ema(e3, period);
+        double[] e5 = ema(e4, period);
+        double[] e6 = ema(e5, period);
+        double c1 = -v * v * v;
+        double c2 = 3 * v * v + 3 * v * v * v;
+        double c3 = -6 * v * v - 3 * v - 3 * v * v * v;
+        double c4 = 1 + 3 * v + v * v * v + 3 * v * v;
+        double[] out = nanArray(src.length);
+        for (int i = 0; i < src.length; i++) {
+            out[i] = c1 * e6[i] + c2 * e5[i] + c3 * e4[i] + c4 * e3[i];
+        }
+        return out;
+    }
+
+    // ===== Oscillators =====
+
+    public static double[] rsi(double[] close, int period) {
+        return gainLossOscillator(close, period, false);
+    }
+
+    /**
+     * Chande Momentum Oscillator (сглаживание Уайлдера, как в TA-Lib)
+     */
+    public static double[] cmo(double[] close, int period) {
+        return gainLossOscillator(close, period, true);
+    }
+
+    private static double[] gainLossOscillator(double[] close, int period, boolean cmo) {
+        double[] out = nanArray(close.length);
+        if (period <= 0 || close.length <= period) {
+            return out;
+        }
+        double gain = 0;
+        double loss = 0;
+        for (int i = 1; i <= period; i++) {
+            double diff = close[i] - close[i - 1];
+            if (diff > 0) gain += diff;
+            else loss -= diff;
+        }
+        gain /= period;
+        loss /= period;
+        out[period] = cmo ? cmoValue(gain, loss) : rsiValue(gain, loss);
+        for (int i = period + 1; i < close.length; i++) {
+            double diff = close[i] - close[i - 1];
+            gain = (gain * (period - 1) + Math.max(diff, 0)) / period;
+            loss = (loss * (period - 1) + Math.max(-diff, 0)) / period;
+            out[i] = cmo ? cmoValue(gain, loss) : rsiValue(gain, loss);
+        }
+        return out;
+    }
+
+    /**
+     * RSI по средним росту и падению; без движения в окне - 0, как в TA-Lib (TA_IS_ZERO)
+     */
+    static double rsiValue(double gain, double loss) {
+        double total = gain + loss;
+        if (total < ZERO) {
+            return 0.0;
+        }
+        return 100.0 * gain / total;
+    }
+
+    private static double cmoValue(double gain, double loss) {
+        double total = gain + loss;
+        if (total < ZERO) {
+            return 0.0;
+        }
+        return 100.0 * (gain - loss) / total;
+    }
+
+    public static double[] highest(double[] src, int period) {
+        double[] out = nanArray(src.length);
+        for (int i = period - 1; i < src.length; i++) {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int j = i - period + 1; j <= i; j++) {
+                max = Math.max(max, src[j]);
+            }
+            out[i] = max;
+        }
+        return out;
+    }
+
+    public static double[] lowest(double[] src, int period) {
+        double[] out = nanArray(src.length);
+        for (int i = period - 1; i < src.length; i++) {
+            double min = Double.POSITIVE_INFINITY;
+            for (int j = i - period + 1; j <= i; j++) {
+                min = Math.min(min, src[j]);
+            }
+            out[i] = min;
+        }
+        return out;
+    }
+
+    /**
+     * Быстрая линия %K стохастика над произвольными high/low/close
+     */
+    public static double[] stochFastK(double[] high, double[] low, double[] close, int period) {
+        double[] hh = highest(high, period);
+        double[] ll = lowest(low, period);
+        double[] out = nanArray(close.length);
+        for (int i = 0; i < close.length; i++) {
+            double range = hh[i] - ll[i];
+            if (!Double.isNaN(range)) {
+                out[i] = range == 0 ? 0 : 100 * (close[i] - ll[i]) / range;
+            }
+        }
+        return out;
+    }
+
+    public static double[] willr(double[] high, double[] low, double[] close, int period) {
+        double[] hh = highest(high, period);
+        double[] ll = lowest(low, period);
+        double[] out = nanArray(close.length);
+        for (int i = 0; i < close.length; i++) {
+            double range = hh[i] - ll[i];
+            if (!Double.isNaN(range)) {
+                out[i] = range == 0 ? 0 : -100 * (hh[i] - close[i]) / range;
+            }
+        }
+        return out;
+    }
+
+    public static double[] cci(double[] high, double[] low, double[] close, int period) {
+        double[] tp = typicalPrice(high, low, close);
+        double[] mean = sma(tp, period);
+        double[] out = nanArray(close.length);
+        for (int i = period - 1; i < close.length; i++) {
+            double deviation = 0;
+            for (int j = i - period + 1; j <= i; j++) {
+                deviation += Math.abs(tp[j] - mean[i]);
+            }
+            deviation /= period;
+            out[i] = deviation == 0 ? 0 : (tp[i] - mean[i]) / (0.015 * deviation);
+        }
+        return out;
+    }
+
+    public static double[] roc(double[] close, int period) {
+        double[] out = nanArray(close.length);
+        for (int i = period; i < close.length; i++) {
+            out[i] = close[i - period] == 0 ? 0 : (close[i] / close[i - period] - 1) * 100;
+        }
+        return out;
+    }
+
+    public static double[] rocp(double[] close, int period) {
+        double[] out = nanArray(close.length);
+        for (int i = period; i < close.length; i++) {
+            out[i] = close[i - period] == 0 ? 0 : (close[i] - close[i - period]) / close[i - period];
+        }
+        return out;
+    }
+
+    public static double[] rocr(double[] close, int period) {
+        double[] out = nanArray(close.length);
+        for (int i = period; i < close.length; i++) {
+            out[i] = close[i - period] == 0 ? 0 : close[i] / close[i - period];
+        }
+        return out;
+    }
+
+    public static double[] mfi(double[] high, double[] low, double[] close, double[] volume, int period) {
+        double[] tp = typicalPrice(high, low, close);
+        double[] out = nanArray(close.length);
+        for (int i = period; i < close.length; i++) {
+            double positive = 0;
+            double negative = 0;
+            for (int j = i - period + 1; j <= i; j++) {
+                double flow = tp[j] * volume[j];
+                if (tp[j] > tp[j - 1]) positive += flow;
+                else if (tp[j] < tp[j - 1]) negative += flow;
+            }
+            out[i] = positive + negative == 0 ? 50 : 100 * positive / (positive + negative);
+        }
+        return out;
+    }
+
+    public static double[] bop(double[] open, double[] high, double[] low, double[] close) {
+        double[] out = new double[close.length];
+        for (int i = 0; i < close.length; i++) {
+            double range = high[i] - low[i];
+            out[i] = range == 0 ? 0 : (close[i] - open[i]) / range;
+        }
+        return out;
+    }
+
+    public static double[] difference(double[] a, double[] b) {
+        double[] out = new double[a.length];
+        for (int i = 0; i < a.length; i++) {
+            out[i] = a[i] - b[i];
+        }
+        return out;
+    }
+
+    /**
+     * Стандартное (популяционное) отклонение в скользящем окне
+     */
+    public static double[] stdDev(double[] src, int period) {
+        double[] mean = sma(src, period);
+        double[] out = nanArray(src.length);
+        for (int i = 0; i < src.length; i++) {
+            if (Double.isNaN(mean[i])) {
+                continue;
+            }
+            double variance = 0;
+            for (int j = i - period + 1; j <= i; j++) {
+                double d = src[j] - mean[i];
+                variance += d * d;
+            }
+            out[i] = Math.sqrt(variance / period);
+        }
+        return out;
+    }
+
+    // ===== Volume =====
+
+    public static double[] obv(double[] close, double[] volume) {
+        double[] out = new double[close.length];
+        if (close.length == 0) {
+            return out;
+        }
+        out[0] = volume[0];
+        for (int i = 1; i < close.length; i++) {
+            if (close[i] > close[i - 1]) out[i] = out[i - 1] + volume[i];
+            else if (close[i] < close[i - 1]) out[i] = out[i - 1] - volume[i];
+            else out[i] = out[i - 1];
+        }
+        return out;
+    }
+
+    public static double[] chaikinAd(double[] high, double[] low, double[] close, double[] volume) {
+        double[] out = new double[close.length];
+        double ad = 0;
+        for (int i = 0; i < close.length; i++) {
+            double range = high[i] - low[i];
+            if (range > 0) {
+                ad += ((close[i] - low[i]) - (high[i] - close[i])) / range * volume[i];
+            }
+            out[i] = ad;
+        }
+        return out;
+    }
+
+    /**
+     * VWAP со сбросом в начале каждой торговой сессии (sessionKeys - номер дня бара)
+     */
+    public static double[] vwap(double[] high, double[] low, double[] close, double[] volume, long[] sessionKeys) {
+        double[] out = nanArray(close.length);
+        double pv = 0;
+        double vol = 0;
+        for (int i = 0; i < close.length; i++) {
+            if (i > 0 && sessionKeys[i] != sessionKeys[i - 1]) {
+                pv = 0;
+                vol = 0;
+            }
+            pv += (high[i] + low[i] + close[i]) / 3.0 * volume[i];
+            vol += volume[i];
+            out[i] = vol == 0 ? Double.NaN : pv / vol;
+        }
+        return out;
+    }
+
+    // ===== Volatility / Trend =====
+
+    public static double[] trueRange(double[] high, double[] low, double[] close) {
+        double[] out = nanArray(close.length);
+        for (int i = 1; i < close.length; i++) {
+            out[i] = Math.max(high[i] - low[i],
+                    Math.max(Math.abs(high[i] - close[i - 1]), Math.abs(low[i] - close[i - 1])));
+        }
+        return out;
+    }
+
+    public static double[] plusDm(double[] high, double[] low) {
+        double[] out = nanArray(high.length);
+        for (int i = 1; i < high.length; i++) {
+            double up = high[i] - high[i - 1];
+            double down = low[i - 1] - low[i];
+            out[i] = up > down && up > 0 ? up : 0;
+        }
+        return out;
+    }
+
+    public static double[] minusDm(double[] high, double[] low) {
+        double[] out = nanArray(high.length);
+        for (int i = 1; i < high.length; i++) {
+            double up = high[i] - high[i - 1];
+            double down = low[i - 1] - low[i];
+            out[i] = down > up && down > 0 ? down : 0;
+        }
+        return out;
+    }
+
+    /**
+     * Направленный индикатор: 100 * сглаженный DM / сглаженный TR
+     */
+    public static double[] directionalIndicator(double[] smoothedDm, double[] atr) {
+        double[] out = nanArray(atr.length);
+        for (int i = 0; i < atr.length; i++) {
+            if (!Double.isNaN(smoothedDm[i]) && !Double.isNaN(atr[i])) {
+                out[i] = atr[i] == 0 ? 0 : 100 * smoothedDm[i] / atr[i];
+            }
+        }
+        return out;
+    }
+
+    public static double[] dx(double[] plusDi, double[] minusDi) {
+        double[] out = nanArray(plusDi.length);
+        for (int i = 0; i < plusDi.length; i++) {
+            double sum = plusDi[i] + minusDi[i];
+            if (!Double.isNaN(sum)) {
+                out[i] = sum == 0 ? 0 : 100 * Math.abs(plusDi[i] - minusDi[i]) / sum;
+            }
+        }
+        return out;
+    }
+
+    public static double[] adxr(double[] adx, int period) {
+        double[] out = nanArray(adx.length);
+        for (int i = period - 1; i < adx.length; i++) {
+            out[i] = (adx[i] + adx[i - period + 1]) / 2;
+        }
+        return out;
+    }
+
+    /**
+     * Aroon Up (индекс 0) и Aroon Down (индекс 1)
+     */
+    public static double[][] aroon(double[] high, double[] low, int period) {
+        double[] up = nanArray(high.length);
+        double[] down = nanArray(high.length);
+        for (int i = period; i < high.length; i++) {
+            int highIdx = i;
+            int lowIdx = i;
+            for (int j = i - period; j <= i; j++) {
+                if (high[j] >= high[highIdx]) highIdx = j;
+                if (low[j] <= low[lowIdx]) lowIdx = j;
+            }
+            up[i] = 100.0 * (period - (i - highIdx)) / period;
+            down[i] = 100.0 * (period - (i - lowIdx)) / period;
+        }
+        return new double[][]{up, down};
+    }
+
+    /**
+     * Parabolic SAR Уайлдера в варианте TA-Lib: начальное направление по -DM второго бара, значение на баре -
+     * SAR, действовавший на нем; разворот при касании SAR, новый SAR не заходит за экстремумы двух баров
+     */
+    public static double[] sar(double[] high, double[] low, double acceleration, double maximum) {
+        double[] out = nanArray(high.length);
+        if (high.length < 2) {
+            return out;
+        }
+        double upMove = high[1] - high[0];
+        double downMove = low[0] - low[1];
+        boolean longPosition = !(downMove > 0 && upMove < downMove);
+        double af = acceleration;
+        double ep = longPosition ? high[1] : low[1];
+        double sar = longPosition ? low[0] : high[0];
+        for (int i = 1; i < high.length; i++) {
+            double prevHigh = high[Math.max(i - 1, 1)];
+            double prevLow = low[Math.max(i - 1, 1)];
+            if (longPosition) {
+                if (low[i] <= sar) {
+                    longPosition = false;
+                    sar = Math.max(ep, Math.max(prevHigh, high[i]));
+                    out[i] = sar;
+                    af = acceleration;
+                    ep = low[i];
+                    sar += af * (ep - sar);
+                    sar = Math.max(sar, Math.max(prevHigh, high[i]));
+                } else {
+                    out[i] = sar;
+                    if (high[i] > ep) {
+                        ep = high[i];
+                        af = Math.min(af + acceleration, maximum);
+                    }
+                    sar += af * (ep - sar);
+                    sar = Math.min(sar, Math.min(prevLow, low[i]));
+                }
+            } else {
+                if (high[i] >= sar) {
+                    longPosition = true;
+                    sar = Math.min(ep, Math.min(prevLow, low[i]));
+                    out[i] = sar;
+                    af = acceleration;
+                    ep = high[i];
+                    sar += af * (ep - sar);
+                    sar = Math.min(sar, Math.min(prevLow, low[i]));
+                } else {
+                    out[i] = sar;
+                    if (low[i] < ep) {
+                        ep = low[i];
+                        af = Math.min(af + acceleration, maximum);
+                    }
+                    sar += af * (ep - sar);
+                    sar = Math.max(sar, Math.max(prevHigh, high[i]));
+                }
+            }
+        }
+        return out;
+    }
+
+    public static double[] trix(double[] close, int period) {
+        double[] e3 = ema(ema(ema(close, period), period), period);
+        double[] out = nanArray(close.length);
+        for (int i = 1; i < close.length; i++) {
+            if (!Double.isNaN(e3[i - 1]) && e3[i - 1] != 0) {
+                out[i] = (e3[i] / e3[i - 1] - 1) * 100;
+            }
+        }
+        return out;
+    }
+
+    // ===== Price Transform =====
+
+    public static double[] avgPrice(double[] open, double[] high, double[] low, double[] close) {
+        double[] out = new double[close.length];
+        IndicatorKernelSelector.get().avgPrice(open, high, low, close, out);
+        return out;
+    }
+
+    public static double[] medPrice(double[] high, double[] low) {
+        double[] out = new double[high.length];
+        IndicatorKernelSelector.get().medPrice(high, low, out);
+        return out;
+    }
+
+    public static double[] typicalPrice(double[] high, double[] low, double[] close) {
+        double[] out = new double[close.length];
+        IndicatorKernelSelector.get().typicalPrice(high, low, close, out);
+        return out;
+    }
+
+    public static double[] weightedClose(double[] high, double[] low, double[] close) {
+        double[] out = new double[close.length];
+        IndicatorKernelSelector.get().weightedClose(high, low, close, out);
+        return out;
+    }
+
+    // ===== Math Transform =====
+
+    public static double[] mathTransform(IndicatorType type, double[] src) {
+        double[] out = new double[src.length];
+        IndicatorKernelSelector.get().mathTransform(type, src, out);
+        return out;
+    }
+}
@@ -0,0 +1,79 @@
+package com.tradeback.service.indicator;
+
+import com.tradeback.model.Indicator;
+
+/**
+ * Результат локального расчета индикатора: до трёх линий значений, выровненных по барам.
+ * Линии соответствуют полям value / secondaryValue / tertiaryValue в {@link Indicator}.
+ */
+public class IndicatorResult {
+
+    private final double[] values;
+    private final double[] secondary;
+    private final double[] tertiary;
+
+    public IndicatorResult(double[] values) {
+        this(values, null, null);
+    }
+
+    public IndicatorResult(double[] values, double[] secondary, double[] tertiary) {
+        this.values = values;
+        this.secondary = secondary;
+        this.tertiary = tertiary;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    public double[] getSecondary() {
+        return secondary;
+    }
+
+    public double[] getTertiary() {
+        return tertiary;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Есть ли определённое значение на последнем баре
+     */
+    public boolean hasLatestValue() {
+        return values.length > 0 && !Double.isNaN(values[values.length - 1]);
+    }
+
+    public double getLatestValue() {
+        return latest(values);
+    }
+
+    public double getLatestSecondary() {
+        return latest(secondary);
+    }
+
+    public double getLatestTertiary() {
+        return latest(tertiary);
+    }
+
+    /**
+     * Переносит значения последнего бара в сущность индикатора
+     */
+    public void applyLatestTo(Indicator indicator) {
+        indicator.setValue(getLatestValue());
+        if (secondary != null && !Double.isNaN(getLatestSecondary())) {
+            indicator.setSecondaryValue(getLatestSecondary());
+        }
+        if (tertiary != null && !Double.isNaN(getLatestTertiary())) {
+            indicator.setTertiaryValue(getLatestTertiary());
+        }
+    }
+
+    private static double latest(double[] line) {
+        if (line == null || line.length == 0) {
+            return Double.NaN;
+        }
+        return line[line.length - 1];
+    }
+}
@@ -0,0 +1,319 @@
+package com.tradeback.service.indicator;
+
+import com.tradeback.config.ApplicationConstants;
+import com.tradeback.model.BarSeries;
+import com.tradeback.model.Indicator.IndicatorType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Локальный расчет технических индикаторов по сохранённым OHLCV барам.
+ * Параметры по умолчанию совпадают с теми, что IndicatorService передает в Alpha Vantage.
+ */
+@Component
+public class LocalIndicatorEngine {
+
+    public static final int MACD_FAST = 12;
+    public static final int MACD_SLOW = 26;
+    public static final int MACD_SIGNAL = 9;
+    public static final int BBANDS_DEFAULT_PERIOD = 20;
+    public static final double BBANDS_DEVIATIONS = 2.0;
+    public static final int STOCH_FAST_K = 5;
+    public static final int STOCH_SLOW_K = 3;
+    public static final int STOCH_SLOW_D = 3;
+    public static final double SAR_ACCELERATION = 0.02;
+    public static final double SAR_MAXIMUM = 0.20;
+    public static final int ADOSC_FAST = 3;
+    public static final int ADOSC_SLOW = 10;
+
+    // Индикаторы без локальной реализации (MESA, Hilbert Transform)
+    private static final Set<IndicatorType> UNSUPPORTED = EnumSet.of(
+            IndicatorType.MAMA,
+            IndicatorType.HT_DCPERIOD, IndicatorType.HT_DCPHASE, IndicatorType.HT_PHASOR,
+            IndicatorType.HT_SINE, IndicatorType.HT_TRENDMODE
+    );
+
+    /**
+     * Переключатель векторных ядер (работает, если JVM запущена с --add-modules jdk.incubator.vector)
+     */
+    @Value("${indicator.kernels.vector:true}")
+    public void setVectorKernels(boolean enabled) {
+        IndicatorKernelSelector.setVectorEnabled(enabled);
+    }
+
+    /**
+     * Можно ли посчитать индикатор локально
+     */
+    public boolean isSupported(IndicatorType type) {
+        return type != null && !UNSUPPORTED.contains(type);
+    }
+
+    /**
+     * Рассчитывает индикатор по колоночному ряду баров
+     */
+    public IndicatorResult compute(IndicatorType type, Integer period, BarSeries series) {
+        return compute(type, period, new IndicatorContext(series));
+    }
+
+    /**
+     * Рассчитывает индикатор в общем контексте - промежуточные линии переиспользуются между вызовами
+     */
+    public IndicatorResult compute(IndicatorType type, Integer period, IndicatorContext context) {
+        return compute(type, effectivePeriod(type, period), context);
+    }
+
+    /**
+     * Минимальное количество баров, после которого индикатор дает значение
+     */
+    public int requiredBars(IndicatorType type, Integer period) {
+        if (CandlestickPatterns.isPattern(type)) {
+            return CandlestickPatterns.requiredBars(type);
+        }
+        int p = effectivePeriod(type, period);
+        switch (type) {
+            case MACD:
+            case MACDEXT:
+            case MACDFIX:
+                return MACD_SLOW + MACD_SIGNAL;
+            case PPO:
+            case APO:
+                return MACD_SLOW;
+            case DEMA:
+                return 2 * p;
+            case TEMA:
+            case TRIX:
+                return 3 * p;
+            case T3:
+                return 6 * p;
+            case ADX:
+            case ADXR:
+                return 3 * p;
+            case STOCH:
+                return STOCH_FAST_K + STOCH_SLOW_K + STOCH_SLOW_D;
+            case STOCHRSI:
+                return p + STOCH_FAST_K + STOCH_SLOW_D;
+            case ADOSC:
+                return ADOSC_SLOW;
+            default:
+                return p + 1;
+        }
+    }
+
+    static int effectivePeriod(IndicatorType type, Integer period) {
+        if (period != null && period > 0) {
+            return period;
+        }
+        return type == IndicatorType.BBANDS ? BBANDS_DEFAULT_PERIOD : ApplicationConstants.DEFAULT_INDICATOR_PERIOD;
+    }
+
+    private IndicatorResult compute(IndicatorType type, int p, IndicatorContext ctx) {
+        if (CandlestickPatterns.isPattern(type)) {
+            return candlestick(ctx.candlesticks().getSignals(type));
+        }
+        double[] open = ctx.open();
+        double[] high = ctx.high();
+        double[] low = ctx.low();
+        double[] close = ctx.close();
+        switch (type) {
+            // Moving Averages
+            case SMA:
+                return new IndicatorResult(ctx.sma(p));
+            case EMA:
+                return new IndicatorResult(ctx.ema(p));
+            case WMA:
+                return new IndicatorResult(IndicatorMath.wma(close, p));
+            case DEMA:
+                return new IndicatorResult(IndicatorMath.dema(close, p));
+            case TEMA:
+                return new IndicatorResult(IndicatorMath.tema(close, p));
+            case TRIMA:
+                return new IndicatorResult(IndicatorMath.trima(close, p));
+            case KAMA:
+                return new IndicatorResult(IndicatorMath.kama(close, p));
+            case T3:
+                return new IndicatorResult(IndicatorMath.t3(close, p));
+
+            // Oscillators
+            case RSI:
+                return new IndicatorResult(ctx.rsi(p));
+            case STOCH: {
+                double[] slowK = IndicatorMath.sma(ctx.stochFastK(STOCH_FAST_K), STOCH_SLOW_K);
+                return new IndicatorResult(slowK, IndicatorMath.sma(slowK, STOCH_SLOW_D), null);
+            }
+            case STOCHF: {
+                double[] fastK = ctx.stochFastK(STOCH_FAST_K);
+                return new IndicatorResult(fastK, IndicatorMath.sma(fastK, STOCH_SLOW_D), null);
+            }
+            case STOCHRSI: {
+                double[] rsi = ctx.rsi(p);
+                double[] fastK = IndicatorMath.stochFastK(rsi, rsi, rsi, STOCH_FAST_K);
+                return new IndicatorResult(fastK, IndicatorMath.sma(fastK, STOCH_SLOW_D), null);
+            }
+            case WILLR:
+                return new IndicatorResult(IndicatorMath.willr(high, low, close, p));
+            case CCI:
+                return new IndicatorResult(IndicatorMath.cci(high, low, close, p));
+            case CMO:
+                return new IndicatorResult(IndicatorMath.cmo(close, p));
+            case ROC:
+                return new IndicatorResult(IndicatorMath.roc(close, p));
+            case ROCP:
+                return new IndicatorResult(IndicatorMath.rocp(close, p));
+            case ROCR:
+                return new IndicatorResult(IndicatorMath.rocr(close, p));
+            case MFI:
+                return new IndicatorResult(IndicatorMath.mfi(high, low, close, ctx.volume(), p));
+            case BOP:
+                return new IndicatorResult(IndicatorMath.bop(open, high, low, close));
+
+            // MACD Family
+            case MACD:
+            case MACDEXT:
+            case MACDFIX: {
+                double[] macd = ctx.macd(MACD_FAST, MACD_SLOW);
+                double[] signal = ctx.macdSignal(MACD_FAST, MACD_SLOW, MACD_SIGNAL);
+                return new IndicatorResult(macd, signal, IndicatorMath.difference(macd, signal));
+            }
+            case APO:
+                return new IndicatorResult(IndicatorMath.difference(ctx.sma(MACD_FAST), ctx.sma(MACD_SLOW)));
+            case PPO: {
+                double[] fast = ctx.sma(MACD_FAST);
+                double[] slow = ctx.sma(MACD_SLOW);
+                double[] ppo = IndicatorMath.nanArray(close.length);
+                for (int i = 0; i < close.length; i++) {
+                    if (slow[i] != 0) {
+                        ppo[i] = (fast[i] - slow[i]) / slow[i] * 100;
+                    }
+                }
+                return new IndicatorResult(ppo);
+            }
+
+            // Bands and Channels: value = middle, secondary = upper, tertiary = lower
+            case BBANDS:
+                return bands(ctx.sma(p), ctx.stdDev(p), BBANDS_DEVIATIONS);
+            case KELTNER:
+                return bands(ctx.ema(p), ctx.atr(p), 2.0);
+            case DONCHIAN: {
+                double[] upper = IndicatorMath.highest(high, p);
+                double[] lower = IndicatorMath.lowest(low, p);
+                double[] middle = IndicatorMath.nanArray(close.length);
+                for (int i = 0; i < close.length; i++) {
+                    middle[i] = (upper[i] + lower[i]) / 2;
+                }
+                return new IndicatorResult(middle, upper, lower);
+            }
+
+            // Volume
+            case AD:
+                return new IndicatorResult(ctx.chaikinAd());
+            case ADOSC: {
+                double[] ad = ctx.chaikinAd();
+                return new IndicatorResult(IndicatorMath.difference(
+                        IndicatorMath.ema(ad, ADOSC_FAST), IndicatorMath.ema(ad, ADOSC_SLOW)));
+            }
+            case OBV:
+                return new IndicatorResult(IndicatorMath.obv(close, ctx.volume()));
+            case VWAP:
+                return new IndicatorResult(IndicatorMath.vwap(high, low, close, ctx.volume(), ctx.sessions()));
+
+            // Volatility
+            case TRANGE:
+                return new IndicatorResult(ctx.trueRange());
+            case ATR:
+                return new IndicatorResult(ctx.atr(p));
+            case NATR: {
+                double[] atr = ctx.atr(p);
+                double[] natr = IndicatorMath.nanArray(close.length);
+                for (int i = 0; i < close.length; i++) {
+                    if (close[i] != 0) {
+                        natr[i] = atr[i] / close[i] * 100;
+                    }
+                }
+                return new IndicatorResult(natr);
+            }
+
+            // Trend
+            case PLUS_DM:
+                return new IndicatorResult(ctx.plusDm(p));
+            case MINUS_DM:
+                return new IndicatorResult(ctx.minusDm(p));
+            case PLUS_DI:
+                return new IndicatorResult(ctx.plusDi(p));
+            case MINUS_DI:
+                return new IndicatorResult(ctx.minusDi(p));
+            case DX:
+                return new IndicatorResult(ctx.dx(p));
+            case ADX:
+                return new IndicatorResult(ctx.adx(p));
+            case ADXR:
+                return new IndicatorResult(IndicatorMath.adxr(ctx.adx(p), p));
+            case AROON: {
+                double[][] aroon = ctx.aroon(p);
+                return new IndicatorResult(aroon[0], aroon[1], null);
+            }
+            case AROONOSC: {
+                double[][] aroon = ctx.aroon(p);
+                return new IndicatorResult(IndicatorMath.difference(aroon[0], aroon[1]));
+            }
+            case SAR:
+                return new IndicatorResult(IndicatorMath.sar(high, low, SAR_ACCELERATION, SAR_MAXIMUM));
+            case TRIX:
+                return new IndicatorResult(IndicatorMath.trix(close, p));
+
+            // Price Transform
+            case AVGPRICE:
+                return new IndicatorResult(IndicatorMath.avgPrice(open, high, low, close));
+            case MEDPRICE:
+                return new IndicatorResult(IndicatorMath.medPrice(high, low));
+            case TYPPRICE:
+                return new IndicatorResult(ctx.typicalPrice());
+            case WCLPRICE:
+                return new IndicatorResult(IndicatorMath.weightedClose(high, low, close));
+
+            // Math Transform (применяется к цене закрытия)
+            case ACOS:
+            case ASIN:
+            case ATAN:
+            case CEIL:
+            case COS:
+            case COSH:
+            case EXP:
+            case FLOOR:
+            case LN:
+            case LOG10:
+            case SIN:
+            case SINH:
+            case SQRT:
+            case TAN:
+            case TANH:
+                return new IndicatorResult(IndicatorMath.mathTransform(type, close));
+
+            default:
+                throw new IllegalArgumentException("Indicator " + type + " is not supported by local engine");
+        }
+    }
+
+    /**
+     * Сигналы паттерна (+-100/200, 0) как значения индикатора
+     */
+    private IndicatorResult candlestick(int[] signals) {
+        double[] values = new double[signals.length];
+        for (int i = 0; i < signals.length; i++) {
+            values[i] = signals[i];
+        }
+        return new IndicatorResult(values);
+    }
+
+    private IndicatorResult bands(double[] middle, double[] width, double multiplier) {
+        double[] upper = IndicatorMath.nanArray(middle.length);
+        double[] lower = IndicatorMath.nanArray(middle.length);
+        for (int i = 0; i < middle.length; i++) {
+            upper[i] = middle[i] + multiplier * width[i];
+            lower[i] = middle[i] - multiplier * width[i];
+        }
+        return new IndicatorResult(middle, upper, lower);
+    }
+}
@@ -0,0 +1,82 @@
+package com.tradeback.service.indicator;
+
+import com.tradeback.model.Indicator.IndicatorType;
+
+/**
+ * Скалярные ядра - эталонная реализация и fallback, когда Vector API недоступен
+ */
+final class ScalarKernels implements IndicatorKernels {
+
+    @Override
+    public void mathTransform(IndicatorType type, double[] src, double[] out) {
+        for (int i = 0; i < src.length; i++) {
+            out[i] = apply(type, src[i]);
+        }
+    }
+
+    static double apply(IndicatorType type, double x) {
+        switch (type) {
+            case ACOS: return Math.acos(x);
+            case ASIN: return Math.asin(x);
+            case ATAN: return Math.atan(x);
+            case CEIL: return Math.ceil(x);
+            case COS: return Math.cos(x);
+            case COSH: return Math.cosh(x);
+            case EXP: return Math.exp(x);
+            case FLOOR: return Math.floor(x);
+            case LN: return Math.log(x);
+            case LOG10: return Math.log10(x);
+            case SIN: return Math.sin(x);
+            case SINH: return Math.sinh(x);
+            case SQRT: return Math.sqrt(x);
+            case TAN: return Math.tan(x);
+            case TANH: return Math.tanh(x);
+            default:
+                throw new IllegalArgumentException("Indicator " + type + " is not a math transform");
+        }
+    }
+
+    @Override
+    public void avgPrice(double[] open, double[] high, double[] low, double[] close, double[] out) {
+        for (int i = 0; i < close.length; i++) {
+            out[i] = (open[i] + high[i] + low[i] + close[i]) / 4.0;
+        }
+    }
+
+    @Override
+    public void medPrice(double[] high, double[] low, double[] out) {
+        for (int i = 0; i < high.length; i++) {
+            out[i] = (high[i] + low[i]) / 2.0;
+        }
+    }
+
+    @Override
+    public void typicalPrice(double[] high, double[] low, double[] close, double[] out) {
+        for (int i = 0; i < close.length; i++) {
+            out[i] = (high[i] + low[i] + close[i]) / 3.0;
+        }
+    }
+
+    @Override
+    public void weightedClose(double[] high, double[] low, double[] close, double[] out) {
+        for (int i = 0; i < close.length; i++) {
+            out[i] = (high[i] + low[i] + 2 * close[i]) / 4.0;
+        }
+    }
+
+    @Override
+    public void rollingSum(double[] src, int start, int period, double[] out) {
+        if (period <= 0 || src.length - start < period) {
+            return;
+        }
+        double sum = 0;
+        for (int i = start; i < start + period; i++) {
+            sum += src[i];
+        }
+        out[start + period - 1] = sum;
+        for (int i = start + period; i < src.length; i++) {
+            sum += src[i] - src[i - period];
+            out[i] = sum;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.tradeback.service.indicator;
+
+/**
+ * Состояние индикатора, которое продвигается на один бар за O(1) без выделения памяти.
+ * Значения совпадают с пакетным расчетом {@link IndicatorMath} на том же наборе баров.
+ */
+public interface StreamingIndicator {
+
+    /**
+     * Учитывает следующий закрытый бар
+     */
+    void update(double open, double high, double low, double close, long volume, long sessionKey);
+
+    /**
+     * Пройден ли период прогрева
+     */
+    boolean isReady();
+
+    double getValue();
+
+    default double getSecondaryValue() {
+        return Double.NaN;
+    }
+
+    default double getTertiaryValue() {
+        return Double.NaN;
+    }
+}
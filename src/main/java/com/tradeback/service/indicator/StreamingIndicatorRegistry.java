@@ -0,0 +1,234 @@
+package com.tradeback.service.indicator;
+
+import com.tradeback.model.BarSeries;
+import com.tradeback.model.Indicator.IndicatorType;
+import com.tradeback.service.MarketDataFetchPlanner;
+import com.tradeback.service.MarketDataIngestedEvent;
+import com.tradeback.service.MarketDataService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Реестр инкрементальных состояний индикаторов по ключу (symbol, interval, type, period).
+ * Состояние засевается историей один раз, дальше продвигается по событиям о новых барах.
+ * В состояние попадают только завершенные бары: незавершенный бар пришел бы еще раз в окончательном
+ * виде, а состояние не умеет заменять уже учтенный бар
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StreamingIndicatorRegistry {
+
+    // Для дневных и более крупных интервалов состояние считается свежим в течение часа
+    private static final long NON_INTRADAY_FRESHNESS_MILLIS = 60 * 60 * 1000L;
+
+    private final MarketDataService marketDataService;
+    private final LocalIndicatorEngine localIndicatorEngine;
+    private final MarketDataFetchPlanner fetchPlanner;
+
+    // symbol|interval -> состояния индикаторов этой пары
+    private final ConcurrentMap<String, ConcurrentMap<Key, State>> states = new ConcurrentHashMap<>();
+
+    public boolean isSupported(IndicatorType type) {
+        return type != null && StreamingIndicators.isSupported(type);
+    }
+
+    /**
+     * Возвращает состояние, при первом обращении засевая его историей баров
+     */
+    public State getOrSeed(String symbol, String interval, IndicatorType type, Integer period) {
+        State existing = find(symbol, interval, type, period);
+        if (existing != null) {
+            return existing;
+        }
+        int requiredBars = localIndicatorEngine.requiredBars(type, period);
+        return seed(symbol, interval, type, period, marketDataService.getBarSeries(symbol, interval, requiredBars));
+    }
+
+    /**
+     * Создает (или пересоздает) состояние и прогоняет через него историю
+     */
+    public State seed(String symbol, String interval, IndicatorType type, Integer period, BarSeries history) {
+        int effectivePeriod = LocalIndicatorEngine.effectivePeriod(type, period);
+        State state = new State(StreamingIndicators.create(type, effectivePeriod));
+        BarSeries completed = completedBars(interval, history);
+        state.advance(completed);
+
+        statesFor(symbol, interval).put(new Key(type, effectivePeriod), state);
+        log.debug("Seeded streaming {}({}) for {} {} with {} bars",
+                type, effectivePeriod, symbol, interval, completed.size());
+        return state;
+    }
+
+    /**
+     * Продвигает существующее состояние на завершенные бары history новее уже учтенных (O(новых баров));
+     * состояние засевается, только если его еще нет
+     */
+    public State seedOrAdvance(String symbol, String interval, IndicatorType type, Integer period, BarSeries history) {
+        State existing = find(symbol, interval, type, period);
+        if (existing == null) {
+            return seed(symbol, interval, type, period, history);
+        }
+        existing.advance(completedBars(interval, history));
+        return existing;
+    }
+
+    public State find(String symbol, String interval, IndicatorType type, Integer period) {
+        Map<Key, State> bucket = states.get(bucketKey(symbol, interval));
+        if (bucket == null) {
+            return null;
+        }
+        return bucket.get(new Key(type, LocalIndicatorEngine.effectivePeriod(type, period)));
+    }
+
+    /**
+     * Состояние, которое не могло устареть с момента последнего бара
+     */
+    public State findFresh(String symbol, String interval, IndicatorType type, Integer period) {
+        State state = find(symbol, interval, type, period);
+        if (state == null || !state.isReady()) {
+            return null;
+        }
+        long age = System.currentTimeMillis() - state.getUpdatedAtMillis();
+        return age < freshnessMillis(interval) ? state : null;
+    }
+
+    /**
+     * Продвигает все состояния пары (symbol, interval) на новые бары
+     */
+    @EventListener
+    public void onMarketDataIngested(MarketDataIngestedEvent event) {
+        Map<Key, State> bucket = states.get(bucketKey(event.getSymbol(), event.getInterval()));
+        if (bucket == null || event.getBars().isEmpty()) {
+            return;
+        }
+        for (State state : bucket.values()) {
+            state.advance(event.getBars());
+        }
+        log.debug("Advanced {} streaming indicators for {} {}",
+                bucket.size(), event.getSymbol(), event.getInterval());
+    }
+
+    public void evict(String symbol, String interval) {
+        states.remove(bucketKey(symbol, interval));
+    }
+
+    private BarSeries completedBars(String interval, BarSeries history) {
+        int to = history.lowerBound(fetchPlanner.lastCompletedBar(interval) + 1);
+        return to == history.size() ? history : history.slice(0, to);
+    }
+
+    private ConcurrentMap<Key, State> statesFor(String symbol, String interval) {
+        return states.computeIfAbsent(bucketKey(symbol, interval), k -> new ConcurrentHashMap<>());
+    }
+
+    private String bucketKey(String symbol, String interval) {
+        return symbol.toUpperCase() + "|" + interval.toLowerCase();
+    }
+
+    private long freshnessMillis(String interval) {
+        String normalized = interval.toLowerCase();
+        if (normalized.endsWith("min")) {
+            return Long.parseLong(normalized.substring(0, normalized.length() - 3)) * 60_000L;
+        }
+        return NON_INTRADAY_FRESHNESS_MILLIS;
+    }
+
+    /**
+     * Потокобезопасная обертка над состоянием индикатора с отметкой последнего учтенного бара
+     */
+    public static class State {
+        private final StreamingIndicator indicator;
+        private long lastTimestamp = Long.MIN_VALUE;
+        private volatile long updatedAtMillis;
+
+        State(StreamingIndicator indicator) {
+            this.indicator = indicator;
+        }
+
+        /**
+         * Учитывает бары ряда, пропуская уже учтенные
+         */
+        synchronized void advance(BarSeries bars) {
+            long[] timestamps = bars.getTimestamps();
+            double[] open = bars.getOpen();
+            double[] high = bars.getHigh();
+            double[] low = bars.getLow();
+            double[] close = bars.getClose();
+            long[] volume = bars.getVolume();
+            for (int i = bars.lowerBound(lastTimestamp + 1); i < bars.size(); i++) {
+                indicator.update(open[i], high[i], low[i], close[i], volume[i], Math.floorDiv(timestamps[i], 86_400L));
+                lastTimestamp = timestamps[i];
+            }
+            updatedAtMillis = System.currentTimeMillis();
+        }
+
+        /**
+         * Учитывает один новый бар; устаревшие и повторные бары игнорируются
+         */
+        public synchronized boolean update(long epochSecond, double open, double high, double low,
+                                           double close, long volume) {
+            if (epochSecond <= lastTimestamp) {
+                return false;
+            }
+            indicator.update(open, high, low, close, volume, Math.floorDiv(epochSecond, 86_400L));
+            lastTimestamp = epochSecond;
+            updatedAtMillis = System.currentTimeMillis();
+            return true;
+        }
+
+        public synchronized boolean isReady() {
+            return indicator.isReady();
+        }
+
+        public synchronized double getValue() {
+            return indicator.getValue();
+        }
+
+        public synchronized double getSecondaryValue() {
+            return indicator.getSecondaryValue();
+        }
+
+        public synchronized double getTertiaryValue() {
+            return indicator.getTertiaryValue();
+        }
+
+        public synchronized long getLastTimestamp() {
+            return lastTimestamp;
+        }
+
+        public long getUpdatedAtMillis() {
+            return updatedAtMillis;
+        }
+    }
+
+    private static final class Key {
+        private final IndicatorType type;
+        private final int period;
+
+        private Key(IndicatorType type, int period) {
+            this.type = type;
+            this.period = period;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return period == other.period && type == other.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, period);
+        }
+    }
+}
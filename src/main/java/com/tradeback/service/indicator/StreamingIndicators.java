@@ -0,0 +1,409 @@
+package com.tradeback.service.indicator;
+
+import com.tradeback.model.Indicator.IndicatorType;
+
+/**
+ * Инкрементальные реализации индикаторов: EMA, SMA, RSI (Уайлдер), MACD, Bollinger Bands, ATR, OBV, VWAP
+ */
+public final class StreamingIndicators {
+
+    private StreamingIndicators() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * Поддерживается ли тип в инкрементальном режиме
+     */
+    public static boolean isSupported(IndicatorType type) {
+        switch (type) {
+            case SMA:
+            case EMA:
+            case RSI:
+            case MACD:
+            case MACDFIX:
+            case BBANDS:
+            case ATR:
+            case OBV:
+            case VWAP:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Создает пустое состояние индикатора (период уже приведён к эффективному)
+     */
+    public static StreamingIndicator create(IndicatorType type, int period) {
+        switch (type) {
+            case SMA:
+                return new Sma(period);
+            case EMA:
+                return new Ema(period);
+            case RSI:
+                return new Rsi(period);
+            case MACD:
+            case MACDFIX:
+                return new Macd(LocalIndicatorEngine.MACD_FAST, LocalIndicatorEngine.MACD_SLOW,
+                        LocalIndicatorEngine.MACD_SIGNAL);
+            case BBANDS:
+                return new BollingerBands(period, LocalIndicatorEngine.BBANDS_DEVIATIONS);
+            case ATR:
+                return new Atr(period);
+            case OBV:
+                return new Obv();
+            case VWAP:
+                return new Vwap();
+            default:
+                throw new IllegalArgumentException("Indicator " + type + " has no streaming implementation");
+        }
+    }
+
+    /**
+     * EMA с затравкой из SMA первых period значений
+     */
+    public static class Ema implements StreamingIndicator {
+        private final int period;
+        private final double alpha;
+        private int count;
+        private double value = Double.NaN;
+
+        public Ema(int period) {
+            this(period, 2.0 / (period + 1));
+        }
+
+        Ema(int period, double alpha) {
+            this.period = period;
+            this.alpha = alpha;
+        }
+
+        public void add(double x) {
+            if (count < period) {
+                value = count == 0 ? x : value + x;
+                count++;
+                if (count == period) {
+                    value /= period;
+                }
+            } else {
+                value += alpha * (x - value);
+            }
+        }
+
+        @Override
+        public void update(double open, double high, double low, double close, long volume, long sessionKey) {
+            add(close);
+        }
+
+        @Override
+        public boolean isReady() {
+            return count >= period;
+        }
+
+        @Override
+        public double getValue() {
+            return isReady() ? value : Double.NaN;
+        }
+    }
+
+    /**
+     * Скользящее окно на кольцевом буфере с текущими суммой и суммой квадратов
+     */
+    public static class Sma implements StreamingIndicator {
+        private final double[] window;
+        private int index;
+        private int count;
+        private double sum;
+        private double sumOfSquares;
+
+        public Sma(int period) {
+            this.window = new double[period];
+        }
+
+        public void add(double x) {
+            double evicted = window[index];
+            window[index] = x;
+            if (count < window.length) {
+                count++;
+                sum += x;
+                sumOfSquares += x * x;
+            } else {
+                sum += x - evicted;
+                sumOfSquares += x * x - evicted * evicted;
+            }
+            index++;
+            if (index == window.length) {
+                index = 0;
+                resum();
+            }
+        }
+
+        /**
+         * Пересчет сумм раз в период, чтобы не накапливалась ошибка округления (амортизированно O(1))
+         */
+        private void resum() {
+            double s = 0;
+            double sq = 0;
+            for (double x : window) {
+                s += x;
+                sq += x * x;
+            }
+            sum = s;
+            sumOfSquares = sq;
+        }
+
+        @Override
+        public void update(double open, double high, double low, double close, long volume, long sessionKey) {
+            add(close);
+        }
+
+        @Override
+        public boolean isReady() {
+            return count == window.length;
+        }
+
+        @Override
+        public double getValue() {
+            return isReady() ? sum / window.length : Double.NaN;
+        }
+
+        public double getStdDev() {
+            if (!isReady()) {
+                return Double.NaN;
+            }
+            double mean = sum / window.length;
+            return Math.sqrt(Math.max(0, sumOfSquares / window.length - mean * mean));
+        }
+    }
+
+    /**
+     * RSI со сглаживанием Уайлдера
+     */
+    public static class Rsi implements StreamingIndicator {
+        private final int period;
+        private int count;
+        private double previousClose = Double.NaN;
+        private double gain;
+        private double loss;
+
+        public Rsi(int period) {
+            this.period = period;
+        }
+
+        @Override
+        public void update(double open, double high, double low, double close, long volume, long sessionKey) {
+            if (Double.isNaN(previousClose)) {
+                previousClose = close;
+                return;
+            }
+            double diff = close - previousClose;
+            previousClose = close;
+            double up = Math.max(diff, 0);
+            double down = Math.max(-diff, 0);
+            count++;
+            if (count <= period) {
+                gain += up;
+                loss += down;
+                if (count == period) {
+                    gain /= period;
+                    loss /= period;
+                }
+            } else {
+                gain = (gain * (period - 1) + up) / period;
+                loss = (loss * (period - 1) + down) / period;
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return count >= period;
+        }
+
+        @Override
+        public double getValue() {
+            if (!isReady()) {
+                return Double.NaN;
+            }
+            return IndicatorMath.rsiValue(gain, loss);
+        }
+    }
+
+    /**
+     * MACD: линия, сигнальная линия и гистограмма. Быстрая EMA получает бары с номера
+     * slow - fast, чтобы стартовать вместе с медленной (как в TA-Lib и IndicatorContext.macd)
+     */
+    public static class Macd implements StreamingIndicator {
+        private final Ema fast;
+        private final Ema slow;
+        private final Ema signal;
+        private final int fastOffset;
+        private int bars;
+
+        public Macd(int fastPeriod, int slowPeriod, int signalPeriod) {
+            this.fast = new Ema(fastPeriod);
+            this.slow = new Ema(slowPeriod);
+            this.signal = new Ema(signalPeriod);
+            this.fastOffset = slowPeriod - fastPeriod;
+        }
+
+        @Override
+        public void update(double open, double high, double low, double close, long volume, long sessionKey) {
+            if (bars++ >= fastOffset) {
+                fast.add(close);
+            }
+            slow.add(close);
+            if (slow.isReady()) {
+                signal.add(fast.getValue() - slow.getValue());
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return slow.isReady();
+        }
+
+        @Override
+        public double getValue() {
+            return isReady() ? fast.getValue() - slow.getValue() : Double.NaN;
+        }
+
+        @Override
+        public double getSecondaryValue() {
+            return signal.getValue();
+        }
+
+        @Override
+        public double getTertiaryValue() {
+            return getValue() - signal.getValue();
+        }
+    }
+
+    /**
+     * Bollinger Bands: средняя, верхняя и нижняя линии
+     */
+    public static class BollingerBands implements StreamingIndicator {
+        private final Sma sma;
+        private final double deviations;
+
+        public BollingerBands(int period, double deviations) {
+            this.sma = new Sma(period);
+            this.deviations = deviations;
+        }
+
+        @Override
+        public void update(double open, double high, double low, double close, long volume, long sessionKey) {
+            sma.add(close);
+        }
+
+        @Override
+        public boolean isReady() {
+            return sma.isReady();
+        }
+
+        @Override
+        public double getValue() {
+            return sma.getValue();
+        }
+
+        @Override
+        public double getSecondaryValue() {
+            return sma.getValue() + deviations * sma.getStdDev();
+        }
+
+        @Override
+        public double getTertiaryValue() {
+            return sma.getValue() - deviations * sma.getStdDev();
+        }
+    }
+
+    /**
+     * ATR: сглаживание Уайлдера истинного диапазона
+     */
+    public static class Atr implements StreamingIndicator {
+        private final Ema average;
+        private double previousClose = Double.NaN;
+
+        public Atr(int period) {
+            this.average = new Ema(period, 1.0 / period);
+        }
+
+        @Override
+        public void update(double open, double high, double low, double close, long volume, long sessionKey) {
+            if (!Double.isNaN(previousClose)) {
+                double trueRange = Math.max(high - low,
+                        Math.max(Math.abs(high - previousClose), Math.abs(low - previousClose)));
+                average.add(trueRange);
+            }
+            previousClose = close;
+        }
+
+        @Override
+        public boolean isReady() {
+            return average.isReady();
+        }
+
+        @Override
+        public double getValue() {
+            return average.getValue();
+        }
+    }
+
+    /**
+     * On Balance Volume
+     */
+    public static class Obv implements StreamingIndicator {
+        private double value;
+        private double previousClose = Double.NaN;
+
+        @Override
+        public void update(double open, double high, double low, double close, long volume, long sessionKey) {
+            if (Double.isNaN(previousClose)) {
+                value = volume;
+            } else if (close > previousClose) {
+                value += volume;
+            } else if (close < previousClose) {
+                value -= volume;
+            }
+            previousClose = close;
+        }
+
+        @Override
+        public boolean isReady() {
+            return !Double.isNaN(previousClose);
+        }
+
+        @Override
+        public double getValue() {
+            return isReady() ? value : Double.NaN;
+        }
+    }
+
+    /**
+     * VWAP со сбросом накоплений при смене торговой сессии
+     */
+    public static class Vwap implements StreamingIndicator {
+        private long session = Long.MIN_VALUE;
+        private double priceVolume;
+        private double volume;
+
+        @Override
+        public void update(double open, double high, double low, double close, long barVolume, long sessionKey) {
+            if (sessionKey != session) {
+                session = sessionKey;
+                priceVolume = 0;
+                volume = 0;
+            }
+            priceVolume += (high + low + close) / 3.0 * barVolume;
+            volume += barVolume;
+        }
+
+        @Override
+        public boolean isReady() {
+            return volume > 0;
+        }
+
+        @Override
+        public double getValue() {
+            return isReady() ? priceVolume / volume : Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.tradeback.service.indicator;
+
+import com.tradeback.model.Indicator.IndicatorType;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD-ядра на jdk.incubator.vector. Требуют запуска JVM с --add-modules jdk.incubator.vector;
+ * класс загружается только через {@link IndicatorKernelSelector}, когда модуль доступен.
+ * Хвосты массивов, не кратные ширине вектора, досчитываются скалярно.
+ */
+final class VectorKernels implements IndicatorKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private final ScalarKernels scalar = new ScalarKernels();
+
+    VectorKernels() {
+        if (SPECIES.length() < 2) {
+            throw new UnsupportedOperationException("No SIMD lanes for double on this platform");
+        }
+    }
+
+    static int lanes() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public void mathTransform(IndicatorType type, double[] src, double[] out) {
+        VectorOperators.Unary op = unaryOperator(type);
+        if (op == null) {
+            scalar.mathTransform(type, src, out);
+            return;
+        }
+        int i = 0;
+        int bound = SPECIES.loopBound(src.length);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, src, i).lanewise(op).intoArray(out, i);
+        }
+        for (; i < src.length; i++) {
+            out[i] = ScalarKernels.apply(type, src[i]);
+        }
+    }
+
+    /**
+     * Векторный оператор для преобразования; null - векторного аналога нет (CEIL, FLOOR)
+     */
+    private static VectorOperators.Unary unaryOperator(IndicatorType type) {
+        switch (type) {
+            case ACOS: return VectorOperators.ACOS;
+            case ASIN: return VectorOperators.ASIN;
+            case ATAN: return VectorOperators.ATAN;
+            case COS: return VectorOperators.COS;
+            case COSH: return VectorOperators.COSH;
+            case EXP: return VectorOperators.EXP;
+            case LN: return VectorOperators.LOG;
+            case LOG10: return VectorOperators.LOG10;
+            case SIN: return VectorOperators.SIN;
+            case SINH: return VectorOperators.SINH;
+            case SQRT: return VectorOperators.SQRT;
+            case TAN: return VectorOperators.TAN;
+            case TANH: return VectorOperators.TANH;
+            default: return null;
+        }
+    }
+
+    @Override
+    public void avgPrice(double[] open, double[] high, double[] low, double[] close, double[] out) {
+        int i = 0;
+        int bound = SPECIES.loopBound(close.length);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, open, i)
+                    .add(DoubleVector.fromArray(SPECIES, high, i))
+                    .add(DoubleVector.fromArray(SPECIES, low, i))
+                    .add(DoubleVector.fromArray(SPECIES, close, i))
+                    .div(4.0)
+                    .intoArray(out, i);
+        }
+        for (; i < close.length; i++) {
+            out[i] = (open[i] + high[i] + low[i] + close[i]) / 4.0;
+        }
+    }
+
+    @Override
+    public void medPrice(double[] high, double[] low, double[] out) {
+        int i = 0;
+        int bound = SPECIES.loopBound(high.length);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, high, i)
+                    .add(DoubleVector.fromArray(SPECIES, low, i))
+                    .div(2.0)
+                    .intoArray(out, i);
+        }
+        for (; i < high.length; i++) {
+            out[i] = (high[i] + low[i]) / 2.0;
+        }
+    }
+
+    @Override
+    public void typicalPrice(double[] high, double[] low, double[] close, double[] out) {
+        int i = 0;
+        int bound = SPECIES.loopBound(close.length);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, high, i)
+                    .add(DoubleVector.fromArray(SPECIES, low, i))
+                    .add(DoubleVector.fromArray(SPECIES, close, i))
+                    .div(3.0)
+                    .intoArray(out, i);
+        }
+        for (; i < close.length; i++) {
+            out[i] = (high[i] + low[i] + close[i]) / 3.0;
+        }
+    }
+
+    @Override
+    public void weightedClose(double[] high, double[] low, double[] close, double[] out) {
+        int i = 0;
+        int bound = SPECIES.loopBound(close.length);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, high, i)
+                    .add(DoubleVector.fromArray(SPECIES, low, i))
+                    .add(DoubleVector.fromArray(SPECIES, close, i).mul(2.0))
+                    .div(4.0)
+                    .intoArray(out, i);
+        }
+        for (; i < close.length; i++) {
+            out[i] = (high[i] + low[i] + 2 * close[i]) / 4.0;
+        }
+    }
+
+    /**
+     * Скользящая сумма блоками по ширине вектора:
+     * out[i..i+L) = out[i-L..i) + сумма L сдвинутых разностей (src[j] - src[j - period]).
+     * Зависимость по данным остается только между соседними блоками, а не между элементами
+     */
+    @Override
+    public void rollingSum(double[] src, int start, int period, double[] out) {
+        if (period <= 0 || src.length - start < period) {
+            return;
+        }
+        int lanes = SPECIES.length();
+        int first = start + period - 1;
+
+        // Первые L окон считаем напрямую - они затравка для блочного шага
+        int seeded = Math.min(src.length, first + lanes);
+        for (int i = first; i < seeded; i++) {
+            double sum = 0;
+            for (int j = i - period + 1; j <= i; j++) {
+                sum += src[j];
+            }
+            out[i] = sum;
+        }
+
+        int i = seeded;
+        for (; i + lanes <= src.length; i += lanes) {
+            DoubleVector sum = DoubleVector.fromArray(SPECIES, out, i - lanes);
+            for (int k = 0; k < lanes; k++) {
+                sum = sum.add(DoubleVector.fromArray(SPECIES, src, i - k))
+                        .sub(DoubleVector.fromArray(SPECIES, src, i - k - period));
+            }
+            sum.intoArray(out, i);
+        }
+        for (; i < src.length; i++) {
+            out[i] = out[i - 1] + src[i] - src[i - period];
+        }
+    }
+}
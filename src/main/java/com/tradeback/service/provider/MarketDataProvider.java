@@ -0,0 +1,89 @@
+package com.tradeback.service.provider;
+
+import com.tradeback.dto.GlobalQuote;
+import com.tradeback.dto.IndicatorSeries;
+import com.tradeback.model.BarSeries;
+import com.tradeback.model.Indicator;
+import com.tradeback.model.Listing;
+import com.tradeback.service.alphavantage.RateLimitExceededException;
+import com.tradeback.service.alphavantage.RequestPriority;
+import com.tradeback.service.http.UpstreamException;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Источник рыночных данных: временные ряды, котировки, список инструментов и технические индикаторы.
+ * Активная реализация выбирается свойством market-data.provider (alpha-vantage - по умолчанию, replay -
+ * локальные записанные или синтетические данные без сети). Ошибки источника - UpstreamException
+ */
+public interface MarketDataProvider {
+
+    String getName();
+
+    /**
+     * Бары по возрастанию времени: fullHistory - вся доступная история, иначе последние ~100 баров
+     */
+    BarSeries getTimeSeries(String symbol, String interval, boolean fullHistory, RequestPriority priority);
+
+    GlobalQuote getQuote(String symbol, RequestPriority priority);
+
+    /**
+     * Сколько символов getQuotes запрашивает за один вызов источника
+     */
+    default int getQuoteBatchSize() {
+        return 1;
+    }
+
+    /**
+     * Котировки нескольких символов (не больше getQuoteBatchSize за вызов источника) по символу.
+     * По умолчанию - по одной; символ, запрос которого не удался, в результат не попадает.
+     * Отказ лимитера останавливает обход: уже полученные котировки возвращаются
+     */
+    default Map<String, GlobalQuote> getQuotes(Collection<String> symbols, RequestPriority priority) {
+        Map<String, GlobalQuote> quotes = new LinkedHashMap<>();
+        RuntimeException lastError = null;
+        for (String symbol : symbols) {
+            try {
+                quotes.put(symbol, getQuote(symbol, priority));
+            } catch (UpstreamException e) {
+                lastError = e;
+            } catch (RateLimitExceededException e) {
+                lastError = e;
+                break;
+            }
+        }
+        if (quotes.isEmpty() && lastError != null) {
+            throw lastError;
+        }
+        return quotes;
+    }
+
+    /**
+     * Все активные инструменты
+     */
+    List<Listing> getListings(RequestPriority priority);
+
+    /**
+     * Название и биржа инструмента или null, если источник о нем ничего не знает
+     */
+    Listing getSymbolDetails(String symbol, RequestPriority priority);
+
+    CompletableFuture<IndicatorSeries> getIndicatorSeriesAsync(Indicator indicator, RequestPriority priority);
+
+    default IndicatorSeries getIndicatorSeries(Indicator indicator, RequestPriority priority) {
+        try {
+            return getIndicatorSeriesAsync(indicator, priority).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new UpstreamException(getName() + " request failed: " + cause.getMessage(), 0, cause);
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package com.tradeback.service.provider;
+
+import com.tradeback.dto.GlobalQuote;
+import com.tradeback.dto.IndicatorSeries;
+import com.tradeback.model.BarSeries;
+import com.tradeback.model.Indicator;
+import com.tradeback.model.Listing;
+import com.tradeback.service.MarketHoursService;
+import com.tradeback.service.alphavantage.AlphaVantageCsvReader;
+import com.tradeback.service.alphavantage.AlphaVantageMarketDataProvider;
+import com.tradeback.service.alphavantage.AlphaVantageResponseParser;
+import com.tradeback.service.alphavantage.RequestPriority;
+import com.tradeback.service.http.UpstreamException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Офлайн источник для нагрузочных тестов и бенчмарков: отдает записанные ответы Alpha Vantage из
+ * каталога market-data.replay.directory, а для рядов без записи - синтетические бары (детерминированное
+ * случайное блуждание по торговым дням и часам основной сессии). Файлы:
+ * SYMBOL_interval.csv или .json - ответ TIME_SERIES_* (datatype=csv или json),
+ * SYMBOL_interval_TYPE.json - ответ технического индикатора, listing_status.csv - ответ LISTING_STATUS.
+ * Задержка ответа (latency-ms плюс случайная добавка до latency-jitter-ms) и доля ошибок (error-rate,
+ * UpstreamException со статусом 503) настраиваются, чтобы воспроизводить поведение внешнего API
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "market-data.provider", havingValue = "replay")
+public class ReplayMarketDataProvider implements MarketDataProvider {
+
+    private static final int COMPACT_BARS = 100;
+    private static final int QUOTE_BATCH_SIZE = 100;
+    private static final int INJECTED_ERROR_STATUS = 503;
+    private static final String LISTINGS_FILE = "listing_status.csv";
+
+    private final MarketHoursService marketHoursService;
+    private final Path directory;
+    private final long latencyMillis;
+    private final long latencyJitterMillis;
+    private final double errorRate;
+    private final boolean synthetic;
+    private final int syntheticBars;
+
+    private final ConcurrentMap<String, BarSeries> seriesCache = new ConcurrentHashMap<>();
+    private volatile List<Listing> listings;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    public ReplayMarketDataProvider(MarketHoursService marketHoursService,
+                                    @Value("${market-data.replay.directory:data/replay}") String directory,
+                                    @Value("${market-data.replay.latency-ms:0}") long latencyMillis,
+                                    @Value("${market-data.replay.latency-jitter-ms:0}") long latencyJitterMillis,
+                                    @Value("${market-data.replay.error-rate:0.0}") double errorRate,
+                                    @Value("${market-data.replay.synthetic:true}") boolean synthetic,
+                                    @Value("${market-data.replay.synthetic-bars:2000}") int syntheticBars) {
+        this.marketHoursService = marketHoursService;
+        this.directory = Path.of(directory);
+        this.latencyMillis = Math.max(0, latencyMillis);
+        this.latencyJitterMillis = Math.max(0, latencyJitterMillis);
+        this.errorRate = errorRate;
+        this.synthetic = synthetic;
+        this.syntheticBars = Math.max(COMPACT_BARS, syntheticBars);
+        log.info("Replay market data provider: directory={}, latency={}+{} ms, error rate={}, synthetic={}",
+                this.directory.toAbsolutePath(), this.latencyMillis, this.latencyJitterMillis, errorRate, synthetic);
+    }
+
+    @Override
+    public String getName() {
+        return "replay";
+    }
+
+    @Override
+    public BarSeries getTimeSeries(String symbol, String interval, boolean fullHistory, RequestPriority priority) {
+        return await(respond(() -> {
+            BarSeries series = loadSeries(symbol, interval);
+            return fullHistory || series.size() <= COMPACT_BARS
+                    ? series : series.slice(series.size() - COMPACT_BARS, series.size());
+        }));
+    }
+
+    /**
+     * Котировка по двум последним дневным барам
+     */
+    @Override
+    public GlobalQuote getQuote(String symbol, RequestPriority priority) {
+        return await(respond(() -> buildQuote(symbol)));
+    }
+
+    @Override
+    public int getQuoteBatchSize() {
+        return QUOTE_BATCH_SIZE;
+    }
+
+    /**
+     * Вся пачка - один ответ с одной задержкой и одним шансом ошибки, как у пакетного запроса котировок
+     */
+    @Override
+    public Map<String, GlobalQuote> getQuotes(Collection<String> symbols, RequestPriority priority) {
+        return await(respond(() -> {
+            Map<String, GlobalQuote> quotes = new LinkedHashMap<>();
+            for (String symbol : symbols) {
+                quotes.put(symbol, buildQuote(symbol));
+            }
+            return quotes;
+        }));
+    }
+
+    /**
+     * listing_status.csv, иначе - инструменты, для которых есть записанные ряды
+     */
+    @Override
+    public List<Listing> getListings(RequestPriority priority) {
+        return await(respond(this::loadListings));
+    }
+
+    @Override
+    public Listing getSymbolDetails(String symbol, RequestPriority priority) {
+        return await(respond(() -> loadListings().stream()
+                .filter(listing -> listing.getSymbol().equalsIgnoreCase(symbol))
+                .findFirst()
+                .orElse(null)));
+    }
+
+    /**
+     * Записанный ответ индикатора; без записи - пустой ряд (индикаторы, которые умеет LocalIndicatorEngine,
+     * считаются локально по барам и сюда не доходят)
+     */
+    @Override
+    public CompletableFuture<IndicatorSeries> getIndicatorSeriesAsync(Indicator indicator, RequestPriority priority) {
+        return respond(() -> {
+            Path file = directory.resolve(fileName(indicator.getSymbol(), indicator.getInterval())
+                    + "_" + indicator.getType().name() + ".json");
+            if (!Files.isRegularFile(file)) {
+                log.debug("No recorded {} series for {} {}", indicator.getType(), indicator.getSymbol(),
+                        indicator.getInterval());
+                return IndicatorSeries.empty(indicator.getSymbol(), indicator.getInterval(), indicator.getType(),
+                        indicator.getPeriod());
+            }
+            try {
+                return AlphaVantageResponseParser.parseTechnicalAnalysis(Files.readAllBytes(file),
+                        indicator.getSymbol(), indicator.getInterval(), indicator.getType(), indicator.getPeriod(),
+                        AlphaVantageMarketDataProvider.getLineKeys(indicator.getType()));
+            } catch (IOException e) {
+                throw new UpstreamException("replay file " + file + " is unreadable: " + e.getMessage(), 200, e);
+            }
+        });
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getInjectedErrors() {
+        return injectedErrors.get();
+    }
+
+    /**
+     * Ответ с настроенной задержкой и долей ошибок; задержка не занимает поток вызывающего
+     */
+    private <T> CompletableFuture<T> respond(Supplier<T> response) {
+        requests.incrementAndGet();
+        Supplier<T> guarded = () -> {
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+                throw new UpstreamException("replay responded with injected HTTP " + INJECTED_ERROR_STATUS,
+                        INJECTED_ERROR_STATUS, null);
+            }
+            return response.get();
+        };
+
+        long delay = latencyMillis
+                + (latencyJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(latencyJitterMillis + 1) : 0);
+        if (delay == 0) {
+            try {
+                return CompletableFuture.completedFuture(guarded.get());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return CompletableFuture.supplyAsync(guarded, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS));
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new UpstreamException("replay request failed: " + cause.getMessage(), 0, cause);
+        }
+    }
+
+    private BarSeries loadSeries(String symbol, String interval) {
+        String key = fileName(symbol, interval);
+        return seriesCache.computeIfAbsent(key, k -> {
+            Path csv = directory.resolve(k + ".csv");
+            Path json = directory.resolve(k + ".json");
+            try {
+                if (Files.isRegularFile(csv)) {
+                    return AlphaVantageCsvReader.parse(Files.readAllBytes(csv), symbol, interval);
+                }
+                if (Files.isRegularFile(json)) {
+                    return AlphaVantageResponseParser.parseTimeSeries(Files.readAllBytes(json), symbol, interval);
+                }
+            } catch (IOException e) {
+                throw new UpstreamException("replay file for " + k + " is unreadable: " + e.getMessage(), 200, e);
+            }
+            if (!synthetic) {
+                throw new UpstreamException("replay has no recording for " + symbol + " " + interval, 404, null);
+            }
+            return generateSeries(symbol, interval);
+        });
+    }
+
+    private GlobalQuote buildQuote(String symbol) {
+        BarSeries daily = loadSeries(symbol, "daily");
+        GlobalQuote quote = new GlobalQuote();
+        quote.setSymbol(symbol);
+        int last = daily.size() - 1;
+        if (last < 0) {
+            return quote;
+        }
+        quote.setOpen(daily.getOpen()[last]);
+        quote.setHigh(daily.getHigh()[last]);
+        quote.setLow(daily.getLow()[last]);
+        quote.setPrice(daily.getClose()[last]);
+        quote.setVolume(daily.getVolume()[last]);
+        quote.setLatestTradingDay(daily.getDateTime(last).toLocalDate());
+        double previousClose = last > 0 ? daily.getClose()[last - 1] : daily.getOpen()[last];
+        quote.setPreviousClose(previousClose);
+        quote.setChange(quote.getPrice() - previousClose);
+        quote.setChangePercent(previousClose != 0 ? quote.getChange() / previousClose * 100 : 0);
+        return quote;
+    }
+
+    private List<Listing> loadListings() {
+        List<Listing> loaded = listings;
+        if (loaded != null) {
+            return loaded;
+        }
+        Path file = directory.resolve(LISTINGS_FILE);
+        try {
+            if (Files.isRegularFile(file)) {
+                loaded = AlphaVantageMarketDataProvider.parseListings(
+                        new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            } else {
+                loaded = recordedListings();
+            }
+        } catch (IOException e) {
+            throw new UpstreamException("replay listings are unreadable: " + e.getMessage(), 200, e);
+        }
+        listings = Collections.unmodifiableList(loaded);
+        return listings;
+    }
+
+    private List<Listing> recordedListings() throws IOException {
+        List<Listing> recorded = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return recorded;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.indexOf('_') > 0 && (name.endsWith(".csv") || name.endsWith(".json")))
+                    .map(name -> name.substring(0, name.indexOf('_')))
+                    .distinct()
+                    .sorted()
+                    .forEach(symbol -> recorded.add(new Listing(symbol, symbol, "REPLAY", "Stock", null, null,
+                            "Active")));
+        }
+        return recorded;
+    }
+
+    /**
+     * Синтетический ряд: время баров - по календарю торгов до текущего момента, цены - случайное
+     * блуждание с зерном от symbol и interval, поэтому повторные запуски видят одни и те же данные
+     */
+    private BarSeries generateSeries(String symbol, String interval) {
+        List<LocalDateTime> times = barTimes(interval.toLowerCase(Locale.ROOT), syntheticBars);
+        Random random = new Random((symbol.toUpperCase(Locale.ROOT) + "|" + interval.toLowerCase(Locale.ROOT))
+                .hashCode());
+        double volatility = volatility(interval.toLowerCase(Locale.ROOT));
+        double price = 20 + random.nextInt(480);
+
+        BarSeries.Builder builder = BarSeries.builder(symbol, interval, times.size());
+        for (int i = times.size() - 1; i >= 0; i--) {
+            double open = price;
+            double close = Math.max(0.01, open * Math.exp(volatility * random.nextGaussian()));
+            double high = Math.max(open, close) * (1 + Math.abs(random.nextGaussian()) * volatility / 2);
+            double low = Math.min(open, close) * (1 - Math.abs(random.nextGaussian()) * volatility / 2);
+            long volume = 100_000 + random.nextInt(900_000);
+            builder.add(times.get(i), round(open), round(high), round(low), round(close), volume);
+            price = close;
+        }
+        log.info("Generated {} synthetic {} bars for {}", times.size(), interval, symbol);
+        return builder.build();
+    }
+
+    /**
+     * Времена последних count завершенных баров, от новых к старым
+     */
+    private List<LocalDateTime> barTimes(String interval, int count) {
+        List<LocalDateTime> times = new ArrayList<>(count);
+        LocalDateTime now = marketHoursService.getMarketTime();
+
+        if (interval.endsWith("min")) {
+            long minutes = Long.parseLong(interval.substring(0, interval.length() - 3));
+            LocalDateTime midnight = now.toLocalDate().atStartOfDay();
+            long elapsed = ChronoUnit.MINUTES.between(midnight, now);
+            LocalDateTime time = midnight.plusMinutes((elapsed / minutes - 1) * minutes);
+            while (times.size() < count) {
+                LocalDate date = time.toLocalDate();
+                LocalTime close = marketHoursService.getSessionClose(date);
+                if (!marketHoursService.isTradingDay(date)
+                        || time.toLocalTime().isBefore(marketHoursService.getSessionOpen(date))) {
+                    LocalDate previous = date.minusDays(1);
+                    time = previous.atTime(marketHoursService.getSessionClose(previous)).minusMinutes(minutes);
+                } else if (!time.toLocalTime().isBefore(close)) {
+                    time = date.atTime(close).minusMinutes(minutes);
+                } else {
+                    times.add(time);
+                    time = time.minusMinutes(minutes);
+                }
+            }
+            return times;
+        }
+
+        LocalDate date = now.toLocalDate();
+        if (!marketHoursService.isTradingDay(date)
+                || now.toLocalTime().isBefore(marketHoursService.getSessionClose(date))) {
+            date = date.minusDays(1);
+        }
+        if (interval.startsWith("weekly")) {
+            date = date.with(TemporalAdjusters.previousOrSame(DayOfWeek.FRIDAY));
+            for (; times.size() < count; date = date.minusWeeks(1)) {
+                times.add(date.atStartOfDay());
+            }
+        } else if (interval.startsWith("monthly")) {
+            for (LocalDate month = date.withDayOfMonth(1); times.size() < count; month = month.minusMonths(1)) {
+                LocalDate last = month.with(TemporalAdjusters.lastDayOfMonth());
+                while (last.getDayOfWeek() == DayOfWeek.SATURDAY || last.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                    last = last.minusDays(1);
+                }
+                if (!last.isAfter(date)) {
+                    times.add(last.atStartOfDay());
+                }
+            }
+        } else {
+            for (; times.size() < count; date = date.minusDays(1)) {
+                if (marketHoursService.isTradingDay(date)) {
+                    times.add(date.atStartOfDay());
+                }
+            }
+        }
+        return times;
+    }
+
+    private static double volatility(String interval) {
+        if (interval.endsWith("min")) {
+            return 0.015 * Math.sqrt(Double.parseDouble(interval.substring(0, interval.length() - 3)) / 390);
+        }
+        if (interval.startsWith("weekly")) {
+            return 0.035;
+        }
+        if (interval.startsWith("monthly")) {
+            return 0.07;
+        }
+        return 0.015;
+    }
+
+    private static double round(double price) {
+        return Math.round(price * 10000) / 10000.0;
+    }
+
+    private static String fileName(String symbol, String interval) {
+        return symbol.toUpperCase(Locale.ROOT) + "_" + interval.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,340 @@
+package com.tradeback.service.store;
+
+import com.tradeback.model.BarSeries;
+
+import java.util.Arrays;
+
+/**
+ * Сжатие блока баров в поток бит (по мотивам Gorilla): время - delta-of-delta с префиксными
+ * корзинами, объем - разность с предыдущим в zigzag varint. Цены - XOR с предыдущим значением того же
+ * столбца (совпадение - 1 бит, иначе только значимые биты XOR). Если все цены блока - точные десятичные
+ * дроби с не более чем MAX_DECIMALS знаками (центы), они кодируются целыми: close и open - разностью
+ * с предыдущим close, high и low - отступом от тела бара; XOR двоичных double по таким ценам сжимает
+ * плохо. Блок декодируется только целиком, последовательно от первого бара
+ */
+final class BarCodec {
+
+    private static final int MAX_DECIMALS = 4;
+    private static final double[] SCALES = {1, 10, 100, 1_000, 10_000};
+    // Целые цены точно представимы в double
+    private static final double MAX_SCALED = 1L << 52;
+
+    private BarCodec() {
+    }
+
+    /**
+     * Бары [from, to) ряда
+     */
+    static long[] encode(BarSeries series, int from, int to) {
+        long[] timestamps = series.getTimestamps();
+        double[][] prices = {series.getOpen(), series.getHigh(), series.getLow(), series.getClose()};
+        long[] volume = series.getVolume();
+
+        BitWriter out = new BitWriter(Math.max(4, (to - from) * 2));
+        int decimals = decimals(prices, from, to);
+        if (decimals < 0) {
+            out.write(0, 1);
+        } else {
+            out.write(1, 1);
+            out.write(decimals, 3);
+        }
+        double scale = decimals < 0 ? 0 : SCALES[decimals];
+
+        XorState[] states = {new XorState(), new XorState(), new XorState(), new XorState()};
+        long previousTimestamp = 0;
+        long previousDelta = 0;
+        long previousClose = 0;
+        long previousVolume = 0;
+        for (int i = from; i < to; i++) {
+            if (i == from) {
+                out.write(timestamps[i], 64);
+            } else {
+                long delta = timestamps[i] - previousTimestamp;
+                writeBucketed(out, delta - previousDelta);
+                previousDelta = delta;
+            }
+            previousTimestamp = timestamps[i];
+
+            if (decimals < 0) {
+                for (int column = 0; column < 4; column++) {
+                    states[column].write(out, Double.doubleToRawLongBits(prices[column][i]), i == from);
+                }
+            } else {
+                long open = Math.round(prices[0][i] * scale);
+                long high = Math.round(prices[1][i] * scale);
+                long low = Math.round(prices[2][i] * scale);
+                long close = Math.round(prices[3][i] * scale);
+                writeBucketed(out, close - previousClose);
+                writeBucketed(out, open - previousClose);
+                writeBucketed(out, high - Math.max(open, close));
+                writeBucketed(out, Math.min(open, close) - low);
+                previousClose = close;
+            }
+
+            long delta = volume[i] - previousVolume;
+            writeVarint(out, (delta << 1) ^ (delta >> 63));
+            previousVolume = volume[i];
+        }
+        return out.toArray();
+    }
+
+    /**
+     * Добавляет в builder бары блока со временем в [fromEpochSecond, toEpochSecond]
+     */
+    static void decode(long[] block, int count, long fromEpochSecond, long toEpochSecond, BarSeries.Builder builder) {
+        BitReader in = new BitReader(block);
+        int decimals = in.read(1) == 0 ? -1 : (int) in.read(3);
+        double scale = decimals < 0 ? 0 : SCALES[decimals];
+
+        XorState[] states = {new XorState(), new XorState(), new XorState(), new XorState()};
+        long timestamp = 0;
+        long delta = 0;
+        long previousClose = 0;
+        long volume = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                timestamp = in.read(64);
+            } else {
+                delta += readBucketed(in);
+                timestamp += delta;
+            }
+
+            double open;
+            double high;
+            double low;
+            double close;
+            if (decimals < 0) {
+                open = Double.longBitsToDouble(states[0].read(in, i == 0));
+                high = Double.longBitsToDouble(states[1].read(in, i == 0));
+                low = Double.longBitsToDouble(states[2].read(in, i == 0));
+                close = Double.longBitsToDouble(states[3].read(in, i == 0));
+            } else {
+                long scaledClose = previousClose + readBucketed(in);
+                long scaledOpen = previousClose + readBucketed(in);
+                long scaledHigh = Math.max(scaledOpen, scaledClose) + readBucketed(in);
+                long scaledLow = Math.min(scaledOpen, scaledClose) - readBucketed(in);
+                previousClose = scaledClose;
+                open = scaledOpen / scale;
+                high = scaledHigh / scale;
+                low = scaledLow / scale;
+                close = scaledClose / scale;
+            }
+            long zigzag = readVarint(in);
+            volume += (zigzag >>> 1) ^ -(zigzag & 1);
+
+            if (timestamp > toEpochSecond) {
+                return;
+            }
+            if (timestamp >= fromEpochSecond) {
+                builder.add(timestamp, open, high, low, close, volume);
+            }
+        }
+    }
+
+    /**
+     * Наименьшее число знаков после запятой, при котором все цены блока восстанавливаются точно, или -1
+     */
+    private static int decimals(double[][] prices, int from, int to) {
+        for (int decimals = 0; decimals <= MAX_DECIMALS; decimals++) {
+            if (isExact(prices, from, to, SCALES[decimals])) {
+                return decimals;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isExact(double[][] prices, int from, int to, double scale) {
+        for (double[] column : prices) {
+            for (int i = from; i < to; i++) {
+                double scaled = column[i] * scale;
+                if (!(Math.abs(scaled) < MAX_SCALED) || Math.round(scaled) / scale != column[i]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Знаковое целое, обычно 0 или малое: 0 | 10 + 7 бит | 110 + 9 бит | 1110 + 12 бит | 1111 + 64 бита
+    private static void writeBucketed(BitWriter out, long value) {
+        if (value == 0) {
+            out.write(0, 1);
+        } else if (value >= -63 && value <= 64) {
+            out.write(0b10, 2);
+            out.write(value + 63, 7);
+        } else if (value >= -255 && value <= 256) {
+            out.write(0b110, 3);
+            out.write(value + 255, 9);
+        } else if (value >= -2047 && value <= 2048) {
+            out.write(0b1110, 4);
+            out.write(value + 2047, 12);
+        } else {
+            out.write(0b1111, 4);
+            out.write(value, 64);
+        }
+    }
+
+    private static long readBucketed(BitReader in) {
+        if (in.read(1) == 0) {
+            return 0;
+        }
+        if (in.read(1) == 0) {
+            return in.read(7) - 63;
+        }
+        if (in.read(1) == 0) {
+            return in.read(9) - 255;
+        }
+        if (in.read(1) == 0) {
+            return in.read(12) - 2047;
+        }
+        return in.read(64);
+    }
+
+    private static void writeVarint(BitWriter out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((value & 0x7F) | 0x80, 8);
+            value >>>= 7;
+        }
+        out.write(value, 8);
+    }
+
+    private static long readVarint(BitReader in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            long b = in.read(8);
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Предыдущее значение столбца и окно значимых бит последнего XOR
+     */
+    private static final class XorState {
+        private long previous;
+        private int leading = -1;
+        private int trailing;
+
+        void write(BitWriter out, long bits, boolean first) {
+            if (first) {
+                out.write(bits, 64);
+                previous = bits;
+                return;
+            }
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                out.write(0, 1);
+                return;
+            }
+            int lead = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trail = Long.numberOfTrailingZeros(xor);
+            if (leading >= 0 && lead >= leading && trail >= trailing) {
+                // Значимые биты помещаются в окно предыдущего XOR
+                out.write(0b10, 2);
+                out.write(xor >>> trailing, 64 - leading - trailing);
+            } else {
+                int significant = 64 - lead - trail;
+                out.write(0b11, 2);
+                out.write(lead, 5);
+                out.write(significant & 63, 6);
+                out.write(xor >>> trail, significant);
+                leading = lead;
+                trailing = trail;
+            }
+        }
+
+        long read(BitReader in, boolean first) {
+            if (first) {
+                previous = in.read(64);
+                return previous;
+            }
+            if (in.read(1) == 0) {
+                return previous;
+            }
+            if (in.read(1) == 1) {
+                leading = (int) in.read(5);
+                int significant = (int) in.read(6);
+                if (significant == 0) {
+                    significant = 64;
+                }
+                trailing = 64 - leading - significant;
+            }
+            previous ^= in.read(64 - leading - trailing) << trailing;
+            return previous;
+        }
+    }
+
+    static final class BitWriter {
+        private long[] words;
+        private int word;
+        private int used;
+
+        BitWriter(int expectedWords) {
+            words = new long[expectedWords];
+        }
+
+        void write(long value, int bits) {
+            if (bits == 0) {
+                return;
+            }
+            if (bits < 64) {
+                value &= (1L << bits) - 1;
+            }
+            int free = 64 - used;
+            if (bits <= free) {
+                words[word] |= bits == 64 ? value : value << (free - bits);
+                used += bits;
+            } else {
+                int rest = bits - free;
+                words[word] |= value >>> rest;
+                used = 64;
+                next();
+                words[word] = value << (64 - rest);
+                used = rest;
+            }
+            if (used == 64) {
+                next();
+            }
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(words, used == 0 ? word : word + 1);
+        }
+
+        private void next() {
+            word++;
+            used = 0;
+            if (word == words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+        }
+    }
+
+    static final class BitReader {
+        private final long[] words;
+        private long position;
+
+        BitReader(long[] words) {
+            this.words = words;
+        }
+
+        long read(int bits) {
+            if (bits == 0) {
+                return 0;
+            }
+            int word = (int) (position >>> 6);
+            int offset = (int) (position & 63);
+            int available = 64 - offset;
+            position += bits;
+            long head = words[word] << offset;
+            if (bits <= available) {
+                return head >>> (64 - bits);
+            }
+            int rest = bits - available;
+            return (head >>> offset) << rest | words[word + 1] >>> (64 - rest);
+        }
+    }
+}
@@ -0,0 +1,462 @@
+package com.tradeback.service.store;
+
+import com.tradeback.model.BarSeries;
+import com.tradeback.model.MarketData;
+import com.tradeback.repository.MarketDataRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Локальный уровень чтения баров перед MarketDataRepository: по файлу MappedBarFile на (symbol, interval).
+ * Файл наполняется из БД при первом обращении и затем дописывается теми же барами, что пишутся в БД.
+ * БД остается источником истины: при открытии и затем не реже раза в revalidate-seconds файл сверяется
+ * с ее верхней границей (число баров, время, цена закрытия и объем последнего) и при расхождении строится
+ * заново - так видны записи других узлов и бары, не дописанные из-за сбоя. Исправление старых баров без
+ * изменения числа и последнего бара этой сверкой не видно: такие записи должны идти через
+ * MarketDataService.upsertBars, который сбрасывает файл. Файл строится вне блокировок карты во временном
+ * файле и атомарно подменяет старый; закрывается, только когда его отпустили все читатели.
+ * Открытыми держатся не больше max-open-files файлов: сверх предела закрываются давно не читанные
+ * файлы без читателей (на диске они остаются и открываются снова при следующем чтении).
+ * При любой ошибке методы чтения возвращают null - вызывающий код читает БД
+ */
+@Slf4j
+@Service
+public class BarStore {
+
+    // Половина единицы последнего знака DECIMAL(10,4)
+    private static final double PRICE_TOLERANCE = 0.00005;
+
+    private final MarketDataRepository marketDataRepository;
+    private final boolean enabled;
+    private final Path directory;
+    private final long revalidateNanos;
+    private final int maxOpenFiles;
+
+    // Незавершенный future - файл пары строится, его ждут остальные читатели пары; null - ошибка открытия
+    private final ConcurrentMap<String, CompletableFuture<Handle>> files = new ConcurrentHashMap<>();
+
+    public BarStore(MarketDataRepository marketDataRepository,
+                    @Value("${market-data.bar-store.enabled:true}") boolean enabled,
+                    @Value("${market-data.bar-store.directory:data/bars}") String directory,
+                    @Value("${market-data.bar-store.revalidate-seconds:30}") long revalidateSeconds,
+                    @Value("${market-data.bar-store.max-open-files:256}") int maxOpenFiles) {
+        this.marketDataRepository = marketDataRepository;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.revalidateNanos = TimeUnit.SECONDS.toNanos(Math.max(0, revalidateSeconds));
+        this.maxOpenFiles = Math.max(1, maxOpenFiles);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Все бары пары по возрастанию времени или null, если хранилище недоступно
+     */
+    public BarSeries read(String symbol, String interval) {
+        return read(symbol, interval, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Бары со временем в [fromEpochSecond, toEpochSecond] или null, если хранилище недоступно
+     */
+    public BarSeries read(String symbol, String interval, long fromEpochSecond, long toEpochSecond) {
+        Handle handle = acquire(symbol, interval);
+        if (handle == null) {
+            return null;
+        }
+        try {
+            return handle.file.read(symbol, interval, fromEpochSecond, toEpochSecond);
+        } finally {
+            handle.release();
+        }
+    }
+
+    /**
+     * Последние count баров пары или null, если хранилище недоступно
+     */
+    public BarSeries tail(String symbol, String interval, int count) {
+        Handle handle = acquire(symbol, interval);
+        if (handle == null) {
+            return null;
+        }
+        try {
+            return handle.file.readTail(symbol, interval, count);
+        } finally {
+            handle.release();
+        }
+    }
+
+    /**
+     * Дописывает бары, только что сохраненные в БД, в уже открытый файл. Бары не по порядку
+     * (догрузка истории задним числом) делают файл недействительным - он перестроится при следующем чтении.
+     * Файл, который еще строится, мог прочитать БД до этой записи - он тоже отбрасывается
+     */
+    public void append(String symbol, String interval, BarSeries bars) {
+        if (!enabled || bars.isEmpty()) {
+            return;
+        }
+        String key = key(symbol, interval);
+        CompletableFuture<Handle> entry = files.get(key);
+        if (entry == null) {
+            return;
+        }
+        if (!entry.isDone()) {
+            files.remove(key, entry);
+            return;
+        }
+        Handle handle = entry.join();
+        if (handle == null || !handle.acquire()) {
+            return;
+        }
+        try {
+            if (!handle.file.append(bars)) {
+                log.debug("Out-of-order bars for {} {}, dropping local bar file", symbol, interval);
+                discard(symbol, interval, entry);
+            }
+        } catch (IOException e) {
+            log.error("Error appending to bar file for {} {}: {}", symbol, interval, e.getMessage());
+            discard(symbol, interval, entry);
+        } finally {
+            handle.release();
+        }
+    }
+
+    /**
+     * Забывает файл пары после записи в БД мимо append
+     */
+    public void invalidate(String symbol, String interval) {
+        if (!enabled) {
+            return;
+        }
+        CompletableFuture<Handle> entry = files.get(key(symbol, interval));
+        if (entry != null) {
+            discard(symbol, interval, entry);
+        } else {
+            deleteFile(symbol, interval);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        for (CompletableFuture<Handle> entry : files.values()) {
+            Handle handle = entry.getNow(null);
+            if (handle != null) {
+                handle.retire();
+            }
+        }
+        files.clear();
+    }
+
+    /**
+     * Файл пары, захваченный для чтения (вызывающий обязан release), или null
+     */
+    private Handle acquire(String symbol, String interval) {
+        if (!enabled) {
+            return null;
+        }
+        String key = key(symbol, interval);
+        // Вторая попытка - после того как файл сбросили между поиском и захватом или он отстал от БД
+        for (int attempt = 0; attempt < 2; attempt++) {
+            CompletableFuture<Handle> entry = files.get(key);
+            boolean loaded = false;
+            if (entry == null) {
+                CompletableFuture<Handle> loading = new CompletableFuture<>();
+                entry = files.putIfAbsent(key, loading);
+                if (entry == null) {
+                    entry = loading;
+                    loaded = true;
+                    try {
+                        loading.complete(load(symbol, interval, key, loading));
+                    } finally {
+                        // Ожидающие не должны зависнуть, даже если загрузка оборвалась ошибкой JVM
+                        if (loading.complete(null)) {
+                            files.remove(key, loading);
+                        }
+                    }
+                }
+            }
+            Handle handle = entry.join();
+            if (handle == null) {
+                return null;
+            }
+            if (loaded) {
+                // Ссылку загрузившего потока publish взял до публикации - новый файл не вытесняется
+                if (handle.isRetired()) {
+                    handle.release();
+                    continue;
+                }
+                evictIdle();
+            } else if (!handle.acquire()) {
+                continue;
+            }
+            if (!handle.claimRevalidation(revalidateNanos)) {
+                return handle;
+            }
+            try {
+                if (isConsistent(handle.file, symbol, interval)) {
+                    return handle;
+                }
+            } catch (RuntimeException e) {
+                log.error("Error checking bar file for {} {}: {}", symbol, interval, e.getMessage());
+                handle.release();
+                return null;
+            }
+            log.info("Bar file for {} {} no longer matches the database, rebuilding", symbol, interval);
+            handle.release();
+            discard(symbol, interval, entry);
+        }
+        return null;
+    }
+
+    /**
+     * Открывает файл и сверяет его с БД; при расхождении строит заново из БД во временном файле.
+     * Если пару сбросили, пока шла загрузка, результат сразу закрывается
+     */
+    private Handle load(String symbol, String interval, String key, CompletableFuture<Handle> loading) {
+        Path path = path(symbol, interval);
+        Path building = null;
+        try {
+            Files.createDirectories(directory);
+            MappedBarFile file = openExisting(path);
+            if (file != null && isConsistent(file, symbol, interval)) {
+                log.debug("Opened bar file {} with {} bars", path, file.size());
+                return publish(key, loading, file);
+            }
+            if (file != null) {
+                file.close();
+            }
+
+            long started = System.nanoTime();
+            List<MarketData> stored = marketDataRepository.findBySymbolAndIntervalOrderByDateAsc(symbol, interval);
+            building = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+            MappedBarFile rebuilt = MappedBarFile.open(building);
+            rebuilt.append(BarSeries.fromMarketData(symbol, interval, stored));
+            if (files.get(key) != loading) {
+                rebuilt.close();
+                Files.deleteIfExists(building);
+                return publish(key, loading, null);
+            }
+            // Отображение переживает переименование: файл остается открытым под новым именем
+            Files.move(building, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            log.info("Built bar file {} with {} bars in {} ms", path, rebuilt.size(),
+                    (System.nanoTime() - started) / 1_000_000);
+            return publish(key, loading, rebuilt);
+        } catch (IOException | RuntimeException e) {
+            log.error("Error opening bar file for {} {}: {}", symbol, interval, e.getMessage());
+            files.remove(key, loading);
+            deleteQuietly(building);
+            return null;
+        }
+    }
+
+    /**
+     * Файл загрузки, которую не сбросили, или уже закрытый (его захват не удастся, читатель повторит).
+     * Возвращается со ссылкой загружающего потока
+     */
+    private Handle publish(String key, CompletableFuture<Handle> loading, MappedBarFile file) {
+        Handle handle = new Handle(file);
+        handle.acquire();
+        if (file == null || files.get(key) != loading) {
+            handle.retire();
+        }
+        return handle;
+    }
+
+    /**
+     * Закрывает давно не читанные файлы без читателей, пока открытых больше maxOpenFiles
+     */
+    private void evictIdle() {
+        while (files.size() > maxOpenFiles) {
+            Map.Entry<String, CompletableFuture<Handle>> oldest = null;
+            long oldestUsedAt = 0;
+            for (Map.Entry<String, CompletableFuture<Handle>> entry : files.entrySet()) {
+                Handle handle = entry.getValue().getNow(null);
+                if (handle == null || !handle.isIdle()) {
+                    continue;
+                }
+                long usedAt = handle.getUsedAt();
+                if (oldest == null || usedAt - oldestUsedAt < 0) {
+                    oldest = entry;
+                    oldestUsedAt = usedAt;
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            if (files.remove(oldest.getKey(), oldest.getValue())) {
+                oldest.getValue().join().retire();
+                log.debug("Closed idle bar file for {}", oldest.getKey());
+            }
+        }
+    }
+
+    /**
+     * Убирает файл пары, если в карте все еще entry; закрывается он после последнего читателя
+     */
+    private void discard(String symbol, String interval, CompletableFuture<Handle> entry) {
+        // Сначала удаляется файл: новая загрузка не должна открыть его, пока entry в карте
+        deleteFile(symbol, interval);
+        if (files.remove(key(symbol, interval), entry)) {
+            Handle handle = entry.getNow(null);
+            if (handle != null) {
+                handle.retire();
+            }
+        }
+    }
+
+    private void deleteFile(String symbol, String interval) {
+        try {
+            Files.deleteIfExists(path(symbol, interval));
+        } catch (IOException e) {
+            log.warn("Error removing bar file for {} {}: {}", symbol, interval, e.getMessage());
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Error removing {}: {}", path, e.getMessage());
+        }
+    }
+
+    private MappedBarFile openExisting(Path path) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            return MappedBarFile.open(path);
+        } catch (IOException e) {
+            log.warn("Discarding unreadable bar file {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Сверка с верхней границей данных в БД: число баров и последний бар
+     */
+    private boolean isConsistent(MappedBarFile file, String symbol, String interval) {
+        if (file.size() != marketDataRepository.countBySymbolAndInterval(symbol, interval)) {
+            return false;
+        }
+        if (file.size() == 0) {
+            return true;
+        }
+        List<MarketData> latest = marketDataRepository.findTopBySymbolAndIntervalOrderByDateDesc(symbol, interval);
+        if (latest.isEmpty()) {
+            return false;
+        }
+        MarketData stored = latest.get(0);
+        BarSeries last = file.readTail(symbol, interval, 1);
+        return BarSeries.toEpochSecond(stored.getDate()) == last.getLastTimestamp()
+                && Math.abs(stored.getClosePriceAsDouble() - last.getClose()[0]) < PRICE_TOLERANCE
+                && (stored.getVolume() != null ? stored.getVolume() : 0L) == last.getVolume()[0];
+    }
+
+    private Path path(String symbol, String interval) {
+        // Тикеры вида BRK.B и любые символы, недопустимые в имени файла
+        String name = (symbol + "_" + interval).toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9._-]", "_");
+        return directory.resolve(name + ".bars");
+    }
+
+    private static String key(String symbol, String interval) {
+        return symbol + "|" + interval;
+    }
+
+    /**
+     * Открытый файл со счетчиком ссылок: одна у карты files и по одной у каждого чтения или записи.
+     * Файл закрывается, когда счетчик доходит до нуля
+     */
+    private static final class Handle {
+
+        private final MappedBarFile file;
+        private final AtomicInteger references = new AtomicInteger(1);
+        private final AtomicBoolean retired = new AtomicBoolean();
+        private final AtomicLong checkedAt = new AtomicLong(System.nanoTime());
+        private volatile long usedAt = System.nanoTime();
+
+        Handle(MappedBarFile file) {
+            this.file = file;
+        }
+
+        boolean acquire() {
+            while (true) {
+                int current = references.get();
+                // Снятый с карты файл новых читателей не получает, даже пока его держит загрузка
+                if (current == 0 || retired.get()) {
+                    return false;
+                }
+                if (references.compareAndSet(current, current + 1)) {
+                    usedAt = System.nanoTime();
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Файл держит только карта files - ни одного чтения или записи
+         */
+        boolean isIdle() {
+            return references.get() == 1 && !retired.get();
+        }
+
+        boolean isRetired() {
+            return retired.get();
+        }
+
+        long getUsedAt() {
+            return usedAt;
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0 && file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    log.warn("Error closing {}: {}", file.getPath(), e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Снимает ссылку карты files
+         */
+        void retire() {
+            if (retired.compareAndSet(false, true)) {
+                release();
+            }
+        }
+
+        /**
+         * Пора ли сверить файл с БД; сверяет один читатель, остальные пока читают файл
+         */
+        boolean claimRevalidation(long intervalNanos) {
+            long last = checkedAt.get();
+            long now = System.nanoTime();
+            return now - last >= intervalNanos && checkedAt.compareAndSet(last, now);
+        }
+    }
+}
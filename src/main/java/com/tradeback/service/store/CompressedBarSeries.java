@@ -0,0 +1,191 @@
+package com.tradeback.service.store;
+
+import com.tradeback.model.BarSeries;
+
+import java.util.Arrays;
+
+/**
+ * Сжатый неизменяемый ряд баров для хранения истории в памяти: блоки по BLOCK_BARS баров, каждый сжат
+ * BarCodec независимо. Время первого и последнего бара каждого блока лежит в открытом виде, поэтому
+ * выборка диапазона распаковывает только блоки, которые его пересекают. append возвращает новый ряд,
+ * который разделяет с исходным все заполненные блоки
+ */
+public final class CompressedBarSeries {
+
+    static final int BLOCK_BARS = 1024;
+
+    private final String symbol;
+    private final String interval;
+    private final int size;
+    private final int blockCount;
+    private final long[][] blocks;
+    private final int[] blockSizes;
+    private final long[] firstTimestamps;
+    private final long[] lastTimestamps;
+
+    private CompressedBarSeries(String symbol, String interval, int size, int blockCount, long[][] blocks,
+                                int[] blockSizes, long[] firstTimestamps, long[] lastTimestamps) {
+        this.symbol = symbol;
+        this.interval = interval;
+        this.size = size;
+        this.blockCount = blockCount;
+        this.blocks = blocks;
+        this.blockSizes = blockSizes;
+        this.firstTimestamps = firstTimestamps;
+        this.lastTimestamps = lastTimestamps;
+    }
+
+    public static CompressedBarSeries empty(String symbol, String interval) {
+        return new CompressedBarSeries(symbol, interval, 0, 0, new long[0][], new int[0], new long[0], new long[0]);
+    }
+
+    public static CompressedBarSeries of(BarSeries series) {
+        return empty(series.getSymbol(), series.getInterval()).append(series);
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public String getInterval() {
+        return interval;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Время последнего бара или Long.MIN_VALUE
+     */
+    public long getLastTimestamp() {
+        return blockCount == 0 ? Long.MIN_VALUE : lastTimestamps[blockCount - 1];
+    }
+
+    /**
+     * Примерный объем в памяти: сжатые блоки и оглавление
+     */
+    public long getEncodedBytes() {
+        long bytes = 0;
+        for (int i = 0; i < blockCount; i++) {
+            bytes += 16 + blocks[i].length * 8L;
+        }
+        return bytes + blockCount * (8L + 4 + 8 + 8);
+    }
+
+    /**
+     * Новый ряд с барами series, которые новее последнего. Бар с тем же временем, что и последний,
+     * заменяет его (незавершенный бар). Если в series есть бары старше последнего, возвращает null:
+     * историю нужно собрать заново
+     */
+    public CompressedBarSeries append(BarSeries series) {
+        long last = getLastTimestamp();
+        int from = series.lowerBound(last);
+        if (from > 0) {
+            return null;
+        }
+        if (series.isEmpty()) {
+            return this;
+        }
+
+        // Незаполненный последний блок (или блок с заменяемым баром) перекодируется вместе с новыми барами
+        int kept = blockCount;
+        BarSeries.Builder pending = BarSeries.builder(symbol, interval, series.size() + BLOCK_BARS);
+        boolean replacesLast = series.getTimestamps()[0] == last;
+        if (blockCount > 0 && (blockSizes[blockCount - 1] < BLOCK_BARS || replacesLast)) {
+            kept--;
+            long upTo = replacesLast ? last - 1 : Long.MAX_VALUE;
+            BarCodec.decode(blocks[kept], blockSizes[kept], Long.MIN_VALUE, upTo, pending);
+        }
+        for (int i = 0; i < series.size(); i++) {
+            pending.add(series.getTimestamps()[i], series.getOpen()[i], series.getHigh()[i],
+                    series.getLow()[i], series.getClose()[i], series.getVolume()[i]);
+        }
+        BarSeries merged = pending.build();
+
+        int added = (merged.size() + BLOCK_BARS - 1) / BLOCK_BARS;
+        int total = kept + added;
+        long[][] newBlocks = Arrays.copyOf(blocks, total);
+        int[] newSizes = Arrays.copyOf(blockSizes, total);
+        long[] newFirst = Arrays.copyOf(firstTimestamps, total);
+        long[] newLast = Arrays.copyOf(lastTimestamps, total);
+        int newSize = size - (kept < blockCount ? blockSizes[kept] : 0);
+        long[] timestamps = merged.getTimestamps();
+        for (int block = 0; block < added; block++) {
+            int start = block * BLOCK_BARS;
+            int end = Math.min(merged.size(), start + BLOCK_BARS);
+            newBlocks[kept + block] = BarCodec.encode(merged, start, end);
+            newSizes[kept + block] = end - start;
+            newFirst[kept + block] = timestamps[start];
+            newLast[kept + block] = timestamps[end - 1];
+            newSize += end - start;
+        }
+        return new CompressedBarSeries(symbol, interval, newSize, total, newBlocks, newSizes, newFirst, newLast);
+    }
+
+    /**
+     * Весь ряд
+     */
+    public BarSeries toBarSeries() {
+        return read(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Бары со временем в [fromEpochSecond, toEpochSecond]; распаковываются только пересекающие блоки
+     */
+    public BarSeries read(long fromEpochSecond, long toEpochSecond) {
+        int first = firstBlockEndingAtOrAfter(fromEpochSecond);
+        int expected = 0;
+        for (int i = first; i < blockCount && firstTimestamps[i] <= toEpochSecond; i++) {
+            expected += blockSizes[i];
+        }
+        BarSeries.Builder builder = BarSeries.builder(symbol, interval, expected);
+        for (int i = first; i < blockCount && firstTimestamps[i] <= toEpochSecond; i++) {
+            BarCodec.decode(blocks[i], blockSizes[i], fromEpochSecond, toEpochSecond, builder);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Последние count баров; при count <= 0 - пустой ряд
+     */
+    public BarSeries tail(int count) {
+        if (count <= 0) {
+            return BarSeries.empty(symbol, interval);
+        }
+        if (count >= size) {
+            return toBarSeries();
+        }
+        int remaining = count;
+        int block = blockCount;
+        while (remaining > 0) {
+            remaining -= blockSizes[--block];
+        }
+        BarSeries decoded = read(firstTimestamps[block], Long.MAX_VALUE);
+        return decoded.slice(decoded.size() - count, decoded.size());
+    }
+
+    @Override
+    public String toString() {
+        return "CompressedBarSeries[" + symbol + " " + interval + ", " + size + " bars in " + blockCount
+                + " blocks, " + getEncodedBytes() + " bytes]";
+    }
+
+    private int firstBlockEndingAtOrAfter(long epochSecond) {
+        int lo = 0;
+        int hi = blockCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (lastTimestamps[mid] < epochSecond) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
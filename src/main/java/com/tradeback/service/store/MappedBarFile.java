@@ -0,0 +1,255 @@
+package com.tradeback.service.store;
+
+import com.tradeback.model.BarSeries;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Бары одного (symbol, interval) в memory-mapped файле: заголовок и записи фиксированной ширины
+ * (время, OHLC, объем) по возрастанию времени. Файл только дописывается; число записей в заголовке
+ * обновляется после того, как записи сброшены на диск, поэтому оборванный хвост после сбоя просто
+ * не виден при следующем открытии. Разреженный индекс в памяти хранит время каждой INDEX_STEP-й
+ * записи: поиск - двоичный по индексу и затем внутри одного блока в отображенном файле.
+ * Читатели не блокируются: буфер и индекс публикуются раньше нового числа записей
+ */
+public class MappedBarFile implements Closeable {
+
+    private static final int MAGIC = 0x54424231;
+    private static final int VERSION = 1;
+    private static final int HEADER = 64;
+    private static final int COUNT_OFFSET = 8;
+    // время, open, high, low, close, объем
+    static final int RECORD = 6 * 8;
+    private static final int INDEX_STEP = 128;
+    private static final long MIN_CAPACITY = 64 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final Object writeLock = new Object();
+
+    private volatile MappedByteBuffer buffer;
+    private volatile long[] sparseIndex;
+    private volatile int count;
+
+    private MappedBarFile(Path path, FileChannel channel, MappedByteBuffer buffer, int count) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.count = count;
+        long[] index = new long[Math.max(16, count / INDEX_STEP + 1)];
+        for (int i = 0; i * INDEX_STEP < count; i++) {
+            index[i] = buffer.getLong(offset(i * INDEX_STEP));
+        }
+        this.sparseIndex = index;
+    }
+
+    /**
+     * Открывает файл или создает пустой. Файл чужого формата считается поврежденным - IOException
+     */
+    public static MappedBarFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    Math.max(size, MIN_CAPACITY));
+            int count;
+            if (size < HEADER) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putLong(COUNT_OFFSET, 0);
+                buffer.force();
+                count = 0;
+            } else {
+                long stored = buffer.getLong(COUNT_OFFSET);
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || stored < 0
+                        || HEADER + stored * RECORD > size) {
+                    throw new IOException("Corrupted bar file " + path);
+                }
+                count = (int) stored;
+            }
+            return new MappedBarFile(path, channel, buffer, count);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Время последнего бара или Long.MIN_VALUE
+     */
+    public long getLastTimestamp() {
+        int size = count;
+        return size == 0 ? Long.MIN_VALUE : buffer.getLong(offset(size - 1));
+    }
+
+    /**
+     * Дописывает бары новее последнего сохраненного; бары, которые уже есть в файле (перекрытие при
+     * догрузке последних N баров, незавершенный последний бар), перезаписываются на месте. Возвращает
+     * false, если в series есть бар старше последнего, которого в файле нет, - такой файл нужно
+     * перестроить из БД
+     */
+    public boolean append(BarSeries series) throws IOException {
+        synchronized (writeLock) {
+            long[] timestamps = series.getTimestamps();
+            int size = count;
+            MappedByteBuffer current = buffer;
+            long last = size == 0 ? Long.MIN_VALUE : current.getLong(offset(size - 1));
+            int from = series.lowerBound(last);
+            if (from < series.size() && timestamps[from] == last) {
+                from++;
+            }
+            int[] positions = new int[from];
+            for (int i = 0; i < from; i++) {
+                int position = lowerBound(current, size, timestamps[i]);
+                if (position == size || current.getLong(offset(position)) != timestamps[i]) {
+                    return false;
+                }
+                positions[i] = position;
+            }
+            // Поля перезаписываются по одному, каждое - атомарная запись 8 байт
+            for (int i = 0; i < from; i++) {
+                writeRecord(current, positions[i], series, i);
+            }
+            int start = size;
+            int added = series.size() - from;
+            if (added == 0) {
+                current.force();
+                return true;
+            }
+
+            MappedByteBuffer target = ensureCapacity(start + added);
+            for (int i = 0; i < added; i++) {
+                writeRecord(target, start + i, series, from + i);
+            }
+            target.force();
+
+            int newCount = start + added;
+            long[] index = sparseIndex;
+            int indexSize = (newCount + INDEX_STEP - 1) / INDEX_STEP;
+            if (indexSize > index.length) {
+                index = Arrays.copyOf(index, Math.max(indexSize, index.length * 2));
+            }
+            for (int block = (start + INDEX_STEP - 1) / INDEX_STEP; block < indexSize; block++) {
+                index[block] = target.getLong(offset(block * INDEX_STEP));
+            }
+            sparseIndex = index;
+
+            target.putLong(COUNT_OFFSET, newCount);
+            target.force();
+            count = newCount;
+            return true;
+        }
+    }
+
+    /**
+     * Бары со временем в [fromEpochSecond, toEpochSecond]
+     */
+    public BarSeries read(String symbol, String interval, long fromEpochSecond, long toEpochSecond) {
+        int size = count;
+        MappedByteBuffer source = buffer;
+        int from = lowerBound(source, size, fromEpochSecond);
+        int to = toEpochSecond == Long.MAX_VALUE ? size : lowerBound(source, size, toEpochSecond + 1);
+        BarSeries.Builder builder = BarSeries.builder(symbol, interval, Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            int at = offset(i);
+            builder.add(source.getLong(at), source.getDouble(at + 8), source.getDouble(at + 16),
+                    source.getDouble(at + 24), source.getDouble(at + 32), source.getLong(at + 40));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Последние count баров
+     */
+    public BarSeries readTail(String symbol, String interval, int count) {
+        int size = this.count;
+        if (size == 0 || count <= 0) {
+            return BarSeries.empty(symbol, interval);
+        }
+        return read(symbol, interval, buffer.getLong(offset(Math.max(0, size - count))), Long.MAX_VALUE);
+    }
+
+    /**
+     * Номер первой записи со временем не меньше epochSecond
+     */
+    public int lowerBound(long epochSecond) {
+        return lowerBound(buffer, count, epochSecond);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int lowerBound(MappedByteBuffer source, int size, long epochSecond) {
+        long[] index = sparseIndex;
+        int blocks = (size + INDEX_STEP - 1) / INDEX_STEP;
+        // Последний блок, начинающийся не позже epochSecond
+        int lo = 0;
+        int hi = blocks;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (index[mid] <= epochSecond) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        int from = Math.max(0, lo - 1) * INDEX_STEP;
+        int to = Math.min(size, lo * INDEX_STEP);
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (source.getLong(offset(mid)) < epochSecond) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
+    private MappedByteBuffer ensureCapacity(int records) throws IOException {
+        long required = HEADER + (long) records * RECORD;
+        MappedByteBuffer current = buffer;
+        if (required <= current.capacity()) {
+            return current;
+        }
+        long capacity = Math.max(required, Math.min(Integer.MAX_VALUE, (long) current.capacity() * 2));
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("Bar file " + path + " is full");
+        }
+        MappedByteBuffer grown = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        buffer = grown;
+        return grown;
+    }
+
+    private static void writeRecord(ByteBuffer target, int record, BarSeries series, int i) {
+        int at = offset(record);
+        target.putLong(at, series.getTimestamps()[i]);
+        target.putDouble(at + 8, series.getOpen()[i]);
+        target.putDouble(at + 16, series.getHigh()[i]);
+        target.putDouble(at + 24, series.getLow()[i]);
+        target.putDouble(at + 32, series.getClose()[i]);
+        target.putLong(at + 40, series.getVolume()[i]);
+    }
+
+    private static int offset(int record) {
+        return HEADER + record * RECORD;
+    }
+}
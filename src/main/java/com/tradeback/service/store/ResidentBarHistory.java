@@ -0,0 +1,199 @@
+package com.tradeback.service.store;
+
+import com.tradeback.model.BarSeries;
+import com.tradeback.repository.MarketDataRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Сжатая история баров в памяти для интервалов из market-data.resident-history.intervals (по умолчанию
+ * 1min): индикаторы и пересчеты берут историю отсюда, не читая БД и не создавая MarketData на каждый бар.
+ * История пары загружается при первом обращении (из BarStore или БД) и дописывается вместе с записью в БД.
+ * Загрузка идет вне блокировки; append и invalidate меняют версию пары, и загрузка, во время которой
+ * версия изменилась, в кэш не попадает - иначе она затерла бы дописанные за это время бары.
+ * Общий объем ограничен max-megabytes: сверх него вытесняются давно не читавшиеся пары
+ */
+@Slf4j
+@Service
+public class ResidentBarHistory {
+
+    private final BarStore barStore;
+    private final MarketDataRepository marketDataRepository;
+    private final boolean enabled;
+    private final List<String> intervals;
+    private final long maxBytes;
+
+    // Порядок доступа - для вытеснения давно не читавшихся пар
+    private final LinkedHashMap<String, CompressedBarSeries> histories = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    // Версия пары растет при каждом append и invalidate, в том числе пока история не загружена
+    private final Map<String, Long> versions = new HashMap<>();
+
+    public ResidentBarHistory(BarStore barStore, MarketDataRepository marketDataRepository,
+                              @Value("${market-data.resident-history.enabled:true}") boolean enabled,
+                              @Value("${market-data.resident-history.intervals:1min}") List<String> intervals,
+                              @Value("${market-data.resident-history.max-megabytes:256}") long maxMegabytes) {
+        this.barStore = barStore;
+        this.marketDataRepository = marketDataRepository;
+        this.enabled = enabled;
+        this.intervals = intervals;
+        this.maxBytes = maxMegabytes * 1024 * 1024;
+    }
+
+    /**
+     * Держится ли история интервала в памяти
+     */
+    public boolean isResident(String interval) {
+        return enabled && interval != null && intervals.contains(interval.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Вся история пары или null, если интервал не хранится в памяти или загрузить ее не удалось
+     */
+    public BarSeries read(String symbol, String interval) {
+        CompressedBarSeries history = history(symbol, interval);
+        return history != null ? history.toBarSeries() : null;
+    }
+
+    /**
+     * Бары со временем в [fromEpochSecond, toEpochSecond] или null (см. read)
+     */
+    public BarSeries read(String symbol, String interval, long fromEpochSecond, long toEpochSecond) {
+        CompressedBarSeries history = history(symbol, interval);
+        return history != null ? history.read(fromEpochSecond, toEpochSecond) : null;
+    }
+
+    /**
+     * Последние count баров или null (см. read)
+     */
+    public BarSeries tail(String symbol, String interval, int count) {
+        CompressedBarSeries history = history(symbol, interval);
+        return history != null ? history.tail(count) : null;
+    }
+
+    /**
+     * Дописывает бары, только что сохраненные в БД, к уже загруженной истории. Бары не по порядку
+     * сбрасывают историю пары - она загрузится заново при следующем чтении
+     */
+    public void append(String symbol, String interval, BarSeries bars) {
+        if (!isResident(interval) || bars.isEmpty()) {
+            return;
+        }
+        String key = key(symbol, interval);
+        synchronized (histories) {
+            bumpVersion(key);
+            CompressedBarSeries current = histories.get(key);
+            if (current == null) {
+                return;
+            }
+            CompressedBarSeries appended = current.append(bars);
+            if (appended == null) {
+                log.debug("Out-of-order bars for {} {}, dropping resident history", symbol, interval);
+                remove(key);
+            } else {
+                put(key, appended);
+            }
+        }
+    }
+
+    public void invalidate(String symbol, String interval) {
+        if (!isResident(interval)) {
+            return;
+        }
+        String key = key(symbol, interval);
+        synchronized (histories) {
+            bumpVersion(key);
+            remove(key);
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        synchronized (histories) {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("series", histories.size());
+            snapshot.put("bars", histories.values().stream().mapToLong(CompressedBarSeries::size).sum());
+            snapshot.put("bytes", totalBytes);
+            snapshot.put("maxBytes", maxBytes);
+            return snapshot;
+        }
+    }
+
+    private CompressedBarSeries history(String symbol, String interval) {
+        if (!isResident(interval)) {
+            return null;
+        }
+        String key = key(symbol, interval);
+        long version;
+        synchronized (histories) {
+            CompressedBarSeries history = histories.get(key);
+            if (history != null) {
+                return history;
+            }
+            version = versions.getOrDefault(key, 0L);
+        }
+        try {
+            long started = System.nanoTime();
+            BarSeries stored = barStore.read(symbol, interval);
+            if (stored == null) {
+                stored = BarSeries.fromMarketData(symbol, interval,
+                        marketDataRepository.findBySymbolAndIntervalOrderByDateAsc(symbol, interval));
+            }
+            CompressedBarSeries history = CompressedBarSeries.of(stored);
+            log.info("Loaded resident {} in {} ms ({} bytes as raw columns)", history,
+                    (System.nanoTime() - started) / 1_000_000, stored.size() * 48L);
+            synchronized (histories) {
+                CompressedBarSeries current = histories.get(key);
+                if (current != null) {
+                    // Пару уже загрузил параллельный читатель
+                    return current;
+                }
+                if (versions.getOrDefault(key, 0L) == version) {
+                    put(key, history);
+                } else {
+                    // Пока шла загрузка, пару дописали или сбросили: снимок годится только этому читателю
+                    log.debug("Resident history for {} {} changed while loading, not caching it", symbol, interval);
+                }
+            }
+            return history;
+        } catch (Exception e) {
+            log.error("Error loading resident history for {} {}: {}", symbol, interval, e.getMessage());
+            return null;
+        }
+    }
+
+    private void put(String key, CompressedBarSeries history) {
+        remove(key);
+        histories.put(key, history);
+        totalBytes += history.getEncodedBytes();
+        Iterator<Map.Entry<String, CompressedBarSeries>> eldest = histories.entrySet().iterator();
+        while (totalBytes > maxBytes && histories.size() > 1) {
+            Map.Entry<String, CompressedBarSeries> entry = eldest.next();
+            totalBytes -= entry.getValue().getEncodedBytes();
+            eldest.remove();
+            log.debug("Evicted resident history {}", entry.getValue());
+        }
+    }
+
+    private void bumpVersion(String key) {
+        versions.merge(key, 1L, Long::sum);
+    }
+
+    private void remove(String key) {
+        CompressedBarSeries removed = histories.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.getEncodedBytes();
+        }
+    }
+
+    private static String key(String symbol, String interval) {
+        return symbol.toUpperCase(Locale.ROOT) + "|" + interval.toLowerCase(Locale.ROOT);
+    }
+}
@@ -5,7 +5,6 @@ import com.tradeback.dto.IndicatorRequest;
 import com.tradeback.model.MarketData;
 import com.tradeback.model.Signal;
 import com.tradeback.model.UserHistory;
-import com.tradeback.repository.MarketDataRepository;
 import com.tradeback.service.MarketDataService;
 import com.tradeback.service.MarketHoursService;
 import com.tradeback.service.SignalService;
@@ -34,7 +33,6 @@ public class RecWebController {
     private final SignalService signalService;
     private final UserHistoryService userHistoryService;
     private final MarketHoursService marketHoursService;
-    private final MarketDataRepository marketDataRepository;
 
     @GetMapping("/")
     public String indexPage(Model model, HttpSession session) {
@@ -195,7 +193,7 @@ public class RecWebController {
 
                                 // Сохраняем в базу для будущего использования
                                 try {
-                                    marketDataRepository.saveAll(apiData);
+                                    marketDataService.upsertBars(indicator.getSymbol(), "daily", apiData);
                                     log.info("Saved {} market data points to database", apiData.size());
                                 } catch (Exception saveError) {
                                     log.warn("Failed to save market data: {}", saveError.getMessage());
@@ -227,7 +225,7 @@ public class RecWebController {
                 } else {
                     // Рынок открыт - сначала проверяем базу данных
                     marketData = marketDataService.getMarketDataByDateRange(
-                            indicator.getSymbol(), startDate, endDate);
+                            indicator.getSymbol(), "daily", startDate, endDate);
 
                     // Если данных мало, дополняем из API
                     if (marketData.size() < 5) {
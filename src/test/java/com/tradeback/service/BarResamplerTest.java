@@ -0,0 +1,111 @@
+package com.tradeback.service;
+
+import com.tradeback.model.BarSeries;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BarResamplerTest {
+
+    private final MarketHoursService marketHours = new MarketHoursService();
+
+    @Test
+    void aggregatesMinutesIntoSessionAlignedBuckets() {
+        // Понедельник, 9:30-9:44: три полных 5min бара
+        BarSeries minutes = minutes(LocalDateTime.of(2025, 3, 3, 9, 30), 15);
+
+        BarSeries bars = BarResampler.resample(minutes, "5min", marketHours, false);
+
+        assertEquals(3, bars.size());
+        assertEquals(epoch(LocalDateTime.of(2025, 3, 3, 9, 30)), bars.getTimestamps()[0]);
+        assertEquals(epoch(LocalDateTime.of(2025, 3, 3, 9, 40)), bars.getTimestamps()[2]);
+        // Бар 9:35 собран из минут 5..9
+        assertEquals(105.0, bars.getOpen()[1]);
+        assertEquals(110.0, bars.getHigh()[1]);
+        assertEquals(104.0, bars.getLow()[1]);
+        assertEquals(109.5, bars.getClose()[1]);
+        assertEquals(5 + 6 + 7 + 8 + 9, bars.getVolume()[1]);
+    }
+
+    @Test
+    void lastBucketEndsAtEarlyClose() {
+        // 3 июля 2025 сессия закрывается в 13:00: корзина 12:30 длится 30 минут
+        BarSeries minutes = minutes(LocalDateTime.of(2025, 7, 3, 12, 30), 30);
+        BarResampler resampler = new BarResampler("TEST", "60min", marketHours, 100);
+
+        assertEquals(1, resampler.advance(minutes));
+        assertFalse(resampler.hasPartialBar());
+        BarSeries bars = resampler.getBars(false);
+        assertEquals(epoch(LocalDateTime.of(2025, 7, 3, 12, 30)), bars.getTimestamps()[0]);
+        assertEquals(129.5, bars.getClose()[0]);
+    }
+
+    @Test
+    void skipsBucketThatStartedBeforeHistory() {
+        BarSeries minutes = minutes(LocalDateTime.of(2025, 3, 3, 9, 32), 8);
+
+        BarSeries bars = BarResampler.resample(minutes, "5min", marketHours, true);
+
+        // 9:32-9:34 - без начала корзины, 9:35-9:39 - полный бар
+        assertEquals(1, bars.size());
+        assertEquals(epoch(LocalDateTime.of(2025, 3, 3, 9, 35)), bars.getTimestamps()[0]);
+    }
+
+    @Test
+    void exposesPartialBarOnlyWhenAsked() {
+        BarSeries minutes = minutes(LocalDateTime.of(2025, 3, 3, 9, 30), 7);
+        BarResampler resampler = new BarResampler("TEST", "5min", marketHours, 100);
+        resampler.advance(minutes);
+
+        assertTrue(resampler.hasPartialBar());
+        assertEquals(1, resampler.getBars(false).size());
+        BarSeries withPartial = resampler.getBars(true);
+        assertEquals(2, withPartial.size());
+        assertEquals(epoch(LocalDateTime.of(2025, 3, 3, 9, 35)), withPartial.getTimestamps()[1]);
+        assertEquals(106.5, withPartial.getClose()[1]);
+    }
+
+    @Test
+    void weeklyBarIsLabelledWithLastTradingDay() {
+        // Неделя с Good Friday 18.04.2025: последний торговый день - четверг
+        BarSeries.Builder builder = BarSeries.builder("TEST", "daily", 5);
+        LocalDate[] days = {LocalDate.of(2025, 4, 14), LocalDate.of(2025, 4, 15), LocalDate.of(2025, 4, 16),
+                LocalDate.of(2025, 4, 17), LocalDate.of(2025, 4, 21)};
+        for (int i = 0; i < days.length; i++) {
+            builder.add(days[i].atStartOfDay(), 50 + i, 52 + i, 49 + i, 51 + i, 100);
+        }
+        BarResampler resampler = new BarResampler("TEST", "weekly", marketHours, 100);
+
+        resampler.advance(builder.build());
+        BarSeries completed = resampler.drainCompleted();
+
+        assertEquals(1, completed.size());
+        assertEquals(epoch(LocalDate.of(2025, 4, 17).atStartOfDay()), completed.getTimestamps()[0]);
+        assertEquals(50.0, completed.getOpen()[0]);
+        assertEquals(55.0, completed.getHigh()[0]);
+        assertEquals(49.0, completed.getLow()[0]);
+        assertEquals(54.0, completed.getClose()[0]);
+        assertEquals(400, completed.getVolume()[0]);
+    }
+
+    /**
+     * count минутных баров: open = 100 + i, high = open + 1, low = open - 1, close = open + 0.5, volume = i
+     */
+    private static BarSeries minutes(LocalDateTime first, int count) {
+        BarSeries.Builder builder = BarSeries.builder("TEST", "1min", count);
+        for (int i = 0; i < count; i++) {
+            double open = 100 + i;
+            builder.add(first.plusMinutes(i), open, open + 1, open - 1, open + 0.5, i);
+        }
+        return builder.build();
+    }
+
+    private static long epoch(LocalDateTime dateTime) {
+        return BarSeries.toEpochSecond(dateTime);
+    }
+}
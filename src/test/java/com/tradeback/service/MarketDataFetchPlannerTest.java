@@ -0,0 +1,111 @@
+package com.tradeback.service;
+
+import com.tradeback.model.BarSeries;
+import com.tradeback.model.MarketData;
+import com.tradeback.repository.MarketDataRepository;
+import com.tradeback.service.MarketDataFetchPlanner.FetchMode;
+import com.tradeback.service.MarketDataFetchPlanner.FetchPlan;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MarketDataFetchPlannerTest {
+
+    // Среда 5 марта 2025, после закрытия: последний завершенный дневной бар - 5 марта
+    private static final LocalDateTime AFTER_CLOSE = LocalDateTime.of(2025, 3, 5, 17, 0);
+
+    private final Map<String, MarketData> latest = new HashMap<>();
+
+    // Планировщику из репозитория нужен только последний сохраненный бар
+    private final MarketDataRepository repository = (MarketDataRepository) Proxy.newProxyInstance(
+            MarketDataRepository.class.getClassLoader(), new Class<?>[]{MarketDataRepository.class},
+            (proxy, method, args) -> {
+                if (!method.getName().equals("findTopBySymbolAndIntervalOrderByDateDesc")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                MarketData bar = latest.get(args[0] + ":" + args[1]);
+                return bar == null ? List.of() : List.of(bar);
+            });
+
+    @Test
+    void emptyStoreNeedsFullHistory() {
+        FetchPlan plan = planner(AFTER_CLOSE).plan("AAPL", "daily");
+
+        assertEquals(FetchMode.FULL, plan.getMode());
+    }
+
+    @Test
+    void upToDateStoreNeedsNothing() {
+        stored("AAPL", "daily", LocalDateTime.of(2025, 3, 5, 0, 0));
+
+        FetchPlan plan = planner(AFTER_CLOSE).plan("AAPL", "daily");
+
+        assertEquals(FetchMode.NONE, plan.getMode());
+        assertEquals(0, plan.getMissingBars());
+    }
+
+    @Test
+    void shortGapFitsCompactResponse() {
+        stored("AAPL", "daily", LocalDateTime.of(2025, 3, 3, 0, 0));
+
+        FetchPlan plan = planner(AFTER_CLOSE).plan("AAPL", "daily");
+
+        assertEquals(FetchMode.COMPACT, plan.getMode());
+        assertEquals(2, plan.getMissingBars());
+    }
+
+    @Test
+    void longGapNeedsFullHistory() {
+        stored("AAPL", "daily", LocalDateTime.of(2024, 6, 3, 0, 0));
+
+        FetchPlan plan = planner(AFTER_CLOSE).plan("AAPL", "daily");
+
+        assertEquals(FetchMode.FULL, plan.getMode());
+    }
+
+    @Test
+    void selectNewKeepsOnlyCompletedBarsAfterMark() {
+        // 10:02 - бар 10:00 еще формируется, последний завершенный - 9:55
+        MarketDataFetchPlanner planner = planner(LocalDateTime.of(2025, 3, 5, 10, 2));
+        planner.advance("AAPL", "5min", BarSeries.toEpochSecond(LocalDateTime.of(2025, 3, 5, 9, 30)));
+
+        FetchPlan plan = planner.plan("AAPL", "5min");
+        assertEquals(FetchMode.COMPACT, plan.getMode());
+        assertEquals(5, plan.getMissingBars());
+
+        BarSeries.Builder fetched = BarSeries.builder("AAPL", "5min", 8);
+        for (LocalDateTime t = LocalDateTime.of(2025, 3, 5, 9, 25); !t.isAfter(LocalDateTime.of(2025, 3, 5, 10, 0));
+                t = t.plusMinutes(5)) {
+            fetched.add(t, 100, 101, 99, 100, 1000);
+        }
+        BarSeries fresh = plan.selectNew(fetched.build());
+
+        assertEquals(5, fresh.size());
+        assertEquals(LocalDateTime.of(2025, 3, 5, 9, 35), fresh.getDateTime(0));
+        assertEquals(LocalDateTime.of(2025, 3, 5, 9, 55), fresh.getDateTime(4));
+    }
+
+    private MarketDataFetchPlanner planner(LocalDateTime now) {
+        MarketHoursService marketHours = new MarketHoursService() {
+            @Override
+            public LocalDateTime getMarketTime() {
+                return now;
+            }
+        };
+        return new MarketDataFetchPlanner(repository, marketHours);
+    }
+
+    private void stored(String symbol, String interval, LocalDateTime date) {
+        MarketData bar = new MarketData();
+        bar.setSymbol(symbol);
+        bar.setInterval(interval);
+        bar.setDate(date);
+        latest.put(symbol + ":" + interval, bar);
+    }
+}
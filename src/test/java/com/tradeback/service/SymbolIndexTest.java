@@ -0,0 +1,48 @@
+package com.tradeback.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Индекс тикеров: поиск без учета регистра, отсутствующие символы, дубликаты
+ */
+class SymbolIndexTest {
+
+    @Test
+    void findsSymbolsIgnoringCase() {
+        SymbolIndex index = SymbolIndex.of(Arrays.asList("MSFT", "aapl", "BRK.B", "IBM", "MSFT", " ", null));
+
+        assertEquals(4, index.size());
+        assertTrue(index.contains("AAPL"));
+        assertTrue(index.contains("brk.b"));
+        assertTrue(index.contains("IBM"));
+        assertFalse(index.contains("IB"));
+        assertFalse(index.contains("IBMX"));
+        assertFalse(index.contains("BRK.A"));
+        assertFalse(index.contains(""));
+    }
+
+    @Test
+    void everyListedSymbolIsFoundAndFewOthersPassTheFilter() {
+        List<String> symbols = new ArrayList<>();
+        for (int i = 0; i < 8000; i++) {
+            symbols.add("S" + Integer.toString(i, 36).toUpperCase());
+        }
+        SymbolIndex index = SymbolIndex.of(symbols);
+
+        for (String symbol : symbols) {
+            assertTrue(index.contains(symbol));
+        }
+        for (int i = 0; i < 8000; i++) {
+            assertFalse(index.contains("X" + Integer.toString(i, 36).toUpperCase()));
+        }
+        assertFalse(SymbolIndex.empty().contains("AAPL"));
+    }
+}
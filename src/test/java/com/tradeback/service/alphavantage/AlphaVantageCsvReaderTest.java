@@ -0,0 +1,74 @@
+package com.tradeback.service.alphavantage;
+
+import com.tradeback.model.BarSeries;
+import com.tradeback.service.http.UpstreamException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Потоковый разбор CSV временного ряда
+ */
+class AlphaVantageCsvReaderTest {
+
+    private static final String INTRADAY = "timestamp,open,high,low,close,volume\r\n"
+            + "2024-03-01 16:00:00,185.5000,185.9000,185.1000,185.7500,120034\r\n"
+            + "2024-03-01 15:55:00,185.0100,185.6000,184.9900,185.5000,98000\r\n";
+
+    @Test
+    void parsesBarsInAscendingOrder() {
+        BarSeries series = AlphaVantageCsvReader.parse(bytes(INTRADAY), "IBM", "5min");
+
+        assertEquals(2, series.size());
+        assertArrayEquals(new long[]{
+                BarSeries.toEpochSecond(LocalDateTime.of(2024, 3, 1, 15, 55)),
+                BarSeries.toEpochSecond(LocalDateTime.of(2024, 3, 1, 16, 0))}, series.getTimestamps());
+        assertArrayEquals(new double[]{185.01, 185.5}, series.getOpen());
+        assertArrayEquals(new double[]{185.5, 185.75}, series.getClose());
+        assertArrayEquals(new long[]{98000, 120034}, series.getVolume());
+    }
+
+    @Test
+    void lineSplitAcrossChunksIsReassembled() {
+        byte[] body = bytes(INTRADAY);
+        AlphaVantageCsvReader reader = new AlphaVantageCsvReader("IBM", "5min");
+        for (int i = 0; i < body.length; i += 7) {
+            reader.accept(ByteBuffer.wrap(body, i, Math.min(7, body.length - i)));
+        }
+
+        BarSeries series = reader.finish();
+
+        assertArrayEquals(AlphaVantageCsvReader.parse(body, "IBM", "5min").getHigh(), series.getHigh());
+    }
+
+    @Test
+    void skipsAdjustedColumnsAndLastLineWithoutNewline() {
+        String csv = "timestamp,open,high,low,close,adjusted_close,volume,dividend_amount,split_coefficient\n"
+                + "2024-03-01,10,12.5,9.75,11,10.9,5000,0.0000,1.0";
+
+        BarSeries series = AlphaVantageCsvReader.parse(bytes(csv), "IBM", "daily");
+
+        assertEquals(1, series.size());
+        assertEquals(BarSeries.toEpochSecond(LocalDate.of(2024, 3, 1).atStartOfDay()), series.getTimestamps()[0]);
+        assertEquals(11.0, series.getClose()[0]);
+        assertEquals(5000, series.getVolume()[0]);
+    }
+
+    @Test
+    void jsonErrorBodyIsReported() {
+        UpstreamException error = assertThrows(UpstreamException.class, () -> AlphaVantageCsvReader
+                .parse(bytes("{\n    \"Error Message\": \"Invalid API call.\"\n}"), "X", "daily"));
+        assertEquals(200, error.getStatusCode());
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
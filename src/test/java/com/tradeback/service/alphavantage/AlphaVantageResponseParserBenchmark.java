@@ -0,0 +1,120 @@
+package com.tradeback.service.alphavantage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tradeback.model.BarSeries;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Пропускная способность разбора полного ответа TIME_SERIES_INTRADAY: прежний путь
+ * (ObjectMapper -> Map -> BarSeries) против потокового AlphaVantageResponseParser и того же ряда в CSV.
+ * Не входит в тесты сборки, запускается вручную:
+ * java -cp target/test-classes:target/classes:... com.tradeback.service.alphavantage.AlphaVantageResponseParserBenchmark [bars]
+ */
+public class AlphaVantageResponseParserBenchmark {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public static void main(String[] args) throws Exception {
+        int bars = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        byte[] body = generateIntraday(bars);
+        byte[] csv = toCsv(AlphaVantageResponseParser.parseTimeSeries(body, "BENCH", "1min"));
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        System.out.printf("Payload: %d bars, JSON %.1f MB, CSV %.1f MB%n", bars, body.length / 1e6, csv.length / 1e6);
+        for (int round = 0; round < 3; round++) {
+            report("map", measure(() -> parseViaMap(objectMapper, body).size()), body.length, bars);
+            report("streaming", measure(() ->
+                    AlphaVantageResponseParser.parseTimeSeries(body, "BENCH", "1min").size()), body.length, bars);
+            report("csv", measure(() -> AlphaVantageCsvReader.parse(csv, "BENCH", "1min").size()), csv.length, bars);
+        }
+    }
+
+    private interface Parse {
+        int run() throws Exception;
+    }
+
+    /**
+     * Среднее время одного разбора в наносекундах после прогрева
+     */
+    private static double measure(Parse parse) throws Exception {
+        long checksum = 0;
+        for (int i = 0; i < 20; i++) {
+            checksum += parse.run();
+        }
+        int iterations = 50;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            checksum += parse.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (checksum == 42) {
+            System.out.println();
+        }
+        return (double) elapsed / iterations;
+    }
+
+    private static void report(String name, double nanosPerParse, int bytes, int bars) {
+        double seconds = nanosPerParse / 1e9;
+        System.out.printf("%-10s %8.2f ms/parse %8.1f MB/s %12.0f bars/s%n",
+                name, nanosPerParse / 1e6, bytes / 1e6 / seconds, bars / seconds);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BarSeries parseViaMap(ObjectMapper objectMapper, byte[] body) throws Exception {
+        Map<String, Object> response = objectMapper.readValue(body, Map.class);
+        Map<String, Object> timeSeries = (Map<String, Object>) response.get("Time Series (1min)");
+        BarSeries.Builder builder = BarSeries.builder("BENCH", "1min", timeSeries.size());
+        for (Map.Entry<String, Object> entry : timeSeries.entrySet()) {
+            Map<String, String> data = (Map<String, String>) entry.getValue();
+            builder.add(LocalDateTime.parse(entry.getKey(), TIMESTAMP),
+                    Double.parseDouble(data.get("1. open")),
+                    Double.parseDouble(data.get("2. high")),
+                    Double.parseDouble(data.get("3. low")),
+                    Double.parseDouble(data.get("4. close")),
+                    Long.parseLong(data.get("5. volume")));
+        }
+        return builder.build();
+    }
+
+    private static byte[] toCsv(BarSeries series) {
+        StringBuilder csv = new StringBuilder(series.size() * 64).append("timestamp,open,high,low,close,volume\r\n");
+        for (int i = series.size() - 1; i >= 0; i--) {
+            csv.append(series.getDateTime(i).format(TIMESTAMP))
+                    .append(String.format(Locale.ROOT, ",%.4f,%.4f,%.4f,%.4f,%d\r\n", series.getOpen()[i],
+                            series.getHigh()[i], series.getLow()[i], series.getClose()[i], series.getVolume()[i]));
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] generateIntraday(int bars) {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder(bars * 160);
+        json.append("{\"Meta Data\": {\"1. Information\": \"Intraday (1min) open, high, low, close prices and volume\",")
+                .append("\"2. Symbol\": \"BENCH\", \"4. Interval\": \"1min\"}, \"Time Series (1min)\": {");
+        LocalDateTime time = LocalDate.of(2024, 3, 1).atTime(16, 0);
+        double price = 150;
+        for (int i = 0; i < bars; i++) {
+            double open = price;
+            price = Math.max(1, price + random.nextGaussian() * 0.1);
+            double high = Math.max(open, price) + random.nextDouble() * 0.05;
+            double low = Math.min(open, price) - random.nextDouble() * 0.05;
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("\n\"").append(time.format(TIMESTAMP)).append("\": {")
+                    .append(String.format(Locale.ROOT,
+                            "\"1. open\": \"%.4f\", \"2. high\": \"%.4f\", \"3. low\": \"%.4f\", ", open, high, low))
+                    .append(String.format(Locale.ROOT, "\"4. close\": \"%.4f\", \"5. volume\": \"%d\"}",
+                            price, 1000 + random.nextInt(100_000)));
+            time = time.minusMinutes(1);
+        }
+        return json.append("}}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
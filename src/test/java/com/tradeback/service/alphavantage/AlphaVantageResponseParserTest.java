@@ -0,0 +1,148 @@
+package com.tradeback.service.alphavantage;
+
+import com.tradeback.dto.GlobalQuote;
+import com.tradeback.dto.IndicatorSeries;
+import com.tradeback.model.BarSeries;
+import com.tradeback.model.Indicator.IndicatorType;
+import com.tradeback.service.http.UpstreamException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Потоковый разбор ответов Alpha Vantage
+ */
+class AlphaVantageResponseParserTest {
+
+    @Test
+    void parsesIntradaySeriesInAscendingOrder() throws Exception {
+        String json = "{\"Meta Data\": {\"1. Information\": \"Intraday (5min)\", \"2. Symbol\": \"IBM\"},"
+                + "\"Time Series (5min)\": {"
+                + "\"2024-03-01 16:00:00\": {\"1. open\": \"185.5000\", \"2. high\": \"185.9000\","
+                + " \"3. low\": \"185.1000\", \"4. close\": \"185.7500\", \"5. volume\": \"120034\"},"
+                + "\"2024-03-01 15:55:00\": {\"1. open\": \"185.0100\", \"2. high\": \"185.6000\","
+                + " \"3. low\": \"184.9900\", \"4. close\": \"185.5000\", \"5. volume\": \"98000\"}}}";
+
+        BarSeries series = AlphaVantageResponseParser.parseTimeSeries(bytes(json), "IBM", "5min");
+
+        assertEquals(2, series.size());
+        assertArrayEquals(new long[]{
+                BarSeries.toEpochSecond(LocalDateTime.of(2024, 3, 1, 15, 55)),
+                BarSeries.toEpochSecond(LocalDateTime.of(2024, 3, 1, 16, 0))}, series.getTimestamps());
+        assertArrayEquals(new double[]{185.01, 185.5}, series.getOpen());
+        assertArrayEquals(new double[]{185.5, 185.75}, series.getClose());
+        assertArrayEquals(new long[]{98000, 120034}, series.getVolume());
+    }
+
+    @Test
+    void parsesAdjustedDailySeries() throws Exception {
+        String json = "{\"Time Series (Daily)\": {\"2024-03-01\": {\"1. open\": \"10\", \"2. high\": \"12.5\","
+                + " \"3. low\": \"9.75\", \"4. close\": \"11\", \"5. adjusted close\": \"10.9\","
+                + " \"6. volume\": \"5000\", \"7. dividend amount\": \"0.0000\"}}}";
+
+        BarSeries series = AlphaVantageResponseParser.parseTimeSeries(bytes(json), "IBM", "daily");
+
+        assertEquals(1, series.size());
+        assertEquals(BarSeries.toEpochSecond(LocalDate.of(2024, 3, 1).atStartOfDay()), series.getTimestamps()[0]);
+        assertEquals(11.0, series.getClose()[0]);
+        assertEquals(5000, series.getVolume()[0]);
+    }
+
+    @Test
+    void parsesTechnicalAnalysisLines() throws Exception {
+        String json = "{\"Meta Data\": {\"1: Symbol\": \"IBM\"}, \"Technical Analysis: MACD\": {"
+                + "\"2024-03-01\": {\"MACD_Signal\": \"1.5\", \"MACD\": \"2.25\", \"MACD_Hist\": \"0.75\"},"
+                + "\"2024-02-29\": {\"MACD\": \"-0.125\", \"MACD_Signal\": \"0.5\", \"MACD_Hist\": \"-0.625\"}}}";
+
+        IndicatorSeries series = AlphaVantageResponseParser.parseTechnicalAnalysis(bytes(json), "IBM", "daily",
+                IndicatorType.MACD, 12, new String[]{"MACD", "MACD_Signal", "MACD_Hist"});
+
+        assertEquals(2, series.size());
+        assertTrue(series.getTimestamps()[0] < series.getTimestamps()[1]);
+        assertArrayEquals(new double[]{-0.125, 2.25}, series.getValues());
+        assertArrayEquals(new double[]{0.5, 1.5}, series.getSecondary());
+        assertArrayEquals(new double[]{-0.625, 0.75}, series.getTertiary());
+    }
+
+    @Test
+    void parsesGlobalQuote() throws Exception {
+        String json = "{\"Global Quote\": {\"01. symbol\": \"IBM\", \"02. open\": \"185.0000\","
+                + " \"05. price\": \"186.2500\", \"06. volume\": \"4520000\","
+                + " \"07. latest trading day\": \"2024-03-01\", \"10. change percent\": \"-0.5120%\"}}";
+
+        GlobalQuote quote = AlphaVantageResponseParser.parseGlobalQuote(bytes(json));
+
+        assertEquals("IBM", quote.getSymbol());
+        assertEquals(186.25, quote.getPrice());
+        assertEquals(4520000, quote.getVolume());
+        assertEquals(LocalDate.of(2024, 3, 1), quote.getLatestTradingDay());
+        assertEquals(-0.512, quote.getChangePercent());
+        assertTrue(quote.hasPrice());
+    }
+
+    @Test
+    void emptyGlobalQuoteHasNoPrice() throws Exception {
+        GlobalQuote quote = AlphaVantageResponseParser.parseGlobalQuote(bytes("{\"Global Quote\": {}}"));
+
+        assertFalse(quote.hasPrice());
+        assertNull(quote.getSymbol());
+    }
+
+    @Test
+    void parsesBulkQuotes() throws Exception {
+        String json = "{\"endpoint\": \"Realtime Bulk Quotes\", \"data\": ["
+                + "{\"symbol\": \"MSFT\", \"timestamp\": \"2024-03-01 16:00:00.000\", \"close\": \"415.5000\","
+                + " \"volume\": \"17200000\", \"change_percent\": \"1.2500\"},"
+                + "{\"symbol\": \"IBM\", \"close\": \"186.2500\", \"extended_hours_quote\": \"186.1\"}]}";
+
+        List<GlobalQuote> quotes = AlphaVantageResponseParser.parseBulkQuotes(bytes(json));
+
+        assertEquals(2, quotes.size());
+        assertEquals("MSFT", quotes.get(0).getSymbol());
+        assertEquals(415.5, quotes.get(0).getPrice());
+        assertEquals(LocalDate.of(2024, 3, 1), quotes.get(0).getLatestTradingDay());
+        assertEquals(186.25, quotes.get(1).getPrice());
+    }
+
+    @Test
+    void reportsErrorsAndThrottling() {
+        UpstreamException error = assertThrows(UpstreamException.class, () -> AlphaVantageResponseParser
+                .parseTimeSeries(bytes("{\"Error Message\": \"Invalid API call.\"}"), "X", "daily"));
+        assertEquals(200, error.getStatusCode());
+
+        UpstreamException throttled = assertThrows(UpstreamException.class, () -> AlphaVantageResponseParser
+                .parseTimeSeries(bytes("{\"Note\": \"Our standard API call frequency is 5 calls per minute\"}"),
+                        "X", "daily"));
+        assertEquals(AlphaVantageResponseParser.THROTTLED_STATUS, throttled.getStatusCode());
+    }
+
+    @Test
+    void decimalFastPathMatchesDoubleParse() {
+        String[] values = {"0", "185.7500", "-0.0001", "123456789.123456", "1e-3", "0.1", "99999.99995",
+                "4294967296.0000", "12345678901234567890", "7.25E+2", "+3.5", "-", ""};
+        for (String value : values) {
+            double expected;
+            try {
+                expected = Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                expected = Double.NaN;
+            }
+            assertEquals(expected, AlphaVantageResponseParser.parseDouble(value.toCharArray(), 0, value.length()),
+                    value);
+        }
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,75 @@
+package com.tradeback.service.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Автомат отключения: размыкание по доле сбоев, пробные вызовы и возврат в замкнутое состояние
+ */
+class CircuitBreakerTest {
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 0.5, 4, 10, Duration.ofMinutes(1), 1);
+        call(breaker, false);
+        call(breaker, true);
+        call(breaker, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        call(breaker, true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(1, breaker.getRejectedCalls());
+    }
+
+    @Test
+    void closesAfterSuccessfulProbes() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("test", 0.5, 2, 10, Duration.ofMillis(20), 2);
+        call(breaker, true);
+        call(breaker, true);
+        assertFalse(breaker.isCallPermitted());
+
+        Thread.sleep(40);
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        // Пробных вызовов не больше halfOpenCalls
+        assertFalse(breaker.tryAcquire());
+        breaker.onSuccess();
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0.0, breaker.getFailureRate());
+    }
+
+    @Test
+    void failedProbeReopens() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("test", 0.5, 2, 10, Duration.ofMillis(20), 2);
+        call(breaker, true);
+        call(breaker, true);
+
+        Thread.sleep(40);
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void clientErrorsAreNotFailures() {
+        assertFalse(CircuitBreaker.isFailure(new UpstreamException("bad request", 400, null)));
+        assertTrue(CircuitBreaker.isFailure(new UpstreamException("unavailable", 503, null)));
+        assertTrue(CircuitBreaker.isFailure(new UpstreamException("timed out", 0, null)));
+    }
+
+    private static void call(CircuitBreaker breaker, boolean failure) {
+        assertTrue(breaker.tryAcquire());
+        if (failure) {
+            breaker.onFailure();
+        } else {
+            breaker.onSuccess();
+        }
+    }
+}
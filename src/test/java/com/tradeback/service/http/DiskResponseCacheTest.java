@@ -0,0 +1,72 @@
+package com.tradeback.service.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Дисковый кеш ответов: чтение после перезапуска, срок годности, вытеснение старых сегментов
+ */
+class DiskResponseCacheTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @Test
+    void entriesSurviveReopen() throws IOException {
+        Path dir = Files.createTempDirectory("disk-cache");
+        byte[] body = "{\"Time Series (Daily)\": {}}".repeat(100).getBytes(StandardCharsets.UTF_8);
+
+        DiskResponseCache cache = DiskResponseCache.open(dir, 64 * 1024, 4);
+        cache.put("query?function=TIME_SERIES_DAILY&symbol=IBM", body, System.currentTimeMillis() + HOUR);
+        cache.put("query?function=GLOBAL_QUOTE&symbol=IBM", body, System.currentTimeMillis() - 1);
+        cache.close();
+
+        DiskResponseCache reopened = DiskResponseCache.open(dir, 64 * 1024, 4);
+        assertArrayEquals(body, reopened.get("query?function=TIME_SERIES_DAILY&symbol=IBM"));
+        assertNull(reopened.get("query?function=GLOBAL_QUOTE&symbol=IBM"));
+        reopened.close();
+    }
+
+    @Test
+    void latestWriteWinsAfterReopen() throws IOException {
+        Path dir = Files.createTempDirectory("disk-cache");
+        DiskResponseCache cache = DiskResponseCache.open(dir, 64 * 1024, 4);
+        cache.put("key", bytes("old"), System.currentTimeMillis() + HOUR);
+        cache.put("key", bytes("new"), System.currentTimeMillis() + HOUR);
+        cache.close();
+
+        DiskResponseCache reopened = DiskResponseCache.open(dir, 64 * 1024, 4);
+        assertArrayEquals(bytes("new"), reopened.get("key"));
+        assertEquals(1, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    void oldestSegmentIsDroppedWhenFull() throws IOException {
+        Path dir = Files.createTempDirectory("disk-cache");
+        DiskResponseCache cache = DiskResponseCache.open(dir, 4096, 2);
+        // Случайные байты почти не сжимаются: в сегмент помещается одна запись
+        byte[] body = new byte[3000];
+        new Random(1).nextBytes(body);
+        for (int i = 0; i < 4; i++) {
+            cache.put("key-" + i, body, System.currentTimeMillis() + HOUR);
+        }
+
+        assertNull(cache.get("key-0"));
+        assertNull(cache.get("key-1"));
+        assertArrayEquals(body, cache.get("key-3"));
+        cache.close();
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
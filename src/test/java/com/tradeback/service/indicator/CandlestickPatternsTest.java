@@ -0,0 +1,81 @@
+package com.tradeback.service.indicator;
+
+import com.tradeback.model.BarSeries;
+import com.tradeback.model.Indicator.IndicatorType;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Паттерны на построенных вручную свечах. Десять одинаковых баров задают средние TA-Lib:
+ * тело 1, диапазон 2, тени по 0.5 - отсюда пороги "длинное тело" > 1, доджи <= 0.2,
+ * очень короткая тень < 0.2, "рядом" - в пределах 0.4
+ */
+class CandlestickPatternsTest {
+
+    private static final EnumSet<IndicatorType> PATTERNS = EnumSet.of(IndicatorType.CDLDOJI,
+            IndicatorType.CDLMARUBOZU, IndicatorType.CDLENGULFING, IndicatorType.CDLHAMMER, IndicatorType.CDLHARAMI);
+
+    @Test
+    void detectsDoji() {
+        int[] signals = scan(new double[]{100, 101, 99, 100.1}).getSignals(IndicatorType.CDLDOJI);
+        assertEquals(100, signals[10]);
+        assertEquals(0, signals[9]);
+    }
+
+    @Test
+    void detectsMarubozuInBothDirections() {
+        assertEquals(100, scan(new double[]{100, 102.1, 99.95, 102}).getSignals(IndicatorType.CDLMARUBOZU)[10]);
+        assertEquals(-100, scan(new double[]{102, 102.05, 99.9, 100}).getSignals(IndicatorType.CDLMARUBOZU)[10]);
+        // Тень 0.3 длиннее "очень короткой"
+        assertEquals(0, scan(new double[]{100, 102.3, 99.95, 102}).getSignals(IndicatorType.CDLMARUBOZU)[10]);
+    }
+
+    @Test
+    void detectsEngulfing() {
+        CandlestickScan bullish = scan(new double[]{101, 101.2, 99.9, 100}, new double[]{99.8, 101.4, 99.7, 101.3});
+        assertEquals(100, bullish.getSignals(IndicatorType.CDLENGULFING)[11]);
+
+        CandlestickScan bearish = scan(new double[]{100, 101.1, 99.9, 101}, new double[]{101.2, 101.3, 99.6, 99.7});
+        assertEquals(-100, bearish.getSignals(IndicatorType.CDLENGULFING)[11]);
+
+        // Тело второй свечи не накрывает первое
+        CandlestickScan inside = scan(new double[]{101, 101.2, 99.9, 100}, new double[]{100.2, 101.4, 100.1, 101.3});
+        assertEquals(0, inside.getSignals(IndicatorType.CDLENGULFING)[11]);
+    }
+
+    @Test
+    void detectsHammerNearPreviousLow() {
+        CandlestickScan scan = scan(new double[]{100, 101.5, 99.5, 101}, new double[]{99.6, 99.95, 98.8, 99.9});
+        assertEquals(100, scan.getSignals(IndicatorType.CDLHAMMER)[11]);
+
+        // То же тело выше минимума предыдущей свечи больше чем на 0.4
+        CandlestickScan high = scan(new double[]{100, 101.5, 99.5, 101}, new double[]{100.6, 100.95, 99.8, 100.9});
+        assertEquals(0, high.getSignals(IndicatorType.CDLHAMMER)[11]);
+    }
+
+    @Test
+    void detectsHaramiAgainstPreviousColor() {
+        CandlestickScan scan = scan(new double[]{102, 102.2, 99.3, 99.5}, new double[]{100.2, 101, 100, 100.8});
+        assertEquals(100, scan.getSignals(IndicatorType.CDLHARAMI)[11]);
+    }
+
+    /**
+     * Десять базовых баров (open 100, high 101.5, low 99.5, close 101) и затем проверяемые свечи {o, h, l, c}
+     */
+    private static CandlestickScan scan(double[]... candles) {
+        BarSeries.Builder builder = BarSeries.builder("TEST", "daily", 10 + candles.length);
+        long time = 1_700_000_000L;
+        for (int i = 0; i < 10; i++) {
+            builder.add(time, 100, 101.5, 99.5, 101, 1_000);
+            time += 86_400;
+        }
+        for (double[] candle : candles) {
+            builder.add(time, candle[0], candle[1], candle[2], candle[3], 1_000);
+            time += 86_400;
+        }
+        return CandlestickPatterns.scan(builder.build(), PATTERNS);
+    }
+}
@@ -0,0 +1,136 @@
+package com.tradeback.service.indicator;
+
+import com.tradeback.model.Indicator.IndicatorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Эквивалентность векторных ядер скалярным
+ */
+class IndicatorKernelsTest {
+
+    // Не кратно ширине вектора, чтобы проверялись и скалярные хвосты
+    private static final int SIZE = 1037;
+
+    private static final double[] OPEN = new double[SIZE];
+    private static final double[] HIGH = new double[SIZE];
+    private static final double[] LOW = new double[SIZE];
+    private static final double[] CLOSE = new double[SIZE];
+    private static final double[] UNIT = new double[SIZE];
+
+    private final IndicatorKernels scalar = IndicatorKernelSelector.scalar();
+
+    @BeforeAll
+    static void generateBars() {
+        Random random = new Random(42);
+        double price = 100;
+        for (int i = 0; i < SIZE; i++) {
+            price = Math.max(1, price + random.nextGaussian());
+            OPEN[i] = price;
+            CLOSE[i] = price + random.nextGaussian() * 0.5;
+            HIGH[i] = Math.max(OPEN[i], CLOSE[i]) + random.nextDouble();
+            LOW[i] = Math.min(OPEN[i], CLOSE[i]) - random.nextDouble();
+            UNIT[i] = random.nextDouble() * 2 - 1;
+        }
+    }
+
+    @AfterEach
+    void restoreDefault() {
+        IndicatorKernelSelector.setVectorEnabled(true);
+    }
+
+    @Test
+    void priceTransformsMatchScalarExactly() {
+        IndicatorKernels vector = vectorKernels();
+        double[] expected = new double[SIZE];
+        double[] actual = new double[SIZE];
+
+        scalar.avgPrice(OPEN, HIGH, LOW, CLOSE, expected);
+        vector.avgPrice(OPEN, HIGH, LOW, CLOSE, actual);
+        assertArrayEquals(expected, actual);
+
+        scalar.medPrice(HIGH, LOW, expected);
+        vector.medPrice(HIGH, LOW, actual);
+        assertArrayEquals(expected, actual);
+
+        scalar.typicalPrice(HIGH, LOW, CLOSE, expected);
+        vector.typicalPrice(HIGH, LOW, CLOSE, actual);
+        assertArrayEquals(expected, actual);
+
+        scalar.weightedClose(HIGH, LOW, CLOSE, expected);
+        vector.weightedClose(HIGH, LOW, CLOSE, actual);
+        assertArrayEquals(expected, actual);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = IndicatorType.class, names = {
+            "ACOS", "ASIN", "ATAN", "CEIL", "COS", "COSH", "EXP", "FLOOR",
+            "LN", "LOG10", "SIN", "SINH", "SQRT", "TAN", "TANH"})
+    void mathTransformsMatchScalar(IndicatorType type) {
+        IndicatorKernels vector = vectorKernels();
+        // ACOS/ASIN определены только на [-1, 1]
+        double[] src = type == IndicatorType.ACOS || type == IndicatorType.ASIN ? UNIT : CLOSE;
+        double[] expected = new double[SIZE];
+        double[] actual = new double[SIZE];
+
+        scalar.mathTransform(type, src, expected);
+        vector.mathTransform(type, src, actual);
+
+        for (int i = 0; i < SIZE; i++) {
+            assertEquals(expected[i], actual[i], Math.abs(expected[i]) * 1e-12, type + " at " + i);
+        }
+    }
+
+    @Test
+    void rollingSumMatchesScalar() {
+        IndicatorKernels vector = vectorKernels();
+        for (int start : new int[]{0, 5}) {
+            for (int period : new int[]{1, 2, 3, 14, 50, 200, SIZE - start, SIZE + 1}) {
+                double[] expected = IndicatorMath.nanArray(SIZE);
+                double[] actual = IndicatorMath.nanArray(SIZE);
+
+                scalar.rollingSum(CLOSE, start, period, expected);
+                vector.rollingSum(CLOSE, start, period, actual);
+
+                for (int i = 0; i < SIZE; i++) {
+                    assertEquals(expected[i], actual[i], Math.abs(expected[i]) * 1e-12,
+                            "period " + period + ", start " + start + " at " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void runtimeSwitchFallsBackToScalar() {
+        assertNotNull(IndicatorKernelSelector.get());
+        double[] vectorSma = IndicatorMath.sma(CLOSE, 20);
+
+        assertFalse(IndicatorKernelSelector.setVectorEnabled(false));
+        assertFalse(IndicatorKernelSelector.isVectorActive());
+        double[] scalarSma = IndicatorMath.sma(CLOSE, 20);
+
+        assertEquals(Arrays.stream(scalarSma).filter(Double::isNaN).count(),
+                Arrays.stream(vectorSma).filter(Double::isNaN).count());
+        for (int i = 0; i < SIZE; i++) {
+            assertEquals(scalarSma[i], vectorSma[i], Math.abs(scalarSma[i]) * 1e-12);
+        }
+    }
+
+    private static IndicatorKernels vectorKernels() {
+        IndicatorKernels vector = IndicatorKernelSelector.vector();
+        assumeTrue(vector != null, "jdk.incubator.vector is not available in this JVM");
+        return vector;
+    }
+}
@@ -0,0 +1,153 @@
+package com.tradeback.service.indicator;
+
+import com.tradeback.model.BarSeries;
+import com.tradeback.model.Indicator.IndicatorType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Эталонные значения на фиксированных 60 барах. Ожидаемые числа посчитаны отдельной реализацией
+ * по алгоритмам TA-Lib (затравка EMA из SMA, сглаживание Уайлдера, суммы +DM/-DM/TR, SAR с разворотом
+ * при касании) - теми же, что стоят за индикаторами Alpha Vantage
+ */
+class LocalIndicatorEngineTest {
+
+    private static final double TOLERANCE = 1e-9;
+
+    private static final double[] OPEN = {49.79, 49.14, 48.41, 48.31, 49.39, 51.18, 49.81, 48.66, 49.07, 48.39,
+            48.31, 47.67, 48.28, 47.52, 47.44, 48.14, 47.64, 47.35, 47.77, 48.66, 48.51, 47, 45.74, 45.85, 46.4,
+            47.08, 46.7, 46.12, 46.45, 47.36, 48.05, 47.43, 46.35, 44.95, 44.91, 44.06, 43.26, 42.88, 41.6, 42.58,
+            41.73, 41.65, 41.95, 41.56, 41.81, 41.13, 41, 41.27, 40.44, 40.29, 39.89, 40.73, 40.63, 41.38, 42.15,
+            41.04, 41.79, 42.63, 43.06, 43.8};
+    private static final double[] HIGH = {50.31, 49.19, 48.47, 49.19, 50.92, 51.87, 50.06, 49.37, 49.12, 48.64,
+            48.95, 48.27, 49.06, 48.26, 48.45, 48.7, 48.31, 47.79, 49.61, 49.08, 48.56, 47.31, 46.18, 46.94, 48.09,
+            47.27, 46.7, 47.04, 47.27, 48.73, 48.13, 47.6, 46.35, 44.97, 45.11, 44.74, 43.33, 43.54, 43.1, 43,
+            42.41, 42.73, 42.6, 42.94, 42.13, 41.34, 41.75, 41.45, 40.94, 40.81, 41.01, 40.87, 42.13, 43.03, 42.87,
+            42.6, 42.01, 43.41, 44.61, 43.99};
+    private static final double[] LOW = {48.89, 48.41, 48.18, 48.13, 49.07, 49.86, 48.24, 48.36, 47.86, 47.75,
+            47.27, 46.97, 47.68, 47.13, 46.98, 47.21, 46.77, 46.79, 47.54, 48.29, 46.98, 45.69, 44.91, 45.52, 46.28,
+            46.05, 45.79, 45.57, 46.41, 46.72, 47.3, 46.26, 45.16, 43.92, 43.79, 42.36, 43.14, 42.19, 41.48, 40.66,
+            41.44, 41.03, 40.5, 40.97, 41.79, 40.05, 40.08, 40.77, 39.01, 39.6, 39.26, 40.05, 40.31, 41.24, 40.66,
+            40.51, 41.78, 41.88, 42.89, 42.83};
+    private static final double[] CLOSE = {48.95, 48.82, 48.25, 49.09, 50.46, 50.09, 48.89, 48.86, 48.02, 48.22,
+            47.83, 47.85, 47.77, 48.14, 47.84, 47.69, 47.53, 47.74, 48.95, 49.06, 47.59, 46.39, 45.62, 46.72, 47.32,
+            46.44, 46.13, 46.28, 46.73, 48.03, 47.81, 46.39, 45.28, 44.62, 44.07, 43.15, 43.22, 42.32, 42.68, 41.44,
+            42.2, 42.3, 41.29, 42.29, 41.85, 40.6, 40.87, 40.95, 39.73, 40.24, 40.28, 40.68, 41.35, 42.45, 41.31,
+            41.82, 41.91, 42.99, 43.95, 43.3};
+
+    private final LocalIndicatorEngine engine = new LocalIndicatorEngine();
+    private final BarSeries series = bars();
+
+    @Test
+    void movingAveragesSeedFromSimpleAverage() {
+        double[] sma = engine.compute(IndicatorType.SMA, 10, series).getValues();
+        assertTrue(Double.isNaN(sma[8]));
+        assertEquals(48.965, sma[9], TOLERANCE);
+        assertEquals(42.004, sma[59], TOLERANCE);
+
+        double[] ema = engine.compute(IndicatorType.EMA, 10, series).getValues();
+        assertTrue(Double.isNaN(ema[8]));
+        assertEquals(48.965, ema[9], TOLERANCE);
+        assertEquals(48.75863636363636, ema[10], TOLERANCE);
+        assertEquals(42.36661453330693, ema[59], TOLERANCE);
+    }
+
+    @Test
+    void rsiUsesWilderSmoothing() {
+        double[] rsi = engine.compute(IndicatorType.RSI, 14, series).getValues();
+        assertTrue(Double.isNaN(rsi[13]));
+        assertEquals(41.72876304023845, rsi[14], TOLERANCE);
+        assertEquals(40.747789096608045, rsi[15], TOLERANCE);
+        assertEquals(53.378902700683604, rsi[59], TOLERANCE);
+    }
+
+    @Test
+    void flatSeriesGivesZeroRsiAndCmo() {
+        BarSeries.Builder builder = BarSeries.builder("TEST", "daily", 30);
+        for (int i = 0; i < 30; i++) {
+            builder.add(1_700_000_000L + i * 86_400L, 42.5, 42.5, 42.5, 42.5, 1_000L);
+        }
+        BarSeries flat = builder.build();
+        double[] rsi = engine.compute(IndicatorType.RSI, 14, flat).getValues();
+        double[] cmo = engine.compute(IndicatorType.CMO, 14, flat).getValues();
+        StreamingIndicator streaming = StreamingIndicators.create(IndicatorType.RSI, 14);
+        for (int i = 0; i < 30; i++) {
+            streaming.update(42.5, 42.5, 42.5, 42.5, 1_000L, 0);
+        }
+
+        assertEquals(0.0, rsi[14], TOLERANCE);
+        assertEquals(0.0, rsi[29], TOLERANCE);
+        assertEquals(0.0, cmo[29], TOLERANCE);
+        assertEquals(0.0, streaming.getValue(), TOLERANCE);
+    }
+
+    @Test
+    void macdAlignsFastAverageWithSlowOne() {
+        IndicatorResult macd = engine.compute(IndicatorType.MACD, null, series);
+        // Первая точка сигнальной линии: 26 + 9 - 2
+        assertTrue(Double.isNaN(macd.getSecondary()[32]));
+        assertEquals(-0.7640919884940942, macd.getValues()[33], TOLERANCE);
+        assertEquals(-0.6513144388964657, macd.getSecondary()[33], TOLERANCE);
+        assertEquals(-0.11277754959762853, macd.getTertiary()[33], TOLERANCE);
+        assertEquals(-0.37879425223960794, macd.getValues()[59], TOLERANCE);
+        assertEquals(-0.9041626229826839, macd.getSecondary()[59], TOLERANCE);
+        assertEquals(0.525368370743076, macd.getTertiary()[59], TOLERANCE);
+    }
+
+    @Test
+    void streamingMacdMatchesBatch() {
+        IndicatorResult batch = engine.compute(IndicatorType.MACD, null, series);
+        StreamingIndicator streaming = StreamingIndicators.create(IndicatorType.MACD, 0);
+        for (int i = 0; i < series.size(); i++) {
+            streaming.update(OPEN[i], HIGH[i], LOW[i], CLOSE[i], 0, 0);
+            if (i >= 33) {
+                assertEquals(batch.getValues()[i], streaming.getValue(), TOLERANCE);
+                assertEquals(batch.getSecondary()[i], streaming.getSecondaryValue(), TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    void directionalMovementUsesWilderSums() {
+        double[] plusDm = engine.compute(IndicatorType.PLUS_DM, 14, series).getValues();
+        assertTrue(Double.isNaN(plusDm[13]));
+        assertEquals(4.080714285714288, plusDm[14], TOLERANCE);
+        assertEquals(4.524431797823162, plusDm[59], TOLERANCE);
+
+        double[] plusDi = engine.compute(IndicatorType.PLUS_DI, 14, series).getValues();
+        double[] minusDi = engine.compute(IndicatorType.MINUS_DI, 14, series).getValues();
+        assertEquals(23.853862212943643, plusDi[14], TOLERANCE);
+        assertEquals(23.177453027139848, minusDi[14], TOLERANCE);
+        assertEquals(22.06537661394872, plusDi[59], TOLERANCE);
+        assertEquals(19.626708966847552, minusDi[59], TOLERANCE);
+
+        double[] adx = engine.compute(IndicatorType.ADX, 14, series).getValues();
+        assertTrue(Double.isNaN(adx[26]));
+        assertEquals(7.217121480581693, adx[27], TOLERANCE);
+        assertEquals(7.000400956732965, adx[28], TOLERANCE);
+        assertEquals(29.58161698340833, adx[59], TOLERANCE);
+    }
+
+    @Test
+    void parabolicSarReversesOnTouch() {
+        double[] sar = engine.compute(IndicatorType.SAR, null, series).getValues();
+        assertTrue(Double.isNaN(sar[0]));
+        // Второй бар сделал нижний шаг: короткая позиция от максимума первого
+        assertEquals(50.31, sar[1], TOLERANCE);
+        assertEquals(50.272, sar[2], TOLERANCE);
+        assertEquals(48.13, sar[4], TOLERANCE);
+        assertEquals(51.87, sar[6], TOLERANCE);
+        assertEquals(44.9864, sar[30], TOLERANCE);
+        assertEquals(40.27045981162373, sar[59], TOLERANCE);
+    }
+
+    private static BarSeries bars() {
+        BarSeries.Builder builder = BarSeries.builder("TEST", "daily", CLOSE.length);
+        for (int i = 0; i < CLOSE.length; i++) {
+            builder.add(1_700_000_000L + i * 86_400L, OPEN[i], HIGH[i], LOW[i], CLOSE[i], 1_000L + i);
+        }
+        return builder.build();
+    }
+}
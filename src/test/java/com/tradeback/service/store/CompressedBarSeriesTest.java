@@ -0,0 +1,109 @@
+package com.tradeback.service.store;
+
+import com.tradeback.model.BarSeries;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Сжатый ряд: точное восстановление (десятичные цены и произвольные double), диапазоны по блокам, дописывание с заменой последнего бара
+ */
+class CompressedBarSeriesTest {
+
+    // Минутные бары торговых сессий с ценами в центах и разрывами между днями
+    private static BarSeries sessions(int days) {
+        Random random = new Random(7);
+        BarSeries.Builder builder = BarSeries.builder("IBM", "1min", days * 390);
+        double price = 150.0;
+        for (int day = 0; day < days; day++) {
+            long open = 1_700_000_000L / 86_400 * 86_400 + day * 86_400L + 9 * 3600 + 1800;
+            for (int minute = 0; minute < 390; minute++) {
+                double close = Math.max(1, Math.round((price + (random.nextInt(21) - 10) * 0.01) * 100) / 100.0);
+                double high = Math.max(price, close) + random.nextInt(3) * 0.01;
+                double low = Math.min(price, close) - random.nextInt(3) * 0.01;
+                builder.add(open + minute * 60L, price, Math.round(high * 100) / 100.0,
+                        Math.round(low * 100) / 100.0, close, 1_000 + random.nextInt(5_000));
+                price = close;
+            }
+        }
+        return builder.build();
+    }
+
+    @Test
+    void roundTripsExactly() {
+        BarSeries source = sessions(20);
+        CompressedBarSeries compressed = CompressedBarSeries.of(source);
+        BarSeries decoded = compressed.toBarSeries();
+
+        assertEquals(source.size(), compressed.size());
+        assertArrayEquals(source.getTimestamps(), decoded.getTimestamps());
+        assertArrayEquals(source.getOpen(), decoded.getOpen());
+        assertArrayEquals(source.getHigh(), decoded.getHigh());
+        assertArrayEquals(source.getLow(), decoded.getLow());
+        assertArrayEquals(source.getClose(), decoded.getClose());
+        assertArrayEquals(source.getVolume(), decoded.getVolume());
+        // Несжатые столбцы - 48 байт на бар
+        assertTrue(compressed.getEncodedBytes() * 8 < source.size() * 48L);
+    }
+
+    @Test
+    void keepsArbitraryDoublesExactly() {
+        Random random = new Random(11);
+        BarSeries.Builder builder = BarSeries.builder("IBM", "1min", 3000);
+        for (int i = 0; i < 3000; i++) {
+            double price = 100 + random.nextGaussian();
+            builder.add(1_700_000_000L + i * 60L, price, price + random.nextDouble(), price - random.nextDouble(),
+                    price / 3, random.nextInt(100));
+        }
+        BarSeries source = builder.build();
+        BarSeries decoded = CompressedBarSeries.of(source).toBarSeries();
+
+        assertArrayEquals(source.getHigh(), decoded.getHigh());
+        assertArrayEquals(source.getClose(), decoded.getClose());
+        assertArrayEquals(source.getVolume(), decoded.getVolume());
+    }
+
+    @Test
+    void readsRangesAndTails() {
+        BarSeries source = sessions(10);
+        CompressedBarSeries compressed = CompressedBarSeries.of(source);
+
+        long from = source.getTimestamps()[1500];
+        long to = source.getTimestamps()[2600];
+        BarSeries range = compressed.read(from, to);
+        assertEquals(1101, range.size());
+        assertEquals(source.getClose()[1500], range.getClose()[0]);
+        assertEquals(source.getClose()[2600], range.getClose()[1100]);
+        assertEquals(0, compressed.read(to + 1, to + 59).size());
+
+        BarSeries tail = compressed.tail(100);
+        assertArrayEquals(source.slice(source.size() - 100, source.size()).getTimestamps(), tail.getTimestamps());
+    }
+
+    @Test
+    void returnsEmptyTailForNonPositiveCount() {
+        CompressedBarSeries compressed = CompressedBarSeries.of(sessions(2));
+
+        assertEquals(0, compressed.tail(0).size());
+        assertEquals(0, compressed.tail(-5).size());
+        assertEquals("IBM", compressed.tail(0).getSymbol());
+    }
+
+    @Test
+    void appendsReplacingTheLastBar() {
+        BarSeries source = sessions(3);
+        CompressedBarSeries head = CompressedBarSeries.of(source.slice(0, 1000));
+        CompressedBarSeries appended = head.append(source.slice(999, source.size()));
+
+        assertEquals(source.size(), appended.size());
+        assertEquals(1000, head.size());
+        assertArrayEquals(source.getClose(), appended.toBarSeries().getClose());
+        assertNull(appended.append(source.slice(10, 20)));
+        assertEquals(appended.size(), appended.append(BarSeries.empty("IBM", "1min")).size());
+    }
+}
@@ -0,0 +1,89 @@
+package com.tradeback.service.store;
+
+import com.tradeback.model.BarSeries;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Файл баров: диапазоны через разреженный индекс, повторное открытие, оборванный хвост, перекрытие
+ */
+class MappedBarFileTest {
+
+    private static BarSeries minutes(int from, int count) {
+        BarSeries.Builder builder = BarSeries.builder("IBM", "1min", count);
+        for (int i = from; i < from + count; i++) {
+            builder.add(1_700_000_000L + i * 60L, i, i + 1, i - 1, i + 0.5, i * 10L);
+        }
+        return builder.build();
+    }
+
+    @Test
+    void readsRangesAcrossIndexBlocksAfterReopen() throws Exception {
+        Path path = Files.createTempDirectory("bars").resolve("IBM_1MIN.bars");
+        try (MappedBarFile file = MappedBarFile.open(path)) {
+            assertTrue(file.append(minutes(0, 1000)));
+            assertTrue(file.append(minutes(1000, 5000)));
+        }
+
+        try (MappedBarFile file = MappedBarFile.open(path)) {
+            assertEquals(6000, file.size());
+            BarSeries range = file.read("IBM", "1min", 1_700_000_000L + 250 * 60L, 1_700_000_000L + 4321 * 60L);
+            assertEquals(4072, range.size());
+            assertEquals(250.0, range.getOpen()[0]);
+            assertEquals(43210L, range.getVolume()[range.size() - 1]);
+            assertEquals(0, file.read("IBM", "1min", 0, 1_000).size());
+            assertEquals(6000, file.lowerBound(Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    void ignoresRecordsPastTheCommittedCount() throws Exception {
+        Path path = Files.createTempDirectory("bars").resolve("IBM_1MIN.bars");
+        try (MappedBarFile file = MappedBarFile.open(path)) {
+            file.append(minutes(0, 10));
+        }
+        // Записи дописаны, но число в заголовке не обновлено - как при сбое посреди append
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(3 * MappedBarFile.RECORD).putLong(0, Long.MAX_VALUE),
+                    64 + 10 * MappedBarFile.RECORD);
+        }
+
+        try (MappedBarFile file = MappedBarFile.open(path)) {
+            assertEquals(10, file.size());
+            assertEquals(1_700_000_000L + 9 * 60L, file.getLastTimestamp());
+            assertTrue(file.append(minutes(10, 1)));
+            assertEquals(11, file.size());
+        }
+    }
+
+    @Test
+    void overwritesOverlappingBarsAndRejectsGaps() throws Exception {
+        Path path = Files.createTempDirectory("bars").resolve("IBM_1MIN.bars");
+        try (MappedBarFile file = MappedBarFile.open(path)) {
+            file.append(minutes(0, 100));
+            file.append(minutes(150, 10));
+
+            BarSeries.Builder revised = BarSeries.builder("IBM", "1min", 2);
+            revised.add(1_700_000_000L + 159 * 60L, 1, 2, 0, 1.5, 7);
+            revised.add(1_700_000_000L + 160 * 60L, 2, 3, 1, 2.5, 8);
+            assertTrue(file.append(revised.build()));
+            assertEquals(111, file.size());
+            BarSeries tail = file.read("IBM", "1min", 1_700_000_000L + 159 * 60L, Long.MAX_VALUE);
+            assertArrayEquals(new long[]{7, 8}, tail.getVolume());
+
+            // Бар 120 старше последнего и в файле его нет
+            assertFalse(file.append(minutes(120, 50)));
+            assertEquals(111, file.size());
+        }
+    }
+}